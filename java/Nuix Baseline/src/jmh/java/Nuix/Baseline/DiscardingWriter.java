@@ -0,0 +1,23 @@
+package Nuix.Baseline;
+
+import java.io.Writer;
+
+/**
+ * Throws the output away, so benchmarks measure the script rather than the console.
+ */
+final class DiscardingWriter extends Writer {
+    @Override
+    public void write(char[] buffer, int offset, int length)
+    {
+    }
+
+    @Override
+    public void flush()
+    {
+    }
+
+    @Override
+    public void close()
+    {
+    }
+}
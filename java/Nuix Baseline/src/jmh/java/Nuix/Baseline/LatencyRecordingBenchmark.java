@@ -0,0 +1,66 @@
+package Nuix.Baseline;
+
+import nuix.WorkerItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The per item cost LatencyRecordingScript adds to a Worker Side Script: accept() on a script that does
+ * nothing, bare and wrapped. The difference is the instrumentation overhead.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LatencyRecordingBenchmark {
+
+    private WorkerItem[] items;
+    private Consumer<WorkerItem> bare;
+    private LatencyRecordingScript recorded;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createScripts(Blackhole blackhole) throws IOException
+    {
+        items = WorkerItemStubs.workerItems(1024);
+        bare = blackhole::consume;
+        recorded = new LatencyRecordingScript(bare, new LoggerLineOutput(), Long.MAX_VALUE, 10, 0,
+                Files.createTempDirectory("latency-benchmark").resolve("wss-latency.txt"));
+    }
+
+    @TearDown(Level.Trial)
+    public void closeScripts() throws IOException
+    {
+        recorded.close();
+    }
+
+    @Benchmark
+    public void bare()
+    {
+        bare.accept(items[next++ & (items.length - 1)]);
+    }
+
+    @Benchmark
+    public void recorded()
+    {
+        recorded.accept(items[next++ & (items.length - 1)]);
+    }
+}
@@ -0,0 +1,135 @@
+package Nuix.Baseline;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a worker pays per item to write one line of output, for a burst of LINES lines to a file.
+ * <ul>
+ *     <li>printStream: System.out as the original WSSExample used it, a line flushed per println</li>
+ *     <li>syncLogger: a Log4j2 logger with a synchronous, immediately flushed file appender (log4j2.xml)</li>
+ *     <li>asyncLogger: the LoggerLineOutput over an async logger (log4j2-production.xml)</li>
+ *     <li>asyncLineWriter: the AsyncLineWriter, WSSExample's default output</li>
+ * </ul>
+ * The asynchronous paths only measure handing the line over, the burst fits in their queues;
+ * sustained rates beyond what the disk can take end up waiting on the background thread either way.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(LoggingBenchmark.LINES)
+@Warmup(iterations = 5, batchSize = 1)
+@Measurement(iterations = 10, batchSize = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dlog4j.configurationFile=log4j2-benchmark.xml",
+        "-DAsyncLoggerConfig.RingBufferSize=262144", "-Dlog4j2.enable.threadlocals=true"})
+public class LoggingBenchmark {
+
+    static final int LINES = 100_000;
+
+    private String[] itemNames;
+    private PrintStream printStream;
+    private LineOutput syncLogger;
+    private LineOutput asyncLogger;
+    private AsyncLineWriter asyncLineWriter;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException
+    {
+        File folder = new File(System.getProperty("java.io.tmpdir"), "baseline-jmh");
+        if (!folder.isDirectory() && !folder.mkdirs())
+        {
+            throw new IOException("Could not create " + folder);
+        }
+        itemNames = new String[1024];
+        for (int index = 0; index < itemNames.length; index++)
+        {
+            itemNames[index] = "item-" + index + ".msg";
+        }
+        //the same buffering and autoflush the JVM gives System.out
+        printStream     = new PrintStream(new BufferedOutputStream(new FileOutputStream(new File(folder, "print-stream.log")), 128), true);
+        syncLogger      = new LoggerLineOutput(LogManager.getLogger("benchmark.sync"));
+        asyncLogger     = new LoggerLineOutput(asyncLogger("benchmark.async"));
+        asyncLineWriter = new AsyncLineWriter(new OutputStreamWriter(new FileOutputStream(new File(folder, "async-line-writer.log")),
+                StandardCharsets.UTF_8), LINES * 2);
+    }
+
+    /**
+     * The async logger of log4j2-benchmark.xml, checked to be configured: without the LMAX disruptor log4j only
+     * reports the AsyncLogger element as an error and the name falls back to the root logger, which drops the lines.
+     */
+    private static Logger asyncLogger(String name)
+    {
+        Logger logger = LogManager.getLogger(name);
+        if (!(logger instanceof org.apache.logging.log4j.core.Logger)
+                || !((org.apache.logging.log4j.core.Logger) logger).get().getName().equals(name))
+        {
+            throw new IllegalStateException(name + " is not configured as an async logger, is the LMAX disruptor on the class path?");
+        }
+        return logger;
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException
+    {
+        printStream.close();
+        asyncLineWriter.close();
+    }
+
+    @Benchmark
+    public void printStream()
+    {
+        for (int index = 0; index < LINES; index++)
+        {
+            printStream.println("Worker Item Processed:" + itemNames[index & 1023]);
+        }
+    }
+
+    @Benchmark
+    public void syncLogger()
+    {
+        for (int index = 0; index < LINES; index++)
+        {
+            syncLogger.println("Worker Item Processed:", itemNames[index & 1023]);
+        }
+    }
+
+    @Benchmark
+    public void asyncLogger()
+    {
+        for (int index = 0; index < LINES; index++)
+        {
+            asyncLogger.println("Worker Item Processed:", itemNames[index & 1023]);
+        }
+    }
+
+    @Benchmark
+    public void asyncLineWriter()
+    {
+        for (int index = 0; index < LINES; index++)
+        {
+            asyncLineWriter.println("Worker Item Processed:", itemNames[index & 1023]);
+        }
+    }
+}
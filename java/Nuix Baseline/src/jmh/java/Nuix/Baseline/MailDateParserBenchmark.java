@@ -0,0 +1,84 @@
+package Nuix.Baseline;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mail header dates through the Joda formatters the importer used to try in turn, against MailDateParser.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MailDateParserBenchmark {
+
+    private static final DateTimeFormatter[] JODA_DATES = new DateTimeFormatter[] {
+            DateTimeFormat.forPattern("EEE, d MMM yyyy HH:mm:ss Z").withLocale(Locale.ENGLISH).withOffsetParsed(),
+            DateTimeFormat.forPattern("d MMM yyyy HH:mm:ss Z").withLocale(Locale.ENGLISH).withOffsetParsed(),
+            DateTimeFormat.forPattern("EEE, d MMM yyyy HH:mm Z").withLocale(Locale.ENGLISH).withOffsetParsed(),
+            DateTimeFormat.forPattern("EEE, d MMM yy HH:mm:ss Z").withLocale(Locale.ENGLISH).withOffsetParsed()
+    };
+    private static final DateTimeFormatter JODA_ISO = ISODateTimeFormat.dateTimeParser().withOffsetParsed();
+
+    @Param({"Mon, 6 Jan 2020 10:00:00 -0800", "6 Jan 2020 10:00:00 -0800", "2020-01-06T10:00:00-08:00"})
+    public String date;
+
+    private MailDateParser parser;
+
+    @Setup
+    public void setUp()
+    {
+        parser = new MailDateParser(true);
+    }
+
+    @Benchmark
+    public DateTime joda()
+    {
+        if (date.length() > 4 && date.charAt(4) == '-')
+        {
+            return JODA_ISO.parseDateTime(date);
+        }
+        for (DateTimeFormatter formatter : JODA_DATES)
+        {
+            try
+            {
+                return formatter.parseDateTime(date);
+            }
+            catch (IllegalArgumentException e)
+            {
+                //try the next layout
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public DateTime parse()
+    {
+        return parser.parse(date);
+    }
+
+    @Benchmark
+    public long parseMillis()
+    {
+        return parser.parseMillis(date);
+    }
+}
@@ -0,0 +1,82 @@
+package Nuix.Baseline;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compares SimpleAddress.toRfc822String against the previous regex per special character implementation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Rfc822Benchmark {
+
+    private static final String[] ADDRESS_SPECIALS = "()<>,;:\\\"\t []/".split("");
+    private static final String[] PERSONAL_DISPLAY_SPECIALS = "<>@,\\\"".split("");
+
+    @Param({"Jane Doe", "Doe, Jane (Legal)"})
+    public String personal;
+
+    private String address;
+    private SimpleAddress cached;
+
+    @Setup
+    public void setUp()
+    {
+        address = "jane.doe@example.com";
+        cached  = new SimpleAddress(personal, address, SimpleAddress.CommunicationType.COMMUNICATION_MAIL);
+    }
+
+    /**
+     * The previous implementation, with each special quoted so that the metacharacters compile.
+     */
+    @Benchmark
+    public String legacyRegexQuoting()
+    {
+        return String.format("%s <%s>",
+                legacyQuoteString(personal, PERSONAL_DISPLAY_SPECIALS),
+                legacyQuoteString(address, ADDRESS_SPECIALS));
+    }
+
+    /**
+     * A fresh instance every call, so this measures the encoder itself.
+     */
+    @Benchmark
+    public String singlePassEncoding()
+    {
+        return new SimpleAddress(personal, address, SimpleAddress.CommunicationType.COMMUNICATION_MAIL).toRfc822String();
+    }
+
+    /**
+     * The same instance every call, so this measures the per instance cache.
+     */
+    @Benchmark
+    public String cachedEncoding()
+    {
+        return cached.toRfc822String();
+    }
+
+    private static String legacyQuoteString(String input, String[] specials)
+    {
+        for (String thisChar : specials)
+        {
+            input = input.replaceAll(Pattern.quote(thisChar), "");
+        }
+        return "\"" + input + "\"";
+    }
+}
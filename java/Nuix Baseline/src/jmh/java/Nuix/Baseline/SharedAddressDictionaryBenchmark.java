@@ -0,0 +1,75 @@
+package Nuix.Baseline;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of a shared address id, looked up in the memory-mapped dictionary every worker process uses,
+ * next to interning the address in the worker's own AddressPool.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SharedAddressDictionaryBenchmark {
+
+    private static final int ADDRESSES = 10000;
+
+    private Path file;
+    private SharedAddressDictionary dictionary;
+    private AddressPool pool;
+    private String[] addresses;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        file       = Files.createTempFile("addresses", ".dict");
+        Files.delete(file);
+        dictionary = SharedAddressDictionary.open(file, ADDRESSES * 2, 32);
+        pool       = new AddressPool(ADDRESSES);
+        addresses  = new String[ADDRESSES];
+        for (int index = 0; index < ADDRESSES; index++)
+        {
+            addresses[index] = "custodian" + index + "@example.com";
+            dictionary.idOf(addresses[index]);
+            pool.intern(null, addresses[index], SimpleAddress.CommunicationType.COMMUNICATION_MAIL);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int sharedIdOfExisting()
+    {
+        next = (next + 1) % ADDRESSES;
+        return dictionary.idOf(addresses[next]);
+    }
+
+    @Benchmark
+    public SimpleAddress poolInternExisting()
+    {
+        next = (next + 1) % ADDRESSES;
+        return pool.intern(null, addresses[next], SimpleAddress.CommunicationType.COMMUNICATION_MAIL);
+    }
+}
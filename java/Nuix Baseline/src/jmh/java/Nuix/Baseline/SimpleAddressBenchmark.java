@@ -0,0 +1,77 @@
+package Nuix.Baseline;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SimpleAddress operations every communication pays for: construction, pooling, equality and RFC 822 output.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimpleAddressBenchmark {
+
+    private String personal;
+    private String address;
+    private String upperAddress;
+    private SimpleAddress jane;
+    private SimpleAddress janeUpper;
+    private SimpleAddress bob;
+    private AddressPool pool;
+
+    @Setup
+    public void setUp()
+    {
+        personal     = "Doe, Jane";
+        address      = "jane.doe@example.com";
+        upperAddress = "Jane.Doe@EXAMPLE.com";
+        jane         = new SimpleAddress(personal, address, SimpleAddress.CommunicationType.COMMUNICATION_MAIL);
+        janeUpper    = new SimpleAddress(null, upperAddress, SimpleAddress.CommunicationType.COMMUNICATION_MAIL);
+        bob          = new SimpleAddress(null, "bob@example.com", SimpleAddress.CommunicationType.COMMUNICATION_MAIL);
+        pool         = new AddressPool();
+        pool.intern(jane);
+    }
+
+    @Benchmark
+    public SimpleAddress construct()
+    {
+        return new SimpleAddress(personal, address, SimpleAddress.CommunicationType.COMMUNICATION_MAIL);
+    }
+
+    @Benchmark
+    public SimpleAddress internExisting()
+    {
+        return pool.intern(personal, address, SimpleAddress.CommunicationType.COMMUNICATION_MAIL);
+    }
+
+    @Benchmark
+    public boolean equalsIgnoringCase()
+    {
+        return jane.equals(janeUpper);
+    }
+
+    @Benchmark
+    public boolean equalsDifferent()
+    {
+        return jane.equals(bob);
+    }
+
+    @Benchmark
+    public String toRfc822String()
+    {
+        return new SimpleAddress(personal, address, SimpleAddress.CommunicationType.COMMUNICATION_MAIL).toRfc822String();
+    }
+}
@@ -0,0 +1,82 @@
+package Nuix.Baseline;
+
+import nuix.Address;
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a typical communication (one sender, three recipients, one cc) through the list constructor and the builder,
+ * and appending it to a CommunicationStore.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimpleCommunicationBenchmark {
+
+    private DateTime date;
+    private SimpleAddress from;
+    private SimpleAddress[] to;
+    private SimpleAddress cc;
+    private SimpleCommunication.Builder builder;
+    private SimpleCommunication communication;
+    private CommunicationStore store;
+
+    @Setup
+    public void setUp()
+    {
+        date    = new DateTime(2020, 1, 6, 10, 0);
+        from    = new SimpleAddress("Jane Doe", "jane@example.com", SimpleAddress.CommunicationType.COMMUNICATION_MAIL);
+        to      = new SimpleAddress[]{
+                new SimpleAddress(null, "bob@example.com", SimpleAddress.CommunicationType.COMMUNICATION_MAIL),
+                new SimpleAddress(null, "carol@example.com", SimpleAddress.CommunicationType.COMMUNICATION_MAIL),
+                new SimpleAddress(null, "dave@example.com", SimpleAddress.CommunicationType.COMMUNICATION_MAIL)};
+        cc      = new SimpleAddress(null, "eve@example.com", SimpleAddress.CommunicationType.COMMUNICATION_MAIL);
+        builder = SimpleCommunication.builder();
+        communication = builder.date(date).from(from).to(to).cc(cc).build();
+        store   = new CommunicationStore();
+    }
+
+    @Benchmark
+    public SimpleCommunication listConstructor()
+    {
+        ArrayList<Address> fromAddresses = new ArrayList<>();
+        fromAddresses.add(from);
+        ArrayList<Address> ccAddresses = new ArrayList<>();
+        ccAddresses.add(cc);
+        return new SimpleCommunication(date, fromAddresses, new ArrayList<>(Arrays.asList(to)), ccAddresses,
+                new ArrayList<>(), new ArrayList<>());
+    }
+
+    @Benchmark
+    public SimpleCommunication reusedBuilder()
+    {
+        return builder.clear().date(date).from(from).to(to).cc(cc).build();
+    }
+
+    @Benchmark
+    public int appendToStore()
+    {
+        if (store.size() == 1_000_000)
+        {
+            //keep the store from growing for the whole run
+            store = new CommunicationStore();
+        }
+        return store.add(communication);
+    }
+}
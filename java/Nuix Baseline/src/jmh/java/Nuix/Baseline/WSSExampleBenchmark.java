@@ -0,0 +1,55 @@
+package Nuix.Baseline;
+
+import nuix.WorkerItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of WSSExample.accept, the per item cost a worker pays, over synthetic WorkerItems.
+ * Each invocation runs a burst of ITEMS through a fresh script and closes it, so draining the batches and
+ * output is measured along with the accepts, as is starting the script's threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(WSSExampleBenchmark.ITEMS)
+public class WSSExampleBenchmark {
+
+    static final int ITEMS = 16 * 1024;
+
+    private WorkerItem[] items;
+
+    @Setup(Level.Trial)
+    public void createItems()
+    {
+        items = WorkerItemStubs.workerItems(1024);
+    }
+
+    @Benchmark
+    public void acceptAndClose() throws IOException
+    {
+        try (WSSExample script = new WSSExample(new DiscardingWriter()))
+        {
+            for (int index = 0; index < ITEMS; index++)
+            {
+                script.accept(items[index & (items.length - 1)]);
+            }
+        }
+    }
+}
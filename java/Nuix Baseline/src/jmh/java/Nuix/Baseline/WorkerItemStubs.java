@@ -0,0 +1,58 @@
+package Nuix.Baseline;
+
+import nuix.SourceItem;
+import nuix.WorkerItem;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Synthetic WorkerItems for benchmarks, no engine or licence required.
+ */
+final class WorkerItemStubs {
+
+    private WorkerItemStubs()
+    {
+    }
+
+    /**
+     * WorkerItems that only know their source item name, "item-0" onwards.
+     * @param count how many to create, a power of two so callers can cycle through them with a mask
+     * @return the items
+     */
+    static WorkerItem[] workerItems(int count)
+    {
+        WorkerItem[] items = new WorkerItem[count];
+        for (int index = 0; index < count; index++)
+        {
+            items[index] = workerItem("item-" + index);
+        }
+        return items;
+    }
+
+    /**
+     * A WorkerItem that only knows its source item name.
+     * @param name the source item name
+     * @return the item
+     */
+    static WorkerItem workerItem(String name)
+    {
+        SourceItem sourceItem = (SourceItem) Proxy.newProxyInstance(SourceItem.class.getClassLoader(), new Class<?>[]{SourceItem.class},
+                (proxy, method, args) ->
+                {
+                    if (method.getName().equals("getName"))
+                    {
+                        return name;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        return (WorkerItem) Proxy.newProxyInstance(WorkerItem.class.getClassLoader(), new Class<?>[]{WorkerItem.class},
+                (proxy, method, args) ->
+                {
+                    if (method.getName().equals("getSourceItem"))
+                    {
+                        return sourceItem;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
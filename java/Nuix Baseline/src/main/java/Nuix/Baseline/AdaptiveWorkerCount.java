@@ -0,0 +1,149 @@
+package Nuix.Baseline;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.function.Supplier;
+
+/**
+ * The worker count to licence engines with, from -licenceWorkerCount.
+ * <p>
+ * A number is requested as given. "auto" sizes the first licence to the machine with {@link WorkerSizing},
+ * bounded by the licence's maximum, and from then on a {@link WorkerCountPolicy} grows or shrinks it from
+ * the throughput jobs report through recordJob. Engines already licenced keep their count, the new count
+ * applies to engines licenced afterwards (see isStale). Thread safe.
+ */
+final class AdaptiveWorkerCount {
+
+    /**
+     * Generic logger definition, will use the class name as the prefix in the log.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(AdaptiveWorkerCount.class);
+
+    static final String AUTO = "auto";
+
+    private final Supplier<WorkerSizing> sizing;
+    private final WorkerCountPolicy policy;
+    private int current;
+    private int maximum = Integer.MAX_VALUE;
+
+    /**
+     * Always requests the same worker count.
+     * @param workers the worker count
+     */
+    AdaptiveWorkerCount(int workers)
+    {
+        this.sizing  = null;
+        this.policy  = WorkerCountPolicy.FIXED;
+        this.current = workers;
+    }
+
+    /**
+     * Sizes the worker count to the machine and adapts it between jobs.
+     * @param sizing sizes the first licence, only called when it is needed
+     * @param policy adapts the count to the throughput of each job
+     */
+    AdaptiveWorkerCount(@Nonnull Supplier<WorkerSizing> sizing, @Nonnull WorkerCountPolicy policy)
+    {
+        this.sizing  = sizing;
+        this.policy  = policy;
+        this.current = 0;
+    }
+
+    /**
+     * Reads -licenceWorkerCount.
+     * @param value a worker count or "auto"
+     * @param workerHeapBytes the heap budget of one worker when sizing automatically
+     * @return the worker count
+     * @throws IllegalArgumentException if the value is neither a positive number nor "auto"
+     */
+    @Nonnull
+    static AdaptiveWorkerCount parse(@Nonnull String value, long workerHeapBytes)
+    {
+        if (AUTO.equalsIgnoreCase(value.trim()))
+        {
+            return new AdaptiveWorkerCount(() -> WorkerSizing.ofRuntime(workerHeapBytes), new ThroughputWorkerCountPolicy());
+        }
+        int workers;
+        try
+        {
+            workers = Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            workers = 0;
+        }
+        if (workers < 1)
+        {
+            throw new IllegalArgumentException("Invalid worker count '" + value + "', expected a positive number or " + AUTO);
+        }
+        return new AdaptiveWorkerCount(workers);
+    }
+
+    /**
+     * Whether the count is sized and adapted automatically.
+     * @return true for "auto"
+     */
+    boolean isAutomatic()
+    {
+        return sizing != null;
+    }
+
+    /**
+     * The worker count to acquire a licence with.
+     * @param licenceMaximum the licence's worker limit, null if it does not say
+     * @return the worker count to request
+     */
+    synchronized int forLicence(@Nullable Integer licenceMaximum)
+    {
+        if (sizing == null)
+        {
+            return current;
+        }
+        if (licenceMaximum != null && licenceMaximum > 0)
+        {
+            maximum = licenceMaximum;
+        }
+        if (current == 0)
+        {
+            WorkerSizing machine = sizing.get();
+            current = machine.workerCount(1, maximum);
+            LOGGER.info("Sized {} workers for {}", current, machine);
+        }
+        return Math.min(current, maximum);
+    }
+
+    /**
+     * Feeds the throughput of a finished job to the policy.
+     * @param workers the workers the job ran with
+     * @param items the items it processed
+     * @param elapsedNanos how long it took
+     */
+    synchronized void recordJob(int workers, long items, long elapsedNanos)
+    {
+        if (sizing == null || workers < 1 || items <= 0 || elapsedNanos <= 0)
+        {
+            return;
+        }
+        double itemsPerSecond = items * 1e9 / elapsedNanos;
+        int next = policy.nextWorkerCount(workers, itemsPerSecond, 1, maximum);
+        if (next != current)
+        {
+            LOGGER.info("Moving from {} to {} workers after {} items/s on {} workers", current, next,
+                    String.format("%.1f", itemsPerSecond), workers);
+        }
+        current = next;
+    }
+
+    /**
+     * Whether an engine licenced with this many workers should be replaced by one licenced with the current count.
+     * @param workers the workers of the engine's licence, null if it has none
+     * @return true when the count has moved on since the engine was licenced
+     */
+    synchronized boolean isStale(@Nullable Integer workers)
+    {
+        return sizing != null && current > 0 && workers != null && workers != Math.min(current, maximum);
+    }
+}
@@ -0,0 +1,282 @@
+package Nuix.Baseline;
+
+import nuix.Address;
+
+import javax.annotation.Nonnull;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Parses RFC 822 address lists (From/To/Cc/Bcc/Sender header values) into pooled SimpleAddress instances.
+ * Understands display names, quoted strings, angle addresses, comments, groups and RFC 2047 encoded-words.
+ * The working buffers are reused between calls, so keep one parser per thread.
+ */
+final class AddressListParser {
+
+    private final AddressPool pool;
+    private final StringBuilder phrase = new StringBuilder(64);
+    private final StringBuilder angle = new StringBuilder(64);
+    private final StringBuilder comment = new StringBuilder(32);
+    private boolean sawAngle;
+
+    /**
+     * Parses address lists into pooled addresses.
+     * @param pool where the parsed addresses are interned
+     */
+    AddressListParser(@Nonnull AddressPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Parses a header value and appends every mailbox found to the list.
+     * Malformed input never throws, whatever can be recognised as an address is kept.
+     * @param value the unfolded header value
+     * @param typeOfCommunication the type given to the parsed addresses
+     * @param into where the addresses are appended, in header order
+     */
+    void parse(@Nonnull CharSequence value, @Nonnull SimpleAddress.CommunicationType typeOfCommunication, @Nonnull List<Address> into)
+    {
+        reset();
+        boolean inQuote = false;
+        int commentDepth = 0;
+        boolean inAngle = false;
+        for (int index = 0; index < value.length(); index++)
+        {
+            char c = value.charAt(index);
+            StringBuilder target = inAngle ? angle : phrase;
+            if (inQuote)
+            {
+                if (c == '\\' && index + 1 < value.length())
+                {
+                    target.append(value.charAt(++index));
+                }
+                else if (c == '"')
+                {
+                    inQuote = false;
+                }
+                else
+                {
+                    target.append(c);
+                }
+            }
+            else if (commentDepth > 0)
+            {
+                if (c == '\\' && index + 1 < value.length())
+                {
+                    comment.append(value.charAt(++index));
+                }
+                else if (c == '(')
+                {
+                    commentDepth++;
+                }
+                else if (c == ')')
+                {
+                    commentDepth--;
+                }
+                else
+                {
+                    comment.append(c);
+                }
+            }
+            else
+            {
+                switch (c)
+                {
+                    case '"':
+                        inQuote = true;
+                        break;
+                    case '(':
+                        commentDepth = 1;
+                        if (comment.length() > 0)
+                        {
+                            comment.append(' ');
+                        }
+                        break;
+                    case '<':
+                        inAngle  = true;
+                        sawAngle = true;
+                        break;
+                    case '>':
+                        inAngle = false;
+                        break;
+                    case ',':
+                    case ';':
+                        if (inAngle)
+                        {
+                            target.append(c);
+                        }
+                        else
+                        {
+                            emit(typeOfCommunication, into);
+                        }
+                        break;
+                    case ':':
+                        if (inAngle || sawAngle)
+                        {
+                            target.append(c);
+                        }
+                        else
+                        {
+                            //"group-name:" the name is not an address, the members follow
+                            phrase.setLength(0);
+                            comment.setLength(0);
+                        }
+                        break;
+                    case '\r':
+                    case '\n':
+                        break;
+                    default:
+                        target.append(c);
+                }
+            }
+        }
+        emit(typeOfCommunication, into);
+    }
+
+    /**
+     * Decodes RFC 2047 encoded-words (=?charset?B|Q?text?=), text that is not an encoded-word is kept as is.
+     * Whitespace between two adjacent encoded-words is dropped as the RFC requires.
+     * @param text the text to decode
+     * @return the decoded text, the same instance if it holds no encoded-words
+     */
+    @Nonnull
+    static String decodeEncodedWords(@Nonnull String text)
+    {
+        int start = text.indexOf("=?");
+        if (start < 0)
+        {
+            return text;
+        }
+        StringBuilder decoded = new StringBuilder(text.length());
+        int position = 0;
+        boolean previousWasEncoded = false;
+        while (start >= 0)
+        {
+            int charsetEnd = text.indexOf('?', start + 2);
+            int encodingEnd = charsetEnd < 0 ? -1 : text.indexOf('?', charsetEnd + 1);
+            int end = encodingEnd < 0 ? -1 : text.indexOf("?=", encodingEnd + 1);
+            if (end < 0 || encodingEnd != charsetEnd + 2)
+            {
+                break;
+            }
+            String between = text.substring(position, start);
+            if (!(previousWasEncoded && between.trim().isEmpty()))
+            {
+                decoded.append(between);
+            }
+            String word = decodeWord(text.substring(start + 2, charsetEnd),
+                    text.charAt(charsetEnd + 1),
+                    text.substring(encodingEnd + 1, end));
+            if (word == null)
+            {
+                decoded.append(text, start, end + 2);
+                previousWasEncoded = false;
+            }
+            else
+            {
+                decoded.append(word);
+                previousWasEncoded = true;
+            }
+            position = end + 2;
+            start = text.indexOf("=?", position);
+        }
+        decoded.append(text, position, text.length());
+        return decoded.toString();
+    }
+
+    private void emit(SimpleAddress.CommunicationType typeOfCommunication, List<Address> into)
+    {
+        String address;
+        String personal;
+        if (sawAngle)
+        {
+            address  = angle.toString().trim();
+            personal = phrase.toString().trim();
+        }
+        else
+        {
+            address  = phrase.toString().trim();
+            personal = comment.toString().trim();
+        }
+        if (!address.isEmpty())
+        {
+            if (personal.indexOf("=?") >= 0)
+            {
+                personal = decodeEncodedWords(personal);
+            }
+            into.add(pool.intern(personal.isEmpty() ? null : collapseWhitespace(personal), address, typeOfCommunication));
+        }
+        reset();
+    }
+
+    private void reset()
+    {
+        phrase.setLength(0);
+        angle.setLength(0);
+        comment.setLength(0);
+        sawAngle = false;
+    }
+
+    private static String collapseWhitespace(String text)
+    {
+        if (text.indexOf("  ") < 0 && text.indexOf('\t') < 0)
+        {
+            return text;
+        }
+        return text.replaceAll("\\s+", " ");
+    }
+
+    private static String decodeWord(String charsetName, char encoding, String encodedText)
+    {
+        try
+        {
+            Charset charset = Charset.isSupported(charsetName) ? Charset.forName(charsetName) : StandardCharsets.UTF_8;
+            byte[] bytes;
+            if (encoding == 'B' || encoding == 'b')
+            {
+                bytes = Base64.getMimeDecoder().decode(encodedText);
+            }
+            else if (encoding == 'Q' || encoding == 'q')
+            {
+                bytes = decodeQ(encodedText);
+            }
+            else
+            {
+                return null;
+            }
+            return new String(bytes, charset);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    private static byte[] decodeQ(String encodedText)
+    {
+        byte[] bytes = new byte[encodedText.length()];
+        int length = 0;
+        for (int index = 0; index < encodedText.length(); index++)
+        {
+            char c = encodedText.charAt(index);
+            if (c == '_')
+            {
+                bytes[length++] = ' ';
+            }
+            else if (c == '=' && index + 2 < encodedText.length())
+            {
+                bytes[length++] = (byte) Integer.parseInt(encodedText.substring(index + 1, index + 3), 16);
+                index += 2;
+            }
+            else
+            {
+                bytes[length++] = (byte) c;
+            }
+        }
+        return Arrays.copyOf(bytes, length);
+    }
+}
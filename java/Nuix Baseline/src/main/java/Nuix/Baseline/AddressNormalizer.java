@@ -0,0 +1,135 @@
+package Nuix.Baseline;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Canonical forms of addresses and display names, so the variants one person appears under across a matter
+ * compare equal: "Jane.Doe+news@Example.com", "mailto:jane.doe@example.com" and "SMTP:JANE.DOE@EXAMPLE.COM."
+ * are all jane.doe@example.com, and "Doe, Jane" and "jane DOE" are both "doe jane".
+ */
+final class AddressNormalizer {
+
+    private static final String[] SCHEMES = {"mailto:", "smtp:", "sip:", "sips:", "tel:"};
+
+    private AddressNormalizer()
+    {
+    }
+
+    /**
+     * The canonical form of an address: lower case without a URI or Exchange scheme, surrounding brackets or
+     * quotes, a plus-tag (sub-address) on the local part or a trailing dot on the domain.
+     * @param address the address as found
+     * @return the canonical address, empty if nothing is left
+     */
+    @Nonnull
+    static String canonicalAddress(@Nonnull String address)
+    {
+        String value = stripEnclosing(address.trim()).toLowerCase(Locale.ROOT);
+        for (String scheme : SCHEMES)
+        {
+            if (value.startsWith(scheme))
+            {
+                value = stripEnclosing(value.substring(scheme.length()).trim());
+                int query = value.indexOf('?');
+                if (query >= 0)
+                {
+                    value = value.substring(0, query);
+                }
+                break;
+            }
+        }
+        int at = value.lastIndexOf('@');
+        if (at <= 0)
+        {
+            return value;
+        }
+        String local = value.substring(0, at);
+        String domain = value.substring(at + 1);
+        int plus = local.indexOf('+');
+        if (plus > 0)
+        {
+            local = local.substring(0, plus);
+        }
+        while (domain.endsWith("."))
+        {
+            domain = domain.substring(0, domain.length() - 1);
+        }
+        return local + '@' + domain;
+    }
+
+    /**
+     * The canonical form of a display name: "Last, First" turned around, accents, punctuation and case dropped
+     * and the words sorted, so word order does not matter. Names of a single word ("Admin", "Jane") and names
+     * that are really an address say too little about who someone is and have no canonical form.
+     * @param personal the display name as found
+     * @return the canonical name, null if the name can't identify a person
+     */
+    @Nullable
+    static String canonicalName(@Nullable String personal)
+    {
+        if (personal == null || personal.indexOf('@') >= 0)
+        {
+            return null;
+        }
+        String name = personal;
+        int comma = name.indexOf(',');
+        if (comma > 0 && comma == name.lastIndexOf(','))
+        {
+            name = name.substring(comma + 1) + ' ' + name.substring(0, comma);
+        }
+        if (!isAscii(name))
+        {
+            name = Normalizer.normalize(name, Normalizer.Form.NFD);
+        }
+        List<String> words = new ArrayList<>(4);
+        StringBuilder word = new StringBuilder(16);
+        for (int index = 0; index <= name.length(); index++)
+        {
+            char c = index < name.length() ? name.charAt(index) : ' ';
+            if (Character.isLetterOrDigit(c))
+            {
+                word.append(Character.toLowerCase(c));
+            }
+            else if (Character.getType(c) != Character.NON_SPACING_MARK && word.length() > 0)
+            {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (words.size() < 2)
+        {
+            return null;
+        }
+        Collections.sort(words);
+        return String.join(" ", words);
+    }
+
+    private static boolean isAscii(String value)
+    {
+        for (int index = 0; index < value.length(); index++)
+        {
+            if (value.charAt(index) >= 0x80)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String stripEnclosing(String value)
+    {
+        while (value.length() >= 2 && ((value.charAt(0) == '<' && value.charAt(value.length() - 1) == '>')
+                || (value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"')
+                || (value.charAt(0) == '\'' && value.charAt(value.length() - 1) == '\'')))
+        {
+            value = value.substring(1, value.length() - 1).trim();
+        }
+        return value;
+    }
+}
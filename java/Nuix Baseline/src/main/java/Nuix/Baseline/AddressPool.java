@@ -0,0 +1,160 @@
+package Nuix.Baseline;
+
+import nuix.Address;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A concurrent canonical pool of SimpleAddress instances.
+ * Communications that repeat the same few thousand parties share one instance per distinct
+ * (personal, address, type) instead of allocating a new one each time.
+ * Instances are grouped by the normalized address, so a lookup is a single hash probe plus a scan
+ * of the (usually one or two) display name variants of that address.
+ */
+public class AddressPool {
+
+    private final ConcurrentHashMap<String, SimpleAddress[]> variantsByKey;
+
+    /**
+     * An empty pool.
+     */
+    public AddressPool()
+    {
+        this(1024);
+    }
+
+    /**
+     * An empty pool.
+     * @param expectedAddresses the number of distinct addresses expected, avoids rehashing while filling
+     */
+    public AddressPool(int expectedAddresses)
+    {
+        variantsByKey = new ConcurrentHashMap<>(expectedAddresses);
+    }
+
+    /**
+     * Returns the canonical instance for the address, creating it the first time it is seen.
+     * @param personal the aesthetic component of the address
+     * @param address the actual address
+     * @param typeOfCommunication the type of the address
+     * @return the shared instance
+     */
+    @Nonnull
+    public SimpleAddress intern(@Nullable String personal, @Nonnull String address, @Nonnull SimpleAddress.CommunicationType typeOfCommunication)
+    {
+        String key = SimpleAddress.normalize(address);
+        SimpleAddress existing = find(variantsByKey.get(key), personal, address, typeOfCommunication);
+        if (existing != null)
+        {
+            return existing;
+        }
+        return intern(new SimpleAddress(personal, address, typeOfCommunication));
+    }
+
+    /**
+     * Returns the canonical instance equal in personal, address and type to the given address.
+     * @param candidate the address to intern, becomes the canonical instance if none exists yet
+     * @return the shared instance
+     */
+    @Nonnull
+    public SimpleAddress intern(@Nonnull SimpleAddress candidate)
+    {
+        SimpleAddress[] variants = variantsByKey.get(candidate.key);
+        SimpleAddress existing = find(variants, candidate.personal, candidate.address, candidate.type);
+        if (existing != null)
+        {
+            return existing;
+        }
+        SimpleAddress[] updated = variantsByKey.compute(candidate.key, (key, current) ->
+        {
+            if (current == null)
+            {
+                return new SimpleAddress[]{candidate};
+            }
+            //another thread may have added it between the lookup and the compute
+            if (find(current, candidate.personal, candidate.address, candidate.type) != null)
+            {
+                return current;
+            }
+            SimpleAddress[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = candidate;
+            return grown;
+        });
+        return find(updated, candidate.personal, candidate.address, candidate.type);
+    }
+
+    /**
+     * Returns the canonical SimpleAddress for any nuix Address.
+     * @param address the address to intern
+     * @return the shared instance
+     */
+    @Nonnull
+    public SimpleAddress intern(@Nonnull Address address)
+    {
+        if (address instanceof SimpleAddress)
+        {
+            return intern((SimpleAddress) address);
+        }
+        return intern(address.getPersonal(), address.getAddress(), typeOf(address.getType()));
+    }
+
+    /**
+     * Looks up the canonical instance for any nuix Address without adding it to the pool.
+     * @param address the address to look up
+     * @return the shared instance, null if the address has not been interned
+     */
+    @Nullable
+    public SimpleAddress find(@Nonnull Address address)
+    {
+        SimpleAddress.CommunicationType type = address instanceof SimpleAddress ? ((SimpleAddress) address).type : typeOf(address.getType());
+        return find(variantsByKey.get(SimpleAddress.normalize(address.getAddress())), address.getPersonal(), address.getAddress(), type);
+    }
+
+    /**
+     * The number of distinct normalized addresses in the pool.
+     * @return the number of addresses, ignoring display name variants
+     */
+    public int size()
+    {
+        return variantsByKey.size();
+    }
+
+    private static SimpleAddress find(@Nullable SimpleAddress[] variants, @Nullable String personal, @Nonnull String address,
+                                      @Nonnull SimpleAddress.CommunicationType type)
+    {
+        if (variants == null)
+        {
+            return null;
+        }
+        String trimmedPersonal = personal == null ? null : personal.trim();
+        if (trimmedPersonal != null && trimmedPersonal.isEmpty())
+        {
+            trimmedPersonal = null;
+        }
+        String trimmedAddress = address.trim();
+        for (SimpleAddress variant : variants)
+        {
+            if (variant.type == type && variant.address.equals(trimmedAddress) && Objects.equals(variant.personal, trimmedPersonal))
+            {
+                return variant;
+            }
+        }
+        return null;
+    }
+
+    private static SimpleAddress.CommunicationType typeOf(String type)
+    {
+        for (SimpleAddress.CommunicationType candidate : SimpleAddress.CommunicationType.values())
+        {
+            if (candidate.getValue().equals(type))
+            {
+                return candidate;
+            }
+        }
+        return SimpleAddress.CommunicationType.COMMUNICATION_MAIL;
+    }
+}
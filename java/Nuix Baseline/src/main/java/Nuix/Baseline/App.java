@@ -2,6 +2,7 @@ package Nuix.Baseline;
 
 
 import com.google.common.collect.ImmutableMap;
+import com.sun.net.httpserver.HttpServer;
 import nuix.LicenceException;
 import nuix.LicenceProperties;
 import nuix.engine.AvailableLicence;
@@ -11,18 +12,34 @@ import nuix.engine.LicenceSource;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import picocli.CommandLine;
-import picocli.CommandLine.Command;
 import picocli.CommandLine.Help;
-import picocli.CommandLine.Option;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Model.IGetter;
+import picocli.CommandLine.Model.ISetter;
+import picocli.CommandLine.Model.OptionSpec;
 import picocli.CommandLine.ParameterException;
 
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
-@Command(description = "A console app to demonstrate licence acquisition",
-        name = "BaselineApp.jar",
-        version = "8.6.2.414")
+/**
+ * A console app to demonstrate licence acquisition.
+ * <p>
+ * Help, version and bad arguments are answered without loading the engine or logging: the command line is
+ * described in code by commandSpec() instead of picocli reflecting over annotations, the logger is created once
+ * the arguments are good and everything touching the engine lives in EngineHost, which is only loaded then.
+ */
 class App {
 
     /**
@@ -34,37 +51,24 @@ class App {
      * -acquireAny=true
      * Acquire Any will only work if there is only one licence detected. Otherwise it will list all available licences
      */
-    @Option(names = {"-a", "-acquireAny"},
-            defaultValue = "false",
-            description = "Acquire any licence based on cached credentials and detected hardware. " +
-                          "Expects only one to be discovered, if specified all other flags are ignored.")
     private Boolean engineAcquireAny;
 
     /**
      * -userDataDirs="C:/engine/user-data"
      * The place to look for the folders like cookies and metadata profiles.
      */
-    @Option(names = {"-d", "-userDataDirs"},
-            required=true,
-            description = "Where Nuix Engine will look for the folders containing user artefacts")
     private String engineUserDataDirs;
 
     /**
      * -userName="admin"
      * Will be provided to EVERY credential request (on findAvailableLicences)
      */
-    @Option(names = {"-u", "-userName"},
-            defaultValue = "",
-            description = "Username for EVERY licence credential request")
     private String licenceServerUsername = "";
 
     /**
      * -password="password"
      * Will be provided to EVERY credential request (on findAvailableLicences)
      */
-    @Option(names = {"-p", "-password"},
-            defaultValue = "",
-            description = "Password for EVERY licence credential request")
     private String licenceServerPassword;
 
     /**
@@ -72,18 +76,12 @@ class App {
      * Nuix Servers will fail connect requests when certificates are self signed or invalid
      * If you require to connect to such a server set this to true (defaults to FALSE)
      */
-    @Option(names = {"-c", "-trustCertificate"},
-            defaultValue = "false",
-            description = "Forces bad certificates to be trusted.")
     private Boolean licenceServerTrustCertificate;
 
     /**
      * -licenceType="enterprise-workstation"
      * The licence type you wish to acquire. Leave null to acquire first available licence
      */
-    @Option(names = {"-t", "-licenceType"},
-            defaultValue = "",
-            description = "Selects a licence source if multiple are available.")
     private String licenceShortName;
 
     /**
@@ -91,47 +89,122 @@ class App {
      * The string to match against LicenceSource.getLocation()
      * Leave as null in order to check all matches
      */
-    @Option(names = {"-l", "-licenceSourceLocation"},
-            defaultValue = "",
-            description = "Selects a licence source if multiple are available.")
     private String licenceSourceName;
 
     /**
      * -licenceSourceType="system,dongle,server,cloud-server"
      * Comma delimited order which will define which licence sources to check.
      */
-    @Option(names = {"-s", "-licenceSourceType"},
-            defaultValue = "system,dongle,server,cloud-server",
-            split = ",",
-            description = "Selects a licence source type (e.g. dongle, server) to use.")
     private String[] LICENCE_SOURCES;
 
     /**
      * -licenceWorkerCount=2
      * When a licence requires a worker count provided request this many.
+     * "auto" sizes the count to the processors and memory of this machine within the licence's limit,
+     * and adapts it between jobs to the throughput they report.
      */
-    @Option(names = {"-w", "-licenceWorkerCount"},
-            defaultValue = "2",
-            description = "Selects the number of workers to use if the choice is available.")
-    private int LICENCE_WORKER_COUNT;
+    private String LICENCE_WORKER_COUNT;
 
     /**
-     * -version
-     * Prints a message with the applications version
+     * -workerHeap=2048
+     * Megabytes of memory each worker is expected to use, used by -licenceWorkerCount=auto.
      */
-    @Option(names = {"-v", "-version"},
-            versionHelp = true,
-            description = "Shows the version number of the application.")
-    private Boolean versionInfoRequested;
+    private int workerHeapMegabytes;
 
     /**
-     * -help
-     * Prints a message with the applications help
+     * The worker count parsed from -licenceWorkerCount.
      */
-    @Option(names = {"-h", "-help"},
-            usageHelp = true,
-            description = "Shows this message.")
-    private Boolean usageHelpRequested;
+    private AdaptiveWorkerCount workerCount;
+
+    /**
+     * -concurrentDiscovery=true
+     * Probe every licence source at the same time instead of one after another.
+     * The -licenceSourceType order is still used to pick which licence is acquired.
+     */
+    private Boolean licenceConcurrentDiscovery;
+
+    /**
+     * -discoveryTimeout=30
+     * When probing concurrently, the seconds a licence source has to list its licences before it is skipped.
+     */
+    private int licenceDiscoveryTimeout;
+
+    /**
+     * -licenceCacheTtl=60
+     * Minutes the last acquired licence is remembered in userDataDirs and tried first on the next start.
+     * Set to 0 to always run the full discovery.
+     */
+    private int licenceCacheTtl;
+
+    /**
+     * -licenceCheckInterval=30
+     * Seconds between checks that every engine still holds its licence. A lost licence is re-acquired with
+     * backoff while pooled work waits for it. Set to 0 to not watch the licences.
+     */
+    private int licenceCheckInterval;
+
+    /**
+     * -backend=nuix
+     * The engine to run: nuix, or simulated to exercise licensing and pooling without a licence,
+     * configured with the nuix.baseline.sim.* system properties.
+     */
+    private String engineBackend;
+
+    /**
+     * -enginePoolSize=4
+     * Host this many licenced engines and lease them to submitted work. 0 runs a single engine without a pool.
+     */
+    private int enginePoolSize;
+
+    /**
+     * -enginePoolWarmUp=1
+     * Engines licenced up front when the pool starts, the rest are created as work arrives.
+     */
+    private int enginePoolWarmUp;
+
+    /**
+     * -enginePoolIdleEviction=600
+     * Seconds an engine above the warm up count may sit unused before it is closed and its licence released.
+     */
+    private int enginePoolIdleEviction;
+
+    /**
+     * -batchManifest="C:/runs/nightly.json"
+     * Runs the jobs of this manifest on pooled engines instead of the lab, see BatchManifest for the format.
+     * Completed jobs are journaled so running the same manifest again resumes the batch.
+     */
+    private String batchManifest;
+
+    /**
+     * -jobQueue="C:/runs/queue"
+     * Keeps the engine pool resident and runs each batch manifest dropped into this folder on it until a file
+     * named stop is dropped in, see ManifestQueue. The container and licences are paid for once for every job.
+     */
+    private String jobQueue;
+
+    /**
+     * -ingest="D:/evidence/custodian1,D:/evidence/shared.pst"
+     * Ingests these files and folders into -ingestCase instead of running the lab, see IngestionLab.
+     */
+    private String ingestRoots;
+
+    /**
+     * -ingestCase="D:/cases/ingestion"
+     * The case -ingest processes into, created if it does not exist yet.
+     */
+    private String ingestCase;
+
+    /**
+     * -metricsFile="C:/engine/logs/startup-metrics.json"
+     * Where the startup phase timings are written as JSON each time an engine has been licenced.
+     */
+    private String startupMetricsFile;
+
+    /**
+     * -metricsPort=9464
+     * Serves the startup timings in the Prometheus text format at http://127.0.0.1:port/metrics while the app runs.
+     */
+    private int startupMetricsPort;
 
     /**
      * The main entry point for your application
@@ -141,20 +214,26 @@ class App {
      */
     public static void main(String[] args)
     {
-        if(LOGGER==null)
-        {
-            LOGGER = LogManager.getLogger(App.class);
-        }
         App labEnvironment = new App();
         if (labEnvironment.parseCommandLine(args))
         {
+            if(LOGGER==null)
+            {
+                LOGGER = LogManager.getLogger(App.class);
+            }
             //Main app runs off here.
-            labEnvironment.acquireLicence((licencedEngine) ->
+            Consumer<Engine> lab = (licencedEngine) ->
             {
-                LOGGER.info(String.format("Congratulations! You've acquired a %s with %s workers",
+                LOGGER.info("Congratulations! You've acquired a {} with {} workers",
                         licencedEngine.getLicence().getShortName(),
-                        licencedEngine.getLicence().getWorkers()));
-            });
+                        licencedEngine.getLicence().getWorkers());
+            };
+            if (!labEnvironment.ingestRoots.isEmpty())
+            {
+                lab = new IngestionLab(IngestionLab.parseRoots(labEnvironment.ingestRoots),
+                        new File(labEnvironment.ingestCase), labEnvironment.workerHeapMegabytes);
+            }
+            labEnvironment.new EngineHost().acquireLicence(lab);
         }
 
 
@@ -169,7 +248,8 @@ class App {
      */
     private Boolean parseCommandLine(String[] args)
     {
-        CommandLine commandLineApp = new CommandLine(this);
+        CommandSpec spec = commandSpec();
+        CommandLine commandLineApp = new CommandLine(spec);
         if(!System.getProperty("os.name").equals("windows")) //by default Windows does not support ANSI colours (regedit required)
         {
             commandLineApp.setColorScheme(Help.defaultColorScheme(Help.Ansi.AUTO));
@@ -195,158 +275,931 @@ class App {
             }
             else
             {
-                return true;
+                if (!ingestRoots.isEmpty() && ingestCase.isEmpty())
+                {
+                    System.out.println("-ingest needs an -ingestCase to process into");
+                    commandLineApp.usage(System.out);
+                    return false;
+                }
+                if (!jobQueue.isEmpty() && !batchManifest.isEmpty())
+                {
+                    System.out.println("Use either -jobQueue or -batchManifest");
+                    commandLineApp.usage(System.out);
+                    return false;
+                }
+                try
+                {
+                    workerCount = AdaptiveWorkerCount.parse(LICENCE_WORKER_COUNT, workerHeapMegabytes * 1024L * 1024L);
+                    return true;
+                }
+                catch (IllegalArgumentException ex)
+                {
+                    System.out.println(ex.getMessage());
+                    commandLineApp.usage(System.out);
+                }
             }
         }
         return false;
     }
 
     /**
-     * Wrapper to acquire a licence and return an Engine instance. Will auto close on completion of consumer
+     * The command line of the app, built in code so parsing needs no reflection over annotated fields.
+     * Every option is bound to its field, parsing sets the fields directly.
+     *
+     * @return the options
+     */
+    private CommandSpec commandSpec()
+    {
+        CommandSpec spec = CommandSpec.create()
+                .name("BaselineApp.jar")
+                .version("8.6.2.414");
+        spec.usageMessage().description("A console app to demonstrate licence acquisition");
+        spec.addOption(option(Boolean.class, () -> engineAcquireAny, value -> engineAcquireAny = value, "-a", "-acquireAny")
+                .defaultValue("false")
+                .description("Acquire any licence based on cached credentials and detected hardware. " +
+                        "Expects only one to be discovered, if specified all other flags are ignored.")
+                .build());
+        spec.addOption(option(String.class, () -> engineUserDataDirs, value -> engineUserDataDirs = value, "-d", "-userDataDirs")
+                .paramLabel("<engineUserDataDirs>")
+                .required(true)
+                .description("Where Nuix Engine will look for the folders containing user artefacts")
+                .build());
+        spec.addOption(option(String.class, () -> licenceServerUsername, value -> licenceServerUsername = value, "-u", "-userName")
+                .paramLabel("<licenceServerUsername>")
+                .defaultValue("")
+                .description("Username for EVERY licence credential request")
+                .build());
+        spec.addOption(option(String.class, () -> licenceServerPassword, value -> licenceServerPassword = value, "-p", "-password")
+                .paramLabel("<licenceServerPassword>")
+                .defaultValue("")
+                .description("Password for EVERY licence credential request")
+                .build());
+        spec.addOption(option(Boolean.class, () -> licenceServerTrustCertificate, value -> licenceServerTrustCertificate = value, "-c", "-trustCertificate")
+                .defaultValue("false")
+                .description("Forces bad certificates to be trusted.")
+                .build());
+        spec.addOption(option(String.class, () -> licenceShortName, value -> licenceShortName = value, "-t", "-licenceType")
+                .paramLabel("<licenceShortName>")
+                .defaultValue("")
+                .description("Selects a licence source if multiple are available.")
+                .build());
+        spec.addOption(option(String.class, () -> licenceSourceName, value -> licenceSourceName = value, "-l", "-licenceSourceLocation")
+                .paramLabel("<licenceSourceName>")
+                .defaultValue("")
+                .description("Selects a licence source if multiple are available.")
+                .build());
+        spec.addOption(option(String[].class, () -> LICENCE_SOURCES, value -> LICENCE_SOURCES = value, "-s", "-licenceSourceType")
+                .paramLabel("<LICENCE_SOURCES>")
+                .defaultValue("system,dongle,server,cloud-server")
+                .splitRegex(",")
+                .description("Selects a licence source type (e.g. dongle, server) to use.")
+                .build());
+        spec.addOption(option(String.class, () -> LICENCE_WORKER_COUNT, value -> LICENCE_WORKER_COUNT = value, "-w", "-licenceWorkerCount")
+                .paramLabel("<LICENCE_WORKER_COUNT>")
+                .defaultValue("2")
+                .description("Selects the number of workers to use if the choice is available, or auto to size them to this machine.")
+                .build());
+        spec.addOption(option(int.class, () -> workerHeapMegabytes, value -> workerHeapMegabytes = value, "-workerHeap")
+                .paramLabel("<workerHeapMegabytes>")
+                .defaultValue("2048")
+                .description("Megabytes of memory budgeted per worker when the worker count is auto.")
+                .build());
+        spec.addOption(option(Boolean.class, () -> licenceConcurrentDiscovery, value -> licenceConcurrentDiscovery = value, "-x", "-concurrentDiscovery")
+                .defaultValue("false")
+                .description("Probe all licence sources in parallel, still acquiring in -licenceSourceType order.")
+                .build());
+        spec.addOption(option(int.class, () -> licenceDiscoveryTimeout, value -> licenceDiscoveryTimeout = value, "-r", "-discoveryTimeout")
+                .paramLabel("<licenceDiscoveryTimeout>")
+                .defaultValue("30")
+                .description("Seconds each licence source may take to respond when discovering concurrently.")
+                .build());
+        spec.addOption(option(int.class, () -> licenceCacheTtl, value -> licenceCacheTtl = value, "-k", "-licenceCacheTtl")
+                .paramLabel("<licenceCacheTtl>")
+                .defaultValue("60")
+                .description("Minutes to remember the last acquired licence and try it first, 0 disables the cache.")
+                .build());
+        spec.addOption(option(int.class, () -> licenceCheckInterval, value -> licenceCheckInterval = value, "-licenceCheckInterval")
+                .paramLabel("<licenceCheckInterval>")
+                .defaultValue("30")
+                .description("Seconds between checks that the engines are still licenced, 0 disables re-acquiring lost licences.")
+                .build());
+        spec.addOption(option(String.class, () -> engineBackend, value -> engineBackend = value, "-b", "-backend")
+                .paramLabel("<backend>")
+                .defaultValue("nuix")
+                .description("Engine backend, nuix or simulated for licence-free load testing.")
+                .build());
+        spec.addOption(option(int.class, () -> enginePoolSize, value -> enginePoolSize = value, "-n", "-enginePoolSize")
+                .paramLabel("<enginePoolSize>")
+                .defaultValue("0")
+                .description("Number of licenced engines to keep resident and lease to work, 0 disables the pool.")
+                .build());
+        spec.addOption(option(int.class, () -> enginePoolWarmUp, value -> enginePoolWarmUp = value, "-enginePoolWarmUp")
+                .paramLabel("<enginePoolWarmUp>")
+                .defaultValue("1")
+                .description("Number of pooled engines to licence before any work is accepted.")
+                .build());
+        spec.addOption(option(int.class, () -> enginePoolIdleEviction, value -> enginePoolIdleEviction = value, "-enginePoolIdleEviction")
+                .paramLabel("<enginePoolIdleEviction>")
+                .defaultValue("600")
+                .description("Seconds before an idle pooled engine is closed and its licence released.")
+                .build());
+        spec.addOption(option(String.class, () -> batchManifest, value -> batchManifest = value, "-j", "-batchManifest")
+                .paramLabel("<batchManifest>")
+                .defaultValue("")
+                .description("Process the jobs of this JSON manifest on pooled engines, resuming from its journal.")
+                .build());
+        spec.addOption(option(String.class, () -> jobQueue, value -> jobQueue = value, "-jobQueue")
+                .paramLabel("<jobQueue>")
+                .defaultValue("")
+                .description("Keep the engine pool running and process each manifest dropped into this folder until a stop file appears.")
+                .build());
+        spec.addOption(option(String.class, () -> ingestRoots, value -> ingestRoots = value, "-i", "-ingest")
+                .paramLabel("<ingestRoots>")
+                .defaultValue("")
+                .description("Comma separated files and folders to ingest into -ingestCase, in shards balanced by size.")
+                .build());
+        spec.addOption(option(String.class, () -> ingestCase, value -> ingestCase = value, "-ingestCase")
+                .paramLabel("<ingestCase>")
+                .defaultValue("")
+                .description("The case to ingest into, required with -ingest.")
+                .build());
+        spec.addOption(option(String.class, () -> startupMetricsFile, value -> startupMetricsFile = value, "-m", "-metricsFile")
+                .paramLabel("<startupMetricsFile>")
+                .defaultValue("")
+                .description("Write startup phase and licence source timings to this JSON file.")
+                .build());
+        spec.addOption(option(int.class, () -> startupMetricsPort, value -> startupMetricsPort = value, "-metricsPort")
+                .paramLabel("<startupMetricsPort>")
+                .defaultValue("0")
+                .description("Local port to serve startup metrics on for Prometheus, 0 disables the endpoint.")
+                .build());
+        spec.addOption(OptionSpec.builder("-v", "-version")
+                .versionHelp(true)
+                .description("Shows the version number of the application.")
+                .build());
+        spec.addOption(OptionSpec.builder("-h", "-help")
+                .usageHelp(true)
+                .description("Shows this message.")
+                .build());
+        return spec;
+    }
+
+    /**
+     * An option of the given type bound to a field, so the option's type and the field's type can't drift apart.
      *
-     * @param lab the Consumer that will take a Licenced Engine Instance
-     * @throws LicenceException if there is an issue acquiring a licence.
+     * @param type the type of the option's value
+     * @param getter reads the field, and its declared value which picocli resets the field to before parsing
+     * @param setter writes the parsed (or default) value into the field
+     * @param names the option's names
+     * @param <V> the type of the field
+     * @return the option, to be given its default value and description
      */
-    private void acquireLicence(Consumer<Engine> lab) throws LicenceException
+    private static <V> OptionSpec.Builder option(Class<V> type, Supplier<V> getter, Consumer<V> setter, String... names)
     {
-        if (licenceServerUsername == null || licenceServerUsername.isEmpty())
+        FieldBinding<V> binding = new FieldBinding<>(getter, setter);
+        return OptionSpec.builder(names)
+                .type(type)
+                .initialValue(getter.get())
+                .getter(binding)
+                .setter(binding);
+    }
+
+    /**
+     * Binds an option to a field through lambdas, picocli's getter and setter being generic methods.
+     *
+     * @param <V> the type of the field
+     */
+    /**
+     * Work done on a hosted engine pool.
+     */
+    private interface PoolWork {
+        void run(EnginePool pool) throws LicenceException, InterruptedException, IOException;
+    }
+
+    private static final class FieldBinding<V> implements IGetter, ISetter {
+        private final Supplier<V> getter;
+        private final Consumer<V> setter;
+
+        FieldBinding(Supplier<V> getter, Consumer<V> setter)
         {
-            licenceServerUsername = System.getProperty("nuix.user",
-                    System.getProperty("user.name",
-                            "app-user"));
+            this.getter = getter;
+            this.setter = setter;
         }
-        if (!(licenceSourceName.isEmpty()))
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T get()
         {
-            //Include this server in the lookup to force check even if not discovered by default.
-            System.setProperty("nuix.registry.servers", licenceSourceName);
+            return (T) getter.get();
         }
-        LOGGER.info("Java Version:" + System.getProperty("java.version"));
-        LOGGER.info("libdir:" + System.getProperty("nuix.libdir"));
-        LOGGER.info("logdir:" + System.getProperty("nuix.logdir"));
-        LOGGER.info("userDataDirs:" + engineUserDataDirs);
-        LOGGER.info("user:" + licenceServerUsername);
-        LOGGER.info("Engine is starting up...");
-        Map<String, String> ENGINE_CONFIG = ImmutableMap.of(
-                "userDataDirs", engineUserDataDirs,
-                "user", licenceServerUsername
-        );
-        Exception lastException = null;
-        try (GlobalContainer container = nuix.engine.GlobalContainerFactory.newContainer())
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T set(T value)
         {
-            try (Engine engine = container.newEngine(ENGINE_CONFIG))
+            T previous = (T) getter.get();
+            setter.accept((V) value);
+            return previous;
+        }
+    }
+
+    /**
+     * Everything that needs the engine. Kept out of App itself so the engine, Guava and the rest are only
+     * loaded once the command line has been accepted.
+     */
+    private final class EngineHost {
+
+        /**
+         * The licence source the licence was acquired from, used to refresh the licence cache.
+         */
+        private LicenceSource acquiredFrom = null;
+
+        /**
+         * Timings of every step taken to licence an engine.
+         */
+        private final StartupMetrics startupMetrics = new StartupMetrics();
+
+        /**
+         * Where each engine's licence came from, so a lost licence is first sought from the same source.
+         */
+        private final Map<Engine, LicenceCache.Entry> licenceOrigins = Collections.synchronizedMap(new WeakHashMap<>());
+
+        /**
+         * Wrapper to acquire a licence and return an Engine instance. Will auto close on completion of consumer
+         * In batch mode (-batchManifest) the manifest's jobs are run instead of the consumer,
+         * with -jobQueue the manifests dropped into the queue are run until it is stopped.
+         *
+         * @param lab the Consumer that will take a Licenced Engine Instance
+         * @throws LicenceException if there is an issue acquiring a licence.
+         */
+        private void acquireLicence(Consumer<Engine> lab) throws LicenceException
+        {
+            if (licenceServerUsername == null || licenceServerUsername.isEmpty())
+            {
+                licenceServerUsername = System.getProperty("nuix.user",
+                        System.getProperty("user.name",
+                                "app-user"));
+            }
+            if (!(licenceSourceName.isEmpty()))
+            {
+                //Include this server in the lookup to force check even if not discovered by default.
+                System.setProperty("nuix.registry.servers", licenceSourceName);
+            }
+            LOGGER.info("Java Version:{} ({} orchestration threads)", System.getProperty("java.version"), OrchestrationThreads.kind());
+            LOGGER.info("libdir:{}", System.getProperty("nuix.libdir"));
+            LOGGER.info("logdir:{}", System.getProperty("nuix.logdir"));
+            LOGGER.info("userDataDirs:{}", engineUserDataDirs);
+            LOGGER.info("user:{}", licenceServerUsername);
+            BatchManifest manifest = null;
+            if (!batchManifest.isEmpty())
             {
-                LOGGER.info("Initialising:" + engine.getVersion());
-                if(!(licenceServerUsername.isEmpty() || licenceServerPassword.isEmpty()))
+                try
                 {
-                    engine.whenAskedForCredentials(callback ->
-                    {
-                        LOGGER.info("\t\t\tOffering credentials to server [" + callback.getAddress() + "]");
-                        callback.setUsername(licenceServerUsername);
-                        callback.setPassword(licenceServerPassword);
-                    });
-                    LOGGER.info("Credential Callback applied");
+                    manifest = BatchManifest.read(Paths.get(batchManifest));
+                }
+                catch (IOException e)
+                {
+                    LOGGER.error("Unable to read the batch manifest {}", batchManifest, e);
+                    return;
+                }
+            }
+            LOGGER.info("Engine is starting up...");
+            HttpServer metricsEndpoint = startMetricsEndpoint();
+            try (GlobalContainer container = newContainer())
+            {
+                if (manifest != null)
+                {
+                    runBatch(container, manifest);
+                }
+                else if (!jobQueue.isEmpty())
+                {
+                    serveJobQueue(container, Paths.get(jobQueue));
+                }
+                else if (enginePoolSize > 0)
+                {
+                    runInEnginePool(container, lab);
                 }
-                if (licenceServerTrustCertificate)
+                else
                 {
-                    //This method should only be reserved for scenario's you have issues and can't fix the licence source.
-                    engine.whenAskedForCertificateTrust(callback ->
+                    try (Engine engine = newLicencedEngine(container);
+                         LicenceMonitor monitor = newLicenceMonitor(() -> {}, () -> {}))
                     {
-                        LOGGER.info("\t\t\tTrusting certificate blindly!");
-                        callback.setTrusted(true);
-                    });
-                    LOGGER.info("Certificate Trust Callback applied:" + engine.getVersion());
+                        if (monitor != null)
+                        {
+                            monitor.watch(engine);
+                        }
+                        try
+                        {
+                            lab.accept(engine);
+                        }
+                        catch (Exception labException)
+                        {
+                            LOGGER.error("Error running lab",labException);
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                if (metricsEndpoint != null)
+                {
+                    metricsEndpoint.stop(0);
                 }
+            }
+            LOGGER.info("Engine is shutting down...");
+        }
 
-                if (engineAcquireAny)
+        /**
+         * Creates the global container of the -backend, timed as the "container" phase after recording the "launch" phase.
+         *
+         * @return the new container, the caller is responsible for closing it
+         */
+        private GlobalContainer newContainer()
+        {
+            startupMetrics.recordLaunch();
+            try (StartupMetrics.Phase ignored = startupMetrics.phase("container"))
+            {
+                switch (engineBackend)
                 {
-                    engine.getLicensor().acquire();
-                    lab.accept(engine);
-                    return;
+                    case "nuix":
+                        return nuix.engine.GlobalContainerFactory.newContainer();
+                    case "simulated":
+                        return new SimulatedBackend(SimulatedBackend.Settings.fromSystemProperties()).newContainer();
+                    default:
+                        throw new IllegalArgumentException("Unknown backend " + engineBackend + ", use nuix or simulated");
                 }
+            }
+        }
 
-                LOGGER.info("Acquiring a licence from:" + String.join(",", LICENCE_SOURCES));
-                Map<String, String[]> licenceSourceConfig = ImmutableMap.of("sources", LICENCE_SOURCES);
-                Map<String, Integer> workerConfig = ImmutableMap.of("workerCount", LICENCE_WORKER_COUNT);
-                for (LicenceSource licenceSource : engine.getLicensor().findLicenceSources(licenceSourceConfig))
+        /**
+         * Starts serving the startup metrics if -metricsPort was given.
+         * A port that can't be bound is logged rather than stopping the app.
+         *
+         * @return the running endpoint, null if disabled or unavailable
+         */
+        private HttpServer startMetricsEndpoint()
+        {
+            if (startupMetricsPort <= 0)
+            {
+                return null;
+            }
+            try
+            {
+                return startupMetrics.serve(startupMetricsPort);
+            }
+            catch (IOException e)
+            {
+                LOGGER.warn("Unable to serve startup metrics on port {}", startupMetricsPort, e);
+                return null;
+            }
+        }
+
+        /**
+         * Logs the startup timings and writes them to -metricsFile if given.
+         */
+        private void publishStartupMetrics()
+        {
+            startupMetrics.log();
+            if (!startupMetricsFile.isEmpty())
+            {
+                try
+                {
+                    startupMetrics.writeJson(Paths.get(startupMetricsFile));
+                }
+                catch (IOException e)
+                {
+                    LOGGER.warn("Unable to write startup metrics to {}", startupMetricsFile, e);
+                }
+            }
+        }
+
+        /**
+         * Starts watching licences if -licenceCheckInterval is set.
+         *
+         * @param onLost runs when an engine loses its licence
+         * @param onRestored runs once every engine is licenced again
+         * @return the monitor, null if disabled
+         */
+        private LicenceMonitor newLicenceMonitor(Runnable onLost, Runnable onRestored)
+        {
+            if (licenceCheckInterval <= 0)
+            {
+                return null;
+            }
+            return new LicenceMonitor(this::relicence, TimeUnit.SECONDS.toMillis(licenceCheckInterval), onLost, onRestored);
+        }
+
+        /**
+         * Hosts a pool of licenced engines and runs the lab on a leased engine.
+         * The pool (and every licence it holds) is released once the lab completes or the JVM shuts down.
+         *
+         * @param container the container the pooled engines are created in
+         * @param lab the Consumer that will take a Licenced Engine Instance
+         * @throws LicenceException if the pool could not licence an engine.
+         */
+        private void runInEnginePool(GlobalContainer container, Consumer<Engine> lab) throws LicenceException
+        {
+            LOGGER.info("Hosting a pool of {} engines, warming up {}", enginePoolSize, enginePoolWarmUp);
+            try
+            {
+                hostEnginePool(container, enginePoolSize, enginePoolWarmUp, pool ->
+                {
+                    try
+                    {
+                        pool.submit(lab).get();
+                    }
+                    catch (ExecutionException labException)
+                    {
+                        if (labException.getCause() instanceof LicenceException)
+                        {
+                            throw (LicenceException) labException.getCause();
+                        }
+                        LOGGER.error("Error running lab",labException.getCause());
+                    }
+                });
+            }
+            catch (IOException e)
+            {
+                LOGGER.error("Error running lab", e);
+            }
+        }
+
+        /**
+         * Runs a batch manifest on a pool of licenced engines, one engine per concurrently running job.
+         * Concurrency comes from the manifest, else -enginePoolSize, else 1.
+         *
+         * @param container the container the pooled engines are created in
+         * @param manifest the jobs to run
+         * @throws LicenceException if the pool could not licence an engine.
+         */
+        private void runBatch(GlobalContainer container, BatchManifest manifest) throws LicenceException
+        {
+            int concurrency = manifest.getConcurrency() > 0 ? manifest.getConcurrency() : Math.max(1, enginePoolSize);
+            LOGGER.info("Running batch {} with {} engines, journal {}", batchManifest, concurrency, manifest.getJournalFile());
+            try (BatchJournal journal = new BatchJournal(manifest.getJournalFile()))
+            {
+                hostEnginePool(container, Math.max(concurrency, enginePoolSize), Math.min(enginePoolWarmUp, concurrency),
+                        pool -> runJobs(pool, concurrency, journal, manifest));
+            }
+            catch (IOException e)
+            {
+                LOGGER.error("Unable to use the batch journal {}", manifest.getJournalFile(), e);
+            }
+        }
+
+        /**
+         * Keeps a pool of licenced engines resident and runs each manifest dropped into the queue on it, one manifest
+         * at a time, so engines and their licences are leased to job after job until the queue is stopped.
+         * A manifest that needs more than -enginePoolSize engines runs with as many as the pool holds.
+         *
+         * @param container the container the pooled engines are created in
+         * @param folder the queue folder
+         * @throws LicenceException if the pool could not licence an engine, the manifest being run stays queued.
+         */
+        private void serveJobQueue(GlobalContainer container, Path folder) throws LicenceException
+        {
+            int poolSize = Math.max(1, enginePoolSize);
+            LOGGER.info("Serving the job queue {} from a pool of {} engines", folder, poolSize);
+            try (ManifestQueue queue = new ManifestQueue(folder))
+            {
+                hostEnginePool(container, poolSize, enginePoolWarmUp, pool ->
                 {
-                    LOGGER.info("\tFound " + licenceSource.getLocation() + " (" + licenceSource.getType() + ")");
-                    if (licenceSource.getLocation().equals(licenceSourceName) || (licenceSourceName.isEmpty()))
+                    Path next;
+                    while ((next = queue.take()) != null)
                     {
+                        BatchManifest manifest;
                         try
                         {
-                            for (AvailableLicence availableLicence : licenceSource.findAvailableLicences())
-                            {
-                                LOGGER.info("\t\tLicence discovered " + availableLicence.getShortName());
-                                if (availableLicence.getShortName().equals(licenceShortName) ||
-                                        (licenceShortName.isEmpty()))
-                                {
-                                    if (availableLicence.canChooseWorkers())
-                                    {
-                                        if (((LicenceProperties) availableLicence).getWorkers() != null)
-                                        {
-                                            LOGGER.info("\t\t\t\tAcquiring " + LICENCE_WORKER_COUNT + " workers");
-                                            availableLicence.acquire(workerConfig);
-                                        }
-                                        else
-                                        {
-                                            LOGGER.info("\t\t\t\tAcquiring the default worker count");
-                                            availableLicence.acquire();
-                                        }
-                                    }
-                                    else
-                                    {
-                                        LOGGER.info("\t\t\t\tAcquiring no workers");
-                                        availableLicence.acquire();
-                                    }
-                                    break;
-                                }
-                            }
+                            manifest = BatchManifest.read(next);
+                        }
+                        catch (IOException e)
+                        {
+                            LOGGER.error("Unable to read the batch manifest {}", next, e);
+                            queue.finished(next, false);
+                            continue;
                         }
-                        catch (Exception e)
+                        int concurrency = manifest.getConcurrency() > 0 ? Math.min(manifest.getConcurrency(), poolSize) : poolSize;
+                        LOGGER.info("Running batch {} with {} engines, journal {}", next, concurrency, manifest.getJournalFile());
+                        BatchRunner.Summary summary;
+                        try (BatchJournal journal = new BatchJournal(manifest.getJournalFile()))
                         {
-                            LOGGER.warn("Errors trying to enumerate licence source:" + licenceSource.getLocation(),e);
-                            lastException = e;
+                            summary = runJobs(pool, concurrency, journal, manifest);
                         }
-                        if (engine.getLicence() != null || licenceSource.getLocation().equals(licenceSourceName))
+                        catch (IOException e)
                         {
-                            //break the first time a licence acquisition was made so that only 1 licence is acquired.
-                            //also break when the source name was specified because we don't want to detect any further sources
-                            break;
+                            LOGGER.error("Unable to use the batch journal {}", manifest.getJournalFile(), e);
+                            queue.finished(next, false);
+                            continue;
                         }
+                        queue.finished(next, summary.failed == 0 && summary.notRun == 0);
                     }
+                    LOGGER.info("Job queue {} stopped", folder);
+                });
+            }
+            catch (IOException e)
+            {
+                LOGGER.error("Unable to serve the job queue {}", folder, e);
+            }
+        }
+
+        /**
+         * Runs the jobs of a manifest on the pool.
+         *
+         * @param pool leases the engines
+         * @param concurrency the most jobs run at once, no more than the pool holds
+         * @param journal the manifest's journal
+         * @param manifest the jobs to run
+         * @return what happened
+         * @throws LicenceException if no licenced engine could be had for a job
+         * @throws InterruptedException if interrupted while waiting for the jobs
+         */
+        private BatchRunner.Summary runJobs(EnginePool pool, int concurrency, BatchJournal journal, BatchManifest manifest)
+                throws LicenceException, InterruptedException
+        {
+            return new BatchRunner(pool, concurrency, journal, new CaseProcessingJob(),
+                    workerCount.isAutomatic() ? workerCount : null).run(manifest.getJobs());
+        }
+
+        /**
+         * Starts a pool of licenced engines, watched by the licence monitor if enabled, and does the work on it.
+         * The pool (and every licence it holds) is released once the work is done or the JVM shuts down.
+         *
+         * @param container the container the pooled engines are created in
+         * @param size the most engines the pool holds
+         * @param warmUp the engines licenced before the work starts
+         * @param work what to do with the pool
+         * @throws LicenceException if the pool could not licence an engine.
+         * @throws IOException if the work failed to read or write its files
+         */
+        private void hostEnginePool(GlobalContainer container, int size, int warmUp, PoolWork work)
+                throws LicenceException, IOException
+        {
+            try (EnginePool pool = new EnginePool(() -> newLicencedEngine(container), size,
+                    TimeUnit.SECONDS.toMillis(enginePoolIdleEviction),
+                    engine -> workerCount.isStale(engine.getLicence().getWorkers()));
+                 LicenceMonitor monitor = newLicenceMonitor(pool::pause, pool::resume))
+            {
+                if (monitor != null)
+                {
+                    pool.monitorLicences(monitor);
+                }
+                Thread releaseOnExit = new Thread(pool::close, "engine-pool-shutdown");
+                Runtime.getRuntime().addShutdownHook(releaseOnExit);
+                try
+                {
+                    pool.warmUp(warmUp);
+                    work.run(pool);
+                }
+                catch (InterruptedException interrupted)
+                {
+                    Thread.currentThread().interrupt();
+                    LOGGER.warn("Interrupted while the engine pool was working, unfinished jobs will run on the next run");
                 }
-                if (engine.getLicence() == null)
+                finally
+                {
+                    Runtime.getRuntime().removeShutdownHook(releaseOnExit);
+                }
+            }
+        }
+
+        /**
+         * Creates an engine and licences it according to the command line.
+         * Synchronised so that engines being filled for a pool acquire their licences one at a time.
+         *
+         * @param container the container to create the engine in
+         * @return a licenced engine, the caller is responsible for closing it
+         * @throws LicenceException if there is an issue acquiring a licence.
+         */
+        private synchronized Engine newLicencedEngine(GlobalContainer container) throws LicenceException
+        {
+            try (StartupMetrics.Phase ignored = startupMetrics.phase("licencedEngine"))
+            {
+                return newLicencedEngineUntimed(container);
+            }
+            finally
+            {
+                publishStartupMetrics();
+            }
+        }
+
+        /**
+         * The steps of newLicencedEngine, each timed as its own phase.
+         *
+         * @param container the container to create the engine in
+         * @return a licenced engine, the caller is responsible for closing it
+         * @throws LicenceException if there is an issue acquiring a licence.
+         */
+        private Engine newLicencedEngineUntimed(GlobalContainer container) throws LicenceException
+        {
+            Map<String, String> ENGINE_CONFIG = ImmutableMap.of(
+                    "userDataDirs", engineUserDataDirs,
+                    "user", licenceServerUsername
+            );
+            Engine engine;
+            try (StartupMetrics.Phase ignored = startupMetrics.phase("newEngine"))
+            {
+                engine = container.newEngine(ENGINE_CONFIG);
+            }
+            try
+            {
+                LOGGER.info("Initialising:{}", engine.getVersion());
+                try (StartupMetrics.Phase ignored = startupMetrics.phase("callbacks"))
                 {
-                    if(lastException==null)
+                    if(!(licenceServerUsername.isEmpty() || licenceServerPassword.isEmpty()))
                     {
-                        throw new LicenceException(String.format("No Licence could be found\n" +
-                                        "\tLICENCE_SOURCES=%s\n" +
-                                        "\tLICENCE_SOURCE_NAME=%s\n" +
-                                        "\tLICENCE_SHORT_NAME=%s\n" +
-                                        "\tLICENCE_WORKER_COUNT=%s",
-                                Arrays.toString(LICENCE_SOURCES), licenceSourceName, licenceShortName,LICENCE_WORKER_COUNT));
+                        engine.whenAskedForCredentials(callback ->
+                        {
+                            LOGGER.info("\t\t\tOffering credentials to server [{}]", callback.getAddress());
+                            callback.setUsername(licenceServerUsername);
+                            callback.setPassword(licenceServerPassword);
+                        });
+                        LOGGER.info("Credential Callback applied");
                     }
-                    else
+                    if (licenceServerTrustCertificate)
                     {
-                        throw new LicenceException("Licence could not be acquired", lastException);
+                        //This method should only be reserved for scenario's you have issues and can't fix the licence source.
+                        engine.whenAskedForCertificateTrust(callback ->
+                        {
+                            LOGGER.info("\t\t\tTrusting certificate blindly!");
+                            callback.setTrusted(true);
+                        });
+                        LOGGER.info("Certificate Trust Callback applied:{}", engine.getVersion());
                     }
+                }
+                licenceEngine(engine);
+                return engine;
+            }
+            catch (RuntimeException e)
+            {
+                engine.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Licences an engine again after its licence was lost. The source and licence it had are tried first,
+         * then the same cache and discovery as a new engine. Runs on the licence monitor's thread.
+         *
+         * @param engine the engine that lost its licence
+         * @throws LicenceException if no licence could be acquired, the monitor retries with backoff
+         */
+        private synchronized void relicence(Engine engine) throws LicenceException
+        {
+            try (StartupMetrics.Phase ignored = startupMetrics.phase("relicence"))
+            {
+                LicenceCache.Entry origin = licenceOrigins.get(engine);
+                if (origin == null || !acquireCachedLicence(engine, origin))
+                {
+                    licenceEngine(engine);
+                }
+            }
+            finally
+            {
+                publishStartupMetrics();
+            }
+        }
 
+        /**
+         * Acquires a licence for an engine according to the command line: any licence with -acquireAny,
+         * otherwise the cached licence and then discovery over -licenceSourceType.
+         *
+         * @param engine the engine to licence
+         * @throws LicenceException if there is an issue acquiring a licence.
+         */
+        private void licenceEngine(Engine engine) throws LicenceException
+        {
+            Exception lastException = null;
+            acquiredFrom = null;
+            if (engineAcquireAny)
+            {
+                try (StartupMetrics.Phase ignored = startupMetrics.phase("acquire"))
+                {
+                    engine.getLicensor().acquire();
                 }
-                else
+                return;
+            }
+
+            LicenceCache licenceCache = new LicenceCache(Paths.get(engineUserDataDirs),
+                    String.join(",", LICENCE_SOURCES) + "|" + licenceSourceName + "|" + licenceShortName + "|" + LICENCE_WORKER_COUNT,
+                    TimeUnit.MINUTES.toMillis(licenceCacheTtl));
+            LicenceCache.Entry cachedLicence = licenceCacheTtl > 0 ? licenceCache.read() : null;
+            if (cachedLicence != null)
+            {
+                try (StartupMetrics.Phase ignored = startupMetrics.phase("cachedLicence"))
                 {
-                    try
+                    if (!acquireCachedLicence(engine, cachedLicence))
                     {
-                        lab.accept(engine);
+                        licenceCache.invalidate();
                     }
-                    catch (Exception labException)
+                }
+            }
+
+            LOGGER.info("Acquiring a licence from:{}", String.join(",", LICENCE_SOURCES));
+            if (engine.getLicence() != null)
+            {
+                LOGGER.info("\tUsing the cached licence, skipping discovery");
+            }
+            else if (licenceConcurrentDiscovery)
+            {
+                try (StartupMetrics.Phase ignored = startupMetrics.phase("discovery"))
+                {
+                    LicenceDiscovery discovery = new LicenceDiscovery(LICENCE_SOURCES, licenceSourceName, licenceShortName,
+                            TimeUnit.SECONDS.toMillis(licenceDiscoveryTimeout), startupMetrics);
+                    discovery.acquire(engine.getLicensor(), this::acquireAvailableLicence);
+                    lastException = discovery.getLastException();
+                }
+            }
+            else
+            {
+                try (StartupMetrics.Phase discovery = startupMetrics.phase("discovery"))
+                {
+                    Map<String, String[]> licenceSourceConfig = ImmutableMap.of("sources", LICENCE_SOURCES);
+                    Iterable<LicenceSource> licenceSources;
+                    try (StartupMetrics.Phase ignored = startupMetrics.phase("findLicenceSources"))
+                    {
+                        licenceSources = engine.getLicensor().findLicenceSources(licenceSourceConfig);
+                    }
+                    for (LicenceSource licenceSource : licenceSources)
                     {
-                        LOGGER.error("Error running lab",labException);
+                        LOGGER.info("\tFound {} ({})", licenceSource.getLocation(), licenceSource.getType());
+                        if (licenceSource.getLocation().equals(licenceSourceName) || (licenceSourceName.isEmpty()))
+                        {
+                            long enumerationStarted = System.nanoTime();
+                            boolean enumerationFailed = false;
+                            try
+                            {
+                                for (AvailableLicence availableLicence : licenceSource.findAvailableLicences())
+                                {
+                                    LOGGER.info("\t\tLicence discovered {}", availableLicence.getShortName());
+                                    if (availableLicence.getShortName().equals(licenceShortName) ||
+                                            (licenceShortName.isEmpty()))
+                                    {
+                                        acquireAvailableLicence(licenceSource, availableLicence);
+                                        break;
+                                    }
+                                }
+                            }
+                            catch (Exception e)
+                            {
+                                LOGGER.warn("Errors trying to enumerate licence source:{}", licenceSource.getLocation(), e);
+                                lastException = e;
+                                enumerationFailed = true;
+                            }
+                            startupMetrics.recordSource(licenceSource.getType(), licenceSource.getLocation(),
+                                    System.nanoTime() - enumerationStarted, enumerationFailed);
+                            if (engine.getLicence() != null || licenceSource.getLocation().equals(licenceSourceName))
+                            {
+                                //break the first time a licence acquisition was made so that only 1 licence is acquired.
+                                //also break when the source name was specified because we don't want to detect any further sources
+                                break;
+                            }
+                        }
                     }
                 }
             }
+            if (engine.getLicence() == null)
+            {
+                if(lastException==null)
+                {
+                    throw new LicenceException(String.format("No Licence could be found\n" +
+                                    "\tLICENCE_SOURCES=%s\n" +
+                                    "\tLICENCE_SOURCE_NAME=%s\n" +
+                                    "\tLICENCE_SHORT_NAME=%s\n" +
+                                    "\tLICENCE_WORKER_COUNT=%s",
+                            Arrays.toString(LICENCE_SOURCES), licenceSourceName, licenceShortName,LICENCE_WORKER_COUNT));
+                }
+                else
+                {
+                    throw new LicenceException("Licence could not be acquired", lastException);
+                }
+            }
+            if (acquiredFrom != null)
+            {
+                LicenceCache.Entry origin = new LicenceCache.Entry(acquiredFrom.getType(), acquiredFrom.getLocation(),
+                        engine.getLicence().getShortName(), engine.getLicence().getWorkers(), System.currentTimeMillis());
+                licenceOrigins.put(engine, origin);
+                if (licenceCacheTtl > 0)
+                {
+                    licenceCache.write(origin.sourceType, origin.sourceLocation, origin.shortName, origin.workers);
+                }
+            }
         }
-        LOGGER.info("Engine is shutting down...");
-    }
 
+        /**
+         * Goes straight to the licence source recorded in the licence cache and acquires the cached licence.
+         *
+         * @param engine the engine to licence
+         * @param cachedLicence the licence acquired on a previous start
+         * @return true if the cached licence was acquired, false if full discovery is needed
+         */
+        private boolean acquireCachedLicence(Engine engine, LicenceCache.Entry cachedLicence)
+        {
+            LOGGER.info("Trying the cached licence {} from {} ({})", cachedLicence.shortName, cachedLicence.sourceLocation,
+                    cachedLicence.sourceType);
+            String registryServers = System.getProperty("nuix.registry.servers");
+            if (licenceSourceName.isEmpty() && cachedLicence.sourceType.equals("server"))
+            {
+                //Same as -l, so the server is checked without waiting on the discovery broadcast.
+                System.setProperty("nuix.registry.servers", cachedLicence.sourceLocation);
+            }
+            try
+            {
+                Map<String, String[]> licenceSourceConfig = ImmutableMap.of("sources", new String[]{cachedLicence.sourceType});
+                for (LicenceSource licenceSource : engine.getLicensor().findLicenceSources(licenceSourceConfig))
+                {
+                    if (licenceSource.getLocation().equals(cachedLicence.sourceLocation))
+                    {
+                        for (AvailableLicence availableLicence : licenceSource.findAvailableLicences())
+                        {
+                            if (availableLicence.getShortName().equals(cachedLicence.shortName))
+                            {
+                                acquireAvailableLicence(licenceSource, availableLicence, cachedLicence.workers);
+                                return true;
+                            }
+                        }
+                        break;
+                    }
+                }
+                LOGGER.info("\tThe cached licence is no longer available");
+            }
+            catch (Exception e)
+            {
+                LOGGER.warn("Errors trying to acquire the cached licence, falling back to discovery", e);
+            }
+            finally
+            {
+                //the fallback discovery must not be pinned to the cached server
+                if (registryServers == null)
+                {
+                    System.clearProperty("nuix.registry.servers");
+                }
+                else
+                {
+                    System.setProperty("nuix.registry.servers", registryServers);
+                }
+            }
+            return false;
+        }
 
+        /**
+         * Acquires a single licence, requesting the -licenceWorkerCount workers when the licence lets us choose.
+         *
+         * @param licenceSource the source offering the licence
+         * @param availableLicence the licence to acquire
+         */
+        private void acquireAvailableLicence(LicenceSource licenceSource, AvailableLicence availableLicence)
+        {
+            acquireAvailableLicence(licenceSource, availableLicence, null);
+        }
+
+        /**
+         * Acquires a single licence, requesting the workers granted last time if known, otherwise -licenceWorkerCount.
+         *
+         * @param licenceSource the source offering the licence
+         * @param availableLicence the licence to acquire
+         * @param previousWorkers the workers the cached licence was acquired with, null to use -licenceWorkerCount
+         */
+        private void acquireAvailableLicence(LicenceSource licenceSource, AvailableLicence availableLicence,
+                                             @Nullable Integer previousWorkers)
+        {
+            try (StartupMetrics.Phase ignored = startupMetrics.phase("acquire"))
+            {
+                acquireAvailableLicenceUntimed(availableLicence, previousWorkers);
+            }
+            acquiredFrom = licenceSource;
+        }
+
+        /**
+         * The licence acquisition of acquireAvailableLicence.
+         *
+         * @param availableLicence the licence to acquire
+         * @param previousWorkers the workers to request again, null to use -licenceWorkerCount
+         */
+        private void acquireAvailableLicenceUntimed(AvailableLicence availableLicence, @Nullable Integer previousWorkers)
+        {
+            if (availableLicence.canChooseWorkers())
+            {
+                Integer licenceWorkers = ((LicenceProperties) availableLicence).getWorkers();
+                if (licenceWorkers != null)
+                {
+                    int workers = previousWorkers == null
+                            ? workerCount.forLicence(licenceWorkers)
+                            : Math.max(1, Math.min(previousWorkers, licenceWorkers));
+                    LOGGER.info("\t\t\t\tAcquiring {} workers", workers);
+                    Map<String, Integer> workerConfig = ImmutableMap.of("workerCount", workers);
+                    availableLicence.acquire(workerConfig);
+                }
+                else
+                {
+                    LOGGER.info("\t\t\t\tAcquiring the default worker count");
+                    availableLicence.acquire();
+                }
+            }
+            else
+            {
+                LOGGER.info("\t\t\t\tAcquiring no workers");
+                availableLicence.acquire();
+            }
+        }
+    }
 }
@@ -0,0 +1,137 @@
+package Nuix.Baseline;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes lines from a single background thread so callers never wait on console or file I/O.
+ * Lines are buffered and only flushed once the queue runs dry, when the queue is full callers block
+ * rather than lines being dropped.
+ * The target is flushed but not closed, it is owned by whoever created it (usually System.out).
+ */
+public class AsyncLineWriter implements LineOutput {
+
+    private static final int DRAIN_CHUNK = 1024;
+
+    private final BufferedWriter target;
+    private final BlockingQueue<String> pending;
+    private final Thread drainer;
+    private volatile boolean closed = false;
+    private volatile IOException lastError = null;
+
+    /**
+     * Writes lines from a single background thread.
+     * @param target where the lines end up
+     * @param capacity the number of lines that may be queued before writers block
+     */
+    public AsyncLineWriter(@Nonnull Writer target, int capacity)
+    {
+        this.target  = new BufferedWriter(target, 64 * 1024);
+        this.pending = new ArrayBlockingQueue<>(capacity);
+        this.drainer = new Thread(this::drain, "async-line-writer");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * Queues a line, blocking only if the queue is full.
+     * @param line the text to write, a line separator is appended
+     */
+    @Override
+    public void println(@Nonnull String line)
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("Writer has been closed");
+        }
+        try
+        {
+            pending.put(line);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes everything still queued, flushes the target and stops the background thread.
+     * @throws IOException if writing to the target failed at any point
+     */
+    @Override
+    public void close() throws IOException
+    {
+        closed = true;
+        drainer.interrupt();
+        try
+        {
+            drainer.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        //anything queued after the drainer stopped
+        write(new ArrayList<>(pending));
+        target.flush();
+        if (lastError != null)
+        {
+            throw lastError;
+        }
+    }
+
+    private void drain()
+    {
+        List<String> chunk = new ArrayList<>(DRAIN_CHUNK);
+        while (!closed || !pending.isEmpty())
+        {
+            try
+            {
+                String first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                {
+                    continue;
+                }
+                chunk.add(first);
+                pending.drainTo(chunk, DRAIN_CHUNK - 1);
+                write(chunk);
+                chunk.clear();
+                if (pending.isEmpty())
+                {
+                    target.flush();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                //close() interrupts to stop waiting, the loop condition decides whether to keep draining
+            }
+            catch (IOException e)
+            {
+                lastError = e;
+            }
+        }
+    }
+
+    private void write(List<String> lines)
+    {
+        try
+        {
+            for (String line : lines)
+            {
+                target.write(line);
+                target.newLine();
+            }
+        }
+        catch (IOException e)
+        {
+            lastError = e;
+        }
+    }
+}
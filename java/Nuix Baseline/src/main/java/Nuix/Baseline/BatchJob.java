@@ -0,0 +1,86 @@
+package Nuix.Baseline;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One job of a batch manifest: the evidence to process into a case, with an optional processing profile.
+ * Jobs with a higher priority run first, equal priorities run in manifest order.
+ */
+final class BatchJob {
+
+    private String id;
+    private List<String> evidence;
+    private String caseDir;
+    private String profile;
+    private int priority;
+    private transient int order;
+
+    /**
+     * For Gson, fields are filled from the manifest.
+     */
+    private BatchJob()
+    {
+    }
+
+    /**
+     * One job of a batch.
+     * @param id identifies the job in the journal and reports
+     * @param evidence the files or folders to add as evidence
+     * @param caseDir the case to create, or add to when it already exists
+     * @param profile the processing profile, null for the case defaults
+     * @param priority higher runs first
+     * @param order the position in the manifest, breaks priority ties
+     */
+    BatchJob(@Nonnull String id, @Nonnull List<String> evidence, @Nonnull String caseDir, @Nullable String profile,
+             int priority, int order)
+    {
+        this.id       = id;
+        this.evidence = evidence;
+        this.caseDir  = caseDir;
+        this.profile  = profile;
+        this.priority = priority;
+        this.order    = order;
+    }
+
+    @Nonnull
+    String getId()
+    {
+        return id;
+    }
+
+    @Nonnull
+    List<String> getEvidence()
+    {
+        return evidence == null ? Collections.emptyList() : evidence;
+    }
+
+    String getCaseDir()
+    {
+        return caseDir;
+    }
+
+    @Nullable
+    String getProfile()
+    {
+        return profile;
+    }
+
+    int getPriority()
+    {
+        return priority;
+    }
+
+    int getOrder()
+    {
+        return order;
+    }
+
+    @Override
+    public String toString()
+    {
+        return id;
+    }
+}
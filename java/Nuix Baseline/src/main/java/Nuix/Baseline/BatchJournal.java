@@ -0,0 +1,148 @@
+package Nuix.Baseline;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An append only record of finished batch jobs, so a rerun of the same manifest resumes where the last run stopped.
+ * <p>
+ * Each job adds a tab separated line, forced to disk before the next job is reported as done:
+ * timestamp, completed or failed, job id, items processed, milliseconds taken (or the failure).
+ * Only completed jobs are skipped on a rerun, failed jobs are tried again. A line cut short by a crash is ignored,
+ * and ended before anything else is appended so the next record starts on a line of its own.
+ */
+final class BatchJournal implements AutoCloseable {
+
+    private static final String COMPLETED = "completed";
+    private static final String FAILED = "failed";
+
+    private final FileChannel channel;
+    private final Set<String> completed;
+
+    /**
+     * Opens the journal, creating it if it does not exist.
+     * @param file the journal file
+     * @throws IOException if it can't be read or opened for appending
+     */
+    BatchJournal(@Nonnull Path file) throws IOException
+    {
+        Set<String> done = new HashSet<>();
+        boolean unterminated = false;
+        if (Files.isRegularFile(file))
+        {
+            unterminated = endsWithoutNewline(file);
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            for (String line : lines)
+            {
+                String[] fields = line.split("\t", -1);
+                if (fields.length == 5 && fields[1].equals(COMPLETED))
+                {
+                    done.add(fields[2]);
+                }
+            }
+        }
+        else if (file.toAbsolutePath().getParent() != null)
+        {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        this.completed = Collections.synchronizedSet(done);
+        this.channel   = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (unterminated)
+        {
+            write(ByteBuffer.wrap(new byte[]{'\n'}));
+        }
+    }
+
+    /**
+     * Whether a job completed in this or an earlier run.
+     * @param id the job id
+     * @return true if it completed
+     */
+    boolean isCompleted(@Nonnull String id)
+    {
+        return completed.contains(id);
+    }
+
+    /**
+     * Records a completed job.
+     * @param id the job id
+     * @param items the items it processed
+     * @param millis how long it took
+     * @throws IOException if the journal could not be written
+     */
+    void recordCompleted(@Nonnull String id, long items, long millis) throws IOException
+    {
+        append(COMPLETED + "\t" + id + "\t" + items + "\t" + millis);
+        completed.add(id);
+    }
+
+    /**
+     * Records a failed job, it will run again on the next run.
+     * @param id the job id
+     * @param millis how long it ran before failing
+     * @param reason why it failed
+     * @throws IOException if the journal could not be written
+     */
+    void recordFailed(@Nonnull String id, long millis, String reason) throws IOException
+    {
+        String oneLine = String.valueOf(reason).replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+        append(FAILED + "\t" + id + "\t" + millis + "\t" + oneLine);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    /**
+     * Whether an id can be written to the journal.
+     * @param id the job id
+     * @return false if it contains tabs or line breaks
+     */
+    static boolean isValidId(@Nonnull String id)
+    {
+        return id.indexOf('\t') < 0 && id.indexOf('\n') < 0 && id.indexOf('\r') < 0;
+    }
+
+    private synchronized void append(String record) throws IOException
+    {
+        write(ByteBuffer.wrap((System.currentTimeMillis() + "\t" + record + "\n").getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void write(ByteBuffer bytes) throws IOException
+    {
+        while (bytes.hasRemaining())
+        {
+            channel.write(bytes);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Whether the last line of a file was cut short, before its line break.
+     */
+    private static boolean endsWithoutNewline(Path file) throws IOException
+    {
+        try (FileChannel reader = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            if (reader.size() == 0)
+            {
+                return false;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            reader.read(last, reader.size() - 1);
+            return last.get(0) != '\n';
+        }
+    }
+}
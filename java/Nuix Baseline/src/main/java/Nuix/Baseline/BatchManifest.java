@@ -0,0 +1,130 @@
+package Nuix.Baseline;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The jobs of a batch run, read from a JSON file:
+ * <pre>
+ * {
+ *   "concurrency": 2,
+ *   "journal": "nightly.journal",
+ *   "jobs": [
+ *     {"id": "matter-001", "evidence": ["evidence/a.pst", "evidence/loose"], "caseDir": "cases/matter-001",
+ *      "profile": "Default", "priority": 10}
+ *   ]
+ * }
+ * </pre>
+ * Relative paths are resolved against the manifest's folder. concurrency (engines processing at once) and
+ * journal (defaults to the manifest name + ".journal") are optional, as are a job's profile and priority.
+ */
+final class BatchManifest {
+
+    private int concurrency;
+    private String journal;
+    private List<BatchJob> jobs;
+
+    private transient Path journalFile;
+
+    /**
+     * Reads and validates a manifest.
+     * @param file the manifest
+     * @return the manifest with every path resolved
+     * @throws IOException if it can't be read or is not a valid manifest
+     */
+    @Nonnull
+    static BatchManifest read(@Nonnull Path file) throws IOException
+    {
+        BatchManifest manifest;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+        {
+            manifest = new Gson().fromJson(reader, BatchManifest.class);
+        }
+        catch (JsonParseException e)
+        {
+            throw new IOException("Invalid batch manifest " + file + ": " + e.getMessage(), e);
+        }
+        if (manifest == null || manifest.jobs == null || manifest.jobs.isEmpty())
+        {
+            throw new IOException("Batch manifest " + file + " has no jobs");
+        }
+        Path folder = file.toAbsolutePath().getParent();
+        List<BatchJob> resolved = new ArrayList<>(manifest.jobs.size());
+        Set<String> ids = new HashSet<>();
+        for (BatchJob job : manifest.jobs)
+        {
+            int order = resolved.size();
+            if (job == null || job.getId() == null || job.getId().trim().isEmpty() || !BatchJournal.isValidId(job.getId()))
+            {
+                throw new IOException("Batch manifest " + file + " job " + (order + 1) + " needs an id without tabs or line breaks");
+            }
+            if (!ids.add(job.getId()))
+            {
+                throw new IOException("Batch manifest " + file + " has more than one job " + job.getId());
+            }
+            if (job.getEvidence().isEmpty() || job.getCaseDir() == null)
+            {
+                throw new IOException("Batch manifest " + file + " job " + job.getId() + " needs evidence and a caseDir");
+            }
+            List<String> evidence = new ArrayList<>(job.getEvidence().size());
+            for (String path : job.getEvidence())
+            {
+                evidence.add(resolve(folder, path));
+            }
+            resolved.add(new BatchJob(job.getId(), evidence, resolve(folder, job.getCaseDir()), job.getProfile(),
+                    job.getPriority(), order));
+        }
+        manifest.jobs        = resolved;
+        manifest.journalFile = manifest.journal == null || manifest.journal.isEmpty()
+                ? file.resolveSibling(file.getFileName() + ".journal")
+                : folder.resolve(manifest.journal);
+        return manifest;
+    }
+
+    /**
+     * The jobs in manifest order.
+     * @return the jobs
+     */
+    @Nonnull
+    List<BatchJob> getJobs()
+    {
+        return jobs;
+    }
+
+    /**
+     * Engines to process jobs on at once.
+     * @return the concurrency, 0 when the manifest leaves it to the command line
+     */
+    int getConcurrency()
+    {
+        return Math.max(0, concurrency);
+    }
+
+    /**
+     * Where completed jobs are recorded.
+     * @return the journal file
+     */
+    @Nonnull
+    Path getJournalFile()
+    {
+        return journalFile;
+    }
+
+    @Nullable
+    private static String resolve(Path folder, @Nullable String path)
+    {
+        return path == null ? null : folder.resolve(path).normalize().toString();
+    }
+}
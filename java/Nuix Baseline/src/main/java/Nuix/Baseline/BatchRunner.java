@@ -0,0 +1,259 @@
+package Nuix.Baseline;
+
+import nuix.LicenceException;
+import nuix.engine.Engine;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the jobs of a batch manifest on pooled engines, so the container start up and licence acquisition
+ * are paid once for the whole batch instead of once per job.
+ * <p>
+ * Jobs are handed to the pool highest priority first, at most concurrency at a time. Each finished job is written
+ * to the journal with its throughput, and jobs the journal already has as completed are skipped. A job whose
+ * completion can't be journaled still counts as completed, it just runs again on the next run.
+ * A job that can't get a licenced engine stops the batch, the jobs not yet run are left for the next run.
+ */
+final class BatchRunner {
+
+    /**
+     * Generic logger definition, will use the class name as the prefix in the log.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(BatchRunner.class);
+
+    /**
+     * Does the work of one job.
+     */
+    interface JobProcessor {
+        /**
+         * Processes a job on a leased engine.
+         * @param engine the engine, must not be closed
+         * @param job the job
+         * @return the number of items processed
+         * @throws Exception if the job failed
+         */
+        long process(Engine engine, BatchJob job) throws Exception;
+    }
+
+    /**
+     * The outcome of a batch.
+     */
+    static final class Summary {
+        final int completed;
+        final int skipped;
+        final int failed;
+        final int notRun;
+        final long items;
+        final long elapsedNanos;
+
+        Summary(int completed, int skipped, int failed, int notRun, long items, long elapsedNanos)
+        {
+            this.completed    = completed;
+            this.skipped      = skipped;
+            this.failed       = failed;
+            this.notRun       = notRun;
+            this.items        = items;
+            this.elapsedNanos = elapsedNanos;
+        }
+    }
+
+    private final EnginePool pool;
+    private final int concurrency;
+    private final BatchJournal journal;
+    private final JobProcessor processor;
+    private final AdaptiveWorkerCount workerCount;
+
+    /**
+     * Runs batch jobs on pooled engines.
+     * @param pool leases the engines, should hold at least concurrency engines
+     * @param concurrency the most jobs processed at once
+     * @param journal records finished jobs and knows the completed ones
+     * @param processor does the work of each job
+     * @param workerCount told the throughput of each job, null if the worker count is not adapted
+     */
+    BatchRunner(@Nonnull EnginePool pool, int concurrency, @Nonnull BatchJournal journal, @Nonnull JobProcessor processor,
+                @Nullable AdaptiveWorkerCount workerCount)
+    {
+        if (concurrency < 1)
+        {
+            throw new IllegalArgumentException("Batch concurrency must be at least 1, was " + concurrency);
+        }
+        this.pool        = pool;
+        this.concurrency = concurrency;
+        this.journal     = journal;
+        this.processor   = processor;
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Runs the jobs not already completed and waits for them.
+     * @param jobs the jobs of the manifest
+     * @return what happened
+     * @throws LicenceException if no licenced engine could be had for a job
+     * @throws InterruptedException if interrupted while waiting, jobs already handed to the pool still run
+     */
+    @Nonnull
+    Summary run(@Nonnull List<BatchJob> jobs) throws LicenceException, InterruptedException
+    {
+        long started = System.nanoTime();
+        PriorityBlockingQueue<BatchJob> queue = new PriorityBlockingQueue<>(Math.max(1, jobs.size()),
+                Comparator.comparingInt(BatchJob::getPriority).reversed().thenComparingInt(BatchJob::getOrder));
+        int skipped = 0;
+        for (BatchJob job : jobs)
+        {
+            if (journal.isCompleted(job.getId()))
+            {
+                skipped++;
+            }
+            else
+            {
+                queue.add(job);
+            }
+        }
+        LOGGER.info("Batch of {} jobs, {} already completed, running {} at a time", jobs.size(), skipped, concurrency);
+
+        Semaphore running = new Semaphore(concurrency);
+        AtomicBoolean licenceLost = new AtomicBoolean();
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong items = new AtomicLong();
+        List<Future<?>> submitted = new ArrayList<>();
+        BatchJob job;
+        while (!licenceLost.get() && (job = queue.poll()) != null)
+        {
+            running.acquire();
+            if (licenceLost.get())
+            {
+                queue.add(job);
+                running.release();
+                break;
+            }
+            BatchJob next = job;
+            submitted.add(pool.submit(engine ->
+            {
+                long processed = runJob(engine, next);
+                if (processed >= 0)
+                {
+                    completed.incrementAndGet();
+                    items.addAndGet(processed);
+                }
+                else
+                {
+                    failed.incrementAndGet();
+                }
+            }).whenComplete((ignored, noEngine) ->
+            {
+                if (noEngine != null)
+                {
+                    //runJob handles the job's own failures, so only leasing the engine fails here
+                    licenceLost.set(true);
+                }
+                running.release();
+            }));
+        }
+
+        LicenceException licenceException = null;
+        for (Future<?> future : submitted)
+        {
+            try
+            {
+                future.get();
+            }
+            catch (ExecutionException e)
+            {
+                if (e.getCause() instanceof LicenceException && licenceException == null)
+                {
+                    licenceException = (LicenceException) e.getCause();
+                }
+                LOGGER.error("A batch job could not get a licenced engine", e.getCause());
+            }
+        }
+        int notRun = jobs.size() - skipped - completed.get() - failed.get();
+        Summary summary = new Summary(completed.get(), skipped, failed.get(), notRun, items.get(), System.nanoTime() - started);
+        report(summary);
+        if (licenceException != null)
+        {
+            throw licenceException;
+        }
+        return summary;
+    }
+
+    /**
+     * Processes a job and journals it.
+     * @return the items processed, -1 if the job failed
+     */
+    private long runJob(Engine engine, BatchJob job)
+    {
+        LOGGER.info("Batch job {} starting (priority {})", job.getId(), job.getPriority());
+        long started = System.nanoTime();
+        long processed;
+        try
+        {
+            processed = processor.process(engine, job);
+        }
+        catch (Exception e)
+        {
+            long elapsed = System.nanoTime() - started;
+            LOGGER.error("Batch job {} failed after {} s", job.getId(), seconds(elapsed), e);
+            try
+            {
+                journal.recordFailed(job.getId(), TimeUnit.NANOSECONDS.toMillis(elapsed), e.toString());
+            }
+            catch (IOException journalException)
+            {
+                LOGGER.warn("Unable to journal the failure of batch job {}", job.getId(), journalException);
+            }
+            return -1;
+        }
+        long elapsed = System.nanoTime() - started;
+        LOGGER.info("Batch job {} processed {} items in {} s ({} items/s)", job.getId(), processed,
+                seconds(elapsed), rate(processed, elapsed));
+        try
+        {
+            journal.recordCompleted(job.getId(), processed, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        }
+        catch (IOException journalException)
+        {
+            LOGGER.error("Unable to journal the completion of batch job {}, it will run again on the next run",
+                    job.getId(), journalException);
+        }
+        if (workerCount != null && engine.getLicence() != null && engine.getLicence().getWorkers() != null)
+        {
+            workerCount.recordJob(engine.getLicence().getWorkers(), processed, elapsed);
+        }
+        return processed;
+    }
+
+    private static void report(Summary summary)
+    {
+        LOGGER.info("Batch finished in {} s: {} completed, {} skipped as already completed, {} failed, {} not run",
+                seconds(summary.elapsedNanos), summary.completed, summary.skipped, summary.failed, summary.notRun);
+        LOGGER.info("Batch processed {} items ({} items/s)", summary.items, rate(summary.items, summary.elapsedNanos));
+    }
+
+    private static String seconds(long nanos)
+    {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1e9);
+    }
+
+    private static String rate(long items, long nanos)
+    {
+        return String.format(Locale.ROOT, "%.1f", nanos <= 0 ? 0.0 : items * 1e9 / nanos);
+    }
+}
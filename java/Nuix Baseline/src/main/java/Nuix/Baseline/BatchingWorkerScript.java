@@ -0,0 +1,170 @@
+package Nuix.Baseline;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import nuix.WorkerItem;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A Worker Side Script that collects items into micro-batches and processes them off the worker's callback thread.
+ * <p>
+ * A WorkerItem is only valid during nuixWorkerItemCallback, so each item is reduced to a snapshot
+ * synchronously in accept() (and anything that must modify the item happens there too).
+ * Only the snapshots are batched and handed to the ItemBatchProcessor on a bounded executor.
+ * When every batch slot is busy the worker thread runs the batch itself, which throttles intake instead of
+ * queueing without limit.
+ * @param <T> the snapshot type taken from each WorkerItem
+ */
+public class BatchingWorkerScript<T> implements Consumer<WorkerItem>, AutoCloseable {
+
+    private final Function<WorkerItem, T> snapshot;
+    private final ItemBatchProcessor<T> processor;
+    private final int batchSize;
+    private final ThreadPoolExecutor executor;
+    private final LineOutput output;
+    private final AtomicLong itemsAccepted = new AtomicLong();
+    private final AtomicLong itemsProcessed = new AtomicLong();
+    private final AtomicLong batchesFailed = new AtomicLong();
+    private final AtomicBoolean drained = new AtomicBoolean();
+    private List<T> currentBatch;
+
+    /**
+     * A Worker Side Script that collects items into micro-batches.
+     * @param snapshot runs on the callback thread, extracts what the processor needs from the item
+     * @param processor processes full batches on the executor
+     * @param batchSize the number of items in a batch
+     * @param threads the number of batches processed at once
+     * @param queuedBatches the number of full batches that may wait for a thread before the worker runs one itself
+     * @param output where processors and this script write their output
+     */
+    public BatchingWorkerScript(@Nonnull Function<WorkerItem, T> snapshot,
+                                @Nonnull ItemBatchProcessor<T> processor,
+                                int batchSize,
+                                int threads,
+                                int queuedBatches,
+                                @Nonnull LineOutput output)
+    {
+        this.snapshot     = snapshot;
+        this.processor    = processor;
+        this.batchSize    = batchSize;
+        this.output       = output;
+        this.currentBatch = new ArrayList<>(batchSize);
+        this.executor     = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queuedBatches),
+                new ThreadFactoryBuilder().setNameFormat("wss-batch-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * nuixWorkerItemCallback
+     * Takes the snapshot and adds it to the current batch, submitting the batch once it is full.
+     * @param workerItem the current WorkerItem being processed
+     */
+    @Override
+    public void accept(WorkerItem workerItem)
+    {
+        T itemSnapshot = snapshot.apply(workerItem);
+        itemsAccepted.incrementAndGet();
+        List<T> fullBatch = null;
+        synchronized (this)
+        {
+            currentBatch.add(itemSnapshot);
+            if (currentBatch.size() >= batchSize)
+            {
+                fullBatch    = currentBatch;
+                currentBatch = new ArrayList<>(batchSize);
+            }
+        }
+        if (fullBatch != null)
+        {
+            submit(fullBatch);
+        }
+    }
+
+    /**
+     * nuixWorkerItemCallbackClose
+     * Submits the partial batch, waits for every batch to be processed and flushes the output.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        drain();
+        output.close();
+    }
+
+    /**
+     * Submits the partial batch and waits for every batch to be processed, leaving the output open
+     * for whatever reports on the processing. Only the first call waits, no items may be accepted after it.
+     */
+    public void drain()
+    {
+        if (!drained.compareAndSet(false, true))
+        {
+            return;
+        }
+        List<T> lastBatch;
+        synchronized (this)
+        {
+            lastBatch    = currentBatch;
+            currentBatch = new ArrayList<>(0);
+        }
+        if (!lastBatch.isEmpty())
+        {
+            submit(lastBatch);
+        }
+        executor.shutdown();
+        try
+        {
+            while (!executor.awaitTermination(10, TimeUnit.SECONDS))
+            {
+                output.println("Waiting on " + executor.getActiveCount() + " batches to complete...");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        output.println(String.format("Processed %d of %d items, %d batches failed",
+                itemsProcessed.get(), itemsAccepted.get(), batchesFailed.get()));
+    }
+
+    /**
+     * The number of items whose batch has completed successfully.
+     * @return items processed so far
+     */
+    public long getItemsProcessed()
+    {
+        return itemsProcessed.get();
+    }
+
+    private void submit(List<T> batch)
+    {
+        executor.execute(() ->
+        {
+            try
+            {
+                processor.process(batch, output);
+                itemsProcessed.addAndGet(batch.size());
+            }
+            catch (Exception e)
+            {
+                batchesFailed.incrementAndGet();
+                StringWriter trace = new StringWriter();
+                e.printStackTrace(new PrintWriter(trace));
+                output.println("Batch of " + batch.size() + " items failed: " + trace);
+            }
+        });
+    }
+}
@@ -0,0 +1,45 @@
+package Nuix.Baseline;
+
+import com.google.common.collect.ImmutableMap;
+import nuix.EvidenceContainer;
+import nuix.Processor;
+import nuix.SimpleCase;
+import nuix.engine.Engine;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The default batch job: adds the job's evidence to its case (created if it does not exist yet)
+ * as one evidence container named after the job and processes it, counting the processed items.
+ */
+final class CaseProcessingJob implements BatchRunner.JobProcessor {
+
+    @Override
+    public long process(Engine engine, BatchJob job)
+    {
+        File caseDir = new File(job.getCaseDir());
+        boolean exists = new File(caseDir, "case.fbi2").isFile();
+        try (SimpleCase nuixCase = exists
+                ? engine.getUtilities().getCaseFactory().open(caseDir)
+                : engine.getUtilities().getCaseFactory().create(caseDir, ImmutableMap.of("name", job.getId())))
+        {
+            Processor processor = nuixCase.createProcessor();
+            if (job.getProfile() != null && !job.getProfile().isEmpty())
+            {
+                processor.setProcessingProfile(job.getProfile());
+            }
+            EvidenceContainer container = processor.newEvidenceContainer(job.getId());
+            for (String evidence : job.getEvidence())
+            {
+                container.addFile(new File(evidence));
+            }
+            container.save();
+
+            AtomicLong processed = new AtomicLong();
+            processor.whenItemProcessed(item -> processed.incrementAndGet());
+            processor.process();
+            return processed.get();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package Nuix.Baseline;
+
+import nuix.Address;
+import nuix.Communication;
+import nuix.SourceItem;
+import nuix.WorkerItem;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A Worker Side Script that gives items without communication data a SimpleCommunication parsed from their
+ * message headers, so their addresses and date appear in the case like those of any other mail item.
+ * <p>
+ * Headers are taken from the item's properties, a raw header block such as "Transport Message Headers" or
+ * else From/To/Cc/Bcc/Sender/Date properties, falling back to a header block at the start of the item's text
+ * as found in .eml and message/rfc822 items. Items that already have a communication, or have no addresses,
+ * are left alone. Addresses are interned in one AddressPool shared by the worker's threads, everything else
+ * (header buffers, the address parser and the builder) belongs to the thread, so threads never contend.
+ * Tune with the system property nuix.baseline.wss.headerChars, the most characters of text searched for headers.
+ * <p>
+ * Set nuix.baseline.wss.addressDictionary to a file, e.g. in the job folder, to also give each item an "Address IDs"
+ * custom metadata field with the ids of its addresses from a SharedAddressDictionary, the same in every worker.
+ * nuix.baseline.wss.addressDictionarySize is the most addresses it holds, used by the worker that creates it.
+ */
+public class CommunicationExtractionScript implements Consumer<WorkerItem>, AutoCloseable {
+
+    /**
+     * Properties holding an item's raw message headers, in the order they are tried.
+     */
+    static final String[] RAW_HEADER_PROPERTIES = {"Transport Message Headers", "Message Headers", "Mail Header"};
+
+    private final LineOutput output;
+    private final AddressPool addressPool;
+    private final int headerChars;
+    private final SharedAddressDictionary addressDictionary;
+    private volatile boolean addressDictionaryFull;
+    private final ThreadLocal<ThreadState> state = ThreadLocal.withInitial(ThreadState::new);
+    private final LongAdder items = new LongAdder();
+    private final LongAdder fromProperties = new LongAdder();
+    private final LongAdder fromText = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * The parsing state of one worker thread.
+     */
+    private final class ThreadState {
+        final HeaderBlock headers = new HeaderBlock(addressPool);
+        final StringBuilder addressIds = new StringBuilder();
+    }
+
+    /**
+     * nuixWorkerItemCallbackInit
+     * Called when processing starts
+     */
+    public CommunicationExtractionScript()
+    {
+        this("log".equals(System.getProperty("nuix.baseline.wss.output"))
+                ? new LoggerLineOutput()
+                //Anything sent to System.out will appear in stdout.log in the job folder.
+                : new AsyncLineWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8),
+                        Integer.getInteger("nuix.baseline.wss.queuedLines", 64 * 1024)));
+    }
+
+    private CommunicationExtractionScript(LineOutput output)
+    {
+        this(output, new AddressPool(), Integer.getInteger("nuix.baseline.wss.headerChars", 64 * 1024),
+                openAddressDictionary(output));
+    }
+
+    /**
+     * Extracts communications, used by the tests.
+     * @param output where the summary is written
+     * @param addressPool where the parsed addresses are interned
+     * @param headerChars the most characters of an item's text searched for headers
+     */
+    CommunicationExtractionScript(@Nonnull LineOutput output, @Nonnull AddressPool addressPool, int headerChars)
+    {
+        this(output, addressPool, headerChars, null);
+    }
+
+    /**
+     * Extracts communications and records the ids of their addresses, used by the tests.
+     * @param output where the summary is written
+     * @param addressPool where the parsed addresses are interned
+     * @param headerChars the most characters of an item's text searched for headers
+     * @param addressDictionary gives the addresses their ids, null to not record them, closed with the script
+     */
+    CommunicationExtractionScript(@Nonnull LineOutput output, @Nonnull AddressPool addressPool, int headerChars,
+                                  @Nullable SharedAddressDictionary addressDictionary)
+    {
+        this.output            = output;
+        this.addressPool       = addressPool;
+        this.headerChars       = headerChars;
+        this.addressDictionary = addressDictionary;
+    }
+
+    /**
+     * nuixWorkerItemCallback
+     * Parses the item's headers and sets its communication. A failure is counted rather than failing the item.
+     * @param workerItem the current WorkerItem being processed
+     */
+    @Override
+    public void accept(WorkerItem workerItem)
+    {
+        ThreadState thread = state.get();
+        items.increment();
+        try
+        {
+            SourceItem sourceItem = workerItem.getSourceItem();
+            if (sourceItem.getCommunication() != null)
+            {
+                return;
+            }
+            HeaderBlock headers = thread.headers;
+            headers.reset();
+            if (readProperties(sourceItem.getProperties(), headers))
+            {
+                fromProperties.increment();
+            }
+            else
+            {
+                headers.reset();
+                CharSequence text = sourceItem.getText();
+                if (text == null || headers.readHeaders(text, headerChars) == 0 || headers.hasNoAddresses())
+                {
+                    return;
+                }
+                fromText.increment();
+            }
+            Communication communication = headers.toCommunication();
+            workerItem.setItemCommunication(communication);
+            if (addressDictionary != null && !addressDictionaryFull)
+            {
+                addAddressIds(workerItem, communication, thread.addressIds);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            failed.increment();
+            output.println("Unable to extract the communication of " + workerItem.getItemGuid() + ": " + e);
+        }
+    }
+
+    /**
+     * nuixWorkerItemCallbackClose
+     * Writes how many communications were set, unmaps the address dictionary and flushes the output.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        output.println(String.format("Set %d communications on %d items (%d from properties, %d from text), %d failed, %d distinct addresses",
+                fromProperties.sum() + fromText.sum(), items.sum(), fromProperties.sum(), fromText.sum(), failed.sum(),
+                addressPool.size()));
+        if (addressDictionary != null)
+        {
+            output.println(String.format("%d addresses in the shared dictionary", addressDictionary.size()));
+            addressDictionary.close();
+        }
+        output.close();
+    }
+
+    /**
+     * Fills the headers from the item's properties.
+     * @return true if an address header was found
+     */
+    private static boolean readProperties(Map<String, Object> properties, HeaderBlock headers)
+    {
+        if (properties == null || properties.isEmpty())
+        {
+            return false;
+        }
+        for (String name : RAW_HEADER_PROPERTIES)
+        {
+            Object raw = properties.get(name);
+            if (raw != null)
+            {
+                headers.readHeaders(raw.toString(), Integer.MAX_VALUE);
+                if (!headers.hasNoAddresses())
+                {
+                    return true;
+                }
+                headers.reset();
+            }
+        }
+        for (Map.Entry<String, Object> property : properties.entrySet())
+        {
+            if (property.getValue() != null && headers.select(property.getKey()) != null)
+            {
+                headers.put(property.getKey(), property.getValue().toString());
+            }
+        }
+        return !headers.hasNoAddresses();
+    }
+
+    /**
+     * Adds the dictionary ids of the communication's addresses as the "Address IDs" custom metadata field.
+     * A full dictionary is reported once and stops the ids being recorded.
+     */
+    private void addAddressIds(WorkerItem workerItem, Communication communication, StringBuilder ids)
+    {
+        ids.setLength(0);
+        try
+        {
+            for (List<Address> addresses : Arrays.asList(communication.getFrom(), communication.getTo(),
+                    communication.getCc(), communication.getBcc()))
+            {
+                for (Address address : addresses)
+                {
+                    if (ids.length() > 0)
+                    {
+                        ids.append(',');
+                    }
+                    ids.append(addressDictionary.idOf(address.getAddress()));
+                }
+            }
+        }
+        catch (IllegalStateException e)
+        {
+            addressDictionaryFull = true;
+            output.println("Address ids are no longer recorded: " + e.getMessage());
+            return;
+        }
+        workerItem.addCustomMetadata("Address IDs", ids.toString());
+    }
+
+    /**
+     * Opens the nuix.baseline.wss.addressDictionary if it is set.
+     * @return the dictionary, null if not set or it could not be opened
+     */
+    @Nullable
+    private static SharedAddressDictionary openAddressDictionary(LineOutput output)
+    {
+        String file = System.getProperty("nuix.baseline.wss.addressDictionary");
+        if (file == null || file.isEmpty())
+        {
+            return null;
+        }
+        try
+        {
+            return SharedAddressDictionary.open(Paths.get(file),
+                    Integer.getInteger("nuix.baseline.wss.addressDictionarySize", 1 << 20), 32);
+        }
+        catch (IOException e)
+        {
+            output.println("Unable to open the address dictionary " + file + ": " + e);
+            return null;
+        }
+    }
+}
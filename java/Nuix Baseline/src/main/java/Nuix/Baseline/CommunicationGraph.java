@@ -0,0 +1,512 @@
+package Nuix.Baseline;
+
+import nuix.Address;
+import nuix.Communication;
+import org.joda.time.DateTime;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-memory who-talked-to-whom index, built incrementally from communications.
+ * <p>
+ * Every sender (From) gets an edge to every recipient (To, Cc and Bcc) of each communication it appears in.
+ * Addresses are numbered with int ids, matched ignoring case and display name, and each node keeps primitive
+ * neighbour-to-count maps for the edges it sends and receives, both in total and per time bucket, so the
+ * index holds tens of millions of edges without boxing a single count.
+ * <p>
+ * Time buckets are numbered with ints, dates from the year 1 to 9999 get a bucket and communications dated outside
+ * that range are counted as if they had no date.
+ * <p>
+ * Any number of threads may add communications at once, writers only lock the node they are updating.
+ * Queries take no locks and never block writers, they see a weakly consistent view: a communication being
+ * added concurrently may be partly counted.
+ */
+public class CommunicationGraph {
+
+    /**
+     * Which edges of a node a query looks at.
+     */
+    public enum Direction {
+        /** Communications the address sent. */
+        OUT,
+        /** Communications the address received. */
+        IN,
+        /** Both, counts are summed per neighbour. */
+        BOTH
+    }
+
+    /**
+     * The first and last instants that get a time bucket, 0001-01-01 and 9999-12-31 UTC.
+     */
+    private static final long FIRST_DATED_MILLIS = -62135596800000L;
+    private static final long LAST_DATED_MILLIS = 253402300799999L;
+
+    private final long bucketMillis;
+    private final ConcurrentHashMap<String, Integer> idsByKey = new ConcurrentHashMap<>();
+    private final Object growLock = new Object();
+    private volatile Node[] nodes = new Node[1024];
+    private volatile int nodeCount;
+
+    /**
+     * A graph with one day time buckets.
+     */
+    public CommunicationGraph()
+    {
+        this(TimeUnit.DAYS.toMillis(1));
+    }
+
+    /**
+     * A graph.
+     * @param bucketMillis the width of the time buckets, the resolution of time windowed queries,
+     *                     at least two minutes so that the buckets up to the year 9999 can be numbered with ints
+     */
+    public CommunicationGraph(long bucketMillis)
+    {
+        if (bucketMillis <= 0)
+        {
+            throw new IllegalArgumentException("Bucket width must be positive: " + bucketMillis);
+        }
+        if (Math.floorDiv(FIRST_DATED_MILLIS, bucketMillis) < Integer.MIN_VALUE
+                || Math.floorDiv(LAST_DATED_MILLIS, bucketMillis) > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Bucket width too small to number the buckets up to the year 9999: " + bucketMillis);
+        }
+        this.bucketMillis = bucketMillis;
+    }
+
+    /**
+     * Counts the sender to recipient edges of a communication. Safe to call from many threads.
+     * A communication dated before the year 1 or after 9999 is counted without a date.
+     * @param communication the communication to add
+     */
+    public void add(@Nonnull Communication communication)
+    {
+        DateTime date = communication.getDateTime();
+        boolean dated = date != null && date.getMillis() >= FIRST_DATED_MILLIS && date.getMillis() <= LAST_DATED_MILLIS;
+        int bucket = dated ? Math.toIntExact(bucketOf(date.getMillis())) : 0;
+        List<Address> senders = communication.getFrom();
+        for (int fromIndex = 0; fromIndex < senders.size(); fromIndex++)
+        {
+            int sender = idOf(senders.get(fromIndex));
+            addEdges(sender, communication.getTo(), dated, bucket);
+            addEdges(sender, communication.getCc(), dated, bucket);
+            addEdges(sender, communication.getBcc(), dated, bucket);
+        }
+    }
+
+    /**
+     * Adds every communication in a store.
+     * @param store the communications to add
+     */
+    public void addAll(@Nonnull CommunicationStore store)
+    {
+        for (int index = 0; index < store.size(); index++)
+        {
+            add(store.get(index));
+        }
+    }
+
+    /**
+     * The id of an address, ignoring case and display name.
+     * @param address the address
+     * @return the id, -1 if the address has not been seen
+     */
+    public int getAddressId(@Nonnull Address address)
+    {
+        Integer id = idsByKey.get(keyOf(address));
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * The address with an id, as first seen.
+     * @param addressId the id
+     * @return the address
+     */
+    @Nonnull
+    public Address getAddress(int addressId)
+    {
+        return node(addressId).address;
+    }
+
+    /**
+     * The number of distinct addresses, ids run from 0 up to this count.
+     * @return the address count
+     */
+    public int getAddressCount()
+    {
+        return nodeCount;
+    }
+
+    /**
+     * The number of communications sent from one address to another.
+     * @param fromId the sender
+     * @param toId the recipient
+     * @return the edge count
+     */
+    public long getEdgeCount(int fromId, int toId)
+    {
+        return node(fromId).sent.get(toId);
+    }
+
+    /**
+     * The number of communications sent from one address to another within a time window.
+     * @param fromId the sender
+     * @param toId the recipient
+     * @param startMillis the start of the window, inclusive, rounded down to a bucket
+     * @param endMillis the end of the window, exclusive, rounded up to a bucket
+     * @return the edge count
+     */
+    public long getEdgeCount(int fromId, int toId, long startMillis, long endMillis)
+    {
+        LongCountMap sentByBucket = node(fromId).sentByBucket;
+        long firstBucket = bucketOf(Math.max(startMillis, FIRST_DATED_MILLIS));
+        long lastBucket = lastBucketBefore(Math.min(endMillis, LAST_DATED_MILLIS + 1));
+        if (lastBucket - firstBucket >= sentByBucket.size())
+        {
+            //a wide window, cheaper to scan the node's buckets than to probe every bucket in it
+            long[] count = new long[1];
+            sentByBucket.forEach((key, bucketCount) ->
+            {
+                int bucket = (int) key;
+                if ((key >>> 32) == toId && bucket >= firstBucket && bucket <= lastBucket)
+                {
+                    count[0] += bucketCount;
+                }
+            });
+            return count[0];
+        }
+        long count = 0;
+        for (long bucket = firstBucket; bucket <= lastBucket; bucket++)
+        {
+            count += sentByBucket.get(bucketKey(toId, Math.toIntExact(bucket)));
+        }
+        return count;
+    }
+
+    /**
+     * The number of distinct correspondents of an address.
+     * @param addressId the address
+     * @param direction which edges to count
+     * @return the degree
+     */
+    public int getDegree(int addressId, @Nonnull Direction direction)
+    {
+        Node node = node(addressId);
+        switch (direction)
+        {
+            case OUT:
+                return node.sent.size();
+            case IN:
+                return node.received.size();
+            default:
+                return neighbours(addressId, direction).size();
+        }
+    }
+
+    /**
+     * All correspondents of an address, most frequent first.
+     * @param addressId the address
+     * @param direction which edges to look at
+     * @return the correspondents with their communication counts
+     */
+    @Nonnull
+    public Neighbours neighbours(int addressId, @Nonnull Direction direction)
+    {
+        return topCorrespondents(addressId, direction, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The most frequent correspondents of an address.
+     * @param addressId the address
+     * @param direction which edges to look at
+     * @param limit the most correspondents to return
+     * @return the correspondents with their communication counts, most frequent first
+     */
+    @Nonnull
+    public Neighbours topCorrespondents(int addressId, @Nonnull Direction direction, int limit)
+    {
+        Node node = node(addressId);
+        if (direction == Direction.OUT)
+        {
+            return select(node.sent, limit);
+        }
+        if (direction == Direction.IN)
+        {
+            return select(node.received, limit);
+        }
+        LongCountMap both = new LongCountMap();
+        node.sent.forEach(both::add);
+        node.received.forEach(both::add);
+        return select(both, limit);
+    }
+
+    /**
+     * The correspondents of an address within a time window, most frequent first.
+     * Communications without a date are never in a window.
+     * @param addressId the address
+     * @param direction which edges to look at
+     * @param startMillis the start of the window, inclusive, rounded down to a bucket
+     * @param endMillis the end of the window, exclusive, rounded up to a bucket
+     * @param limit the most correspondents to return
+     * @return the correspondents with their communication counts in the window
+     */
+    @Nonnull
+    public Neighbours topCorrespondents(int addressId, @Nonnull Direction direction, long startMillis, long endMillis, int limit)
+    {
+        Node node = node(addressId);
+        long firstBucket = bucketOf(Math.max(startMillis, FIRST_DATED_MILLIS));
+        long lastBucket = lastBucketBefore(Math.min(endMillis, LAST_DATED_MILLIS + 1));
+        LongCountMap window = new LongCountMap();
+        LongCountMap.EntryConsumer inWindow = (key, count) ->
+        {
+            int bucket = (int) key;
+            if (bucket >= firstBucket && bucket <= lastBucket)
+            {
+                window.add(key >>> 32, count);
+            }
+        };
+        if (direction != Direction.IN)
+        {
+            node.sentByBucket.forEach(inWindow);
+        }
+        if (direction != Direction.OUT)
+        {
+            node.receivedByBucket.forEach(inWindow);
+        }
+        return select(window, limit);
+    }
+
+    /**
+     * A ranked list of correspondents, held in primitive arrays.
+     */
+    public static final class Neighbours {
+        private final int[] addressIds;
+        private final long[] counts;
+
+        Neighbours(int[] addressIds, long[] counts)
+        {
+            this.addressIds = addressIds;
+            this.counts     = counts;
+        }
+
+        /**
+         * The number of correspondents.
+         * @return the size
+         */
+        public int size()
+        {
+            return addressIds.length;
+        }
+
+        /**
+         * The id of a correspondent.
+         * @param rank the position in the list, 0 is the most frequent
+         * @return the address id
+         */
+        public int getAddressId(int rank)
+        {
+            return addressIds[rank];
+        }
+
+        /**
+         * The number of communications with a correspondent.
+         * @param rank the position in the list, 0 is the most frequent
+         * @return the count
+         */
+        public long getCount(int rank)
+        {
+            return counts[rank];
+        }
+    }
+
+    /**
+     * The edges of one address. Writers synchronize on the node, readers do not.
+     */
+    private static final class Node {
+        final Address address;
+        final LongCountMap sent = new LongCountMap();
+        final LongCountMap received = new LongCountMap();
+        final LongCountMap sentByBucket = new LongCountMap();
+        final LongCountMap receivedByBucket = new LongCountMap();
+
+        Node(Address address)
+        {
+            this.address = address;
+        }
+    }
+
+    private void addEdges(int sender, List<Address> recipients, boolean dated, int bucket)
+    {
+        for (int index = 0; index < recipients.size(); index++)
+        {
+            int recipient = idOf(recipients.get(index));
+            Node from = node(sender);
+            synchronized (from)
+            {
+                from.sent.add(recipient, 1);
+                if (dated)
+                {
+                    from.sentByBucket.add(bucketKey(recipient, bucket), 1);
+                }
+            }
+            Node to = node(recipient);
+            synchronized (to)
+            {
+                to.received.add(sender, 1);
+                if (dated)
+                {
+                    to.receivedByBucket.add(bucketKey(sender, bucket), 1);
+                }
+            }
+        }
+    }
+
+    private int idOf(Address address)
+    {
+        String key = keyOf(address);
+        Integer id = idsByKey.get(key);
+        if (id == null)
+        {
+            id = idsByKey.computeIfAbsent(key, ignored -> newNode(address));
+        }
+        return id;
+    }
+
+    private int newNode(Address address)
+    {
+        synchronized (growLock)
+        {
+            int id = nodeCount;
+            Node[] current = nodes;
+            if (id == current.length)
+            {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[id] = new Node(address);
+            nodes     = current;
+            nodeCount = id + 1;
+            return id;
+        }
+    }
+
+    private Node node(int addressId)
+    {
+        if (addressId < 0 || addressId >= nodeCount)
+        {
+            throw new IndexOutOfBoundsException("Address id: " + addressId + ", Addresses: " + nodeCount);
+        }
+        return nodes[addressId];
+    }
+
+    private long bucketOf(long millis)
+    {
+        return Math.floorDiv(millis, bucketMillis);
+    }
+
+    private long lastBucketBefore(long endMillis)
+    {
+        return Math.floorDiv(endMillis - 1, bucketMillis);
+    }
+
+    private static long bucketKey(int addressId, int bucket)
+    {
+        return ((long) addressId << 32) | (bucket & 0xFFFFFFFFL);
+    }
+
+    private static String keyOf(@Nullable Address address)
+    {
+        if (address instanceof SimpleAddress)
+        {
+            return ((SimpleAddress) address).getKey();
+        }
+        return SimpleAddress.normalize(address == null || address.getAddress() == null ? "" : address.getAddress());
+    }
+
+    private static Neighbours select(LongCountMap counts, int limit)
+    {
+        int size = Math.min(limit, counts.size());
+        //a min-heap of the best entries seen so far, the weakest at the root
+        int[] ids = new int[Math.max(size, 0)];
+        long[] values = new long[ids.length];
+        int[] filled = new int[1];
+        if (ids.length > 0)
+        {
+            counts.forEach((key, count) ->
+            {
+                if (filled[0] < ids.length)
+                {
+                    ids[filled[0]]    = (int) key;
+                    values[filled[0]] = count;
+                    siftUp(ids, values, filled[0]++);
+                }
+                else if (count > values[0])
+                {
+                    ids[0]    = (int) key;
+                    values[0] = count;
+                    siftDown(ids, values, 0, filled[0]);
+                }
+            });
+        }
+        //pop the heap from the back so the most frequent ends up first
+        for (int end = filled[0] - 1; end > 0; end--)
+        {
+            swap(ids, values, 0, end);
+            siftDown(ids, values, 0, end);
+        }
+        int found = filled[0];
+        return new Neighbours(Arrays.copyOf(ids, found), Arrays.copyOf(values, found));
+    }
+
+    private static void siftUp(int[] ids, long[] values, int index)
+    {
+        while (index > 0)
+        {
+            int parent = (index - 1) / 2;
+            if (values[parent] <= values[index])
+            {
+                return;
+            }
+            swap(ids, values, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] ids, long[] values, int index, int size)
+    {
+        while (true)
+        {
+            int smallest = index;
+            int left = index * 2 + 1;
+            int right = left + 1;
+            if (left < size && values[left] < values[smallest])
+            {
+                smallest = left;
+            }
+            if (right < size && values[right] < values[smallest])
+            {
+                smallest = right;
+            }
+            if (smallest == index)
+            {
+                return;
+            }
+            swap(ids, values, smallest, index);
+            index = smallest;
+        }
+    }
+
+    private static void swap(int[] ids, long[] values, int first, int second)
+    {
+        int id = ids[first];
+        ids[first] = ids[second];
+        ids[second] = id;
+        long value = values[first];
+        values[first] = values[second];
+        values[second] = value;
+    }
+}
@@ -0,0 +1,455 @@
+package Nuix.Baseline;
+
+import org.joda.time.DateTime;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streams SimpleCommunication objects out of local mbox files, EML files (or folders of them) and CSV header dumps.
+ * <p>
+ * Files are read through memory-mapped windows and only the From/To/Cc/Bcc/Sender/Date headers are decoded,
+ * message bodies are skipped without being copied. Communications are produced one at a time as the
+ * consumer pulls them from the Stream, so memory use does not grow with the size of the input.
+ * Addresses are interned in the given pool, so repeated parties share one SimpleAddress.
+ * Streams hold the file open, close them (try-with-resources) when done.
+ */
+public class CommunicationImporter {
+
+    private static final ThreadLocal<MailDateParser> DATE_PARSER = ThreadLocal.withInitial(() -> new MailDateParser(true));
+
+    private final AddressPool addressPool;
+
+    /**
+     * Streams communications, interning their addresses in the pool.
+     * @param addressPool where the parsed addresses are interned
+     */
+    public CommunicationImporter(@Nonnull AddressPool addressPool)
+    {
+        this.addressPool = addressPool;
+    }
+
+    /**
+     * Picks the format from the file extension (.mbox/.mbx, .eml, .csv) or streams every .eml in a folder.
+     * @param path the file or folder to read
+     * @return the communications in file order
+     * @throws IOException if the file could not be opened
+     */
+    @Nonnull
+    public Stream<SimpleCommunication> open(@Nonnull Path path) throws IOException
+    {
+        String name = path.getFileName() == null ? "" : path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (Files.isDirectory(path))
+        {
+            return emlFolder(path);
+        }
+        if (name.endsWith(".csv"))
+        {
+            return csv(path);
+        }
+        if (name.endsWith(".eml"))
+        {
+            return eml(path);
+        }
+        return mbox(path);
+    }
+
+    /**
+     * Streams the messages of an mbox file (mboxo, mboxrd and mboxcl all start messages with "From ").
+     * @param mboxFile the mbox file
+     * @return the communications in file order
+     * @throws IOException if the file could not be opened
+     */
+    @Nonnull
+    public Stream<SimpleCommunication> mbox(@Nonnull Path mboxFile) throws IOException
+    {
+        return stream(new MboxSpliterator(new MappedLineReader(mboxFile)));
+    }
+
+    /**
+     * Reads the headers of a single EML (RFC 822) file.
+     * @param emlFile the message file
+     * @return a stream of one communication
+     * @throws IOException if the file could not be opened
+     */
+    @Nonnull
+    public Stream<SimpleCommunication> eml(@Nonnull Path emlFile) throws IOException
+    {
+        return stream(new EmlSpliterator(new MappedLineReader(emlFile)));
+    }
+
+    /**
+     * Streams every .eml file below the folder, the folder is walked lazily as communications are pulled.
+     * @param folder the folder to walk
+     * @return the communications, one per file
+     * @throws IOException if the folder could not be walked
+     */
+    @Nonnull
+    public Stream<SimpleCommunication> emlFolder(@Nonnull Path folder) throws IOException
+    {
+        Stream<Path> files = Files.walk(folder);
+        return files.filter(file -> file.toString().toLowerCase(Locale.ROOT).endsWith(".eml") && Files.isRegularFile(file))
+                    .flatMap(file ->
+                    {
+                        try
+                        {
+                            return eml(file);
+                        }
+                        catch (IOException e)
+                        {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .onClose(files::close);
+    }
+
+    /**
+     * Streams a CSV header dump. The first row names the columns, Date, From, To, Cc, Bcc and Sender are used
+     * (case insensitive, any other columns are ignored). Address columns hold RFC 822 address lists.
+     * @param csvFile the CSV file, UTF-8
+     * @return the communications, one per row
+     * @throws IOException if the file could not be opened
+     */
+    @Nonnull
+    public Stream<SimpleCommunication> csv(@Nonnull Path csvFile) throws IOException
+    {
+        return stream(new CsvSpliterator(new MappedLineReader(csvFile)));
+    }
+
+    /**
+     * Parses an RFC 2822, RFC 850, asctime or ISO-8601 date, tolerating the malformed dates of old mail,
+     * see MailDateParser.
+     * @param value the header value
+     * @return the date, null if it could not be parsed
+     */
+    @Nullable
+    static DateTime parseDate(@Nullable CharSequence value)
+    {
+        return DATE_PARSER.get().parse(value);
+    }
+
+    private static Stream<SimpleCommunication> stream(HeaderSpliterator spliterator)
+    {
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    /**
+     * Common plumbing, a spliterator of unknown size over a line reader.
+     */
+    private abstract class HeaderSpliterator extends Spliterators.AbstractSpliterator<SimpleCommunication> {
+        final MappedLineReader reader;
+        final HeaderBlock headers = new HeaderBlock(addressPool);
+        private final StringBuilder headerName = new StringBuilder(32);
+
+        HeaderSpliterator(MappedLineReader reader)
+        {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super SimpleCommunication> action)
+        {
+            try
+            {
+                SimpleCommunication communication = readNext();
+                if (communication == null)
+                {
+                    return false;
+                }
+                action.accept(communication);
+                return true;
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        abstract SimpleCommunication readNext() throws IOException;
+
+        /**
+         * Reads header lines from the line after the current one up to the blank line ending the header block,
+         * unfolding continuation lines.
+         * @return false if the file ended first
+         */
+        boolean readHeaderBlock() throws IOException
+        {
+            headers.reset();
+            StringBuilder current = null;
+            while (reader.next())
+            {
+                if (reader.length() == 0)
+                {
+                    return true;
+                }
+                if (reader.isContinuation())
+                {
+                    if (current != null)
+                    {
+                        reader.appendUtf8(0, current);
+                    }
+                    continue;
+                }
+                int colon = headerNameEnd();
+                current = colon < 0 ? null : headers.select(headerName.toString());
+                if (current != null)
+                {
+                    if (current.length() > 0)
+                    {
+                        //repeated header, e.g. two To: lines
+                        current.append(", ");
+                    }
+                    reader.appendUtf8(colon + 1, current);
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Copies the header name of the current line into headerName.
+         * @return the index of the colon, -1 if the line is not a header
+         */
+        private int headerNameEnd()
+        {
+            headerName.setLength(0);
+            for (int index = 0; index < reader.length(); index++)
+            {
+                byte b = reader.byteAt(index);
+                if (b == ':')
+                {
+                    return index;
+                }
+                if (b <= ' ' || index > 64)
+                {
+                    return -1;
+                }
+                headerName.append((char) b);
+            }
+            return -1;
+        }
+
+        void close()
+        {
+            try
+            {
+                reader.close();
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Messages start at a "From " separator line, bodies are skipped.
+     * As in mboxo and mboxrd a separator opens the file or follows a blank line, so an unquoted "From " line
+     * within a body does not split the message. Body lines quoted as ">From " (or ">>From " and so on) are never
+     * separators, and need no unquoting as only the header blocks are read.
+     */
+    private final class MboxSpliterator extends HeaderSpliterator {
+        private boolean atSeparator = false;
+        private boolean afterBlankLine = true;
+
+        MboxSpliterator(MappedLineReader reader)
+        {
+            super(reader);
+        }
+
+        @Override
+        SimpleCommunication readNext() throws IOException
+        {
+            if (!atSeparator && !skipToSeparator())
+            {
+                return null;
+            }
+            boolean complete = readHeaderBlock();
+            atSeparator = false;
+            if (complete)
+            {
+                //skip the body up to the next separator without decoding it, the header block ended with a blank line
+                afterBlankLine = true;
+                atSeparator    = skipToSeparator();
+            }
+            return headers.toCommunication();
+        }
+
+        /**
+         * Moves to the next separator line.
+         * @return false if the file ended first
+         */
+        private boolean skipToSeparator() throws IOException
+        {
+            while (reader.next())
+            {
+                boolean separator = afterBlankLine && reader.startsWith("From ");
+                afterBlankLine = reader.length() == 0;
+                if (separator)
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A single message, only the header block is read.
+     */
+    private final class EmlSpliterator extends HeaderSpliterator {
+        private boolean done = false;
+
+        EmlSpliterator(MappedLineReader reader)
+        {
+            super(reader);
+        }
+
+        @Override
+        SimpleCommunication readNext() throws IOException
+        {
+            if (done)
+            {
+                return null;
+            }
+            done = true;
+            readHeaderBlock();
+            return headers.toCommunication();
+        }
+    }
+
+    /**
+     * One communication per row, quoted fields may contain commas, escaped quotes and line breaks.
+     */
+    private final class CsvSpliterator extends HeaderSpliterator {
+        private final ArrayList<StringBuilder> fields = new ArrayList<>();
+        private final StringBuilder line = new StringBuilder(256);
+        private int fieldCount = 0;
+        private StringBuilder[] columns = null;
+
+        CsvSpliterator(MappedLineReader reader)
+        {
+            super(reader);
+        }
+
+        @Override
+        SimpleCommunication readNext() throws IOException
+        {
+            if (columns == null)
+            {
+                if (!readRecord())
+                {
+                    return null;
+                }
+                columns = new StringBuilder[fieldCount];
+                for (int index = 0; index < fieldCount; index++)
+                {
+                    columns[index] = headers.select(fields.get(index).toString().trim());
+                }
+            }
+            while (readRecord())
+            {
+                if (fieldCount == 1 && fields.get(0).length() == 0)
+                {
+                    continue;
+                }
+                headers.reset();
+                for (int index = 0; index < Math.min(columns.length, fieldCount); index++)
+                {
+                    if (columns[index] != null)
+                    {
+                        columns[index].append(fields.get(index));
+                    }
+                }
+                return headers.toCommunication();
+            }
+            return null;
+        }
+
+        /**
+         * Reads the next record into fields, reusing the builders.
+         * @return false at the end of the file
+         */
+        private boolean readRecord() throws IOException
+        {
+            if (!reader.next())
+            {
+                return false;
+            }
+            fieldCount = 0;
+            StringBuilder field = field(fieldCount++);
+            boolean inQuotes = false;
+            while (true)
+            {
+                line.setLength(0);
+                reader.appendUtf8(0, line);
+                for (int index = 0; index < line.length(); index++)
+                {
+                    char c = line.charAt(index);
+                    if (inQuotes)
+                    {
+                        if (c == '"')
+                        {
+                            if (index + 1 < line.length() && line.charAt(index + 1) == '"')
+                            {
+                                field.append('"');
+                                index++;
+                            }
+                            else
+                            {
+                                inQuotes = false;
+                            }
+                        }
+                        else
+                        {
+                            field.append(c);
+                        }
+                    }
+                    else if (c == '"')
+                    {
+                        inQuotes = true;
+                    }
+                    else if (c == ',')
+                    {
+                        field = field(fieldCount++);
+                    }
+                    else
+                    {
+                        field.append(c);
+                    }
+                }
+                if (!inQuotes || !reader.next())
+                {
+                    break;
+                }
+                //the quoted field continues on the next line
+                field.append(' ');
+            }
+            return true;
+        }
+
+        private StringBuilder field(int index)
+        {
+            if (index < fields.size())
+            {
+                StringBuilder field = fields.get(index);
+                field.setLength(0);
+                return field;
+            }
+            StringBuilder field = new StringBuilder(64);
+            fields.add(field);
+            return field;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package Nuix.Baseline;
+
+import nuix.Address;
+import nuix.Communication;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A columnar store for large numbers of communications.
+ * <p>
+ * Instead of one object graph per communication, every communication is a row across a few primitive arrays:
+ * the date as epoch milliseconds, and the start of each role's addresses in one shared array of address ids.
+ * Addresses are interned through an AddressPool and numbered in the order they are first seen, so a
+ * communication with a sender and three recipients costs a long, five ints and four ints rather than
+ * a DateTime, five lists and their backing arrays.
+ * <p>
+ * Rows are appended and never changed. Dates keep the instant but not the original offset, communications
+ * read back with {@link #get(int)} have their dates in UTC. Not thread safe, use one store per writer
+ * or synchronize externally.
+ */
+public class CommunicationStore {
+
+    /**
+     * Stored as the date of communications that have none.
+     */
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    private static final int ROLES = SimpleCommunication.Role.values().length;
+
+    private final AddressPool addressPool;
+    private final Map<SimpleAddress, Integer> idsByAddress = new IdentityHashMap<>();
+    private final List<SimpleAddress> addressesById = new ArrayList<>();
+
+    private long[] dates;
+    private int[] roleStarts;
+    private int[] addressIds;
+    private int size;
+    private int addressIdCount;
+
+    /**
+     * An empty store with its own address pool.
+     */
+    public CommunicationStore()
+    {
+        this(new AddressPool(), 1024);
+    }
+
+    /**
+     * An empty store.
+     * @param addressPool the pool addresses are interned in, may be shared with an importer
+     * @param expectedCommunications the number of communications expected, avoids growing the arrays while filling
+     */
+    public CommunicationStore(@Nonnull AddressPool addressPool, int expectedCommunications)
+    {
+        int capacity     = Math.max(expectedCommunications, 16);
+        this.addressPool = addressPool;
+        this.dates       = new long[capacity];
+        this.roleStarts  = new int[capacity * ROLES + 1];
+        this.addressIds  = new int[capacity * 4];
+    }
+
+    /**
+     * Appends a communication.
+     * @param communication the communication to store
+     * @return the index of the communication in the store
+     */
+    public int add(@Nonnull Communication communication)
+    {
+        ensureRowCapacity(size + 1);
+        DateTime date = communication.getDateTime();
+        dates[size] = date == null ? NO_DATE : date.getMillis();
+        int base = size * ROLES;
+        addRole(base, SimpleCommunication.Role.FROM, communication.getFrom());
+        addRole(base, SimpleCommunication.Role.TO, communication.getTo());
+        addRole(base, SimpleCommunication.Role.CC, communication.getCc());
+        addRole(base, SimpleCommunication.Role.BCC, communication.getBcc());
+        addRole(base, SimpleCommunication.Role.DELEGATE, communication.getDelegates());
+        roleStarts[base + ROLES] = addressIdCount;
+        return size++;
+    }
+
+    /**
+     * The number of communications stored.
+     * @return the communication count
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * The date of a communication.
+     * @param index the communication index
+     * @return the date in epoch milliseconds, NO_DATE if it has none
+     */
+    public long getDateMillis(int index)
+    {
+        checkIndex(index);
+        return dates[index];
+    }
+
+    /**
+     * The number of addresses playing a role in a communication.
+     * @param index the communication index
+     * @param role the role
+     * @return the address count
+     */
+    public int getAddressCount(int index, @Nonnull SimpleCommunication.Role role)
+    {
+        checkIndex(index);
+        int slot = index * ROLES + role.ordinal();
+        return roleStarts[slot + 1] - roleStarts[slot];
+    }
+
+    /**
+     * The id of an address playing a role in a communication.
+     * @param index the communication index
+     * @param role the role
+     * @param position the position of the address within the role
+     * @return the address id, see {@link #getAddress(int)}
+     */
+    public int getAddressId(int index, @Nonnull SimpleCommunication.Role role, int position)
+    {
+        int count = getAddressCount(index, role);
+        if (position < 0 || position >= count)
+        {
+            throw new IndexOutOfBoundsException("Position: " + position + ", Count: " + count);
+        }
+        return addressIds[roleStarts[index * ROLES + role.ordinal()] + position];
+    }
+
+    /**
+     * The address with an id.
+     * @param addressId the id, from 0 to getDistinctAddressCount() - 1
+     * @return the pooled address
+     */
+    @Nonnull
+    public SimpleAddress getAddress(int addressId)
+    {
+        return addressesById.get(addressId);
+    }
+
+    /**
+     * The id of an address, if it appears in any stored communication.
+     * @param address the address, matched by personal part, address and type
+     * @return the id, -1 if the address is not in the store
+     */
+    public int getAddressId(@Nonnull Address address)
+    {
+        SimpleAddress pooled = addressPool.find(address);
+        Integer id = pooled == null ? null : idsByAddress.get(pooled);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * The number of distinct addresses in the store, ids run from 0 up to this count.
+     * @return the distinct address count
+     */
+    public int getDistinctAddressCount()
+    {
+        return addressesById.size();
+    }
+
+    /**
+     * Materializes a stored communication.
+     * @param index the communication index
+     * @return the communication, with its date in UTC
+     */
+    @Nonnull
+    public SimpleCommunication get(int index)
+    {
+        checkIndex(index);
+        SimpleCommunication.Builder builder = SimpleCommunication.builder()
+                .date(dates[index] == NO_DATE ? null : new DateTime(dates[index], DateTimeZone.UTC));
+        for (SimpleCommunication.Role role : SimpleCommunication.Role.values())
+        {
+            int slot = index * ROLES + role.ordinal();
+            for (int position = roleStarts[slot]; position < roleStarts[slot + 1]; position++)
+            {
+                builder.add(role, addressesById.get(addressIds[position]));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Releases the spare capacity of the arrays once the store has been filled.
+     */
+    public void trimToSize()
+    {
+        dates      = Arrays.copyOf(dates, Math.max(size, 1));
+        roleStarts = Arrays.copyOf(roleStarts, dates.length * ROLES + 1);
+        addressIds = Arrays.copyOf(addressIds, Math.max(addressIdCount, 1));
+    }
+
+    /**
+     * The approximate heap used by the columns, excluding the addresses themselves.
+     * @return the size in bytes
+     */
+    public long getColumnBytes()
+    {
+        return (long) dates.length * Long.BYTES + (long) roleStarts.length * Integer.BYTES + (long) addressIds.length * Integer.BYTES;
+    }
+
+    private void addRole(int base, SimpleCommunication.Role role, @Nullable List<Address> addresses)
+    {
+        roleStarts[base + role.ordinal()] = addressIdCount;
+        if (addresses == null)
+        {
+            return;
+        }
+        ensureAddressCapacity(addressIdCount + addresses.size());
+        for (int index = 0; index < addresses.size(); index++)
+        {
+            addressIds[addressIdCount++] = idOf(addresses.get(index));
+        }
+    }
+
+    private int idOf(Address address)
+    {
+        //pooled instances are canonical, so identity is enough to tell them apart
+        SimpleAddress pooled = addressPool.intern(address);
+        Integer id = idsByAddress.get(pooled);
+        if (id == null)
+        {
+            id = addressesById.size();
+            addressesById.add(pooled);
+            idsByAddress.put(pooled, id);
+        }
+        return id;
+    }
+
+    private void ensureRowCapacity(int rows)
+    {
+        if (rows > dates.length)
+        {
+            int capacity = Math.max(rows, dates.length + (dates.length >> 1));
+            dates      = Arrays.copyOf(dates, capacity);
+            roleStarts = Arrays.copyOf(roleStarts, capacity * ROLES + 1);
+        }
+    }
+
+    private void ensureAddressCapacity(int ids)
+    {
+        if (ids > addressIds.length)
+        {
+            addressIds = Arrays.copyOf(addressIds, Math.max(ids, addressIds.length + (addressIds.length >> 1)));
+        }
+    }
+
+    private void checkIndex(int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
@@ -0,0 +1,508 @@
+package Nuix.Baseline;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import nuix.engine.Engine;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Keeps licenced engines resident and leases them to submitted jobs, so container start up and licence
+ * acquisition are paid once per engine instead of once per job.
+ * Jobs wait for a lease until an engine is free; the pool never holds more than poolSize engines (and licences).
+ * Jobs run on OrchestrationThreads, so on Java 21 a job waiting for an engine parks a virtual thread.
+ * While paused, e.g. because a licence was lost, jobs wait for an engine instead of failing. A job that was
+ * running when its engine lost the licence is run again once the pool resumes, up to LICENCE_LOSS_RETRIES times.
+ * An engine being licenced again keeps its lease and is only leased again once the monitor has licenced it.
+ */
+class EnginePool implements AutoCloseable {
+
+    /**
+     * Generic logger definition, will use the class name as the prefix in the log.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(EnginePool.class);
+
+    /**
+     * How many times a job is run again after its engine lost the licence while running it.
+     */
+    static final int LICENCE_LOSS_RETRIES = 3;
+
+    private final Supplier<Engine> engineFactory;
+    private final int poolSize;
+    private final long idleEvictionMillis;
+    private final Predicate<Engine> retire;
+    private final ExecutorService jobRunner;
+    private final ScheduledExecutorService evictor;
+    private final Semaphore leases;
+    private final LinkedBlockingDeque<PooledEngine> idleEngines = new LinkedBlockingDeque<>();
+    private final Set<PooledEngine> recoveringEngines = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger openEngines = new AtomicInteger();
+    private final Object pauseLock = new Object();
+    private volatile LicenceMonitor licenceMonitor;
+    private volatile int minimumIdle = 0;
+    private volatile boolean paused = false;
+    private volatile boolean closed = false;
+
+    /**
+     * An engine held by the pool and when it was last handed back.
+     */
+    private static class PooledEngine {
+        final Engine engine;
+        volatile long lastReleased;
+
+        PooledEngine(Engine engine)
+        {
+            this.engine       = engine;
+            this.lastReleased = System.nanoTime();
+        }
+    }
+
+    /**
+     * Keeps licenced engines resident and leases them to submitted jobs.
+     * @param engineFactory creates a licenced engine for an empty slot, typically App's licence acquisition
+     * @param poolSize the maximum number of engines (and therefore licences) held at once
+     * @param idleEvictionMillis how long an engine above the warm up count may be idle before it is closed
+     */
+    EnginePool(@Nonnull Supplier<Engine> engineFactory, int poolSize, long idleEvictionMillis)
+    {
+        this(engineFactory, poolSize, idleEvictionMillis, engine -> false);
+    }
+
+    /**
+     * Keeps licenced engines resident and leases them to submitted jobs, replacing engines that no longer fit.
+     * @param engineFactory creates a licenced engine for an empty slot, typically App's licence acquisition
+     * @param poolSize the maximum number of engines (and therefore licences) held at once
+     * @param idleEvictionMillis how long an engine above the warm up count may be idle before it is closed
+     * @param retire tested when an engine is handed back, true closes it so the next job gets a freshly
+     *               licenced engine (e.g. when the worker count has been adapted)
+     */
+    EnginePool(@Nonnull Supplier<Engine> engineFactory, int poolSize, long idleEvictionMillis,
+               @Nonnull Predicate<Engine> retire)
+    {
+        if (poolSize < 1)
+        {
+            throw new IllegalArgumentException("Engine pool size must be at least 1, was " + poolSize);
+        }
+        this.engineFactory      = engineFactory;
+        this.poolSize           = poolSize;
+        this.idleEvictionMillis = idleEvictionMillis;
+        this.retire             = retire;
+        //one lease per engine bounds the engines, whether jobs queue for a thread or (virtual threads) for a lease
+        this.leases    = new Semaphore(poolSize, true);
+        this.jobRunner = OrchestrationThreads.newExecutor("engine-pool-job", poolSize);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("engine-pool-evictor").setDaemon(true).build());
+        long checkEvery = Math.max(1000, idleEvictionMillis / 2);
+        this.evictor.scheduleWithFixedDelay(this::evictIdleEngines, checkEvery, checkEvery, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Has a monitor watch the licence of every engine the pool licences from now on, call it before warmUp.
+     * An engine that loses its licence is then kept for the monitor to licence again instead of being closed.
+     * @param monitor the monitor, typically with pause() and resume() as its callbacks
+     */
+    void monitorLicences(@Nonnull LicenceMonitor monitor)
+    {
+        licenceMonitor = monitor;
+    }
+
+    /**
+     * Holds back queued jobs, they wait for an engine until resume() or close() is called.
+     * Jobs that are already running carry on, those that fail because their licence was lost wait to run again.
+     */
+    void pause()
+    {
+        synchronized (pauseLock)
+        {
+            paused = true;
+        }
+        LOGGER.warn("Engine pool paused, queued jobs wait until the licences are restored");
+    }
+
+    /**
+     * Lets queued jobs lease engines again.
+     */
+    void resume()
+    {
+        synchronized (pauseLock)
+        {
+            paused = false;
+            pauseLock.notifyAll();
+        }
+        LOGGER.info("Engine pool resumed");
+    }
+
+    /**
+     * Licences engines up front, these are kept even when idle.
+     * @param count the number of engines to licence, capped at the pool size
+     */
+    void warmUp(int count)
+    {
+        int target = Math.min(count, poolSize);
+        minimumIdle = target;
+        while (openEngines.get() < target)
+        {
+            PooledEngine pooledEngine = newEngine();
+            pooledEngine.lastReleased = System.nanoTime();
+            idleEngines.offerLast(pooledEngine);
+        }
+        LOGGER.info("Engine pool warmed up with {} engines", openEngines.get());
+    }
+
+    /**
+     * Queues a job that needs a licenced engine.
+     * @param job the work to do with the leased engine, the engine must not be closed by the job.
+     *            Runs again from the start if the engine loses its licence while running it
+     * @return completes when the job has run, or exceptionally if it failed or no engine could be licenced for it
+     */
+    CompletableFuture<Void> submit(@Nonnull Consumer<Engine> job)
+    {
+        return submitForResult(engine ->
+        {
+            job.accept(engine);
+            return null;
+        });
+    }
+
+    /**
+     * Queues a job that needs a licenced engine and produces a result.
+     * @param job the work to do with the leased engine, the engine must not be closed by the job.
+     *            Runs again from the start if the engine loses its licence while running it
+     * @param <T> the type of the result
+     * @return completes with the result of the job, or exceptionally if it failed or no engine could be licenced for it
+     */
+    <T> CompletableFuture<T> submitForResult(@Nonnull Function<Engine, T> job)
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("Engine pool has been closed");
+        }
+        return CompletableFuture.supplyAsync(() -> run(job), jobRunner);
+    }
+
+    /**
+     * The number of engines (and licences) currently held.
+     * @return open engines, leased or idle
+     */
+    int getOpenEngines()
+    {
+        return openEngines.get();
+    }
+
+    /**
+     * Stops accepting jobs, waits for queued jobs to complete and closes every engine, releasing their licences.
+     */
+    @Override
+    public void close()
+    {
+        synchronized (this)
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed = true;
+        }
+        synchronized (pauseLock)
+        {
+            pauseLock.notifyAll();
+        }
+        evictor.shutdownNow();
+        jobRunner.shutdown();
+        try
+        {
+            while (!jobRunner.awaitTermination(30, TimeUnit.SECONDS))
+            {
+                LOGGER.info("Waiting on running jobs before releasing the pooled engines...");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            jobRunner.shutdownNow();
+        }
+        for (PooledEngine recovering : new ArrayList<>(recoveringEngines))
+        {
+            if (recoveringEngines.remove(recovering))
+            {
+                closeEngine(recovering);
+                leases.release();
+            }
+        }
+        PooledEngine pooledEngine;
+        while ((pooledEngine = idleEngines.pollFirst()) != null)
+        {
+            closeEngine(pooledEngine);
+        }
+        LOGGER.info("Engine pool closed");
+    }
+
+    /**
+     * Runs a job on a leased engine. When the engine lost its licence and is being recovered the job is
+     * leased an engine again, which waits for the pool to resume, instead of failing.
+     * @param job the work to do with the leased engine
+     * @param <T> the type of the result
+     * @return the result of the job
+     */
+    private <T> T run(Function<Engine, T> job)
+    {
+        for (int retry = 0; ; retry++)
+        {
+            PooledEngine pooledEngine = lease();
+            T result;
+            try
+            {
+                result = job.apply(pooledEngine.engine);
+            }
+            catch (RuntimeException | Error e)
+            {
+                if (!release(pooledEngine, false) || retry >= LICENCE_LOSS_RETRIES)
+                {
+                    throw e;
+                }
+                LOGGER.warn("Job failed after its engine lost the licence, running it again once the pool resumes", e);
+                continue;
+            }
+            release(pooledEngine, true);
+            return result;
+        }
+    }
+
+    /**
+     * Takes an idle engine, or licences a new one when none is idle. Waits while the pool is paused.
+     * @return the engine to use
+     */
+    private PooledEngine lease()
+    {
+        awaitResumed();
+        try
+        {
+            leases.acquire();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for an engine", e);
+        }
+        try
+        {
+            //most recently used first, so the cold engines at the tail are the ones that age out
+            PooledEngine pooledEngine = idleEngines.pollFirst();
+            return pooledEngine != null ? pooledEngine : newEngine();
+        }
+        catch (RuntimeException | Error e)
+        {
+            leases.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Hands an engine back to the pool. Jobs still queued when the pool is closed keep reusing the
+     * idle engines, close() releases them once the queue has drained.
+     * @param pooledEngine the leased engine
+     * @param healthy false when the job failed, the engine is kept only if it still holds a licence
+     *                or the licence monitor is re-acquiring one for it
+     * @return true if the engine lost its licence and the licence monitor is re-acquiring one for it, the engine
+     *         keeps its lease until recovered() hands it back
+     */
+    private boolean release(PooledEngine pooledEngine, boolean healthy)
+    {
+        boolean recovering = false;
+        try
+        {
+            recovering = releaseEngine(pooledEngine, healthy);
+            return recovering;
+        }
+        finally
+        {
+            if (!recovering)
+            {
+                leases.release();
+            }
+        }
+    }
+
+    private boolean releaseEngine(PooledEngine pooledEngine, boolean healthy)
+    {
+        if (!healthy && !stillLicenced(pooledEngine.engine))
+        {
+            //don't wait for the monitor's next check, pause now so the queued jobs don't fail on this engine too
+            LicenceMonitor monitor = licenceMonitor;
+            recoveringEngines.add(pooledEngine);
+            if (closed || monitor == null || !monitor.recover(pooledEngine.engine, () -> recovered(pooledEngine)))
+            {
+                recoveringEngines.remove(pooledEngine);
+                closeEngine(pooledEngine);
+                return false;
+            }
+            return true;
+        }
+        if (shouldRetire(pooledEngine.engine))
+        {
+            LOGGER.info("Retiring a pooled engine, the next job will licence a new one");
+            closeEngine(pooledEngine);
+            return false;
+        }
+        pooledEngine.lastReleased = System.nanoTime();
+        idleEngines.offerFirst(pooledEngine);
+        return false;
+    }
+
+    /**
+     * Hands back an engine the monitor has finished recovering, idle if it was licenced again, else closed,
+     * and frees its lease for the jobs waiting on one.
+     */
+    private void recovered(PooledEngine pooledEngine)
+    {
+        if (!recoveringEngines.remove(pooledEngine))
+        {
+            return;
+        }
+        try
+        {
+            if (stillLicenced(pooledEngine.engine))
+            {
+                pooledEngine.lastReleased = System.nanoTime();
+                idleEngines.offerFirst(pooledEngine);
+            }
+            else
+            {
+                closeEngine(pooledEngine);
+            }
+        }
+        finally
+        {
+            leases.release();
+        }
+    }
+
+    private PooledEngine newEngine()
+    {
+        PooledEngine pooledEngine = new PooledEngine(engineFactory.get());
+        LicenceMonitor monitor = licenceMonitor;
+        if (monitor != null)
+        {
+            monitor.watch(pooledEngine.engine);
+        }
+        LOGGER.info("Engine pool licenced engine {} of {}", openEngines.incrementAndGet(), poolSize);
+        return pooledEngine;
+    }
+
+    private void closeEngine(PooledEngine pooledEngine)
+    {
+        LicenceMonitor monitor = licenceMonitor;
+        if (monitor != null)
+        {
+            monitor.unwatch(pooledEngine.engine);
+        }
+        try
+        {
+            pooledEngine.engine.close();
+        }
+        catch (Exception e)
+        {
+            LOGGER.warn("Errors closing a pooled engine", e);
+        }
+        finally
+        {
+            openEngines.decrementAndGet();
+        }
+    }
+
+    /**
+     * Closes engines idle for longer than the eviction period, keeping the warm up count.
+     */
+    private void evictIdleEngines()
+    {
+        long evictBefore = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleEvictionMillis);
+        List<PooledEngine> evicted = new ArrayList<>();
+        Iterator<PooledEngine> oldestFirst = idleEngines.descendingIterator();
+        while (oldestFirst.hasNext() && idleEngines.size() - evicted.size() > minimumIdle)
+        {
+            PooledEngine pooledEngine = oldestFirst.next();
+            if (pooledEngine.lastReleased - evictBefore > 0)
+            {
+                break;
+            }
+            evicted.add(pooledEngine);
+        }
+        for (PooledEngine pooledEngine : evicted)
+        {
+            //only close it if a job has not leased it in the meantime
+            if (idleEngines.remove(pooledEngine))
+            {
+                LOGGER.info("Releasing an idle pooled engine");
+                closeEngine(pooledEngine);
+            }
+        }
+    }
+
+    private void awaitResumed()
+    {
+        synchronized (pauseLock)
+        {
+            boolean logged = false;
+            while (paused && !closed)
+            {
+                if (!logged)
+                {
+                    LOGGER.info("Job waiting for the engine pool to resume");
+                    logged = true;
+                }
+                try
+                {
+                    pauseLock.wait();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted waiting for the engine pool to resume", e);
+                }
+            }
+        }
+    }
+
+    private boolean shouldRetire(Engine engine)
+    {
+        try
+        {
+            return retire.test(engine);
+        }
+        catch (Exception e)
+        {
+            LOGGER.warn("Errors checking whether to retire a pooled engine", e);
+            return false;
+        }
+    }
+
+    private static boolean stillLicenced(Engine engine)
+    {
+        try
+        {
+            return engine.getLicence() != null;
+        }
+        catch (Exception e)
+        {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package Nuix.Baseline;
+
+import nuix.Address;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The From/To/Cc/Bcc/Sender/Date headers a communication is built from, reused for every message.
+ * The buffers, address and date parsers and builder are reused between messages, so keep one per thread.
+ */
+final class HeaderBlock {
+
+    final StringBuilder from = new StringBuilder(128);
+    final StringBuilder to = new StringBuilder(256);
+    final StringBuilder cc = new StringBuilder(256);
+    final StringBuilder bcc = new StringBuilder(128);
+    final StringBuilder sender = new StringBuilder(128);
+    final StringBuilder date = new StringBuilder(64);
+    private final AddressListParser parser;
+    private final SimpleCommunication.Builder builder = SimpleCommunication.builder();
+    private final List<Address> parsed = new ArrayList<>();
+    private final StringBuilder headerName = new StringBuilder(32);
+    private final MailDateParser dateParser = new MailDateParser(true);
+
+    /**
+     * Empty headers.
+     * @param addressPool where the parsed addresses are interned
+     */
+    HeaderBlock(@Nonnull AddressPool addressPool)
+    {
+        this.parser = new AddressListParser(addressPool);
+    }
+
+    void reset()
+    {
+        from.setLength(0);
+        to.setLength(0);
+        cc.setLength(0);
+        bcc.setLength(0);
+        sender.setLength(0);
+        date.setLength(0);
+    }
+
+    /**
+     * Whether no address header has a value.
+     */
+    boolean hasNoAddresses()
+    {
+        return from.length() == 0 && to.length() == 0 && cc.length() == 0 && bcc.length() == 0 && sender.length() == 0;
+    }
+
+    /**
+     * The builder for a header name, null for headers that are not needed.
+     */
+    @Nullable
+    StringBuilder select(String name)
+    {
+        switch (name.toLowerCase(Locale.ROOT))
+        {
+            case "from":
+                return from;
+            case "to":
+                return to;
+            case "cc":
+                return cc;
+            case "bcc":
+                return bcc;
+            case "sender":
+                return sender;
+            case "date":
+                return date;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Adds the value of a header, a repeated header is appended to the first as another list entry.
+     * @param name the header name, headers that are not needed are ignored
+     * @param value the header value
+     */
+    void put(@Nonnull String name, @Nonnull CharSequence value)
+    {
+        StringBuilder header = select(name);
+        if (header != null)
+        {
+            if (header.length() > 0)
+            {
+                header.append(", ");
+            }
+            header.append(value);
+        }
+    }
+
+    /**
+     * Reads a header block from the start of some text: "Name: value" lines up to the first blank line,
+     * continuation lines unfolded. Stops at the first line that is not a header, so text that does not
+     * start with headers adds nothing.
+     * @param text the text, e.g. a raw headers property or the text of a message/rfc822 item
+     * @param limit the most characters to look at
+     * @return the number of header lines read
+     */
+    int readHeaders(@Nonnull CharSequence text, int limit)
+    {
+        int end = Math.min(text.length(), limit);
+        StringBuilder current = null;
+        int headers = 0;
+        int index = 0;
+        while (index < end)
+        {
+            int lineEnd = index;
+            while (lineEnd < end && text.charAt(lineEnd) != '\n' && text.charAt(lineEnd) != '\r')
+            {
+                lineEnd++;
+            }
+            if (lineEnd == index)
+            {
+                break;
+            }
+            char first = text.charAt(index);
+            if (first == ' ' || first == '\t')
+            {
+                if (current != null)
+                {
+                    current.append(text, index, lineEnd);
+                }
+            }
+            else
+            {
+                int colon = headerNameEnd(text, index, lineEnd);
+                if (colon < 0)
+                {
+                    break;
+                }
+                headers++;
+                current = select(headerName.toString());
+                if (current != null)
+                {
+                    if (current.length() > 0)
+                    {
+                        //repeated header, e.g. two To: lines
+                        current.append(", ");
+                    }
+                    current.append(text, colon + 1, lineEnd);
+                }
+            }
+            index = lineEnd;
+            if (index < end && text.charAt(index) == '\r')
+            {
+                index++;
+            }
+            if (index < end && text.charAt(index) == '\n')
+            {
+                index++;
+            }
+        }
+        return headers;
+    }
+
+    SimpleCommunication toCommunication()
+    {
+        builder.clear().date(date.length() == 0 ? null : dateParser.parse(date));
+        addresses(SimpleCommunication.Role.FROM, from);
+        addresses(SimpleCommunication.Role.TO, to);
+        addresses(SimpleCommunication.Role.CC, cc);
+        addresses(SimpleCommunication.Role.BCC, bcc);
+        addresses(SimpleCommunication.Role.DELEGATE, sender);
+        return builder.build();
+    }
+
+    private void addresses(SimpleCommunication.Role role, StringBuilder header)
+    {
+        if (header.length() > 0)
+        {
+            parsed.clear();
+            parser.parse(header, SimpleAddress.CommunicationType.COMMUNICATION_MAIL, parsed);
+            builder.addAll(role, parsed);
+        }
+    }
+
+    /**
+     * Copies the header name of a line into headerName.
+     * @return the index of the colon, -1 if the line is not a header
+     */
+    private int headerNameEnd(CharSequence text, int start, int end)
+    {
+        headerName.setLength(0);
+        for (int index = start; index < end; index++)
+        {
+            char c = text.charAt(index);
+            if (c == ':')
+            {
+                return headerName.length() == 0 ? -1 : index;
+            }
+            if (c <= ' ' || index - start > 64)
+            {
+                return -1;
+            }
+            headerName.append(c);
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,375 @@
+package Nuix.Baseline;
+
+import nuix.Address;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Resolves address occurrences to participants, the people behind the many variants an address appears under.
+ * <p>
+ * Addresses are reduced to their AddressNormalizer canonical form, so casing, plus-tags and mailto:/smtp:
+ * prefixes fall away. With mergeByName, an address is also joined to every other address seen with the
+ * same canonical display name (of two words or more), so "Jane Doe" at work and at home is one participant.
+ * Joined clusters are kept in a union-find, each participant is identified by its first seen address;
+ * given the same occurrences in the same order the IDs are the same on every run. When two clusters join,
+ * the later one takes the earlier one's ID and its own ID is retired: currentParticipant maps an ID handed out
+ * before the join to the participant it is now part of.
+ * <p>
+ * Built for hundreds of millions of occurrences: everything per address lives in direct memory, under
+ * 100 bytes per distinct address or name. Canonical forms are kept once in an append only arena, found
+ * through an open addressing index of 64 bit hashes pointing straight at them. Only a slot with the same
+ * hash compares the keys in full, so hash collisions never merge two addresses. Thread safe, calls are serialized.
+ */
+final class IdentityResolver implements AutoCloseable {
+
+    private static final byte KIND_ADDRESS = 'a';
+    private static final byte KIND_NAME = 'n';
+    private static final int INDEX_ENTRY = 16;
+    private static final int NODE_ENTRY = 16;
+    private static final int FLAG_ADDRESS = 1;
+    private static final int FLAG_CLUSTER_HAS_ADDRESS = 2;
+
+    private final boolean mergeByName;
+    private final OffHeapBuffer nodes;
+    private final OffHeapBuffer arena;
+    private OffHeapBuffer index;
+    private long indexMask;
+    private long arenaEnd = 0;
+    private int nodeCount = 0;
+    private int addressCount = 0;
+    private int participantCount = 0;
+
+    /**
+     * An empty resolver.
+     * @param expectedAddresses the distinct addresses (and names) expected, sizes the index up front
+     * @param mergeByName whether addresses seen with the same display name are one participant
+     */
+    IdentityResolver(long expectedAddresses, boolean mergeByName)
+    {
+        long expected = Math.max(1024, expectedAddresses);
+        this.mergeByName = mergeByName;
+        this.nodes       = new OffHeapBuffer(expected * NODE_ENTRY);
+        this.arena       = new OffHeapBuffer(Math.max(1 << 20, expected * 32));
+        long capacity = Long.highestOneBit(expected * 2 - 1) << 1;
+        this.index       = new OffHeapBuffer(capacity * INDEX_ENTRY);
+        this.indexMask   = capacity - 1;
+    }
+
+    /**
+     * Records an occurrence of an address.
+     * @param address the address as found
+     * @return the participant ID, -1 if the address is blank
+     */
+    int resolve(@Nonnull Address address)
+    {
+        return resolve(address.getPersonal(), address.getAddress());
+    }
+
+    /**
+     * Records an occurrence of an address and the display name it was seen with.
+     * @param personal the display name, may be null
+     * @param address the address as found
+     * @return the participant ID, -1 if the address is blank
+     */
+    synchronized int resolve(@Nullable String personal, @Nonnull String address)
+    {
+        String canonical = AddressNormalizer.canonicalAddress(address);
+        if (canonical.isEmpty())
+        {
+            return -1;
+        }
+        int addressNode = node(KIND_ADDRESS, canonical, true);
+        if (mergeByName)
+        {
+            String name = AddressNormalizer.canonicalName(personal);
+            if (name != null)
+            {
+                union(addressNode, node(KIND_NAME, name, true));
+            }
+        }
+        return find(addressNode);
+    }
+
+    /**
+     * The participant of an address seen before, without recording an occurrence.
+     * @param address the address as found
+     * @return the participant ID, -1 if the address has not been seen
+     */
+    synchronized int participantOf(@Nonnull String address)
+    {
+        String canonical = AddressNormalizer.canonicalAddress(address);
+        if (canonical.isEmpty())
+        {
+            return -1;
+        }
+        int node = node(KIND_ADDRESS, canonical, false);
+        return node < 0 ? -1 : find(node);
+    }
+
+    /**
+     * The participant an ID now stands for, which differs from the ID once its cluster was joined to an older one.
+     * @param participantId an ID returned by resolve or participantOf
+     * @return the current participant ID
+     */
+    synchronized int currentParticipant(int participantId)
+    {
+        if (participantId < 0 || participantId >= nodeCount)
+        {
+            throw new IllegalArgumentException("Unknown participant " + participantId);
+        }
+        return find(participantId);
+    }
+
+    /**
+     * The canonical address a participant ID was taken from, its first seen address.
+     * @param participantId an ID returned by resolve
+     * @return the canonical address
+     */
+    @Nonnull
+    synchronized String getCanonicalAddress(int participantId)
+    {
+        if (participantId < 0 || participantId >= nodeCount)
+        {
+            throw new IllegalArgumentException("Unknown participant " + participantId);
+        }
+        byte[] key = key(participantId);
+        return new String(key, 1, key.length - 1, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The number of distinct canonical addresses seen.
+     */
+    synchronized int getAddressCount()
+    {
+        return addressCount;
+    }
+
+    /**
+     * The number of participants the addresses resolve to.
+     */
+    synchronized int getParticipantCount()
+    {
+        return participantCount;
+    }
+
+    /**
+     * Drops the direct memory, the resolver can't be used afterwards.
+     */
+    @Override
+    public synchronized void close()
+    {
+        nodes.release();
+        arena.release();
+        index.release();
+    }
+
+    /**
+     * Finds the node of a key, adding it if asked to.
+     * @return the node, -1 if absent and not added
+     */
+    private int node(byte kind, String canonical, boolean add)
+    {
+        byte[] utf8 = canonical.getBytes(StandardCharsets.UTF_8);
+        byte[] key = new byte[utf8.length + 1];
+        key[0] = kind;
+        System.arraycopy(utf8, 0, key, 1, utf8.length);
+        long hash = hash(key);
+        long slot = hash & indexMask;
+        while (true)
+        {
+            long stored = index.getLong(slot * INDEX_ENTRY);
+            if (stored == 0)
+            {
+                break;
+            }
+            if (stored == hash)
+            {
+                long record = index.getLong(slot * INDEX_ENTRY + 8);
+                if (keyEquals(record, key))
+                {
+                    return arena.getInt(record + 4);
+                }
+            }
+            slot = (slot + 1) & indexMask;
+        }
+        if (!add)
+        {
+            return -1;
+        }
+        int node = addNode(kind, key);
+        index.putLong(slot * INDEX_ENTRY, hash);
+        index.putLong(slot * INDEX_ENTRY + 8, nodeRecord(node));
+        if ((long) nodeCount * 10 > (indexMask + 1) * 7)
+        {
+            growIndex();
+        }
+        return node;
+    }
+
+    private int addNode(byte kind, byte[] key)
+    {
+        if (nodeCount == Integer.MAX_VALUE)
+        {
+            throw new IllegalStateException("Identity resolver is full");
+        }
+        int record = 8 + key.length;
+        if (record > arena.segmentSize())
+        {
+            throw new IllegalArgumentException("Address too long to resolve: " + key.length + " bytes");
+        }
+        if (arena.remainingInSegment(arenaEnd) < record)
+        {
+            arenaEnd += arena.remainingInSegment(arenaEnd);
+        }
+        arena.ensureCapacity(arenaEnd + record);
+        int node = nodeCount++;
+        arena.putInt(arenaEnd, key.length);
+        arena.putInt(arenaEnd + 4, node);
+        arena.put(arenaEnd + 8, key);
+
+        long offset = (long) node * NODE_ENTRY;
+        nodes.ensureCapacity(offset + NODE_ENTRY);
+        nodes.putInt(offset, node);
+        nodes.putInt(offset + 4, kind == KIND_ADDRESS ? FLAG_ADDRESS | FLAG_CLUSTER_HAS_ADDRESS : 0);
+        nodes.putLong(offset + 8, arenaEnd);
+        arenaEnd += record;
+        if (kind == KIND_ADDRESS)
+        {
+            addressCount++;
+            participantCount++;
+        }
+        return node;
+    }
+
+    private void growIndex()
+    {
+        long capacity = (indexMask + 1) * 2;
+        OffHeapBuffer grown = new OffHeapBuffer(capacity * INDEX_ENTRY);
+        long mask = capacity - 1;
+        for (long slot = 0; slot <= indexMask; slot++)
+        {
+            long hash = index.getLong(slot * INDEX_ENTRY);
+            if (hash != 0)
+            {
+                long target = hash & mask;
+                while (grown.getLong(target * INDEX_ENTRY) != 0)
+                {
+                    target = (target + 1) & mask;
+                }
+                grown.putLong(target * INDEX_ENTRY, hash);
+                grown.putLong(target * INDEX_ENTRY + 8, index.getLong(slot * INDEX_ENTRY + 8));
+            }
+        }
+        index.release();
+        index     = grown;
+        indexMask = mask;
+    }
+
+    /**
+     * The root of a node's cluster, halving the path on the way.
+     */
+    private int find(int node)
+    {
+        int current = node;
+        while (true)
+        {
+            int parent = parent(current);
+            if (parent == current)
+            {
+                return current;
+            }
+            int grandparent = parent(parent);
+            nodes.putInt((long) current * NODE_ENTRY, grandparent);
+            current = grandparent;
+        }
+    }
+
+    /**
+     * Joins two clusters under the older root, so the earlier participant ID survives.
+     */
+    private void union(int first, int second)
+    {
+        int firstRoot = find(first);
+        int secondRoot = find(second);
+        if (firstRoot == secondRoot)
+        {
+            return;
+        }
+        int root = Math.min(firstRoot, secondRoot);
+        int child = Math.max(firstRoot, secondRoot);
+        boolean rootHasAddress = (flags(root) & FLAG_CLUSTER_HAS_ADDRESS) != 0;
+        boolean childHasAddress = (flags(child) & FLAG_CLUSTER_HAS_ADDRESS) != 0;
+        if (rootHasAddress && childHasAddress)
+        {
+            participantCount--;
+        }
+        nodes.putInt((long) child * NODE_ENTRY, root);
+        if (childHasAddress && !rootHasAddress)
+        {
+            nodes.putInt((long) root * NODE_ENTRY + 4, flags(root) | FLAG_CLUSTER_HAS_ADDRESS);
+        }
+    }
+
+    private int parent(int node)
+    {
+        return nodes.getInt((long) node * NODE_ENTRY);
+    }
+
+    private int flags(int node)
+    {
+        return nodes.getInt((long) node * NODE_ENTRY + 4);
+    }
+
+    /**
+     * Where a node's record (key length, node, key) starts in the arena.
+     */
+    private long nodeRecord(int node)
+    {
+        return nodes.getLong((long) node * NODE_ENTRY + 8);
+    }
+
+    private byte[] key(int node)
+    {
+        long record = nodeRecord(node);
+        byte[] key = new byte[arena.getInt(record)];
+        arena.get(record + 8, key);
+        return key;
+    }
+
+    private boolean keyEquals(long record, byte[] key)
+    {
+        if (arena.getInt(record) != key.length)
+        {
+            return false;
+        }
+        for (int index = 0; index < key.length; index++)
+        {
+            if (arena.get(record + 8 + index) != key[index])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * FNV-1a over the key with a final avalanche, never 0 as 0 marks an empty index slot.
+     */
+    private static long hash(byte[] key)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key)
+        {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb34fe1a85fa3L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,331 @@
+package Nuix.Baseline;
+
+import com.google.common.collect.ImmutableMap;
+import nuix.EvidenceContainer;
+import nuix.Processor;
+import nuix.SimpleCase;
+import nuix.engine.Engine;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A lab that ingests local evidence into a case, for evidence sets that mix a few huge containers (PSTs, images)
+ * with a great many small files.
+ * <p>
+ * The evidence roots are walked in parallel, one fork join task per folder, and the files are split into one
+ * shard per licenced worker by size, largest first onto the lightest shard (longest processing time first),
+ * so no shard is left holding most of the bytes. Each shard becomes an evidence container, added largest shard
+ * first with its files largest first, so the long running items start straight away and the small files
+ * fill in behind them instead of a huge PST starting last and keeping one worker busy long after the rest
+ * are idle. The processor gets one worker per licenced worker and the worker memory budget of the app.
+ * <p>
+ * Reports the bytes and items per second and the skew of the shards, i.e. the largest shard over the mean.
+ */
+final class IngestionLab implements Consumer<Engine> {
+
+    /**
+     * Generic logger definition, will use the class name as the prefix in the log.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(IngestionLab.class);
+
+    private final List<Path> roots;
+    private final File caseDir;
+    private final int workerMemoryMegabytes;
+    private final int scanThreads;
+
+    /**
+     * One file to ingest.
+     */
+    static final class Evidence {
+        final Path path;
+        final long size;
+
+        Evidence(Path path, long size)
+        {
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    /**
+     * The files one evidence container is given.
+     */
+    static final class Shard {
+        final int index;
+        final List<Evidence> files = new ArrayList<>();
+        long bytes;
+
+        Shard(int index)
+        {
+            this.index = index;
+        }
+    }
+
+    /**
+     * Ingests the given roots into a case.
+     * @param roots the files and folders to ingest
+     * @param caseDir the case, created if it does not exist yet
+     * @param workerMemoryMegabytes the heap of each worker
+     */
+    IngestionLab(@Nonnull List<Path> roots, @Nonnull File caseDir, int workerMemoryMegabytes)
+    {
+        this.roots                 = roots;
+        this.caseDir               = caseDir;
+        this.workerMemoryMegabytes = workerMemoryMegabytes;
+        this.scanThreads           = Math.max(4, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public void accept(Engine engine)
+    {
+        long scanStarted = System.nanoTime();
+        List<Evidence> evidence = scan(roots, scanThreads);
+        long totalBytes = 0;
+        for (Evidence file : evidence)
+        {
+            totalBytes += file.size;
+        }
+        LOGGER.info("Found {} files, {} MB in {} ms", evidence.size(), totalBytes >> 20,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scanStarted));
+        if (evidence.isEmpty())
+        {
+            return;
+        }
+
+        //licences without workers process on the engine itself, one shard
+        Integer licencedWorkers = engine.getLicence().getWorkers();
+        int workers = licencedWorkers == null ? 1 : Math.max(1, licencedWorkers);
+        List<Shard> shards = shard(evidence, workers);
+        for (Shard shard : shards)
+        {
+            LOGGER.info("Shard {}: {} files, {} MB", shard.index, shard.files.size(), shard.bytes >> 20);
+        }
+        LOGGER.info("Shard skew {} (largest shard over the mean)", String.format(Locale.ROOT, "%.2f", skew(shards)));
+
+        boolean exists = new File(caseDir, "case.fbi2").isFile();
+        try (SimpleCase nuixCase = exists
+                ? engine.getUtilities().getCaseFactory().open(caseDir)
+                : engine.getUtilities().getCaseFactory().create(caseDir, ImmutableMap.of("name", caseDir.getName())))
+        {
+            Processor processor = nuixCase.createProcessor();
+            processor.setParallelProcessingSettings(ImmutableMap.of(
+                    "workerCount", workers,
+                    "workerMemory", workerMemoryMegabytes));
+            for (Shard shard : shards)
+            {
+                EvidenceContainer container = processor.newEvidenceContainer("Shard " + shard.index);
+                container.setDescription(String.format("%d files, %d MB", shard.files.size(), shard.bytes >> 20));
+                for (Evidence file : shard.files)
+                {
+                    container.addFile(file.path.toFile());
+                }
+                container.save();
+            }
+
+            AtomicLong processed = new AtomicLong();
+            processor.whenItemProcessed(item -> processed.incrementAndGet());
+            long processStarted = System.nanoTime();
+            processor.process();
+            double seconds = Math.max(System.nanoTime() - processStarted, 1) / 1e9;
+            LOGGER.info("Processed {} items from {} MB in {} s: {} MB/s, {} items/s", processed.get(), totalBytes >> 20,
+                    String.format(Locale.ROOT, "%.1f", seconds),
+                    String.format(Locale.ROOT, "%.1f", totalBytes / seconds / (1 << 20)),
+                    String.format(Locale.ROOT, "%.1f", processed.get() / seconds));
+        }
+    }
+
+    /**
+     * Lists every regular file under the roots, walking folders in parallel. Links are not followed and
+     * unreadable folders are logged and skipped.
+     * @param roots the files and folders
+     * @param threads the walker threads
+     * @return the files, in no particular order
+     */
+    @Nonnull
+    static List<Evidence> scan(@Nonnull List<Path> roots, int threads)
+    {
+        ConcurrentLinkedQueue<Evidence> found = new ConcurrentLinkedQueue<>();
+        ForkJoinPool walkers = new ForkJoinPool(threads);
+        try
+        {
+            walkers.invoke(new RecursiveAction()
+            {
+                @Override
+                protected void compute()
+                {
+                    List<Walk> walks = new ArrayList<>();
+                    for (Path root : roots)
+                    {
+                        BasicFileAttributes attributes = attributes(root);
+                        if (attributes == null)
+                        {
+                            LOGGER.warn("Evidence {} does not exist", root);
+                        }
+                        else if (attributes.isDirectory())
+                        {
+                            walks.add(new Walk(root, found));
+                        }
+                        else if (attributes.isRegularFile())
+                        {
+                            found.add(new Evidence(root, attributes.size()));
+                        }
+                    }
+                    invokeAll(walks);
+                }
+            });
+        }
+        finally
+        {
+            walkers.shutdown();
+        }
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * Lists one folder, forking a task for each sub folder.
+     */
+    private static final class Walk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path folder;
+        private final transient ConcurrentLinkedQueue<Evidence> found;
+
+        Walk(Path folder, ConcurrentLinkedQueue<Evidence> found)
+        {
+            this.folder = folder;
+            this.found  = found;
+        }
+
+        @Override
+        protected void compute()
+        {
+            List<Walk> folders = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(folder))
+            {
+                for (Path entry : entries)
+                {
+                    BasicFileAttributes attributes = attributes(entry);
+                    if (attributes == null)
+                    {
+                        continue;
+                    }
+                    if (attributes.isDirectory())
+                    {
+                        folders.add(new Walk(entry, found));
+                    }
+                    else if (attributes.isRegularFile())
+                    {
+                        found.add(new Evidence(entry, attributes.size()));
+                    }
+                }
+            }
+            catch (IOException | UncheckedIOException e)
+            {
+                LOGGER.warn("Unable to list {}", folder, e);
+            }
+            invokeAll(folders);
+        }
+    }
+
+    private static BasicFileAttributes attributes(Path path)
+    {
+        try
+        {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Splits files into shards of about the same size, placing the largest remaining file onto the lightest shard.
+     * No shard ends up more than the largest file above the mean.
+     * @param evidence the files
+     * @param count the number of shards wanted
+     * @return at most count non empty shards, heaviest first, each with its files largest first
+     */
+    @Nonnull
+    static List<Shard> shard(@Nonnull List<Evidence> evidence, int count)
+    {
+        List<Evidence> bySize = new ArrayList<>(evidence);
+        bySize.sort(Comparator.comparingLong((Evidence file) -> file.size).reversed()
+                .thenComparing(file -> file.path));
+        PriorityQueue<Shard> lightest = new PriorityQueue<>(Comparator.comparingLong((Shard shard) -> shard.bytes)
+                .thenComparingInt(shard -> shard.index));
+        for (int index = 0; index < Math.min(count, bySize.size()); index++)
+        {
+            lightest.add(new Shard(index + 1));
+        }
+        for (Evidence file : bySize)
+        {
+            Shard shard = lightest.poll();
+            shard.files.add(file);
+            shard.bytes += file.size;
+            lightest.add(shard);
+        }
+        List<Shard> shards = new ArrayList<>(lightest);
+        shards.sort(Comparator.comparingLong((Shard shard) -> shard.bytes).reversed()
+                .thenComparingInt(shard -> shard.index));
+        return shards;
+    }
+
+    /**
+     * The largest shard over the mean, 1 when perfectly balanced.
+     * @param shards the shards
+     * @return the skew, 0 if there is nothing in them
+     */
+    static double skew(@Nonnull List<Shard> shards)
+    {
+        long total = 0;
+        long largest = 0;
+        for (Shard shard : shards)
+        {
+            total  += shard.bytes;
+            largest = Math.max(largest, shard.bytes);
+        }
+        return total == 0 ? 0 : largest / ((double) total / shards.size());
+    }
+
+    /**
+     * The roots of a comma separated list.
+     * @param list e.g. "D:/evidence/custodian1,D:/evidence/shared.pst"
+     * @return the paths
+     */
+    @Nonnull
+    static List<Path> parseRoots(@Nonnull String list)
+    {
+        List<Path> roots = new ArrayList<>();
+        for (String root : list.split(","))
+        {
+            if (!root.trim().isEmpty())
+            {
+                roots.add(new File(root.trim()).toPath());
+            }
+        }
+        return Collections.unmodifiableList(roots);
+    }
+}
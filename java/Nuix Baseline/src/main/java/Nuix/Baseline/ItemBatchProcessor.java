@@ -0,0 +1,21 @@
+package Nuix.Baseline;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Processes a micro-batch of item snapshots collected by a BatchingWorkerScript.
+ * Runs on the script's executor, not on the worker's callback thread, so it must not touch the WorkerItem.
+ * @param <T> the snapshot type taken from each WorkerItem
+ */
+@FunctionalInterface
+public interface ItemBatchProcessor<T> {
+
+    /**
+     * Process one batch.
+     * @param batch the snapshots in the order the items were received
+     * @param output asynchronous output, anything written here ends up in stdout.log (or the WSS log) without blocking the worker
+     * @throws Exception if the batch failed, the failure is logged and the remaining batches still run
+     */
+    void process(@Nonnull List<T> batch, @Nonnull LineOutput output) throws Exception;
+}
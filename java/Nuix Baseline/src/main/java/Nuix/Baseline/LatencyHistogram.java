@@ -0,0 +1,131 @@
+package Nuix.Baseline;
+
+/**
+ * A log-linear latency histogram in the style of HdrHistogram. Values are counted in buckets whose width grows
+ * with the value, so any value up to Long.MAX_VALUE is kept to within about 3% in a fixed 15 KB.
+ * <p>
+ * Recording is a few shifts and an array increment, no allocation. Not thread safe: each histogram has a single
+ * writer, other threads reading it (e.g. for a periodic summary) may see it a few values behind.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[(64 - SUB_BUCKET_BITS) * SUB_BUCKETS];
+    private long count;
+    private long total;
+    private long max;
+
+    /**
+     * Counts one value.
+     * @param value the latency, negative values count as 0
+     */
+    void record(long value)
+    {
+        if (value < 0)
+        {
+            value = 0;
+        }
+        counts[index(value)]++;
+        count++;
+        total += value;
+        if (value > max)
+        {
+            max = value;
+        }
+    }
+
+    /**
+     * Adds every value counted by another histogram to this one.
+     * @param other the histogram to add
+     */
+    void add(LatencyHistogram other)
+    {
+        for (int index = 0; index < counts.length; index++)
+        {
+            counts[index] += other.counts[index];
+        }
+        count += other.count;
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * The number of values counted.
+     * @return the count
+     */
+    long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * The largest value counted, exact.
+     * @return the maximum, 0 if empty
+     */
+    long getMax()
+    {
+        return max;
+    }
+
+    /**
+     * The mean of the values counted, exact.
+     * @return the mean, 0 if empty
+     */
+    double getMean()
+    {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * The value at or below which the given percentage of the values fall, e.g. 99 for the 99th percentile.
+     * @param percentile from 0 to 100
+     * @return the highest value equivalent to the one at that rank, 0 if empty
+     */
+    long getValueAtPercentile(double percentile)
+    {
+        if (count == 0)
+        {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+        long seen = 0;
+        for (int index = 0; index < counts.length; index++)
+        {
+            seen += counts[index];
+            if (seen >= rank)
+            {
+                return Math.min(highestEquivalent(index), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * The bucket of a value: exact below 32, else the top 6 bits of the value and its magnitude.
+     */
+    static int index(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * The largest value counted in a bucket.
+     */
+    static long highestEquivalent(int index)
+    {
+        if (index < SUB_BUCKETS)
+        {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long mantissa = (index & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,488 @@
+package Nuix.Baseline;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import nuix.SourceItem;
+import nuix.WorkerItem;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Wraps any Worker Side Script and records how long each item takes in it, so one pathological item stalling
+ * a worker shows up instead of hiding in the job's total time.
+ * <p>
+ * Every worker thread records into its own LatencyHistogram, so accept() adds two System.nanoTime() calls
+ * and a few array increments to the script's own cost, without locks or allocation. Items slower than the
+ * threshold are flagged on the output with their GUID, name, path and size, and the slowest are kept.
+ * A summary of the percentiles per worker thread, the slowest items and any item that has been running for
+ * longer than the threshold is written to the job folder periodically and once more on close.
+ * <p>
+ * A script that hands its items on, such as a BatchingWorkerScript, does its real work later on other threads,
+ * so timing accept() would only time the hand over. Such scripts time each item where it is processed
+ * with {@link #timeEachItem(ItemProcessor, Function)} instead. By then the WorkerItem is no longer valid, so a
+ * slow item is identified by what the script kept of it, e.g. its name.
+ * Tune with the system properties nuix.baseline.wss.slowItemMillis, nuix.baseline.wss.slowItems,
+ * nuix.baseline.wss.latencySummarySeconds and nuix.baseline.wss.latencyFolder.
+ */
+public class LatencyRecordingScript implements Consumer<WorkerItem>, AutoCloseable {
+
+    private final Consumer<WorkerItem> delegate;
+    private final LineOutput output;
+    private final long slowItemNanos;
+    private final int slowItemsKept;
+    private final Path summaryFile;
+    private final ScheduledExecutorService summaryWriter;
+    private final List<WorkerState> workers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<WorkerState> worker = ThreadLocal.withInitial(this::newWorker);
+    private final PriorityQueue<SlowItem> slowestItems = new PriorityQueue<>(Comparator.comparingLong(slow -> slow.nanos));
+    private final AtomicLong slowItemCount = new AtomicLong();
+    private final LongSupplier clock;
+
+    /**
+     * What one worker thread has recorded.
+     */
+    private static final class WorkerState {
+        final String name;
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final AtomicLong inFlightSince = new AtomicLong();
+
+        WorkerState(String name)
+        {
+            this.name = name;
+        }
+    }
+
+    /**
+     * What identifies an item once its WorkerItem is no longer valid.
+     */
+    public static final class ItemSnapshot {
+        final String guid;
+        final String name;
+        final String path;
+        final Long size;
+
+        ItemSnapshot(String guid, String name, String path, Long size)
+        {
+            this.guid = guid;
+            this.name = name;
+            this.path = path;
+            this.size = size;
+        }
+
+        /**
+         * Takes the snapshot, must run on the callback thread while the WorkerItem is valid.
+         * @param workerItem the current WorkerItem
+         * @return whatever could be read of the item's GUID, name, path and size
+         */
+        @Nonnull
+        public static ItemSnapshot of(@Nonnull WorkerItem workerItem)
+        {
+            String guid = null;
+            String name = null;
+            String path = null;
+            Long size = null;
+            try
+            {
+                guid = workerItem.getItemGuid();
+                SourceItem sourceItem = workerItem.getSourceItem();
+                name = sourceItem.getName();
+                path = sourceItem.getLocalisedPathNames();
+                size = sourceItem.getFileSize();
+            }
+            catch (Exception e)
+            {
+                //keep whatever could be read, the latency is what matters
+            }
+            return new ItemSnapshot(guid, name, path, size);
+        }
+
+        /**
+         * Identifies an item by its name alone, for items that are timed once their WorkerItem is no longer valid.
+         * @param name the item name
+         * @return the snapshot
+         */
+        @Nonnull
+        public static ItemSnapshot named(@Nullable String name)
+        {
+            return new ItemSnapshot(null, name, null, null);
+        }
+
+        /**
+         * The item name.
+         * @return the name, null if it could not be read
+         */
+        @Nullable
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * What could be read of the GUID, the path (else the name) and the size.
+         */
+        @Override
+        public String toString()
+        {
+            StringBuilder text = new StringBuilder();
+            if (guid != null)
+            {
+                text.append(guid).append(' ');
+            }
+            text.append(path != null ? path : name);
+            if (size != null)
+            {
+                text.append(" (").append(size).append(" bytes)");
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * The per item work of a script that processes its items away from the callback thread.
+     * @param <T> what the script keeps of each item
+     */
+    @FunctionalInterface
+    public interface ItemProcessor<T> {
+
+        /**
+         * Process one item.
+         * @param item the item
+         * @param output asynchronous output
+         * @throws Exception if the item failed, it is still timed
+         */
+        void process(@Nonnull T item, @Nonnull LineOutput output) throws Exception;
+    }
+
+    /**
+     * An item that took longer than the threshold, with what identifies it.
+     */
+    private static final class SlowItem {
+        final long nanos;
+        final String worker;
+        final ItemSnapshot item;
+
+        SlowItem(long nanos, String worker, ItemSnapshot item)
+        {
+            this.nanos  = nanos;
+            this.worker = worker;
+            this.item   = item;
+        }
+    }
+
+    /**
+     * Records the latency of a script using the system properties, the summary is written to
+     * nuix.baseline.wss.latencyFolder, by default the working directory which for a worker is its job folder.
+     * @param delegate the script doing the work
+     * @param output where slow items are flagged
+     */
+    public LatencyRecordingScript(@Nonnull Consumer<WorkerItem> delegate, @Nonnull LineOutput output)
+    {
+        this(delegate, output,
+                TimeUnit.MILLISECONDS.toNanos(Long.getLong("nuix.baseline.wss.slowItemMillis", 5000)),
+                Integer.getInteger("nuix.baseline.wss.slowItems", 100),
+                TimeUnit.SECONDS.toMillis(Long.getLong("nuix.baseline.wss.latencySummarySeconds", 60)),
+                Paths.get(System.getProperty("nuix.baseline.wss.latencyFolder", ""))
+                        .resolve("wss-latency-" + processName() + ".txt"));
+    }
+
+    /**
+     * Records the latency of the per item work wrapped with timeEachItem, using the system properties.
+     * accept() must not be used.
+     * @param output where slow items are flagged
+     */
+    public LatencyRecordingScript(@Nonnull LineOutput output)
+    {
+        this(workerItem ->
+        {
+            throw new IllegalStateException("Items are timed with timeEachItem");
+        }, output);
+    }
+
+    /**
+     * Records the latency of a script.
+     * @param delegate the script doing the work
+     * @param output where slow items are flagged
+     * @param slowItemNanos items taking at least this long are flagged and kept
+     * @param slowItemsKept how many of the slowest items the summary lists
+     * @param summaryIntervalMillis how often the summary is rewritten while the script runs, 0 only writes it on close
+     * @param summaryFile where the summary is written
+     */
+    LatencyRecordingScript(@Nonnull Consumer<WorkerItem> delegate, @Nonnull LineOutput output, long slowItemNanos,
+                           int slowItemsKept, long summaryIntervalMillis, @Nonnull Path summaryFile)
+    {
+        this(delegate, output, slowItemNanos, slowItemsKept, summaryIntervalMillis, summaryFile, System::nanoTime);
+    }
+
+    /**
+     * Records the latency of a script against a clock, used by the tests.
+     * @param delegate the script doing the work
+     * @param output where slow items are flagged
+     * @param slowItemNanos items taking at least this long are flagged and kept
+     * @param slowItemsKept how many of the slowest items the summary lists
+     * @param summaryIntervalMillis how often the summary is rewritten while the script runs, 0 only writes it on close
+     * @param summaryFile where the summary is written
+     * @param clock nanoseconds, like System.nanoTime()
+     */
+    LatencyRecordingScript(@Nonnull Consumer<WorkerItem> delegate, @Nonnull LineOutput output, long slowItemNanos,
+                           int slowItemsKept, long summaryIntervalMillis, @Nonnull Path summaryFile, @Nonnull LongSupplier clock)
+    {
+        this.clock         = clock;
+        this.delegate      = delegate;
+        this.output        = output;
+        this.slowItemNanos = slowItemNanos;
+        this.slowItemsKept = slowItemsKept;
+        this.summaryFile   = summaryFile;
+        if (summaryIntervalMillis > 0)
+        {
+            this.summaryWriter = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("wss-latency-summary").setDaemon(true).build());
+            this.summaryWriter.scheduleWithFixedDelay(this::writeSummaryQuietly, summaryIntervalMillis,
+                    summaryIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        else
+        {
+            this.summaryWriter = null;
+        }
+    }
+
+    /**
+     * nuixWorkerItemCallback
+     * Passes the item to the wrapped script and records how long it took.
+     * @param workerItem the current WorkerItem being processed
+     */
+    @Override
+    public void accept(WorkerItem workerItem)
+    {
+        WorkerState state = worker.get();
+        long started = clock.getAsLong();
+        state.inFlightSince.lazySet(started);
+        try
+        {
+            delegate.accept(workerItem);
+        }
+        finally
+        {
+            long elapsed = finish(state, started);
+            if (elapsed >= slowItemNanos)
+            {
+                slowItem(ItemSnapshot.of(workerItem), state, elapsed);
+            }
+        }
+    }
+
+    /**
+     * Wraps per item work so each item is timed on the thread that processes it, for example on the batch
+     * threads of a BatchingWorkerScript.
+     * @param processor the per item work
+     * @param identity what identifies an item, only asked for items slower than the threshold, so the script
+     *                 need keep no more of each item than its work needs
+     * @param <T> what the script keeps of each item
+     * @return a batch processor running the work item by item
+     */
+    @Nonnull
+    public <T> ItemBatchProcessor<T> timeEachItem(@Nonnull ItemProcessor<T> processor, @Nonnull Function<T, ItemSnapshot> identity)
+    {
+        return (batch, output) ->
+        {
+            WorkerState state = worker.get();
+            for (T item : batch)
+            {
+                long started = clock.getAsLong();
+                state.inFlightSince.lazySet(started);
+                try
+                {
+                    processor.process(item, output);
+                }
+                finally
+                {
+                    long elapsed = finish(state, started);
+                    if (elapsed >= slowItemNanos)
+                    {
+                        slowItem(identity.apply(item), state, elapsed);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * nuixWorkerItemCallbackClose
+     * Writes the final summary. The wrapped script is not closed, that is up to its owner.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (summaryWriter != null)
+        {
+            summaryWriter.shutdownNow();
+        }
+        writeSummary();
+        LatencyHistogram all = merged();
+        output.println(String.format(Locale.ROOT, "Item latency p50 %s ms, p99 %s ms, max %s ms, %d slow items, summary in %s",
+                millis(all.getValueAtPercentile(50)), millis(all.getValueAtPercentile(99)), millis(all.getMax()),
+                slowItemCount.get(), summaryFile.toAbsolutePath()));
+    }
+
+    /**
+     * The summary as written to the job folder.
+     * @return the summary text
+     */
+    @Nonnull
+    String summary()
+    {
+        StringBuilder text = new StringBuilder(4096);
+        text.append("worker\titems\tmean ms\tp50 ms\tp90 ms\tp99 ms\tp99.9 ms\tmax ms\n");
+        summaryLine(text, "all", merged());
+        for (WorkerState state : workers)
+        {
+            summaryLine(text, state.name, state.histogram);
+        }
+        long now = clock.getAsLong();
+        for (WorkerState state : workers)
+        {
+            long since = state.inFlightSince.get();
+            if (since != 0 && now - since >= slowItemNanos)
+            {
+                text.append("\nStill processing an item on ").append(state.name).append(" after ")
+                    .append(millis(now - since)).append(" ms\n");
+            }
+        }
+        List<SlowItem> slowest;
+        synchronized (slowestItems)
+        {
+            slowest = new ArrayList<>(slowestItems);
+        }
+        slowest.sort(Comparator.comparingLong((SlowItem slow) -> slow.nanos).reversed());
+        text.append(String.format(Locale.ROOT, "\n%d items took %s ms or longer, the slowest %d:\n",
+                slowItemCount.get(), millis(slowItemNanos), slowest.size()));
+        text.append("ms\tworker\tguid\tname\tpath\tsize\n");
+        for (SlowItem slow : slowest)
+        {
+            text.append(millis(slow.nanos)).append('\t').append(slow.worker).append('\t').append(orEmpty(slow.item.guid)).append('\t')
+                .append(orEmpty(slow.item.name)).append('\t').append(orEmpty(slow.item.path)).append('\t').append(orEmpty(slow.item.size))
+                .append('\n');
+        }
+        return text.toString();
+    }
+
+    private WorkerState newWorker()
+    {
+        WorkerState state = new WorkerState(Thread.currentThread().getName());
+        workers.add(state);
+        return state;
+    }
+
+    private long finish(WorkerState state, long started)
+    {
+        long elapsed = clock.getAsLong() - started;
+        state.inFlightSince.lazySet(0);
+        state.histogram.record(elapsed);
+        return elapsed;
+    }
+
+    private void slowItem(ItemSnapshot item, WorkerState state, long elapsed)
+    {
+        slowItemCount.incrementAndGet();
+        output.println(String.format(Locale.ROOT, "Slow item %s ms on %s: %s", millis(elapsed), state.name, item));
+        synchronized (slowestItems)
+        {
+            slowestItems.offer(new SlowItem(elapsed, state.name, item));
+            if (slowestItems.size() > slowItemsKept)
+            {
+                slowestItems.poll();
+            }
+        }
+    }
+
+    private LatencyHistogram merged()
+    {
+        LatencyHistogram all = new LatencyHistogram();
+        for (WorkerState state : workers)
+        {
+            all.add(state.histogram);
+        }
+        return all;
+    }
+
+    private void writeSummaryQuietly()
+    {
+        try
+        {
+            writeSummary();
+        }
+        catch (IOException e)
+        {
+            output.println("Unable to write the latency summary to " + summaryFile + ": " + e);
+        }
+    }
+
+    /**
+     * Replaces the summary file atomically so it can be read at any time.
+     */
+    private synchronized void writeSummary() throws IOException
+    {
+        Path folder = summaryFile.toAbsolutePath().getParent();
+        Files.createDirectories(folder);
+        Path temporary = Files.createTempFile(folder, summaryFile.getFileName().toString(), ".tmp");
+        try
+        {
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8))
+            {
+                writer.write(summary());
+            }
+            Files.move(temporary, summaryFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void summaryLine(StringBuilder text, String worker, LatencyHistogram histogram)
+    {
+        text.append(worker).append('\t').append(histogram.getCount())
+            .append('\t').append(String.format(Locale.ROOT, "%.3f", histogram.getMean() / 1e6))
+            .append('\t').append(millis(histogram.getValueAtPercentile(50)))
+            .append('\t').append(millis(histogram.getValueAtPercentile(90)))
+            .append('\t').append(millis(histogram.getValueAtPercentile(99)))
+            .append('\t').append(millis(histogram.getValueAtPercentile(99.9)))
+            .append('\t').append(millis(histogram.getMax())).append('\n');
+    }
+
+    private static String orEmpty(@Nullable Object value)
+    {
+        return value == null ? "" : value.toString();
+    }
+
+    private static String millis(long nanos)
+    {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String processName()
+    {
+        //"pid@host" on HotSpot
+        return ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+    }
+}
@@ -0,0 +1,175 @@
+package Nuix.Baseline;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Remembers which licence source, licence and worker count won the last discovery,
+ * so the next start can try that licence directly instead of enumerating every source.
+ * Stored as a properties file in the user data directory.
+ */
+class LicenceCache {
+
+    /**
+     * Generic logger definition, will use the class name as the prefix in the log.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(LicenceCache.class);
+
+    static final String CACHE_FILE_NAME = "baseline-licence-cache.properties";
+
+    private final Path cacheFile;
+    private final String requestKey;
+    private final long ttlMillis;
+
+    /**
+     * The licence that was acquired last time, workers is the count granted so it can be requested again.
+     */
+    static class Entry {
+        final String sourceType;
+        final String sourceLocation;
+        final String shortName;
+        final Integer workers;
+        final long acquiredAt;
+
+        Entry(String sourceType, String sourceLocation, String shortName, Integer workers, long acquiredAt)
+        {
+            this.sourceType     = sourceType;
+            this.sourceLocation = sourceLocation;
+            this.shortName      = shortName;
+            this.workers        = workers;
+            this.acquiredAt     = acquiredAt;
+        }
+    }
+
+    /**
+     * Remembers which licence won the last discovery.
+     * @param userDataDir the directory holding the cache file (-userDataDirs)
+     * @param requestKey describes the requested sources/location/short name/workers, a cache
+     *                   written for another request is ignored
+     * @param ttlMillis how long an entry stays valid after it was written
+     */
+    LicenceCache(@Nonnull Path userDataDir, @Nonnull String requestKey, long ttlMillis)
+    {
+        this.cacheFile  = userDataDir.resolve(CACHE_FILE_NAME);
+        this.requestKey = requestKey;
+        this.ttlMillis  = ttlMillis;
+    }
+
+    /**
+     * Reads the cached licence.
+     * @return the entry, null if there is none, it expired or it was written for a different request
+     */
+    @Nullable
+    Entry read()
+    {
+        if (!Files.isRegularFile(cacheFile))
+        {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(cacheFile))
+        {
+            properties.load(input);
+            if (!requestKey.equals(properties.getProperty("request")))
+            {
+                LOGGER.info("Licence cache was written for a different request, ignoring it");
+                return null;
+            }
+            long acquiredAt = Long.parseLong(properties.getProperty("acquiredAt"));
+            if (System.currentTimeMillis() - acquiredAt > ttlMillis)
+            {
+                LOGGER.info("Licence cache has expired, ignoring it");
+                return null;
+            }
+            String workers = properties.getProperty("workers", "");
+            return new Entry(properties.getProperty("sourceType"),
+                    properties.getProperty("sourceLocation"),
+                    properties.getProperty("shortName"),
+                    workers.isEmpty() ? null : Integer.valueOf(workers),
+                    acquiredAt);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            LOGGER.warn("Licence cache could not be read:{}", cacheFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Records the licence that was just acquired.
+     * @param sourceType the type of the winning licence source
+     * @param sourceLocation the location of the winning licence source
+     * @param shortName the short name of the acquired licence
+     * @param workers the workers acquired, null when the licence has none
+     */
+    void write(@Nonnull String sourceType, @Nonnull String sourceLocation, @Nonnull String shortName, @Nullable Integer workers)
+    {
+        Properties properties = new Properties();
+        properties.setProperty("request", requestKey);
+        properties.setProperty("sourceType", sourceType);
+        properties.setProperty("sourceLocation", sourceLocation);
+        properties.setProperty("shortName", shortName);
+        properties.setProperty("workers", workers == null ? "" : workers.toString());
+        properties.setProperty("acquiredAt", Long.toString(System.currentTimeMillis()));
+        Path temporary = null;
+        try
+        {
+            //write a file of our own then move it, so concurrent starts never see or share a half written file
+            temporary = Files.createTempFile(cacheFile.getParent(), CACHE_FILE_NAME, ".tmp");
+            try (OutputStream output = Files.newOutputStream(temporary))
+            {
+                properties.store(output, "Last licence acquired by Nuix Baseline");
+            }
+            Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Licence cache could not be written:{}", cacheFile, e);
+        }
+        finally
+        {
+            deleteTemporary(temporary);
+        }
+    }
+
+    /**
+     * Removes the cached licence, used when it could not be acquired again.
+     */
+    void invalidate()
+    {
+        try
+        {
+            Files.deleteIfExists(cacheFile);
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Licence cache could not be removed:{}", cacheFile, e);
+        }
+    }
+
+    private static void deleteTemporary(@Nullable Path temporary)
+    {
+        if (temporary == null)
+        {
+            return;
+        }
+        try
+        {
+            Files.deleteIfExists(temporary);
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Licence cache temporary file could not be removed:{}", temporary, e);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package Nuix.Baseline;
+
+import com.google.common.collect.ImmutableMap;
+import nuix.engine.AvailableLicence;
+import nuix.engine.LicenceSource;
+import nuix.engine.Licensor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Probes all licence sources at the same time, then acquires exactly one licence
+ * walking the sources in the priority order given by -licenceSourceType. A source is tried as soon as every
+ * source before it has answered or timed out, the slower sources after it are not waited for.
+ */
+class LicenceDiscovery {
+
+    /**
+     * Generic logger definition, will use the class name as the prefix in the log.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(LicenceDiscovery.class);
+
+    private final String[] licenceSources;
+    private final String licenceSourceName;
+    private final String licenceShortName;
+    private final long timeoutMillis;
+    private final StartupMetrics startupMetrics;
+    private Exception lastException = null;
+
+    /**
+     * The outcome of enumerating a single licence source.
+     */
+    static class SourceProbe {
+        final LicenceSource source;
+        final List<AvailableLicence> licences;
+        final Exception failure;
+        final long elapsedMillis;
+
+        SourceProbe(LicenceSource source, List<AvailableLicence> licences, Exception failure, long elapsedMillis)
+        {
+            this.source        = source;
+            this.licences      = licences;
+            this.failure       = failure;
+            this.elapsedMillis = elapsedMillis;
+        }
+    }
+
+    /**
+     * Probes all licence sources at the same time.
+     * @param licenceSources the source types in priority order (e.g. "dongle","server")
+     * @param licenceSourceName the location to restrict discovery to, empty to accept all locations
+     * @param licenceShortName the licence short name to acquire, empty to accept the first licence found
+     * @param timeoutMillis how long each source may take to list its licences before it is skipped
+     */
+    LicenceDiscovery(@Nonnull String[] licenceSources,
+                     @Nonnull String licenceSourceName,
+                     @Nonnull String licenceShortName,
+                     long timeoutMillis)
+    {
+        this(licenceSources, licenceSourceName, licenceShortName, timeoutMillis, null);
+    }
+
+    /**
+     * Probes all licence sources at the same time, recording how long each source took.
+     * @param licenceSources the source types in priority order (e.g. "dongle","server")
+     * @param licenceSourceName the location to restrict discovery to, empty to accept all locations
+     * @param licenceShortName the licence short name to acquire, empty to accept the first licence found
+     * @param timeoutMillis how long each source may take to list its licences before it is skipped
+     * @param startupMetrics where the latency and failures of each source are recorded, null to not record them
+     */
+    LicenceDiscovery(@Nonnull String[] licenceSources,
+                     @Nonnull String licenceSourceName,
+                     @Nonnull String licenceShortName,
+                     long timeoutMillis,
+                     @Nullable StartupMetrics startupMetrics)
+    {
+        this.licenceSources    = licenceSources;
+        this.licenceSourceName = licenceSourceName;
+        this.licenceShortName  = licenceShortName;
+        this.timeoutMillis     = timeoutMillis;
+        this.startupMetrics    = startupMetrics;
+    }
+
+    /**
+     * Probes all sources and acquires the first matching licence in priority order.
+     * Only one licence is ever acquired; if acquiring fails the next source is tried.
+     * Probes still running once a licence is acquired are cancelled.
+     * @param licensor the licensor of the engine that will hold the licence
+     * @param acquirer acquires a single licence of the given source, throwing if the acquisition failed
+     * @return true if a licence was acquired
+     */
+    boolean acquire(@Nonnull Licensor licensor, @Nonnull BiConsumer<LicenceSource, AvailableLicence> acquirer)
+    {
+        return probe(licensor, probe -> acquire(probe, acquirer));
+    }
+
+    /**
+     * Acquires the first matching licence of a probed source.
+     * @return true if a licence was acquired
+     */
+    private boolean acquire(SourceProbe probe, BiConsumer<LicenceSource, AvailableLicence> acquirer)
+    {
+        if (probe.failure != null)
+        {
+            LOGGER.warn("Errors trying to enumerate licence source:{}", probe.source.getLocation(), probe.failure);
+            lastException = probe.failure;
+            return false;
+        }
+        for (AvailableLicence availableLicence : probe.licences)
+        {
+            if (availableLicence.getShortName().equals(licenceShortName) || (licenceShortName.isEmpty()))
+            {
+                try
+                {
+                    acquirer.accept(probe.source, availableLicence);
+                    return true;
+                }
+                catch (Exception e)
+                {
+                    LOGGER.warn("Errors trying to acquire from licence source:{}", probe.source.getLocation(), e);
+                    lastException = e;
+                }
+                //same as sequential discovery, only the first matching licence of a source is attempted.
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lists the available licences of every matching source concurrently.
+     * @param licensor the licensor to find sources with
+     * @return one probe per matching source, sorted by source type priority
+     */
+    List<SourceProbe> probe(@Nonnull Licensor licensor)
+    {
+        List<SourceProbe> probes = new ArrayList<>();
+        probe(licensor, probe ->
+        {
+            probes.add(probe);
+            return false;
+        });
+        return probes;
+    }
+
+    /**
+     * Lists the available licences of every matching source concurrently, handing each probe on in priority order
+     * as soon as it and every probe before it have finished.
+     * @param licensor the licensor to find sources with
+     * @param handler takes the probes in source type priority order, true stops and cancels the probes still running
+     * @return true if the handler stopped the probing
+     */
+    private boolean probe(Licensor licensor, Predicate<SourceProbe> handler)
+    {
+        Map<String, String[]> licenceSourceConfig = ImmutableMap.of("sources", licenceSources);
+        List<LicenceSource> matchingSources = new ArrayList<>();
+        long findStarted = System.nanoTime();
+        Iterable<LicenceSource> foundSources = licensor.findLicenceSources(licenceSourceConfig);
+        if (startupMetrics != null)
+        {
+            startupMetrics.recordPhase("findLicenceSources", System.nanoTime() - findStarted);
+        }
+        for (LicenceSource licenceSource : foundSources)
+        {
+            LOGGER.info("\tFound {} ({})", licenceSource.getLocation(), licenceSource.getType());
+            if (licenceSource.getLocation().equals(licenceSourceName) || (licenceSourceName.isEmpty()))
+            {
+                matchingSources.add(licenceSource);
+            }
+        }
+        //stable sort, so sources of the same type keep the order the licensor reported them in
+        matchingSources.sort(Comparator.comparingInt(source -> priorityOf(source.getType())));
+
+        if (matchingSources.isEmpty())
+        {
+            return false;
+        }
+        ExecutorService executor = OrchestrationThreads.newExecutor("licence-discovery", matchingSources.size());
+        try
+        {
+            long started = System.nanoTime();
+            List<Future<List<AvailableLicence>>> pending = new ArrayList<>(matchingSources.size());
+            for (LicenceSource licenceSource : matchingSources)
+            {
+                pending.add(executor.submit(() -> listLicences(licenceSource)));
+            }
+            //every source started at the same time, so a shared deadline is a per-source timeout
+            long deadline = started + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            for (int index = 0; index < matchingSources.size(); index++)
+            {
+                SourceProbe probe = await(matchingSources.get(index), pending.get(index), started, deadline);
+                if (startupMetrics != null)
+                {
+                    startupMetrics.recordSource(probe.source.getType(), probe.source.getLocation(),
+                            TimeUnit.MILLISECONDS.toNanos(probe.elapsedMillis), probe.failure != null);
+                }
+                if (handler.test(probe))
+                {
+                    return true;
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return false;
+    }
+
+    /**
+     * The last exception raised while probing or acquiring.
+     * @return the last exception, null if everything succeeded
+     */
+    @Nullable
+    Exception getLastException()
+    {
+        return lastException;
+    }
+
+    /**
+     * Waits for a single source to finish listing its licences.
+     * @param licenceSource the source being listed
+     * @param result the pending listing
+     * @param started when the probing began (System.nanoTime)
+     * @param deadline when the probing must have finished (System.nanoTime)
+     * @return the outcome of the listing
+     */
+    private SourceProbe await(LicenceSource licenceSource, Future<List<AvailableLicence>> result, long started, long deadline)
+    {
+        Exception failure;
+        try
+        {
+            List<AvailableLicence> licences = result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return new SourceProbe(licenceSource, licences, null, elapsedMillis(started));
+        }
+        catch (TimeoutException e)
+        {
+            result.cancel(true);
+            failure = new TimeoutException("Licence source " + licenceSource.getLocation() +
+                                           " did not respond within " + timeoutMillis + "ms");
+        }
+        catch (ExecutionException e)
+        {
+            failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            failure = e;
+        }
+        return new SourceProbe(licenceSource, null, failure, elapsedMillis(started));
+    }
+
+    /**
+     * Materialise the licences of a source so the (potentially slow) iteration happens on the probing thread.
+     * @param licenceSource the source to list
+     * @return the licences in the order the source reported them
+     */
+    private static List<AvailableLicence> listLicences(LicenceSource licenceSource)
+    {
+        List<AvailableLicence> licences = new ArrayList<>();
+        for (AvailableLicence availableLicence : licenceSource.findAvailableLicences())
+        {
+            LOGGER.info("\t\tLicence discovered {} at {}", availableLicence.getShortName(), licenceSource.getLocation());
+            licences.add(availableLicence);
+        }
+        return licences;
+    }
+
+    /**
+     * The position of the type within -licenceSourceType, unknown types go last.
+     * @param type the type of a licence source
+     * @return the priority, lower is preferred
+     */
+    private int priorityOf(String type)
+    {
+        int index = Arrays.asList(licenceSources).indexOf(type);
+        return index < 0 ? licenceSources.length : index;
+    }
+
+    private static long elapsedMillis(long started)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+}
@@ -0,0 +1,266 @@
+package Nuix.Baseline;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import nuix.engine.Engine;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the licences of long running engines and licences an engine again when its licence is lost,
+ * e.g. when a server or cloud-server licence drops mid run.
+ * <p>
+ * Every check interval each watched engine is asked for its licence. An engine without one is handed to the
+ * relicenser, typically App trying the source the licence came from and then the other sources, and retried
+ * with exponential backoff (plus some jitter so hosts sharing a licence server don't retry in step) until it
+ * is licenced again or no longer watched. onLost runs when the first engine starts recovering and onRestored
+ * once every engine is licenced again, the engine pool uses them to hold jobs back instead of failing them.
+ */
+final class LicenceMonitor implements AutoCloseable {
+
+    /**
+     * Generic logger definition, will use the class name as the prefix in the log.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(LicenceMonitor.class);
+
+    /**
+     * Acquires a licence for an engine that lost its own.
+     */
+    interface Relicenser {
+        void relicence(Engine engine) throws Exception;
+    }
+
+    private final Relicenser relicenser;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Runnable onLost;
+    private final Runnable onRestored;
+    private final Set<Engine> watched = ConcurrentHashMap.newKeySet();
+    private final Set<Engine> recovering = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<Engine, Runnable> whenRecovered = new IdentityHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean closed = false;
+
+    /**
+     * Watches licences, retrying after 1 second and backing off to at most 5 minutes between attempts.
+     * @param relicenser licences an engine again
+     * @param checkIntervalMillis how often every engine's licence is checked
+     * @param onLost runs when an engine starts recovering while none were
+     * @param onRestored runs when the last recovering engine is licenced again
+     */
+    LicenceMonitor(@Nonnull Relicenser relicenser, long checkIntervalMillis, @Nonnull Runnable onLost,
+                   @Nonnull Runnable onRestored)
+    {
+        this(relicenser, checkIntervalMillis, TimeUnit.SECONDS.toMillis(1), TimeUnit.MINUTES.toMillis(5), onLost, onRestored);
+    }
+
+    /**
+     * Watches licences.
+     * @param relicenser licences an engine again
+     * @param checkIntervalMillis how often every engine's licence is checked
+     * @param initialBackoffMillis the wait after the first failed attempt, doubling after each further one
+     * @param maxBackoffMillis the longest wait between attempts
+     * @param onLost runs when an engine starts recovering while none were
+     * @param onRestored runs when the last recovering engine is licenced again
+     */
+    LicenceMonitor(@Nonnull Relicenser relicenser, long checkIntervalMillis, long initialBackoffMillis,
+                   long maxBackoffMillis, @Nonnull Runnable onLost, @Nonnull Runnable onRestored)
+    {
+        this.relicenser           = relicenser;
+        this.initialBackoffMillis = Math.max(1, initialBackoffMillis);
+        this.maxBackoffMillis     = Math.max(this.initialBackoffMillis, maxBackoffMillis);
+        this.onLost               = onLost;
+        this.onRestored           = onRestored;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("licence-monitor").setDaemon(true).build());
+        this.scheduler.scheduleWithFixedDelay(this::checkAll, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts watching an engine's licence.
+     * @param engine a licenced engine
+     */
+    void watch(@Nonnull Engine engine)
+    {
+        watched.add(engine);
+    }
+
+    /**
+     * Stops watching an engine, e.g. because it is being closed. Any recovery of it is abandoned.
+     * @param engine the engine
+     */
+    void unwatch(@Nonnull Engine engine)
+    {
+        watched.remove(engine);
+        finished(engine);
+    }
+
+    /**
+     * Whether any engine is waiting on a licence.
+     * @return true while recovering
+     */
+    synchronized boolean isRecovering()
+    {
+        return !recovering.isEmpty();
+    }
+
+    /**
+     * Checks an engine now rather than at the next interval, recovering its licence if it was lost.
+     * @param engine a watched engine
+     * @return true if the engine is now being recovered, false if it is licenced, not watched or the monitor is closed
+     */
+    boolean recover(@Nonnull Engine engine)
+    {
+        return recover(engine, null);
+    }
+
+    /**
+     * Checks an engine now rather than at the next interval, recovering its licence if it was lost.
+     * @param engine a watched engine
+     * @param whenFinished runs once the engine is licenced again or its recovery is abandoned (it was unwatched or
+     *                     the monitor closed), only if this returns true
+     * @return true if the engine is now being recovered, false if it is licenced, not watched or the monitor is closed
+     */
+    boolean recover(@Nonnull Engine engine, @Nullable Runnable whenFinished)
+    {
+        if (closed || !watched.contains(engine) || isLicenced(engine))
+        {
+            return false;
+        }
+        boolean first;
+        synchronized (this)
+        {
+            if (whenFinished != null)
+            {
+                whenRecovered.putIfAbsent(engine, whenFinished);
+            }
+            if (!recovering.add(engine))
+            {
+                return true;
+            }
+            first = recovering.size() == 1;
+        }
+        LOGGER.warn("An engine has lost its licence, re-acquiring one");
+        if (first)
+        {
+            onLost.run();
+        }
+        scheduler.execute(() -> attempt(engine, 0));
+        return true;
+    }
+
+    /**
+     * Stops watching, recoveries in progress are abandoned.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        scheduler.shutdownNow();
+        List<Runnable> abandoned;
+        synchronized (this)
+        {
+            abandoned = new ArrayList<>(whenRecovered.values());
+            whenRecovered.clear();
+        }
+        for (Runnable whenFinished : abandoned)
+        {
+            whenFinished.run();
+        }
+    }
+
+    /**
+     * The wait before the attempt after a failed one.
+     * @param failedAttempts the attempts made so far
+     * @return milliseconds to wait
+     */
+    long backoffMillis(int failedAttempts)
+    {
+        long delay = initialBackoffMillis << Math.min(failedAttempts - 1, 30);
+        if (delay <= 0 || delay > maxBackoffMillis)
+        {
+            delay = maxBackoffMillis;
+        }
+        return delay - ThreadLocalRandom.current().nextLong(delay / 5 + 1);
+    }
+
+    private void checkAll()
+    {
+        for (Engine engine : watched)
+        {
+            recover(engine);
+        }
+    }
+
+    private void attempt(Engine engine, int attempt)
+    {
+        if (closed || !watched.contains(engine))
+        {
+            return;
+        }
+        try
+        {
+            relicenser.relicence(engine);
+        }
+        catch (Exception e)
+        {
+            LOGGER.warn("Attempt {} to re-acquire a licence failed", attempt + 1, e);
+        }
+        if (isLicenced(engine))
+        {
+            LOGGER.info("Licence re-acquired after {} attempts", attempt + 1);
+            finished(engine);
+            return;
+        }
+        long delay = backoffMillis(attempt + 1);
+        LOGGER.warn("Retrying the licence in {} ms", delay);
+        if (!closed)
+        {
+            scheduler.schedule(() -> attempt(engine, attempt + 1), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void finished(Engine engine)
+    {
+        boolean last;
+        Runnable whenFinished;
+        synchronized (this)
+        {
+            last = recovering.remove(engine) && recovering.isEmpty();
+            whenFinished = whenRecovered.remove(engine);
+        }
+        if (whenFinished != null)
+        {
+            whenFinished.run();
+        }
+        if (last)
+        {
+            onRestored.run();
+        }
+    }
+
+    private static boolean isLicenced(Engine engine)
+    {
+        try
+        {
+            return engine.getLicence() != null;
+        }
+        catch (Exception e)
+        {
+            return false;
+        }
+    }
+}
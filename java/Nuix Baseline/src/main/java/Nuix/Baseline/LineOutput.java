@@ -0,0 +1,35 @@
+package Nuix.Baseline;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+/**
+ * Where a worker side script writes its output, one line at a time, without waiting on I/O.
+ * @see AsyncLineWriter
+ * @see LoggerLineOutput
+ */
+public interface LineOutput extends AutoCloseable {
+
+    /**
+     * Writes a line.
+     * @param line the text to write
+     */
+    void println(@Nonnull String line);
+
+    /**
+     * Writes a line made of a fixed prefix and a value, implementations may avoid building the String.
+     * @param prefix the fixed text, e.g. "Worker Item Processed:"
+     * @param value the text that follows it
+     */
+    default void println(@Nonnull String prefix, @Nonnull String value)
+    {
+        println(prefix + value);
+    }
+
+    /**
+     * Writes anything still pending.
+     * @throws IOException if writing failed at any point
+     */
+    @Override
+    void close() throws IOException;
+}
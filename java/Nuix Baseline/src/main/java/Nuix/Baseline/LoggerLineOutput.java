@@ -0,0 +1,59 @@
+package Nuix.Baseline;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Sends worker side script output to a Log4j2 logger instead of stdout.
+ * With the production logging configuration the logger is asynchronous, lines are handed to a
+ * pre-allocated ring buffer and formatted and written by the logging thread, and messages are
+ * parameterized so no String is built per line on the worker's thread.
+ */
+public class LoggerLineOutput implements LineOutput {
+
+    /**
+     * The logger worker side scripts write to by default, configured in log4j2.xml.
+     */
+    public static final String WSS_LOGGER = "Nuix.Baseline.WSS";
+
+    private final Logger logger;
+
+    /**
+     * Writes to the Nuix.Baseline.WSS logger.
+     */
+    public LoggerLineOutput()
+    {
+        this(LogManager.getLogger(WSS_LOGGER));
+    }
+
+    /**
+     * Writes to the given logger.
+     * @param logger the logger, every line is logged at INFO
+     */
+    public LoggerLineOutput(@Nonnull Logger logger)
+    {
+        this.logger = logger;
+    }
+
+    @Override
+    public void println(@Nonnull String line)
+    {
+        logger.info(line);
+    }
+
+    @Override
+    public void println(@Nonnull String prefix, @Nonnull String value)
+    {
+        logger.info("{}{}", prefix, value);
+    }
+
+    /**
+     * Nothing to close, the logging framework flushes its appenders on shutdown.
+     */
+    @Override
+    public void close()
+    {
+    }
+}
@@ -0,0 +1,164 @@
+package Nuix.Baseline;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An open addressing map from non-negative long keys to long counts, without boxing.
+ * Keys and counts are interleaved in one array and probed linearly.
+ * <p>
+ * Writers must be serialized by the caller (the graph locks the owning node). Readers need no lock:
+ * a new entry's count is written before its key, counts are updated atomically, and a grown table is
+ * only published once it is complete, so a reader sees each entry either not at all or with a count
+ * that was correct at some point during the read.
+ */
+final class LongCountMap {
+
+    private static final long EMPTY = -1L;
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * Receives the entries of a map.
+     */
+    interface EntryConsumer {
+        void accept(long key, long count);
+    }
+
+    private volatile AtomicLongArray slots;
+    private volatile int size;
+
+    /**
+     * Adds to the count of a key, inserting it if it is new. The caller must hold the writer lock.
+     * @param key the key, must not be negative
+     * @param delta the amount to add
+     */
+    void add(long key, long delta)
+    {
+        AtomicLongArray table = slots;
+        if (table == null)
+        {
+            table = newTable(INITIAL_CAPACITY);
+            slots = table;
+        }
+        else if ((size + 1) * 10L > capacity(table) * 6L)
+        {
+            table = grow(table);
+            slots = table;
+        }
+        int mask = capacity(table) - 1;
+        for (int index = mix(key) & mask; ; index = (index + 1) & mask)
+        {
+            long existing = table.get(index * 2);
+            if (existing == key)
+            {
+                table.addAndGet(index * 2 + 1, delta);
+                return;
+            }
+            if (existing == EMPTY)
+            {
+                table.set(index * 2 + 1, delta);
+                table.set(index * 2, key);
+                size = size + 1;
+                return;
+            }
+        }
+    }
+
+    /**
+     * The count of a key, safe without a lock.
+     * @param key the key
+     * @return the count, 0 if the key is not in the map
+     */
+    long get(long key)
+    {
+        AtomicLongArray table = slots;
+        if (table == null)
+        {
+            return 0;
+        }
+        int mask = capacity(table) - 1;
+        for (int index = mix(key) & mask; ; index = (index + 1) & mask)
+        {
+            long existing = table.get(index * 2);
+            if (existing == key)
+            {
+                return table.get(index * 2 + 1);
+            }
+            if (existing == EMPTY)
+            {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * The number of keys in the map.
+     * @return the key count
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Visits every entry, safe without a lock.
+     * @param consumer receives each key and count
+     */
+    void forEach(EntryConsumer consumer)
+    {
+        AtomicLongArray table = slots;
+        if (table == null)
+        {
+            return;
+        }
+        for (int index = 0; index < table.length(); index += 2)
+        {
+            long key = table.get(index);
+            if (key != EMPTY)
+            {
+                consumer.accept(key, table.get(index + 1));
+            }
+        }
+    }
+
+    private static AtomicLongArray grow(AtomicLongArray table)
+    {
+        AtomicLongArray grown = newTable(capacity(table) * 2);
+        int mask = capacity(grown) - 1;
+        for (int from = 0; from < table.length(); from += 2)
+        {
+            long key = table.get(from);
+            if (key != EMPTY)
+            {
+                int index = mix(key) & mask;
+                while (grown.get(index * 2) != EMPTY)
+                {
+                    index = (index + 1) & mask;
+                }
+                grown.set(index * 2, key);
+                grown.set(index * 2 + 1, table.get(from + 1));
+            }
+        }
+        return grown;
+    }
+
+    private static AtomicLongArray newTable(int capacity)
+    {
+        AtomicLongArray table = new AtomicLongArray(capacity * 2);
+        for (int index = 0; index < table.length(); index += 2)
+        {
+            table.lazySet(index, EMPTY);
+        }
+        return table;
+    }
+
+    private static int capacity(AtomicLongArray table)
+    {
+        return table.length() / 2;
+    }
+
+    private static int mix(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
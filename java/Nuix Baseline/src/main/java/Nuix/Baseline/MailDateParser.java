@@ -0,0 +1,630 @@
+package Nuix.Baseline;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Parses the dates of mail headers, RFC 2822 ("Mon, 6 Jan 2020 10:00:00 -0800"), RFC 850
+ * ("Monday, 06-Jan-20 10:00:00 GMT"), asctime ("Mon Jan  6 10:00:00 2020") and ISO-8601 ("2020-01-06T10:00:00-08:00"),
+ * straight from the header buffer into epoch milliseconds without going through Joda formatters. Nothing is
+ * allocated unless a DateTime is asked for, and those share one cached zone per offset.
+ * <p>
+ * Comments such as "(PST)" are ignored. Besides numeric offsets the RFC 2822 zone names (UT, GMT, EST...) and the
+ * common abbreviations of other zones are understood, a date without a zone is UTC, except an ISO date without an
+ * offset which is in the default zone like Joda's ISO parser. The tolerant mode also accepts what old mail
+ * clients wrote: unknown words and punctuation, a missing time, a missing or second time zone and AM/PM.
+ * Years outside 1900 to 9999 are invalid, like any other date that can't be parsed.
+ * <p>
+ * Keeps the last date parsed, so keep one per thread.
+ */
+final class MailDateParser {
+
+    /**
+     * What parseMillis returns for a date that could not be parsed.
+     */
+    static final long INVALID = Long.MIN_VALUE;
+
+    private static final int NO_OFFSET = Integer.MIN_VALUE;
+    private static final int MAX_OFFSET_MINUTES = 18 * 60;
+    private static final int MIN_YEAR = 1900;
+    private static final int MAX_YEAR = 9999;
+
+    /**
+     * Fixed offset zones by offset minutes + MAX_OFFSET_MINUTES, created as they are first seen.
+     */
+    private static final AtomicReferenceArray<DateTimeZone> ZONES = new AtomicReferenceArray<>(2 * MAX_OFFSET_MINUTES + 1);
+
+    private static final String[] MONTHS = {"january", "february", "march", "april", "may", "june", "july",
+            "august", "september", "october", "november", "december"};
+    private static final String[] WEEKDAYS = {"monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday"};
+
+    /**
+     * Zone names and their offsets in minutes, the RFC 2822 names first.
+     */
+    private static final String[] ZONE_NAMES = {
+            "UT", "GMT", "Z", "EST", "EDT", "CST", "CDT", "MST", "MDT", "PST", "PDT",
+            "UTC", "WET", "WEST", "BST", "CET", "CEST", "MET", "MEST", "EET", "EEST", "MSK",
+            "HKT", "SGT", "AWST", "JST", "KST", "ACST", "AEST", "AEDT", "NZST", "NZDT",
+            "AKST", "AKDT", "HST", "AST", "ADT", "NST", "NDT"};
+    private static final int[] ZONE_OFFSETS = {
+            0, 0, 0, -300, -240, -360, -300, -420, -360, -480, -420,
+            0, 0, 60, 60, 60, 120, 60, 120, 120, 180, 180,
+            480, 480, 480, 540, 540, 570, 600, 660, 720, 780,
+            -540, -480, -600, -240, -180, -210, -150};
+
+    private final boolean tolerant;
+
+    private long millis = INVALID;
+    private int offsetMinutes;
+    private boolean defaultZone;
+
+    /**
+     * A parser.
+     * @param tolerant true to accept the malformed dates of old mail, false to accept only well formed dates
+     */
+    MailDateParser(boolean tolerant)
+    {
+        this.tolerant = tolerant;
+    }
+
+    /**
+     * Parses a date as a DateTime in the zone it was written in.
+     * @param value the header value
+     * @return the date, null if it could not be parsed
+     */
+    @Nullable
+    DateTime parse(@Nullable CharSequence value)
+    {
+        return parseMillis(value) == INVALID ? null : toDateTime();
+    }
+
+    /**
+     * Parses a date.
+     * @param value the header value
+     * @return milliseconds since the epoch, INVALID if it could not be parsed
+     */
+    long parseMillis(@Nullable CharSequence value)
+    {
+        millis        = INVALID;
+        offsetMinutes = 0;
+        defaultZone   = false;
+        if (value == null)
+        {
+            return INVALID;
+        }
+        int start = 0;
+        int end = value.length();
+        while (start < end && Character.isWhitespace(value.charAt(start)))
+        {
+            start++;
+        }
+        boolean parsed = end - start > 4 && isDigit(value, start) && isDigit(value, start + 3) && value.charAt(start + 4) == '-'
+                ? parseIso(value, start, end)
+                : parseMail(value, start, end);
+        if (!parsed)
+        {
+            millis = INVALID;
+        }
+        return millis;
+    }
+
+    /**
+     * The offset of the last date parsed.
+     * @return minutes east of UTC
+     */
+    int getOffsetMinutes()
+    {
+        return offsetMinutes;
+    }
+
+    /**
+     * The last date parsed as a DateTime, in a fixed zone of the offset it was written with.
+     * @return the date
+     * @throws IllegalStateException if the last date could not be parsed
+     */
+    @Nonnull
+    DateTime toDateTime()
+    {
+        if (millis == INVALID)
+        {
+            throw new IllegalStateException("No date was parsed");
+        }
+        return new DateTime(millis, defaultZone ? DateTimeZone.getDefault() : zone(offsetMinutes));
+    }
+
+    /**
+     * The fixed zone of an offset, one shared instance per offset.
+     * @param offsetMinutes minutes east of UTC, at most 18 hours
+     * @return the zone
+     */
+    @Nonnull
+    static DateTimeZone zone(int offsetMinutes)
+    {
+        int index = offsetMinutes + MAX_OFFSET_MINUTES;
+        DateTimeZone zone = ZONES.get(index);
+        if (zone == null)
+        {
+            zone = DateTimeZone.forOffsetMillis(offsetMinutes * 60000);
+            ZONES.lazySet(index, zone);
+        }
+        return zone;
+    }
+
+    /**
+     * yyyy-MM-dd, then optionally T or a space, HH:mm, :ss, .SSS and Z or +HH[:mm].
+     */
+    private boolean parseIso(CharSequence value, int start, int end)
+    {
+        int year = digits(value, start, 4);
+        int month = start + 7 <= end && value.charAt(start + 4) == '-' ? digits(value, start + 5, 2) : -1;
+        int day = start + 10 <= end && value.charAt(start + 7) == '-' ? digits(value, start + 8, 2) : -1;
+        if (year < 0 || month < 0 || day < 0)
+        {
+            return false;
+        }
+        int position = start + 10;
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int fraction = 0;
+        int offset = NO_OFFSET;
+        if (position < end && (value.charAt(position) == 'T' || value.charAt(position) == ' ') && isDigit(value, position + 1))
+        {
+            hour   = digits(value, position + 1, 2);
+            minute = position + 6 <= end && value.charAt(position + 3) == ':' ? digits(value, position + 4, 2) : -1;
+            if (hour < 0 || minute < 0)
+            {
+                return false;
+            }
+            position += 6;
+            if (position < end && value.charAt(position) == ':')
+            {
+                second = digits(value, position + 1, 2);
+                if (second < 0)
+                {
+                    return false;
+                }
+                position += 3;
+                if (position < end && (value.charAt(position) == '.' || value.charAt(position) == ','))
+                {
+                    int scale = 100;
+                    for (position++; position < end && isDigit(value, position); position++, scale /= 10)
+                    {
+                        fraction += (value.charAt(position) - '0') * scale;
+                    }
+                }
+            }
+            if (position < end && (value.charAt(position) == 'Z' || value.charAt(position) == 'z'))
+            {
+                offset = 0;
+                position++;
+            }
+            else if (position < end && (value.charAt(position) == '+' || value.charAt(position) == '-'))
+            {
+                int offsetEnd = offsetEnd(value, position + 1, end);
+                offset = offset(value, position, offsetEnd);
+                if (offset == NO_OFFSET)
+                {
+                    return false;
+                }
+                position = offsetEnd;
+            }
+        }
+        if (!tolerant && !onlyCommentsFrom(value, position, end))
+        {
+            return false;
+        }
+        return resolve(year, month, day, hour, minute, second, fraction, offset, true);
+    }
+
+    /**
+     * RFC 2822, RFC 850 and asctime dates, read as a sequence of words, numbers, times and offsets.
+     */
+    private boolean parseMail(CharSequence value, int start, int end)
+    {
+        int day = -1;
+        int month = -1;
+        int year = -1;
+        int hour = -1;
+        int minute = -1;
+        int second = 0;
+        int fraction = 0;
+        int offset = NO_OFFSET;
+        int meridiem = 0;
+        boolean afterUniversal = false;
+        int position = start;
+        while (position < end)
+        {
+            char c = value.charAt(position);
+            if (c == '(')
+            {
+                position = commentEnd(value, position, end);
+                continue;
+            }
+            if (Character.isWhitespace(c) || c == ',')
+            {
+                position++;
+                continue;
+            }
+            if (isLetter(c))
+            {
+                int wordEnd = position;
+                while (wordEnd < end && isLetter(value.charAt(wordEnd)))
+                {
+                    wordEnd++;
+                }
+                int length = wordEnd - position;
+                int monthOfWord = indexOfAbbreviation(MONTHS, value, position, length);
+                int zone = indexOfName(ZONE_NAMES, value, position, length);
+                afterUniversal = false;
+                if (monthOfWord >= 0)
+                {
+                    if (month >= 0 && !tolerant)
+                    {
+                        return false;
+                    }
+                    month = monthOfWord + 1;
+                }
+                else if (indexOfAbbreviation(WEEKDAYS, value, position, length) >= 0)
+                {
+                    //the day of the week is redundant
+                }
+                else if (zone >= 0)
+                {
+                    if (offset != NO_OFFSET && !tolerant)
+                    {
+                        return false;
+                    }
+                    if (offset == NO_OFFSET)
+                    {
+                        offset = ZONE_OFFSETS[zone];
+                    }
+                    //UT, GMT, Z or UTC
+                    afterUniversal = zone <= 2 || zone == 11;
+                }
+                else if (tolerant && length == 2 && hour >= 0 && (matchesIgnoreCase("AM", value, position, length) || matchesIgnoreCase("PM", value, position, length)))
+                {
+                    meridiem = Character.toUpperCase(value.charAt(position)) == 'A' ? 1 : 2;
+                }
+                else if (!tolerant)
+                {
+                    return false;
+                }
+                position = wordEnd;
+                continue;
+            }
+            if ((c == '+' || c == '-') && hour >= 0 && isDigit(value, position + 1))
+            {
+                int offsetEnd = offsetEnd(value, position + 1, end);
+                //RFC 2822 offsets are +HHmm, the other forms are only tolerated
+                int parsedOffset = tolerant || offsetEnd - position == 5 ? offset(value, position, offsetEnd) : NO_OFFSET;
+                if (parsedOffset == NO_OFFSET)
+                {
+                    //even tolerated, a date with an offset that can't be read would come out silently wrong
+                    return false;
+                }
+                if (offset == NO_OFFSET || afterUniversal && tolerant)
+                {
+                    //GMT+0200 is an offset from GMT
+                    offset = parsedOffset;
+                }
+                else if (!tolerant)
+                {
+                    return false;
+                }
+                afterUniversal = false;
+                position = offsetEnd;
+                continue;
+            }
+            afterUniversal = false;
+            if (isDigit(value, position))
+            {
+                int numberEnd = position;
+                int number = 0;
+                while (numberEnd < end && isDigit(value, numberEnd) && numberEnd - position < 9)
+                {
+                    number = number * 10 + value.charAt(numberEnd++) - '0';
+                }
+                int length = numberEnd - position;
+                if (numberEnd < end && value.charAt(numberEnd) == ':' && hour < 0 && length <= 2)
+                {
+                    hour   = number;
+                    minute = digits(value, numberEnd + 1, 2);
+                    if (minute < 0)
+                    {
+                        return false;
+                    }
+                    position = numberEnd + 3;
+                    if (position < end && value.charAt(position) == ':')
+                    {
+                        second = digits(value, position + 1, 2);
+                        if (second < 0)
+                        {
+                            return false;
+                        }
+                        position += 3;
+                        if (position < end && value.charAt(position) == '.' && isDigit(value, position + 1))
+                        {
+                            int scale = 100;
+                            for (position++; position < end && isDigit(value, position); position++, scale /= 10)
+                            {
+                                fraction += (value.charAt(position) - '0') * scale;
+                            }
+                        }
+                    }
+                    continue;
+                }
+                if (length >= 3 && year < 0)
+                {
+                    year = length == 3 ? 1900 + number : number;
+                }
+                else if (length <= 2 && day < 0)
+                {
+                    day = number;
+                }
+                else if (length <= 2 && year < 0)
+                {
+                    year = number < 50 ? 2000 + number : 1900 + number;
+                }
+                else if (!tolerant)
+                {
+                    return false;
+                }
+                position = numberEnd;
+                continue;
+            }
+            if (c != '-' && !tolerant)
+            {
+                return false;
+            }
+            position++;
+        }
+        if (hour < 0)
+        {
+            if (!tolerant)
+            {
+                return false;
+            }
+            hour   = 0;
+            minute = 0;
+        }
+        if (meridiem != 0)
+        {
+            if (hour < 1 || hour > 12)
+            {
+                return false;
+            }
+            hour = hour % 12 + (meridiem == 2 ? 12 : 0);
+        }
+        if (day < 0 || month < 0 || year < 0)
+        {
+            return false;
+        }
+        return resolve(year, month, day, hour, minute, second, fraction, offset == NO_OFFSET ? 0 : offset, false);
+    }
+
+    /**
+     * Validates the fields and sets the result.
+     * @param offset minutes east of UTC, NO_OFFSET for the default zone
+     */
+    private boolean resolve(int year, int month, int day, int hour, int minute, int second, int fraction, int offset,
+                            boolean iso)
+    {
+        if (year < MIN_YEAR || year > MAX_YEAR || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour > 23 || minute > 59 || second > 60 || Math.abs(offset == NO_OFFSET ? 0 : offset) > MAX_OFFSET_MINUTES)
+        {
+            return false;
+        }
+        //a leap second is the last millisecond of the minute, as far as DateTime can tell
+        long local = daysFromEpoch(year, month, day) * 86400000L + hour * 3600000L + minute * 60000L
+                + Math.min(second, 59) * 1000L + (second == 60 ? 999 : fraction);
+        if (offset == NO_OFFSET && iso)
+        {
+            DateTimeZone zone = DateTimeZone.getDefault();
+            offsetMinutes = zone.getOffsetFromLocal(local) / 60000;
+            millis        = local - zone.getOffsetFromLocal(local);
+            defaultZone   = true;
+            return true;
+        }
+        offsetMinutes = offset;
+        millis        = local - offset * 60000L;
+        return true;
+    }
+
+    /**
+     * Days from 1970-01-01 to a date of the proleptic Gregorian calendar.
+     */
+    static long daysFromEpoch(int year, int month, int day)
+    {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int daysInMonth(int year, int month)
+    {
+        switch (month)
+        {
+            case 2:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * The end of the digits and colon of an offset starting at from.
+     */
+    private static int offsetEnd(CharSequence value, int from, int end)
+    {
+        int position = from;
+        while (position < end && position - from < 5 && (isDigit(value, position) || value.charAt(position) == ':'))
+        {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * +HHmm, +HH:mm, +HH or +H from the sign up to end.
+     * @return minutes east of UTC, NO_OFFSET if malformed or beyond 18 hours or 59 minutes
+     */
+    private static int offset(CharSequence value, int sign, int end)
+    {
+        int length = end - sign - 1;
+        int hours;
+        int minutes = 0;
+        if (length == 4 && isDigit(value, sign + 3))
+        {
+            hours   = digits(value, sign + 1, 2);
+            minutes = digits(value, sign + 3, 2);
+        }
+        else if (length == 5 && value.charAt(sign + 3) == ':')
+        {
+            hours   = digits(value, sign + 1, 2);
+            minutes = digits(value, sign + 4, 2);
+        }
+        else if (length == 1 || length == 2)
+        {
+            hours = digits(value, sign + 1, length);
+        }
+        else
+        {
+            return NO_OFFSET;
+        }
+        if (hours < 0 || hours > MAX_OFFSET_MINUTES / 60 || minutes < 0 || minutes > 59)
+        {
+            return NO_OFFSET;
+        }
+        int offset = hours * 60 + minutes;
+        return value.charAt(sign) == '-' ? -offset : offset;
+    }
+
+    private static int commentEnd(CharSequence value, int open, int end)
+    {
+        int depth = 0;
+        for (int position = open; position < end; position++)
+        {
+            char c = value.charAt(position);
+            if (c == '(')
+            {
+                depth++;
+            }
+            else if (c == ')' && --depth == 0)
+            {
+                return position + 1;
+            }
+        }
+        return end;
+    }
+
+    private static boolean onlyCommentsFrom(CharSequence value, int position, int end)
+    {
+        while (position < end)
+        {
+            char c = value.charAt(position);
+            if (c == '(')
+            {
+                position = commentEnd(value, position, end);
+            }
+            else if (Character.isWhitespace(c))
+            {
+                position++;
+            }
+            else
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The value of count digits, -1 if they are not all digits.
+     */
+    private static int digits(CharSequence value, int from, int count)
+    {
+        int number = 0;
+        for (int position = from; position < from + count; position++)
+        {
+            if (!isDigit(value, position))
+            {
+                return -1;
+            }
+            number = number * 10 + value.charAt(position) - '0';
+        }
+        return number;
+    }
+
+    private static boolean isDigit(CharSequence value, int position)
+    {
+        if (position >= value.length())
+        {
+            return false;
+        }
+        char c = value.charAt(position);
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * The index of the name the word abbreviates to at least 3 letters ("Sep", "Sept", "September"), -1 if none.
+     */
+    private static int indexOfAbbreviation(String[] names, CharSequence value, int start, int length)
+    {
+        for (int index = 0; index < names.length; index++)
+        {
+            if (length >= 3 && length <= names[index].length() && matchesIgnoreCase(names[index], value, start, length))
+            {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The index of the name equal to the word, -1 if none is.
+     */
+    private static int indexOfName(String[] names, CharSequence value, int start, int length)
+    {
+        for (int index = 0; index < names.length; index++)
+        {
+            if (names[index].length() == length && matchesIgnoreCase(names[index], value, start, length))
+            {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether the first length letters of name match the value from start, ignoring case.
+     */
+    private static boolean matchesIgnoreCase(String name, CharSequence value, int start, int length)
+    {
+        for (int index = 0; index < length; index++)
+        {
+            if (Character.toLowerCase(name.charAt(index)) != Character.toLowerCase(value.charAt(start + index)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
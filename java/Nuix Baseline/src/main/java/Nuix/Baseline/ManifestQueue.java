@@ -0,0 +1,108 @@
+package Nuix.Baseline;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A folder of batch manifests waiting to be run by a resident engine host.
+ * <p>
+ * Manifests are *.json files taken oldest name first, so a writer should create them under another name and
+ * rename them in once complete. A run manifest is moved to the done folder, or to the failed folder if it could
+ * not be read or any of its jobs did not complete, from where it can be dropped in again to resume it.
+ * A file named stop ends the queue, so the host can close its engines and release their licences.
+ */
+final class ManifestQueue implements AutoCloseable {
+
+    static final String STOP = "stop";
+
+    /**
+     * Longest wait for a change to the folder before it is listed again, in case the watch missed one.
+     */
+    private static final long RESCAN_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private final Path folder;
+    private final Path done;
+    private final Path failed;
+    private final WatchService watcher;
+
+    /**
+     * Watches a queue folder, creating it if it does not exist.
+     * @param folder the folder manifests are dropped into
+     * @throws IOException if the folder can't be created or watched
+     */
+    ManifestQueue(@Nonnull Path folder) throws IOException
+    {
+        this.folder  = Files.createDirectories(folder);
+        this.done    = folder.resolve("done");
+        this.failed  = folder.resolve("failed");
+        this.watcher = folder.getFileSystem().newWatchService();
+        folder.register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+    }
+
+    /**
+     * Waits for the next manifest.
+     * @return the manifest, null once the stop file has been dropped in
+     * @throws IOException if the folder can't be listed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Nullable
+    Path take() throws IOException, InterruptedException
+    {
+        while (true)
+        {
+            if (Files.deleteIfExists(folder.resolve(STOP)))
+            {
+                return null;
+            }
+            Path next = null;
+            try (DirectoryStream<Path> manifests = Files.newDirectoryStream(folder, "*.json"))
+            {
+                for (Path manifest : manifests)
+                {
+                    if (Files.isRegularFile(manifest) && (next == null || manifest.getFileName().toString()
+                            .compareTo(next.getFileName().toString()) < 0))
+                    {
+                        next = manifest;
+                    }
+                }
+            }
+            if (next != null)
+            {
+                return next;
+            }
+            WatchKey key = watcher.poll(RESCAN_MILLIS, TimeUnit.MILLISECONDS);
+            if (key != null)
+            {
+                key.pollEvents();
+                key.reset();
+            }
+        }
+    }
+
+    /**
+     * Takes a manifest out of the queue once it has been run.
+     * @param manifest a manifest returned by take
+     * @param completed whether every job of it completed
+     * @throws IOException if it can't be moved
+     */
+    void finished(@Nonnull Path manifest, boolean completed) throws IOException
+    {
+        Path to = Files.createDirectories(completed ? done : failed);
+        Files.move(manifest, to.resolve(manifest.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        watcher.close();
+    }
+}
@@ -0,0 +1,255 @@
+package Nuix.Baseline;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A forward only line cursor over a memory-mapped file.
+ * The file is mapped a window at a time so files of any size can be read without loading them onto the heap,
+ * lines are only decoded into Strings when asked for, so skipping (e.g. message bodies) costs no allocation.
+ * Lines end at \n, a trailing \r is not part of the line. Not thread safe.
+ */
+final class MappedLineReader implements Closeable {
+
+    static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private int windowSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int lineOffset;
+    private int lineLength;
+    private long nextLineStart = 0;
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Opens the file for reading with the default window size.
+     * @param file the file to read
+     * @throws IOException if the file could not be opened
+     */
+    MappedLineReader(@Nonnull Path file) throws IOException
+    {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Opens the file for reading.
+     * @param file the file to read
+     * @param windowSize how many bytes are mapped at once, grown automatically for longer lines
+     * @throws IOException if the file could not be opened
+     */
+    MappedLineReader(@Nonnull Path file, int windowSize) throws IOException
+    {
+        this.channel    = FileChannel.open(file, StandardOpenOption.READ);
+        this.size       = channel.size();
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Moves to the next line.
+     * @return false at the end of the file
+     * @throws IOException if the file could not be mapped
+     */
+    boolean next() throws IOException
+    {
+        if (nextLineStart >= size)
+        {
+            return false;
+        }
+        long lineStart = nextLineStart;
+        while (true)
+        {
+            if (window == null || lineStart < windowStart || lineStart >= windowStart + window.limit())
+            {
+                map(lineStart);
+            }
+            int start = (int) (lineStart - windowStart);
+            int limit = window.limit();
+            int end = start;
+            while (end < limit && window.get(end) != '\n')
+            {
+                end++;
+            }
+            boolean windowHoldsRestOfFile = windowStart + limit >= size;
+            if (end < limit || windowHoldsRestOfFile)
+            {
+                lineOffset    = start;
+                lineLength    = end - start;
+                nextLineStart = windowStart + end + 1;
+                if (lineLength > 0 && window.get(start + lineLength - 1) == '\r')
+                {
+                    lineLength--;
+                }
+                return true;
+            }
+            if (start == 0)
+            {
+                //the line is longer than the window
+                windowSize = (int) Math.min(Integer.MAX_VALUE - 8, (long) windowSize * 2);
+            }
+            map(lineStart);
+        }
+    }
+
+    /**
+     * The length of the current line in bytes.
+     * @return the line length, excluding the line terminator
+     */
+    int length()
+    {
+        return lineLength;
+    }
+
+    /**
+     * A byte of the current line.
+     * @param index the position within the line
+     * @return the byte
+     */
+    byte byteAt(int index)
+    {
+        return window.get(lineOffset + index);
+    }
+
+    /**
+     * Whether the current line starts with the ASCII prefix, exactly.
+     * @param prefix the prefix to test
+     * @return true if the line starts with the prefix
+     */
+    boolean startsWith(@Nonnull String prefix)
+    {
+        if (prefix.length() > lineLength)
+        {
+            return false;
+        }
+        for (int index = 0; index < prefix.length(); index++)
+        {
+            if (byteAt(index) != prefix.charAt(index))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the current line is a folded continuation of the previous header line.
+     * @return true if the line starts with a space or tab
+     */
+    boolean isContinuation()
+    {
+        return lineLength > 0 && (byteAt(0) == ' ' || byteAt(0) == '\t');
+    }
+
+    /**
+     * Decodes part of the current line.
+     * @param from the first byte to decode
+     * @param charset the encoding of the line
+     * @return the decoded text
+     */
+    @Nonnull
+    String toString(int from, @Nonnull Charset charset)
+    {
+        int length = lineLength - from;
+        if (scratch.length < length)
+        {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int index = 0; index < length; index++)
+        {
+            scratch[index] = window.get(lineOffset + from + index);
+        }
+        return new String(scratch, 0, length, charset);
+    }
+
+    /**
+     * Decodes part of the current line as UTF-8 straight into the builder, without an intermediate String.
+     * Headers are ASCII by definition but raw UTF-8 is common in practice. Malformed bytes become U+FFFD, as do
+     * overlong forms and encoded surrogates, so the builder never holds a lone surrogate.
+     * @param from the first byte to append
+     * @param into where to append
+     */
+    void appendUtf8(int from, @Nonnull StringBuilder into)
+    {
+        int index = from;
+        while (index < lineLength)
+        {
+            int lead = byteAt(index) & 0xFF;
+            if (lead < 0x80)
+            {
+                into.append((char) lead);
+                index++;
+                continue;
+            }
+            int extra = lead >= 0xF0 ? 3 : lead >= 0xE0 ? 2 : lead >= 0xC0 ? 1 : -1;
+            if (extra < 0 || index + extra >= lineLength)
+            {
+                into.append('\uFFFD');
+                index++;
+                continue;
+            }
+            int codePoint = lead & (0x3F >> extra);
+            boolean valid = true;
+            for (int next = 1; next <= extra; next++)
+            {
+                int continuation = byteAt(index + next) & 0xFF;
+                if ((continuation & 0xC0) != 0x80)
+                {
+                    valid = false;
+                    break;
+                }
+                codePoint = (codePoint << 6) | (continuation & 0x3F);
+            }
+            int smallest = extra == 1 ? 0x80 : extra == 2 ? 0x800 : 0x10000;
+            if (valid && codePoint >= smallest && codePoint <= Character.MAX_CODE_POINT
+                    && (codePoint < Character.MIN_SURROGATE || codePoint > Character.MAX_SURROGATE))
+            {
+                into.appendCodePoint(codePoint);
+                index += extra + 1;
+            }
+            else
+            {
+                into.append('\uFFFD');
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Unmaps the current window and closes the file, so it can be deleted or replaced straight away.
+     * @throws IOException if the file could not be closed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        unmap();
+        channel.close();
+    }
+
+    private void map(long position) throws IOException
+    {
+        long length = Math.min(windowSize, size - position);
+        unmap();
+        window      = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        windowStart = position;
+    }
+
+    /**
+     * Unmaps the window now rather than when it is garbage collected, a forward only reader never returns to it.
+     */
+    private void unmap()
+    {
+        if (window != null)
+        {
+            MappedByteBuffer mapped = window;
+            window = null;
+            MappedMemory.unmap(mapped);
+        }
+    }
+}
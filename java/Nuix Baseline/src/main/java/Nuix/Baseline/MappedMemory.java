@@ -0,0 +1,360 @@
+package Nuix.Baseline;
+
+import javax.annotation.Nonnull;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * The only use of sun.misc.Unsafe: atomic and plain access to memory mapped files by native address, which
+ * MappedByteBuffer does not offer on Java 8 (no compare-and-swap), and unmapping a file before the buffer is
+ * garbage collected. Unsafe is looked up by name and called through method handles bound to its instance, so javac
+ * never sees the internal API and the build has no warnings for it. The handles are constants, so the JIT inlines
+ * the calls like direct ones.
+ * <p>
+ * Addresses are not checked, an address outside a live mapping crashes the JVM.
+ */
+final class MappedMemory {
+
+    private static final MethodHandle GET_BYTE;
+    private static final MethodHandle PUT_BYTE;
+    private static final MethodHandle GET_INT;
+    private static final MethodHandle PUT_INT;
+    private static final MethodHandle GET_INT_VOLATILE;
+    private static final MethodHandle PUT_INT_VOLATILE;
+    private static final MethodHandle GET_AND_ADD_INT;
+    private static final MethodHandle GET_LONG;
+    private static final MethodHandle PUT_LONG;
+    private static final MethodHandle GET_LONG_VOLATILE;
+    private static final MethodHandle PUT_LONG_VOLATILE;
+    private static final MethodHandle GET_AND_ADD_LONG;
+    private static final MethodHandle COMPARE_AND_SWAP_LONG;
+    private static final MethodHandle COPY_MEMORY;
+    private static final long ADDRESS_FIELD;
+    private static final long BYTE_ARRAY_BASE;
+
+    /**
+     * Unsafe.invokeCleaner on Java 9 and later, null on Java 8 where the buffer's own cleaner is used.
+     */
+    private static final MethodHandle INVOKE_CLEANER;
+
+    static
+    {
+        try
+        {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Object unsafe = lookup.unreflectGetter(theUnsafe).invoke();
+
+            GET_BYTE              = bind(lookup, unsafeClass, unsafe, "getByte", byte.class, long.class);
+            PUT_BYTE              = bind(lookup, unsafeClass, unsafe, "putByte", void.class, long.class, byte.class);
+            GET_INT               = bind(lookup, unsafeClass, unsafe, "getInt", int.class, long.class);
+            PUT_INT               = bind(lookup, unsafeClass, unsafe, "putInt", void.class, long.class, int.class);
+            GET_INT_VOLATILE      = bind(lookup, unsafeClass, unsafe, "getIntVolatile", int.class, Object.class, long.class);
+            PUT_INT_VOLATILE      = bind(lookup, unsafeClass, unsafe, "putIntVolatile", void.class, Object.class, long.class, int.class);
+            GET_AND_ADD_INT       = bind(lookup, unsafeClass, unsafe, "getAndAddInt", int.class, Object.class, long.class, int.class);
+            GET_LONG              = bind(lookup, unsafeClass, unsafe, "getLong", long.class, long.class);
+            PUT_LONG              = bind(lookup, unsafeClass, unsafe, "putLong", void.class, long.class, long.class);
+            GET_LONG_VOLATILE     = bind(lookup, unsafeClass, unsafe, "getLongVolatile", long.class, Object.class, long.class);
+            PUT_LONG_VOLATILE     = bind(lookup, unsafeClass, unsafe, "putLongVolatile", void.class, Object.class, long.class, long.class);
+            GET_AND_ADD_LONG      = bind(lookup, unsafeClass, unsafe, "getAndAddLong", long.class, Object.class, long.class, long.class);
+            COMPARE_AND_SWAP_LONG = bind(lookup, unsafeClass, unsafe, "compareAndSwapLong", boolean.class, Object.class, long.class, long.class, long.class);
+            COPY_MEMORY           = bind(lookup, unsafeClass, unsafe, "copyMemory", void.class, Object.class, long.class, Object.class, long.class, long.class);
+
+            MethodHandle objectFieldOffset = bind(lookup, unsafeClass, unsafe, "objectFieldOffset", long.class, Field.class);
+            MethodHandle arrayBaseOffset = bind(lookup, unsafeClass, unsafe, "arrayBaseOffset", int.class, Class.class);
+            ADDRESS_FIELD   = (long) objectFieldOffset.invokeExact(Buffer.class.getDeclaredField("address"));
+            BYTE_ARRAY_BASE = (int) arrayBaseOffset.invokeExact(byte[].class);
+
+            MethodHandle invokeCleaner;
+            try
+            {
+                invokeCleaner = bind(lookup, unsafeClass, unsafe, "invokeCleaner", void.class, ByteBuffer.class);
+            }
+            catch (NoSuchMethodException e)
+            {
+                invokeCleaner = null;
+            }
+            INVOKE_CLEANER = invokeCleaner;
+        }
+        catch (Throwable e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private MappedMemory()
+    {
+    }
+
+    private static MethodHandle bind(MethodHandles.Lookup lookup, Class<?> unsafeClass, Object unsafe, String name,
+                                     Class<?> returnType, Class<?>... parameterTypes) throws ReflectiveOperationException
+    {
+        return lookup.findVirtual(unsafeClass, name, MethodType.methodType(returnType, parameterTypes)).bindTo(unsafe);
+    }
+
+    /**
+     * Unsafe throws no checked exceptions, anything else thrown through a handle is passed on unchanged.
+     */
+    private static RuntimeException rethrow(Throwable e)
+    {
+        if (e instanceof Error)
+        {
+            throw (Error) e;
+        }
+        if (e instanceof RuntimeException)
+        {
+            return (RuntimeException) e;
+        }
+        return new IllegalStateException(e);
+    }
+
+    /**
+     * The native address of a mapping's first byte.
+     * @param mapping the mapped file
+     * @return the address, valid until the mapping is unmapped
+     */
+    static long address(@Nonnull MappedByteBuffer mapping)
+    {
+        try
+        {
+            return (long) GET_LONG_VOLATILE.invokeExact((Object) mapping, ADDRESS_FIELD);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Unmaps a file now rather than when its buffer is garbage collected. The buffer and every address
+     * into it must not be used afterwards.
+     * @param mapping the mapped file
+     */
+    static void unmap(@Nonnull MappedByteBuffer mapping)
+    {
+        try
+        {
+            if (INVOKE_CLEANER != null)
+            {
+                INVOKE_CLEANER.invokeExact((ByteBuffer) mapping);
+                return;
+            }
+            //Java 8: DirectByteBuffer.cleaner().clean()
+            Method cleanerMethod = mapping.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(mapping);
+            if (cleaner != null)
+            {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        }
+        catch (ReflectiveOperationException e)
+        {
+            //left for the garbage collector
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static byte getByte(long address)
+    {
+        try
+        {
+            return (byte) GET_BYTE.invokeExact(address);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static void putByte(long address, byte value)
+    {
+        try
+        {
+            PUT_BYTE.invokeExact(address, value);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static int getInt(long address)
+    {
+        try
+        {
+            return (int) GET_INT.invokeExact(address);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static void putInt(long address, int value)
+    {
+        try
+        {
+            PUT_INT.invokeExact(address, value);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static int getIntVolatile(long address)
+    {
+        try
+        {
+            return (int) GET_INT_VOLATILE.invokeExact((Object) null, address);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static void putIntVolatile(long address, int value)
+    {
+        try
+        {
+            PUT_INT_VOLATILE.invokeExact((Object) null, address, value);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static int getAndAddInt(long address, int delta)
+    {
+        try
+        {
+            return (int) GET_AND_ADD_INT.invokeExact((Object) null, address, delta);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static long getLong(long address)
+    {
+        try
+        {
+            return (long) GET_LONG.invokeExact(address);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static void putLong(long address, long value)
+    {
+        try
+        {
+            PUT_LONG.invokeExact(address, value);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static long getLongVolatile(long address)
+    {
+        try
+        {
+            return (long) GET_LONG_VOLATILE.invokeExact((Object) null, address);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static void putLongVolatile(long address, long value)
+    {
+        try
+        {
+            PUT_LONG_VOLATILE.invokeExact((Object) null, address, value);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static long getAndAddLong(long address, long delta)
+    {
+        try
+        {
+            return (long) GET_AND_ADD_LONG.invokeExact((Object) null, address, delta);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static boolean compareAndSwapLong(long address, long expected, long value)
+    {
+        try
+        {
+            return (boolean) COMPARE_AND_SWAP_LONG.invokeExact((Object) null, address, expected, value);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Copies bytes from native memory into an array.
+     * @param address the first byte to copy
+     * @param bytes the array, filled from its start
+     * @param length the number of bytes
+     */
+    static void copyToArray(long address, @Nonnull byte[] bytes, int length)
+    {
+        try
+        {
+            COPY_MEMORY.invokeExact((Object) null, address, (Object) bytes, BYTE_ARRAY_BASE, (long) length);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Copies bytes from an array into native memory.
+     * @param bytes the array, copied from its start
+     * @param address where the first byte goes
+     * @param length the number of bytes
+     */
+    static void copyFromArray(@Nonnull byte[] bytes, long address, int length)
+    {
+        try
+        {
+            COPY_MEMORY.invokeExact((Object) bytes, BYTE_ARRAY_BASE, (Object) null, address, (long) length);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+}
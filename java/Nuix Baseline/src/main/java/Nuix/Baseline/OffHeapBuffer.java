@@ -0,0 +1,133 @@
+package Nuix.Baseline;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Direct memory addressed by a long offset, made of fixed size segments so it can hold more than the 2 GB
+ * of a single ByteBuffer and grow without copying. New memory reads as zeros.
+ * Longs and ints must be aligned to their size so they never straddle two segments. Not thread safe.
+ */
+final class OffHeapBuffer {
+
+    private static final int MIN_SEGMENT_SHIFT = 12;
+    private static final int MAX_SEGMENT_SHIFT = 30;
+
+    private final int segmentShift;
+    private final long segmentMask;
+    private ByteBuffer[] segments = new ByteBuffer[0];
+    private int segmentCount = 0;
+
+    /**
+     * Allocates the initial capacity, further segments the same size are added by ensureCapacity.
+     * @param initialBytes the bytes needed up front, the segment size is the next power of two (4 KB to 1 GB)
+     */
+    OffHeapBuffer(long initialBytes)
+    {
+        int shift = 64 - Long.numberOfLeadingZeros(Math.max(1, initialBytes - 1));
+        this.segmentShift = Math.max(MIN_SEGMENT_SHIFT, Math.min(MAX_SEGMENT_SHIFT, shift));
+        this.segmentMask  = (1L << segmentShift) - 1;
+        ensureCapacity(initialBytes);
+    }
+
+    /**
+     * Adds segments until the buffer holds at least the given number of bytes. The array of segments grows
+     * by half again, so adding segments one at a time does not copy it each time.
+     * @param bytes the capacity needed
+     */
+    void ensureCapacity(long bytes)
+    {
+        int needed = (int) ((bytes + segmentMask) >>> segmentShift);
+        if (needed > segmentCount)
+        {
+            if (needed > segments.length)
+            {
+                segments = Arrays.copyOf(segments, Math.max(needed, segments.length + (segments.length >> 1)));
+            }
+            for (int index = segmentCount; index < needed; index++)
+            {
+                segments[index] = ByteBuffer.allocateDirect(1 << segmentShift).order(ByteOrder.nativeOrder());
+            }
+            segmentCount = needed;
+        }
+    }
+
+    /**
+     * The bytes currently allocated.
+     */
+    long capacity()
+    {
+        return (long) segmentCount << segmentShift;
+    }
+
+    /**
+     * The size of each segment, a record that must not straddle two segments can't be larger.
+     */
+    int segmentSize()
+    {
+        return 1 << segmentShift;
+    }
+
+    /**
+     * The bytes from the offset to the end of its segment.
+     */
+    int remainingInSegment(long offset)
+    {
+        return (int) ((1L << segmentShift) - (offset & segmentMask));
+    }
+
+    long getLong(long offset)
+    {
+        return segments[(int) (offset >>> segmentShift)].getLong((int) (offset & segmentMask));
+    }
+
+    void putLong(long offset, long value)
+    {
+        segments[(int) (offset >>> segmentShift)].putLong((int) (offset & segmentMask), value);
+    }
+
+    int getInt(long offset)
+    {
+        return segments[(int) (offset >>> segmentShift)].getInt((int) (offset & segmentMask));
+    }
+
+    void putInt(long offset, int value)
+    {
+        segments[(int) (offset >>> segmentShift)].putInt((int) (offset & segmentMask), value);
+    }
+
+    byte get(long offset)
+    {
+        return segments[(int) (offset >>> segmentShift)].get((int) (offset & segmentMask));
+    }
+
+    /**
+     * Copies bytes in, they must fit in the segment the offset is in.
+     */
+    void put(long offset, byte[] bytes)
+    {
+        ByteBuffer segment = segments[(int) (offset >>> segmentShift)].duplicate();
+        segment.position((int) (offset & segmentMask));
+        segment.put(bytes);
+    }
+
+    /**
+     * Copies bytes out, they must lie in the segment the offset is in.
+     */
+    void get(long offset, byte[] into)
+    {
+        ByteBuffer segment = segments[(int) (offset >>> segmentShift)].duplicate();
+        segment.position((int) (offset & segmentMask));
+        segment.get(into);
+    }
+
+    /**
+     * Drops the segments, the memory is returned when they are collected.
+     */
+    void release()
+    {
+        segments     = new ByteBuffer[0];
+        segmentCount = 0;
+    }
+}
@@ -0,0 +1,44 @@
+package Nuix.Baseline;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Threads for the orchestration work that spends its time waiting: probing licence sources, answering their
+ * credential and certificate callbacks, and engine pool jobs waiting for an engine.
+ * <p>
+ * This is the Java 8 version, a pool of daemon platform threads. The jar is multi-release, on Java 21 and later
+ * the version in src/main/java21 runs each task on its own virtual thread instead.
+ */
+final class OrchestrationThreads {
+
+    private OrchestrationThreads()
+    {
+    }
+
+    /**
+     * An executor for blocking orchestration tasks, shut it down when done.
+     * @param name the thread name prefix, e.g. "licence-discovery"
+     * @param threads the most tasks expected to run at once
+     * @return the executor
+     */
+    @Nonnull
+    static ExecutorService newExecutor(@Nonnull String name, int threads)
+    {
+        return Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build());
+    }
+
+    /**
+     * The kind of threads newExecutor uses, for the log.
+     * @return "platform" or "virtual"
+     */
+    @Nonnull
+    static String kind()
+    {
+        return "platform";
+    }
+}
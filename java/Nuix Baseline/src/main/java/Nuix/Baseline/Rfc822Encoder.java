@@ -0,0 +1,226 @@
+package Nuix.Baseline;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Single pass RFC 822 (RFC 5322) encoding of addresses, driven by character class lookup tables rather than regex.
+ * Display names are left bare when they are plain words, quoted with backslash escapes when they contain specials
+ * and written as RFC 2047 encoded-words when they contain non-ASCII characters.
+ */
+final class Rfc822Encoder {
+
+    /**
+     * atext, the characters allowed in an atom without quoting.
+     */
+    private static final boolean[] ATEXT = new boolean[128];
+
+    /**
+     * Characters that must be escaped with a backslash inside a quoted-string.
+     */
+    private static final boolean[] QUOTED_PAIR = new boolean[128];
+
+    /**
+     * An encoded-word may be 75 characters, "=?UTF-8?B?" and "?=" take 12 and 45 bytes encode to 60.
+     */
+    private static final int ENCODED_WORD_BYTES = 45;
+
+    static
+    {
+        for (char c = 'a'; c <= 'z'; c++)
+        {
+            ATEXT[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++)
+        {
+            ATEXT[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++)
+        {
+            ATEXT[c] = true;
+        }
+        for (char c : "!#$%&'*+-/=?^_`{|}~".toCharArray())
+        {
+            ATEXT[c] = true;
+        }
+        QUOTED_PAIR['"'] = true;
+        QUOTED_PAIR['\\'] = true;
+    }
+
+    private Rfc822Encoder()
+    {
+    }
+
+    /**
+     * Encodes a mailbox, "display name" &lt;addr-spec&gt; or just the addr-spec when there is no display name.
+     * @param personal the display name, may be null
+     * @param address the addr-spec
+     * @return the encoded mailbox
+     */
+    @Nonnull
+    static String encodeMailbox(@Nullable String personal, @Nonnull String address)
+    {
+        StringBuilder encoded = new StringBuilder(address.length() + (personal == null ? 0 : personal.length() + 8));
+        if (personal == null)
+        {
+            appendAddrSpec(encoded, address);
+        }
+        else
+        {
+            appendPhrase(encoded, personal);
+            encoded.append(" <");
+            appendAddrSpec(encoded, address);
+            encoded.append('>');
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Appends a display name as atoms, a quoted-string or encoded-words, whichever the content requires.
+     * @param encoded where to append
+     * @param phrase the display name
+     */
+    static void appendPhrase(@Nonnull StringBuilder encoded, @Nonnull String phrase)
+    {
+        boolean needsQuoting = phrase.isEmpty();
+        for (int index = 0; index < phrase.length(); index++)
+        {
+            char c = phrase.charAt(index);
+            if (c >= 128)
+            {
+                appendEncodedWords(encoded, phrase);
+                return;
+            }
+            if (!ATEXT[c] && c != ' ')
+            {
+                needsQuoting = true;
+            }
+        }
+        if (needsQuoting)
+        {
+            appendQuotedString(encoded, phrase);
+        }
+        else
+        {
+            encoded.append(phrase);
+        }
+    }
+
+    /**
+     * Appends local-part@domain, quoting the local part when it is not a dot-atom.
+     * @param encoded where to append
+     * @param address the address
+     */
+    static void appendAddrSpec(@Nonnull StringBuilder encoded, @Nonnull String address)
+    {
+        int at = address.lastIndexOf('@');
+        String localPart = at < 0 ? address : address.substring(0, at);
+        if (isDotAtom(localPart))
+        {
+            encoded.append(localPart);
+        }
+        else
+        {
+            appendQuotedString(encoded, localPart);
+        }
+        if (at >= 0)
+        {
+            //domains are not quoted, domain literals such as [10.0.0.1] are already in their wire form
+            encoded.append(address, at, address.length());
+        }
+    }
+
+    /**
+     * Appends a quoted-string, escaping quotes and backslashes and dropping line breaks.
+     * @param encoded where to append
+     * @param text the text to quote
+     */
+    static void appendQuotedString(@Nonnull StringBuilder encoded, @Nonnull String text)
+    {
+        encoded.append('"');
+        for (int index = 0; index < text.length(); index++)
+        {
+            char c = text.charAt(index);
+            if (c == '\r' || c == '\n')
+            {
+                continue;
+            }
+            if (c < 128 && QUOTED_PAIR[c])
+            {
+                encoded.append('\\');
+            }
+            encoded.append(c);
+        }
+        encoded.append('"');
+    }
+
+    /**
+     * Appends RFC 2047 "B" encoded-words, split so that no word exceeds 75 characters
+     * and no character is split across words.
+     * @param encoded where to append
+     * @param text the text to encode
+     */
+    static void appendEncodedWords(@Nonnull StringBuilder encoded, @Nonnull String text)
+    {
+        Base64.Encoder base64 = Base64.getEncoder();
+        int start = 0;
+        while (start < text.length())
+        {
+            int end = start;
+            int bytes = 0;
+            while (end < text.length())
+            {
+                int codePoint = text.codePointAt(end);
+                int length = utf8Length(codePoint);
+                if (bytes + length > ENCODED_WORD_BYTES)
+                {
+                    break;
+                }
+                bytes += length;
+                end += Character.charCount(codePoint);
+            }
+            if (start > 0)
+            {
+                encoded.append(' ');
+            }
+            encoded.append("=?UTF-8?B?")
+                   .append(base64.encodeToString(text.substring(start, end).getBytes(StandardCharsets.UTF_8)))
+                   .append("?=");
+            start = end;
+        }
+    }
+
+    private static boolean isDotAtom(String text)
+    {
+        if (text.isEmpty() || text.charAt(0) == '.' || text.charAt(text.length() - 1) == '.')
+        {
+            return false;
+        }
+        char previous = 0;
+        for (int index = 0; index < text.length(); index++)
+        {
+            char c = text.charAt(index);
+            if (c == '.' ? previous == '.' : (c >= 128 || !ATEXT[c]))
+            {
+                return false;
+            }
+            previous = c;
+        }
+        return true;
+    }
+
+    private static int utf8Length(int codePoint)
+    {
+        if (codePoint < 0x80)
+        {
+            return 1;
+        }
+        if (codePoint < 0x800)
+        {
+            return 2;
+        }
+        return codePoint < 0x10000 ? 3 : 4;
+    }
+}
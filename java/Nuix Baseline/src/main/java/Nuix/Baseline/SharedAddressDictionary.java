@@ -0,0 +1,374 @@
+package Nuix.Baseline;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An append-only dictionary from addresses to integer ids in a memory-mapped file, shared by every worker process
+ * that opens the same file, e.g. one in the job folder. Workers are separate processes, so an address seen by
+ * all of them is stored once in the page cache instead of once per worker heap, and every worker gets the same id
+ * for it without an IPC service.
+ * <p>
+ * The file holds a header, an open addressing table of slots, an id to record index and an arena of records.
+ * Adding an address reserves an id and arena space with compare-and-swap on the header, writes the record, then
+ * publishes it by compare-and-swap of an empty slot, so concurrent writers in any process never lock and readers
+ * never see a half written record. A writer that loses the race for the same new address uses the winner's id,
+ * the id it reserved is skipped, so ids are stable and almost dense. Addresses are normalized like SimpleAddress
+ * keys, so case variants share an id.
+ * <p>
+ * The size is fixed when the file is created (at most 2 GB); when it is full, adding throws IllegalStateException.
+ * A process that dies between publishing an address and indexing its id leaves that id without an address.
+ * <p>
+ * close() unmaps the file at once instead of when the mapping is garbage collected. Close only once every thread
+ * is done with the dictionary, an access racing with close() can crash the JVM. The memory access goes through
+ * MappedMemory.
+ */
+final class SharedAddressDictionary implements AutoCloseable {
+
+    private static final long MAGIC = 0x4e58414444494354L; // "NXADDICT"
+    private static final int VERSION = 1;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int TABLE_CAPACITY_OFFSET = 12;
+    private static final int MAX_IDS_OFFSET = 16;
+    private static final int NEXT_ID_OFFSET = 24;
+    private static final int SIZE_OFFSET = 28;
+    private static final int ARENA_CAPACITY_OFFSET = 32;
+    private static final int ARENA_TAIL_OFFSET = 40;
+    private static final int HEADER_BYTES = 64;
+
+    /**
+     * Record layout: int id, int length, the UTF-8 bytes of the address, padded to 8 bytes.
+     */
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    /**
+     * One monitor per dictionary file opened by this JVM. A file lock is held by the whole JVM, so a second thread
+     * taking it while the first holds it gets OverlappingFileLockException instead of waiting, threads are queued
+     * on the monitor first.
+     */
+    private static final ConcurrentMap<Path, Object> OPENING = new ConcurrentHashMap<>();
+
+    /**
+     * Kept so the mapping stays valid as long as the dictionary is used, unmapped by close().
+     */
+    private final MappedByteBuffer mapping;
+    private final long base;
+    private final int tableCapacity;
+    private final int maxIds;
+    private final long tableOffset;
+    private final long idIndexOffset;
+    private final long arenaOffset;
+    private final long arenaCapacity;
+    private volatile boolean closed;
+
+    private SharedAddressDictionary(MappedByteBuffer mapping)
+    {
+        this.mapping       = mapping;
+        this.base          = MappedMemory.address(mapping);
+        this.tableCapacity = MappedMemory.getInt(base + TABLE_CAPACITY_OFFSET);
+        this.maxIds        = MappedMemory.getInt(base + MAX_IDS_OFFSET);
+        this.arenaCapacity = MappedMemory.getLong(base + ARENA_CAPACITY_OFFSET);
+        this.tableOffset   = HEADER_BYTES;
+        this.idIndexOffset = tableOffset + tableCapacity * 8L;
+        this.arenaOffset   = align(idIndexOffset + maxIds * 4L);
+    }
+
+    /**
+     * Opens the dictionary in a file, creating it if it does not exist yet. Safe to call from many processes at once,
+     * the first one to lock the file sizes it, the others use its size. Threads of one process opening the same file
+     * take turns.
+     * @param file the dictionary file, e.g. in the job folder
+     * @param maxAddresses the most distinct addresses, used when the file is created
+     * @param averageAddressBytes the expected length of an address, sizes the arena when the file is created
+     * @return the dictionary
+     * @throws IOException if the file could not be created, mapped or is not a dictionary
+     */
+    @Nonnull
+    static SharedAddressDictionary open(@Nonnull Path file, int maxAddresses, int averageAddressBytes) throws IOException
+    {
+        Object opening = OPENING.computeIfAbsent(file.toAbsolutePath().normalize(), path -> new Object());
+        synchronized (opening)
+        {
+            return openLocked(file, maxAddresses, averageAddressBytes);
+        }
+    }
+
+    private static SharedAddressDictionary openLocked(Path file, int maxAddresses, int averageAddressBytes) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+             FileLock ignored = channel.lock())
+        {
+            if (channel.size() == 0)
+            {
+                int tableCapacity = Integer.highestOneBit(Math.max(maxAddresses, 8) * 2 - 1) << 1;
+                long arenaCapacity = (long) maxAddresses * align(RECORD_HEADER_BYTES + averageAddressBytes);
+                long length = align(HEADER_BYTES + tableCapacity * 8L + maxAddresses * 4L) + arenaCapacity;
+                if (length > Integer.MAX_VALUE)
+                {
+                    throw new IOException(String.format("A dictionary of %d addresses needs %d MB, more than the 2 GB a mapping can hold",
+                            maxAddresses, length >> 20));
+                }
+                MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+                long base = MappedMemory.address(mapping);
+                MappedMemory.putInt(base + VERSION_OFFSET, VERSION);
+                MappedMemory.putInt(base + TABLE_CAPACITY_OFFSET, tableCapacity);
+                MappedMemory.putInt(base + MAX_IDS_OFFSET, maxAddresses);
+                MappedMemory.putLong(base + ARENA_CAPACITY_OFFSET, arenaCapacity);
+                MappedMemory.putLongVolatile(base + MAGIC_OFFSET, MAGIC);
+                return new SharedAddressDictionary(mapping);
+            }
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            long base = MappedMemory.address(mapping);
+            if (MappedMemory.getLongVolatile(base + MAGIC_OFFSET) != MAGIC || MappedMemory.getInt(base + VERSION_OFFSET) != VERSION)
+            {
+                MappedMemory.unmap(mapping);
+                throw new IOException(file + " is not an address dictionary");
+            }
+            return new SharedAddressDictionary(mapping);
+        }
+    }
+
+    /**
+     * The id of an address, adding it if no process has yet.
+     * @param address the address, compared ignoring case and surrounding white space
+     * @return the id, from 0
+     * @throws IllegalStateException if the address is new and the dictionary is full
+     */
+    int idOf(@Nonnull String address)
+    {
+        checkOpen();
+        return lookup(SimpleAddress.normalize(address), true);
+    }
+
+    /**
+     * The id of an address without adding it.
+     * @param address the address
+     * @return the id, -1 if it has not been added
+     */
+    int find(@Nonnull String address)
+    {
+        checkOpen();
+        return lookup(SimpleAddress.normalize(address), false);
+    }
+
+    /**
+     * Probes the table for a normalized address. ASCII addresses, i.e. nearly all of them, are hashed and compared
+     * char by char without being encoded, anything else as UTF-8.
+     */
+    private int lookup(String key, boolean add)
+    {
+        byte[] utf8 = isAscii(key) ? null : key.getBytes(StandardCharsets.UTF_8);
+        int hash = utf8 == null ? hash(key) : hash(utf8);
+        int mask = tableCapacity - 1;
+        long record = -1;
+        for (int probes = 0, index = hash & mask; probes < tableCapacity; probes++, index = (index + 1) & mask)
+        {
+            long slotAddress = base + tableOffset + index * 8L;
+            long slot = MappedMemory.getLongVolatile(slotAddress);
+            if (slot == 0)
+            {
+                if (!add)
+                {
+                    return -1;
+                }
+                if (record < 0)
+                {
+                    record = newRecord(key, utf8);
+                }
+                long published = ((long) hash << 32) | (record >>> 3);
+                if (MappedMemory.compareAndSwapLong(slotAddress, 0, published))
+                {
+                    int id = MappedMemory.getInt(base + record);
+                    MappedMemory.putIntVolatile(base + idIndexOffset + id * 4L, (int) (record >>> 3));
+                    MappedMemory.getAndAddInt(base + SIZE_OFFSET, 1);
+                    return id;
+                }
+                slot = MappedMemory.getLongVolatile(slotAddress);
+            }
+            if ((int) (slot >>> 32) == hash && keyEquals((slot & 0xFFFFFFFFL) << 3, key, utf8))
+            {
+                return MappedMemory.getInt(base + ((slot & 0xFFFFFFFFL) << 3));
+            }
+        }
+        if (add)
+        {
+            throw new IllegalStateException("The address dictionary is full");
+        }
+        return -1;
+    }
+
+    /**
+     * The normalized address of an id.
+     * @param id the id
+     * @return the address, null if the id was skipped or is not in use yet
+     */
+    @Nullable
+    String addressOf(int id)
+    {
+        checkOpen();
+        if (id < 0 || id >= maxIds)
+        {
+            return null;
+        }
+        long record = (MappedMemory.getIntVolatile(base + idIndexOffset + id * 4L) & 0xFFFFFFFFL) << 3;
+        if (record == 0)
+        {
+            return null;
+        }
+        byte[] bytes = new byte[MappedMemory.getInt(base + record + 4)];
+        MappedMemory.copyToArray(base + record + RECORD_HEADER_BYTES, bytes, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The number of addresses added by every process.
+     * @return the address count
+     */
+    int size()
+    {
+        checkOpen();
+        return MappedMemory.getIntVolatile(base + SIZE_OFFSET);
+    }
+
+    /**
+     * The most addresses the dictionary can hold.
+     * @return the capacity
+     */
+    int capacity()
+    {
+        return maxIds;
+    }
+
+    /**
+     * Unmaps the file, the dictionary can't be used afterwards. Other processes keep their own mappings.
+     */
+    @Override
+    public synchronized void close()
+    {
+        if (!closed)
+        {
+            closed = true;
+            MappedMemory.unmap(mapping);
+        }
+    }
+
+    private void checkOpen()
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("The address dictionary has been closed");
+        }
+    }
+
+    /**
+     * Reserves an id and the arena space of a record and writes it, unpublished.
+     * @param utf8 the encoded key, null if the key is ASCII
+     * @return the record's offset in the file
+     */
+    private long newRecord(String key, byte[] utf8)
+    {
+        int id = MappedMemory.getAndAddInt(base + NEXT_ID_OFFSET, 1);
+        if (id >= maxIds || id < 0)
+        {
+            throw new IllegalStateException("The address dictionary is full");
+        }
+        int keyLength = utf8 == null ? key.length() : utf8.length;
+        long length = align(RECORD_HEADER_BYTES + keyLength);
+        long tail = MappedMemory.getAndAddLong(base + ARENA_TAIL_OFFSET, length);
+        if (tail + length > arenaCapacity)
+        {
+            throw new IllegalStateException("The address dictionary has no room left for addresses");
+        }
+        long record = arenaOffset + tail;
+        long bytes = base + record + RECORD_HEADER_BYTES;
+        MappedMemory.putInt(base + record, id);
+        MappedMemory.putInt(base + record + 4, keyLength);
+        if (utf8 == null)
+        {
+            for (int index = 0; index < keyLength; index++)
+            {
+                MappedMemory.putByte(bytes + index, (byte) key.charAt(index));
+            }
+        }
+        else
+        {
+            MappedMemory.copyFromArray(utf8, bytes, keyLength);
+        }
+        return record;
+    }
+
+    private boolean keyEquals(long record, String key, byte[] utf8)
+    {
+        int keyLength = utf8 == null ? key.length() : utf8.length;
+        if (MappedMemory.getInt(base + record + 4) != keyLength)
+        {
+            return false;
+        }
+        long bytes = base + record + RECORD_HEADER_BYTES;
+        for (int index = 0; index < keyLength; index++)
+        {
+            byte expected = utf8 == null ? (byte) key.charAt(index) : utf8[index];
+            if (MappedMemory.getByte(bytes + index) != expected)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAscii(String key)
+    {
+        for (int index = 0; index < key.length(); index++)
+        {
+            if (key.charAt(index) >= 0x80)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(String ascii)
+    {
+        int h = 0x811C9DC5;
+        for (int index = 0; index < ascii.length(); index++)
+        {
+            h = (h ^ ascii.charAt(index)) * 0x01000193;
+        }
+        return mix(h);
+    }
+
+    private static int hash(byte[] utf8)
+    {
+        int h = 0x811C9DC5;
+        for (byte b : utf8)
+        {
+            h = (h ^ b) * 0x01000193;
+        }
+        return mix(h);
+    }
+
+    private static int mix(int h)
+    {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    private static long align(long bytes)
+    {
+        return (bytes + 7) & ~7L;
+    }
+}
@@ -5,17 +5,21 @@ import org.apache.commons.lang.StringUtils;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Locale;
 
 /**
  * Represents the address of a single party in a communication, assumed internet-mail type
+ * Immutable, the lower case form of the address is computed once so that equality and hashing
+ * never allocate. Use an AddressPool to share instances between communications.
  */
 public class SimpleAddress implements Address {
 
-    private static final String[] ADDRESS_SPECIALS = "()<>,;:\\\"\t []/".split("");
-    private static final String[] PERSONAL_DISPLAY_SPECIALS = "<>@,\\\"".split("");
-    String personal;
-    String address;
-    String type;
+    final String personal;
+    final String address;
+    final CommunicationType type;
+    final String key;
+    private final int hash;
+    private String rfc822;
 
     /**
      * The type of the address, either "internet-mail", "phone" or "instant-message".
@@ -43,18 +47,58 @@ public class SimpleAddress implements Address {
         //initiator
         this.personal= StringUtils.trimToNull(personal);
         this.address = address.trim();
-        this.type    = typeOfCommunication.getValue();
+        this.type    = typeOfCommunication;
+        this.key     = normalize(this.address);
+        this.hash    = key.hashCode();
     }
 
     /**
-     * Compares with another address for equality.
+     * The form addresses are compared and pooled by, lower case and trimmed.
+     * Returns the same instance when the address is already normalized.
+     * @param address the address to normalize
+     * @return the normalized address
+     */
+    static String normalize(@Nonnull String address)
+    {
+        return address.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Compares with another address for equality, ignoring case.
      * @param address the other address.
      * @return true if the other object is the same address, false otherwise.
      */
     @Override
     public boolean equals(Address address)
     {
-        return address.getAddress().toLowerCase().equals(this.address.toLowerCase());
+        if (address instanceof SimpleAddress)
+        {
+            SimpleAddress other = (SimpleAddress) address;
+            return other == this || (other.hash == hash && other.key.equals(key));
+        }
+        return address != null && this.address.equalsIgnoreCase(address.getAddress());
+    }
+
+    /**
+     * Same as equals(Address) so SimpleAddress can be used in hash based collections.
+     * Only other SimpleAddresses can be equal, other Address implementations do not share the hash code.
+     * @param other the other object.
+     * @return true if the other object is a SimpleAddress with the same address part, ignoring case.
+     */
+    @Override
+    public boolean equals(Object other)
+    {
+        return other instanceof SimpleAddress && equals((Address) other);
+    }
+
+    /**
+     * Hash of the normalized address, consistent with equals.
+     * @return the hash code
+     */
+    @Override
+    public int hashCode()
+    {
+        return hash;
     }
 
     /**
@@ -83,10 +127,30 @@ public class SimpleAddress implements Address {
      */
     @Override
     public String getType()
+    {
+        return type.getValue();
+    }
+
+    /**
+     * Gets the type of the address.
+     * @return the type of the address.
+     */
+    @Nonnull
+    public CommunicationType getCommunicationType()
     {
         return type;
     }
 
+    /**
+     * Gets the normalized (lower case) address used for equality and pooling.
+     * @return the normalized address.
+     */
+    @Nonnull
+    public String getKey()
+    {
+        return key;
+    }
+
     /**
      * Gets a string representation of the address, in a form users can read.
      * @return the string representation of the address, in a form users can read.
@@ -98,22 +162,21 @@ public class SimpleAddress implements Address {
     }
 
     /**
-     * Lazily implemented instead of full rfc822, missing features are encoding (non-ASCII) and lengths
-     * @return personal if found, otherwise address is returned
+     * The RFC 822 mailbox, computed once per instance. Display names containing specials are quoted,
+     * non-ASCII display names are written as RFC 2047 encoded-words. Line length folding is left to the caller.
+     * @return "personal" &lt;address&gt; if a personal part was found, otherwise the address
      */
     @Override
     public String toRfc822String()
     {
-        if (personal == null)
+        //immutable fields, so a racing thread at worst computes the same string twice
+        String encoded = rfc822;
+        if (encoded == null)
         {
-            return quoteString(address,ADDRESS_SPECIALS);
-        }
-        else
-        {
-            return String.format("%s <%s>",
-                    quoteString(personal,PERSONAL_DISPLAY_SPECIALS),
-                    quoteString(address,ADDRESS_SPECIALS));
+            encoded = Rfc822Encoder.encodeMailbox(personal, address);
+            rfc822  = encoded;
         }
+        return encoded;
     }
 
     /**
@@ -125,21 +188,4 @@ public class SimpleAddress implements Address {
     {
         return toRfc822String();
     }
-
-    /**
-     * Removes the specials passed from the input and returns a quoted string
-     * TODO: This could instead encode the result if detected...
-     * @param input a string to be cleaned and then quoted
-     * @param specials the special characters to omit
-     * @return a quoted string that will have specials removed.
-     */
-    private String quoteString(String input,String[] specials)
-    {
-
-        for(String thisChar :specials)
-        {
-            input=input.replaceAll(thisChar,"");
-        }
-        return "\"" + input + "\"";
-    }
 }
@@ -1,6 +1,10 @@
 package Nuix.Baseline;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
 import org.joda.time.DateTime;
 import nuix.Address;
 import nuix.Communication;
@@ -10,18 +14,32 @@ import javax.annotation.Nullable;
 
 /**
  * Holds information about communication data for a single item.
+ * Immutable, the addresses of every role are kept in one flat array (From, To, Cc, Bcc then Sender)
+ * with the start of each role recorded as an offset, empty roles cost nothing.
+ * Build instances with {@link #builder()}, a builder can be reused for many communications.
  */
 public class SimpleCommunication implements Communication{
-    DateTime      commDate;
-    List<Address> toAddresses;
-    List<Address> fromAddresses;
-    List<Address> ccAddresses;
-    List<Address> bccAddresses;
-    List<Address> delegateAddresses;
+
+    private static final Address[] NO_ADDRESSES = new Address[0];
+
+    /**
+     * The roles an address can play in a communication, in storage order.
+     */
+    public enum Role {
+        FROM, TO, CC, BCC, DELEGATE
+    }
+
+    private final DateTime  commDate;
+    private final Address[] addresses;
+    private final int       toStart;
+    private final int       ccStart;
+    private final int       bccStart;
+    private final int       delegateStart;
 
 
     /**
      * Holds information about communication data for a single item.
+     * The lists are copied, later changes to them are not seen by the communication.
      * @param commDate the date of the communication.
      * @param fromAddresses The senders (From) for the communication.
      * @param toAddresses The direct recipients (To) for the communication.
@@ -30,29 +48,51 @@ public class SimpleCommunication implements Communication{
      * @param delegateAddresses The delegated senders (Sender) for the communication.
      */
     public SimpleCommunication(@Nullable DateTime commDate,
-                               @Nonnull ArrayList<Address> fromAddresses,
-                               @Nonnull ArrayList<Address> toAddresses,
-                               @Nonnull ArrayList<Address> ccAddresses,
-                               @Nonnull ArrayList<Address> bccAddresses,
-                               @Nonnull ArrayList<Address> delegateAddresses)
+                               @Nonnull List<? extends Address> fromAddresses,
+                               @Nonnull List<? extends Address> toAddresses,
+                               @Nonnull List<? extends Address> ccAddresses,
+                               @Nonnull List<? extends Address> bccAddresses,
+                               @Nonnull List<? extends Address> delegateAddresses)
     {
-        this.commDate          = commDate;
-        this.toAddresses       = toAddresses;
-        this.fromAddresses     = fromAddresses;
-        this.ccAddresses       = ccAddresses;
-        this.bccAddresses      = bccAddresses;
-        this.delegateAddresses = delegateAddresses;
+        int total = fromAddresses.size() + toAddresses.size() + ccAddresses.size() + bccAddresses.size() + delegateAddresses.size();
+        this.commDate      = commDate;
+        this.addresses     = total == 0 ? NO_ADDRESSES : new Address[total];
+        this.toStart       = copy(fromAddresses, 0);
+        this.ccStart       = copy(toAddresses, toStart);
+        this.bccStart      = copy(ccAddresses, ccStart);
+        this.delegateStart = copy(bccAddresses, bccStart);
+        copy(delegateAddresses, delegateStart);
+    }
+
+    private SimpleCommunication(DateTime commDate, Address[] addresses, int toStart, int ccStart, int bccStart, int delegateStart)
+    {
+        this.commDate      = commDate;
+        this.addresses     = addresses;
+        this.toStart       = toStart;
+        this.ccStart       = ccStart;
+        this.bccStart      = bccStart;
+        this.delegateStart = delegateStart;
     }
 
     /**
-     * The direct recipients (To) for the communication.
-     * @return the direct recipients.
+     * Starts building a communication.
+     * @return an empty builder
+     */
+    @Nonnull
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * The hidden recipients (Bcc) for the communication.
+     * @return the hidden recipients.
      */
     @Nonnull
     @Override
     public List<Address> getBcc()
     {
-        return bccAddresses;
+        return slice(bccStart, delegateStart);
     }
 
     /**
@@ -63,7 +103,7 @@ public class SimpleCommunication implements Communication{
     @Override
     public List<Address> getCc()
     {
-        return ccAddresses;
+        return slice(ccStart, bccStart);
     }
 
     /**
@@ -84,7 +124,7 @@ public class SimpleCommunication implements Communication{
     @Override
     public List<Address> getFrom()
     {
-        return fromAddresses;
+        return slice(0, toStart);
     }
 
     /**
@@ -94,7 +134,7 @@ public class SimpleCommunication implements Communication{
     @Nonnull
     @Override
     public List<Address> getDelegates() {
-        return delegateAddresses;
+        return slice(delegateStart, addresses.length);
     }
 
     /**
@@ -105,6 +145,253 @@ public class SimpleCommunication implements Communication{
     @Override
     public List<Address> getTo()
     {
-        return toAddresses;
+        return slice(toStart, ccStart);
+    }
+
+    /**
+     * The addresses playing a role in the communication.
+     * @param role the role
+     * @return the addresses, an unmodifiable view
+     */
+    @Nonnull
+    public List<Address> getAddresses(@Nonnull Role role)
+    {
+        switch (role)
+        {
+            case FROM:
+                return getFrom();
+            case TO:
+                return getTo();
+            case CC:
+                return getCc();
+            case BCC:
+                return getBcc();
+            default:
+                return getDelegates();
+        }
+    }
+
+    /**
+     * The number of addresses across all roles.
+     * @return the address count
+     */
+    public int getAddressCount()
+    {
+        return addresses.length;
+    }
+
+    private int copy(List<? extends Address> from, int start)
+    {
+        for (int index = 0; index < from.size(); index++)
+        {
+            addresses[start + index] = from.get(index);
+        }
+        return start + from.size();
+    }
+
+    private List<Address> slice(int start, int end)
+    {
+        return start == end ? Collections.<Address>emptyList() : new Slice(addresses, start, end);
+    }
+
+    /**
+     * An unmodifiable view of one role in the flat address array.
+     */
+    private static final class Slice extends AbstractList<Address> implements RandomAccess {
+        private final Address[] addresses;
+        private final int start;
+        private final int size;
+
+        Slice(Address[] addresses, int start, int end)
+        {
+            this.addresses = addresses;
+            this.start     = start;
+            this.size      = end - start;
+        }
+
+        @Override
+        public Address get(int index)
+        {
+            if (index < 0 || index >= size)
+            {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return addresses[start + index];
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+    }
+
+    /**
+     * Collects the date and addresses of a communication. Not thread safe.
+     * {@link #build()} copies what was collected, call {@link #clear()} to reuse the builder for the next communication.
+     */
+    public static final class Builder {
+        private DateTime commDate;
+        private Address[] addresses = new Address[8];
+        private final int[] counts = new int[Role.values().length];
+        private int size;
+
+        private Builder()
+        {
+        }
+
+        /**
+         * Sets the date of the communication.
+         * @param commDate the date, null if unknown
+         * @return this builder
+         */
+        @Nonnull
+        public Builder date(@Nullable DateTime commDate)
+        {
+            this.commDate = commDate;
+            return this;
+        }
+
+        /**
+         * Adds senders (From).
+         * @param from the addresses
+         * @return this builder
+         */
+        @Nonnull
+        public Builder from(@Nonnull Address... from)
+        {
+            return add(Role.FROM, from);
+        }
+
+        /**
+         * Adds direct recipients (To).
+         * @param to the addresses
+         * @return this builder
+         */
+        @Nonnull
+        public Builder to(@Nonnull Address... to)
+        {
+            return add(Role.TO, to);
+        }
+
+        /**
+         * Adds indirect recipients (Cc).
+         * @param cc the addresses
+         * @return this builder
+         */
+        @Nonnull
+        public Builder cc(@Nonnull Address... cc)
+        {
+            return add(Role.CC, cc);
+        }
+
+        /**
+         * Adds hidden recipients (Bcc).
+         * @param bcc the addresses
+         * @return this builder
+         */
+        @Nonnull
+        public Builder bcc(@Nonnull Address... bcc)
+        {
+            return add(Role.BCC, bcc);
+        }
+
+        /**
+         * Adds delegated senders (Sender).
+         * @param delegates the addresses
+         * @return this builder
+         */
+        @Nonnull
+        public Builder delegates(@Nonnull Address... delegates)
+        {
+            return add(Role.DELEGATE, delegates);
+        }
+
+        /**
+         * Adds addresses to a role.
+         * @param role the role the addresses play
+         * @param roleAddresses the addresses
+         * @return this builder
+         */
+        @Nonnull
+        public Builder add(@Nonnull Role role, @Nonnull Address... roleAddresses)
+        {
+            for (Address address : roleAddresses)
+            {
+                add(role, address);
+            }
+            return this;
+        }
+
+        /**
+         * Adds addresses to a role.
+         * @param role the role the addresses play
+         * @param roleAddresses the addresses
+         * @return this builder
+         */
+        @Nonnull
+        public Builder addAll(@Nonnull Role role, @Nonnull Collection<? extends Address> roleAddresses)
+        {
+            for (Address address : roleAddresses)
+            {
+                add(role, address);
+            }
+            return this;
+        }
+
+        /**
+         * Adds one address to a role, addresses may be added in any role order.
+         * @param role the role the address plays
+         * @param address the address
+         * @return this builder
+         */
+        @Nonnull
+        public Builder add(@Nonnull Role role, @Nonnull Address address)
+        {
+            if (size == addresses.length)
+            {
+                addresses = Arrays.copyOf(addresses, size * 2);
+            }
+            //keep the buffer grouped by role, shifting the later roles up by one
+            int insertAt = 0;
+            for (int index = 0; index <= role.ordinal(); index++)
+            {
+                insertAt += counts[index];
+            }
+            System.arraycopy(addresses, insertAt, addresses, insertAt + 1, size - insertAt);
+            addresses[insertAt] = address;
+            counts[role.ordinal()]++;
+            size++;
+            return this;
+        }
+
+        /**
+         * Forgets the date and addresses collected so far.
+         * @return this builder
+         */
+        @Nonnull
+        public Builder clear()
+        {
+            Arrays.fill(addresses, 0, size, null);
+            Arrays.fill(counts, 0);
+            commDate = null;
+            size     = 0;
+            return this;
+        }
+
+        /**
+         * Creates the communication from what has been collected.
+         * @return a new immutable communication
+         */
+        @Nonnull
+        public SimpleCommunication build()
+        {
+            Address[] flat = size == 0 ? NO_ADDRESSES : Arrays.copyOf(addresses, size);
+            int toStart       = counts[Role.FROM.ordinal()];
+            int ccStart       = toStart + counts[Role.TO.ordinal()];
+            int bccStart      = ccStart + counts[Role.CC.ordinal()];
+            int delegateStart = bccStart + counts[Role.BCC.ordinal()];
+            return new SimpleCommunication(commDate, flat, toStart, ccStart, bccStart, delegateStart);
+        }
     }
 }
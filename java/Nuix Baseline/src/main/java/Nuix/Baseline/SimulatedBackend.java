@@ -0,0 +1,811 @@
+package Nuix.Baseline;
+
+import nuix.CaseFactory;
+import nuix.EvidenceContainer;
+import nuix.ItemProcessedCallback;
+import nuix.Licence;
+import nuix.LicenceException;
+import nuix.ProcessedItem;
+import nuix.Processor;
+import nuix.SimpleCase;
+import nuix.Utilities;
+import nuix.engine.AvailableLicence;
+import nuix.engine.CertificateTrustCallback;
+import nuix.engine.CertificateTrustCallbackInfo;
+import nuix.engine.CredentialsCallback;
+import nuix.engine.CredentialsCallbackInfo;
+import nuix.engine.Engine;
+import nuix.engine.GlobalContainer;
+import nuix.engine.LicenceSource;
+import nuix.engine.Licensor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * An in-process stand-in for the Nuix engine, so the start up, licensing, pooling and concurrency paths of
+ * App can be run and load tested without a licence, dongle or licence server.
+ * <p>
+ * It implements the GlobalContainer, Engine, Licensor, LicenceSource, AvailableLicence and Licence surfaces
+ * App uses as dynamic proxies, and enough of Utilities, CaseFactory, SimpleCase, Processor and EvidenceContainer
+ * for the batch jobs and -ingest to run: cases are kept in memory and processing takes a configured time per
+ * evidence file, on the licenced workers, failing if the engine loses its licence. Anything else throws
+ * UnsupportedOperationException. Each simulated source offers a number of seats of each licence, a seat is held from acquire until the
+ * engine is closed. Remote calls take the configured latency, fail at the configured rate and, for server
+ * and cloud-server sources, can challenge for credentials or certificate trust the way real servers do.
+ * Select it with -backend=simulated and tune it with the nuix.baseline.sim.* system properties, see Settings.
+ */
+final class SimulatedBackend {
+
+    /**
+     * Generic logger definition, will use the class name as the prefix in the log.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(SimulatedBackend.class);
+
+    static final String VERSION = "9.0.0.0-simulated";
+
+    /**
+     * What to simulate, each setting has a nuix.baseline.sim.* system property of the same name.
+     */
+    static final class Settings {
+        /**
+         * type:location of each licence source, comma separated.
+         */
+        String sources = "system:localhost,server:licence.simulated:27443,cloud-server:https://licence-api.simulated";
+        /**
+         * Short names of the licences every source offers, comma separated.
+         */
+        String licences = "enterprise-workstation";
+        /**
+         * Concurrent engines each licence of each source can licence.
+         */
+        int seats = 4;
+        /**
+         * The most workers a licence grants.
+         */
+        int workers = 8;
+        /**
+         * Milliseconds each remote call (listing sources or licences, acquiring) takes, plus or minus half.
+         */
+        long latencyMillis = 20;
+        /**
+         * Milliseconds to create the container.
+         */
+        long containerMillis = 0;
+        /**
+         * Milliseconds to create an engine.
+         */
+        long engineMillis = 50;
+        /**
+         * Milliseconds a worker takes to process an evidence file, files in a folder count one each.
+         */
+        long itemMillis = 5;
+        /**
+         * The fraction of remote calls that fail, from 0 to 1.
+         */
+        double failureRate = 0;
+        /**
+         * none, credentials or certificate: what server and cloud-server sources ask for before licensing.
+         */
+        String challenge = "none";
+        /**
+         * Milliseconds until an acquired licence is lost, 0 keeps it until the engine closes.
+         */
+        long licenceLifetimeMillis = 0;
+        /**
+         * Seeds the injected failures so a run can be repeated, 0 picks a random seed.
+         */
+        long seed = 0;
+
+        /**
+         * The defaults overridden by any nuix.baseline.sim.* system properties.
+         * @return the settings
+         */
+        static Settings fromSystemProperties()
+        {
+            Settings settings = new Settings();
+            settings.sources               = System.getProperty("nuix.baseline.sim.sources", settings.sources);
+            settings.licences              = System.getProperty("nuix.baseline.sim.licences", settings.licences);
+            settings.seats                 = Integer.getInteger("nuix.baseline.sim.seats", settings.seats);
+            settings.workers               = Integer.getInteger("nuix.baseline.sim.workers", settings.workers);
+            settings.latencyMillis         = Long.getLong("nuix.baseline.sim.latencyMillis", settings.latencyMillis);
+            settings.containerMillis       = Long.getLong("nuix.baseline.sim.containerMillis", settings.containerMillis);
+            settings.engineMillis          = Long.getLong("nuix.baseline.sim.engineMillis", settings.engineMillis);
+            settings.itemMillis            = Long.getLong("nuix.baseline.sim.itemMillis", settings.itemMillis);
+            settings.failureRate           = Double.parseDouble(System.getProperty("nuix.baseline.sim.failureRate", Double.toString(settings.failureRate)));
+            settings.challenge             = System.getProperty("nuix.baseline.sim.challenge", settings.challenge);
+            settings.licenceLifetimeMillis = Long.getLong("nuix.baseline.sim.licenceLifetimeMillis", settings.licenceLifetimeMillis);
+            settings.seed                  = Long.getLong("nuix.baseline.sim.seed", settings.seed);
+            return settings;
+        }
+    }
+
+    private final Settings settings;
+    private final List<SimulatedSource> sources = new ArrayList<>();
+    private final Random failures;
+    private final AtomicInteger enginesCreated = new AtomicInteger();
+    private final AtomicInteger licencesInUse = new AtomicInteger();
+    private final AtomicInteger peakLicencesInUse = new AtomicInteger();
+    private final AtomicLong licencesAcquired = new AtomicLong();
+    private final AtomicLong injectedFailures = new AtomicLong();
+    private final AtomicLong itemsProcessed = new AtomicLong();
+
+    /**
+     * One licence source and the seats left of each of its licences.
+     */
+    private final class SimulatedSource {
+        final String type;
+        final String location;
+        final String[] shortNames;
+        final AtomicInteger[] seatsLeft;
+
+        SimulatedSource(String type, String location, String[] shortNames)
+        {
+            this.type       = type;
+            this.location   = location;
+            this.shortNames = shortNames;
+            this.seatsLeft  = new AtomicInteger[shortNames.length];
+            for (int index = 0; index < shortNames.length; index++)
+            {
+                seatsLeft[index] = new AtomicInteger(settings.seats);
+            }
+        }
+
+        boolean isRemote()
+        {
+            return type.equals("server") || type.equals("cloud-server");
+        }
+    }
+
+    /**
+     * The state of one simulated engine.
+     */
+    private final class SimulatedEngine {
+        final AtomicReference<CredentialsCallback> credentials = new AtomicReference<>();
+        final AtomicReference<CertificateTrustCallback> certificateTrust = new AtomicReference<>();
+        volatile Licence licence;
+        volatile long licenceExpires;
+        volatile Runnable releaseSeat;
+        volatile boolean closed;
+
+        synchronized Licence licence()
+        {
+            if (licence != null && licenceExpires != 0 && System.currentTimeMillis() >= licenceExpires)
+            {
+                LOGGER.info("Simulated licence {} lost", licence.getShortName());
+                releaseLicence();
+            }
+            return licence;
+        }
+
+        synchronized void releaseLicence()
+        {
+            if (releaseSeat != null)
+            {
+                releaseSeat.run();
+                releaseSeat = null;
+            }
+            licence = null;
+        }
+    }
+
+    /**
+     * A backend with the given settings.
+     * @param settings what to simulate
+     */
+    SimulatedBackend(@Nonnull Settings settings)
+    {
+        this.settings = settings;
+        this.failures = settings.seed == 0 ? new Random() : new Random(settings.seed);
+        String[] shortNames = settings.licences.split(",");
+        for (String source : settings.sources.split(","))
+        {
+            int colon = source.indexOf(':');
+            if (colon <= 0)
+            {
+                throw new IllegalArgumentException("Simulated licence sources are type:location, was " + source);
+            }
+            sources.add(new SimulatedSource(source.substring(0, colon).trim(), source.substring(colon + 1).trim(), shortNames));
+        }
+    }
+
+    /**
+     * Creates the stand-in for GlobalContainerFactory.newContainer().
+     * @return a container whose engines are simulated, closing it logs what happened
+     */
+    @Nonnull
+    GlobalContainer newContainer()
+    {
+        pause(settings.containerMillis);
+        LOGGER.warn("Using the simulated engine backend, nothing is licenced or processed");
+        return proxy(GlobalContainer.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "newEngine":
+                    return newEngine();
+                case "close":
+                    LOGGER.info("Simulated backend: {} engines, {} licences acquired, peak {} in use, {} injected failures, {} items processed",
+                            enginesCreated.get(), licencesAcquired.get(), peakLicencesInUse.get(), injectedFailures.get(),
+                            itemsProcessed.get());
+                    return null;
+                default:
+                    return objectMethod(proxy, method.getName(), args, "SimulatedGlobalContainer");
+            }
+        });
+    }
+
+    /**
+     * The number of licences currently held by open engines.
+     */
+    int getLicencesInUse()
+    {
+        return licencesInUse.get();
+    }
+
+    /**
+     * The most licences held at once.
+     */
+    int getPeakLicencesInUse()
+    {
+        return peakLicencesInUse.get();
+    }
+
+    /**
+     * The number of licences acquired since the backend was created.
+     */
+    long getLicencesAcquired()
+    {
+        return licencesAcquired.get();
+    }
+
+    /**
+     * The number of remote calls that were made to fail.
+     */
+    long getInjectedFailures()
+    {
+        return injectedFailures.get();
+    }
+
+    /**
+     * The number of items processed by every simulated case.
+     */
+    long getItemsProcessed()
+    {
+        return itemsProcessed.get();
+    }
+
+    private Engine newEngine()
+    {
+        pause(settings.engineMillis);
+        enginesCreated.incrementAndGet();
+        SimulatedEngine state = new SimulatedEngine();
+        Licensor licensor = licensor(state);
+        Utilities utilities = utilities(state);
+        return proxy(Engine.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getVersion":
+                    return VERSION;
+                case "getLicensor":
+                    return licensor;
+                case "getUtilities":
+                    return utilities;
+                case "getLicence":
+                    return state.licence();
+                case "whenAskedForCredentials":
+                    state.credentials.set((CredentialsCallback) args[0]);
+                    return null;
+                case "whenAskedForCertificateTrust":
+                    state.certificateTrust.set((CertificateTrustCallback) args[0]);
+                    return null;
+                case "close":
+                    state.closed = true;
+                    state.releaseLicence();
+                    return null;
+                default:
+                    return objectMethod(proxy, method.getName(), args, "SimulatedEngine");
+            }
+        });
+    }
+
+    private Licensor licensor(SimulatedEngine state)
+    {
+        return proxy(Licensor.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "acquire":
+                    for (SimulatedSource source : sources)
+                    {
+                        for (int index = 0; index < source.shortNames.length; index++)
+                        {
+                            if (source.seatsLeft[index].get() > 0)
+                            {
+                                acquire(state, source, index, settings.workers);
+                                return null;
+                            }
+                        }
+                    }
+                    throw new LicenceException("No simulated licence is available");
+                case "findLicenceSources":
+                    remoteCall("findLicenceSources");
+                    List<String> types = sourceTypes(args);
+                    List<LicenceSource> found = new ArrayList<>();
+                    for (SimulatedSource source : sources)
+                    {
+                        if (types == null || types.contains(source.type))
+                        {
+                            found.add(licenceSource(state, source));
+                        }
+                    }
+                    return found;
+                case "findAvailableLicences":
+                    List<AvailableLicence> available = new ArrayList<>();
+                    for (SimulatedSource source : sources)
+                    {
+                        available.addAll(availableLicences(state, source));
+                    }
+                    return available;
+                default:
+                    return objectMethod(proxy, method.getName(), args, "SimulatedLicensor");
+            }
+        });
+    }
+
+    private LicenceSource licenceSource(SimulatedEngine state, SimulatedSource source)
+    {
+        return proxy(LicenceSource.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getType":
+                    return source.type;
+                case "getLocation":
+                    return source.location;
+                case "findAvailableLicences":
+                    return availableLicences(state, source);
+                default:
+                    return objectMethod(proxy, method.getName(), args, source.location + " (" + source.type + ")");
+            }
+        });
+    }
+
+    private List<AvailableLicence> availableLicences(SimulatedEngine state, SimulatedSource source)
+    {
+        remoteCall("findAvailableLicences " + source.location);
+        List<AvailableLicence> available = new ArrayList<>();
+        for (int index = 0; index < source.shortNames.length; index++)
+        {
+            int licence = index;
+            LicenceSource licenceSource = licenceSource(state, source);
+            available.add(proxy(AvailableLicence.class, (proxy, method, args) ->
+            {
+                switch (method.getName())
+                {
+                    case "getShortName":
+                        return source.shortNames[licence];
+                    case "getDescription":
+                        return "Simulated " + source.shortNames[licence];
+                    case "getWorkers":
+                        return settings.workers;
+                    case "hasFeature":
+                        return true;
+                    case "canChooseWorkers":
+                        return true;
+                    case "getCount":
+                        return source.seatsLeft[licence].get();
+                    case "getSource":
+                        return licenceSource;
+                    case "acquire":
+                        Object workerCount = args == null || args.length == 0 ? null : ((Map<?, ?>) args[0]).get("workerCount");
+                        acquire(state, source, licence, workerCount == null ? settings.workers : ((Number) workerCount).intValue());
+                        return null;
+                    default:
+                        return objectMethod(proxy, method.getName(), args, source.shortNames[licence]);
+                }
+            }));
+        }
+        return available;
+    }
+
+    private void acquire(SimulatedEngine state, SimulatedSource source, int licence, int workers)
+    {
+        remoteCall("acquire from " + source.location);
+        if (workers < 1 || workers > settings.workers)
+        {
+            throw new LicenceException(String.format("Requested %d workers, %s allows 1 to %d",
+                    workers, source.shortNames[licence], settings.workers));
+        }
+        if (source.isRemote())
+        {
+            challenge(state, source);
+        }
+        AtomicInteger seats = source.seatsLeft[licence];
+        String shortName = source.shortNames[licence];
+        Licence acquired = proxy(Licence.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getShortName":
+                    return shortName;
+                case "getDescription":
+                    return "Simulated " + shortName;
+                case "getWorkers":
+                    return workers;
+                case "hasFeature":
+                    return true;
+                default:
+                    return objectMethod(proxy, method.getName(), args, shortName);
+            }
+        });
+        //checked and taken under the engine's lock, so concurrent acquires on one engine take one seat
+        synchronized (state)
+        {
+            if (state.closed)
+            {
+                throw new IllegalStateException("Engine has been closed");
+            }
+            if (state.licence() != null)
+            {
+                throw new LicenceException("Engine is already licenced");
+            }
+            if (seats.getAndUpdate(left -> left > 0 ? left - 1 : 0) <= 0)
+            {
+                throw new LicenceException("No seats left for " + shortName + " at " + source.location);
+            }
+            state.licence        = acquired;
+            state.licenceExpires = settings.licenceLifetimeMillis > 0 ? System.currentTimeMillis() + settings.licenceLifetimeMillis : 0;
+            state.releaseSeat    = () ->
+            {
+                seats.incrementAndGet();
+                licencesInUse.decrementAndGet();
+            };
+            licencesAcquired.incrementAndGet();
+            int inUse = licencesInUse.incrementAndGet();
+            peakLicencesInUse.accumulateAndGet(inUse, Math::max);
+        }
+    }
+
+    private Utilities utilities(SimulatedEngine state)
+    {
+        CaseFactory caseFactory = proxy(CaseFactory.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "create":
+                case "open":
+                    requireLicence(state);
+                    return simpleCase(state, (File) args[0]);
+                default:
+                    return objectMethod(proxy, method.getName(), args, "SimulatedCaseFactory");
+            }
+        });
+        return proxy(Utilities.class, (proxy, method, args) ->
+        {
+            if (method.getName().equals("getCaseFactory"))
+            {
+                return caseFactory;
+            }
+            return objectMethod(proxy, method.getName(), args, "SimulatedUtilities");
+        });
+    }
+
+    private SimpleCase simpleCase(SimulatedEngine state, File caseDir)
+    {
+        return proxy(SimpleCase.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "createProcessor":
+                    return processor(state, caseDir);
+                case "close":
+                    return null;
+                default:
+                    return objectMethod(proxy, method.getName(), args, caseDir.getPath());
+            }
+        });
+    }
+
+    /**
+     * A processor of a case opened by an engine, which processes the files of its evidence containers.
+     */
+    private Processor processor(SimulatedEngine state, File caseDir)
+    {
+        List<File> evidence = Collections.synchronizedList(new ArrayList<>());
+        AtomicReference<ItemProcessedCallback> callback = new AtomicReference<>();
+        AtomicInteger workerCount = new AtomicInteger(1);
+        return proxy(Processor.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "newEvidenceContainer":
+                    return evidenceContainer(evidence);
+                case "setParallelProcessingSettings":
+                    Object workers = ((Map<?, ?>) args[0]).get("workerCount");
+                    if (workers != null)
+                    {
+                        workerCount.set(((Number) workers).intValue());
+                    }
+                    return null;
+                case "setProcessingSettings":
+                case "setProcessingProfile":
+                    return null;
+                case "whenItemProcessed":
+                    callback.set((ItemProcessedCallback) args[0]);
+                    return null;
+                case "process":
+                    process(state, caseDir, itemsOf(evidence), workerCount.get(), callback.get());
+                    return null;
+                default:
+                    return objectMethod(proxy, method.getName(), args, "SimulatedProcessor of " + caseDir);
+            }
+        });
+    }
+
+    private static EvidenceContainer evidenceContainer(List<File> evidence)
+    {
+        List<File> added = new ArrayList<>();
+        return proxy(EvidenceContainer.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "addFile":
+                    added.add((File) args[0]);
+                    return null;
+                case "save":
+                    evidence.addAll(added);
+                    added.clear();
+                    return null;
+                case "setDescription":
+                    return null;
+                default:
+                    return objectMethod(proxy, method.getName(), args, "SimulatedEvidenceContainer");
+            }
+        });
+    }
+
+    /**
+     * Takes itemMillis per item on each of the workers, checking the licence before each round of items the way a
+     * real job fails once its engine loses its licence.
+     */
+    private void process(SimulatedEngine state, File caseDir, List<File> items, int workers, ItemProcessedCallback callback)
+    {
+        Licence licence = requireLicence(state);
+        if (workers < 1 || (licence.getWorkers() != null && workers > licence.getWorkers()))
+        {
+            throw new LicenceException(String.format("Requested %d workers, the licence allows %s", workers, licence.getWorkers()));
+        }
+        for (int next = 0; next < items.size(); next += workers)
+        {
+            pause(settings.itemMillis);
+            requireLicence(state);
+            for (int item = next; item < Math.min(next + workers, items.size()); item++)
+            {
+                itemsProcessed.incrementAndGet();
+                if (callback != null)
+                {
+                    callback.itemProcessed(processedItem(items.get(item)));
+                }
+            }
+        }
+        LOGGER.debug("Simulated processing of {} items into {} on {} workers", items.size(), caseDir, workers);
+    }
+
+    private static Licence requireLicence(SimulatedEngine state)
+    {
+        if (state.closed)
+        {
+            throw new IllegalStateException("Engine has been closed");
+        }
+        Licence licence = state.licence();
+        if (licence == null)
+        {
+            throw new LicenceException("Engine is not licenced");
+        }
+        return licence;
+    }
+
+    /**
+     * The items of the evidence: each file, and each file under a folder.
+     */
+    private static List<File> itemsOf(List<File> evidence)
+    {
+        List<File> items = new ArrayList<>();
+        synchronized (evidence)
+        {
+            for (File file : evidence)
+            {
+                if (!file.isDirectory())
+                {
+                    items.add(file);
+                    continue;
+                }
+                try (Stream<Path> walk = Files.walk(file.toPath()))
+                {
+                    walk.filter(Files::isRegularFile).forEach(path -> items.add(path.toFile()));
+                }
+                catch (IOException | UncheckedIOException e)
+                {
+                    LOGGER.warn("Could not list the evidence in {}", file, e);
+                }
+            }
+        }
+        return items;
+    }
+
+    private static ProcessedItem processedItem(File file)
+    {
+        String guidPath = UUID.nameUUIDFromBytes(file.getPath().getBytes(StandardCharsets.UTF_8)).toString();
+        return proxy(ProcessedItem.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getMimeType":
+                    return "application/octet-stream";
+                case "getGuidPath":
+                    return guidPath;
+                default:
+                    return objectMethod(proxy, method.getName(), args, file.getName());
+            }
+        });
+    }
+
+    /**
+     * Asks the engine's callbacks what a real server would, failing the way a real server does.
+     */
+    private void challenge(SimulatedEngine state, SimulatedSource source)
+    {
+        switch (settings.challenge.toLowerCase(Locale.ROOT))
+        {
+            case "credentials":
+                String[] given = new String[2];
+                CredentialsCallback credentials = state.credentials.get();
+                if (credentials != null)
+                {
+                    credentials.execute(proxy(CredentialsCallbackInfo.class, (proxy, method, args) ->
+                    {
+                        switch (method.getName())
+                        {
+                            case "getAddress":
+                                return source.location;
+                            case "setUsername":
+                                given[0] = (String) args[0];
+                                return null;
+                            case "setPassword":
+                                given[1] = (String) args[0];
+                                return null;
+                            default:
+                                return objectMethod(proxy, method.getName(), args, "credentials for " + source.location);
+                        }
+                    }));
+                }
+                if (given[0] == null || given[0].isEmpty() || given[1] == null || given[1].isEmpty())
+                {
+                    throw new LicenceException("Authentication failed for " + source.location);
+                }
+                break;
+            case "certificate":
+                boolean[] trusted = new boolean[1];
+                CertificateTrustCallback certificateTrust = state.certificateTrust.get();
+                if (certificateTrust != null)
+                {
+                    certificateTrust.execute(proxy(CertificateTrustCallbackInfo.class, (proxy, method, args) ->
+                    {
+                        if (method.getName().equals("setTrusted"))
+                        {
+                            trusted[0] = (Boolean) args[0];
+                            return null;
+                        }
+                        return objectMethod(proxy, method.getName(), args, "certificate of " + source.location);
+                    }));
+                }
+                if (!trusted[0])
+                {
+                    throw new LicenceException("Unable to connect to " + source.location,
+                            new IllegalStateException("unable to find valid certification path to requested target"));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Takes the latency of a remote call and fails it at the failure rate.
+     */
+    private void remoteCall(String call)
+    {
+        pause(settings.latencyMillis <= 0 ? 0
+                : settings.latencyMillis / 2 + ThreadLocalRandom.current().nextLong(settings.latencyMillis + 1));
+        boolean fail;
+        synchronized (failures)
+        {
+            fail = settings.failureRate > 0 && failures.nextDouble() < settings.failureRate;
+        }
+        if (fail)
+        {
+            injectedFailures.incrementAndGet();
+            throw new LicenceException("Simulated failure of " + call);
+        }
+    }
+
+    private static List<String> sourceTypes(Object[] args)
+    {
+        if (args == null || args.length == 0 || args[0] == null)
+        {
+            return null;
+        }
+        Object types = ((Map<?, ?>) args[0]).get("sources");
+        if (types instanceof String[])
+        {
+            return Arrays.asList((String[]) types);
+        }
+        return types == null ? null : Collections.singletonList(types.toString());
+    }
+
+    private static void pause(long millis)
+    {
+        if (millis <= 0)
+        {
+            return;
+        }
+        try
+        {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new LicenceException("Interrupted", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler)
+    {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    /**
+     * The Object methods every proxy answers, anything else is not simulated.
+     */
+    private static Object objectMethod(Object proxy, String name, Object[] args, String description)
+    {
+        switch (name)
+        {
+            case "toString":
+                return description;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            default:
+                throw new UnsupportedOperationException(name + " is not simulated");
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package Nuix.Baseline;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Timings of the steps it takes to get a licenced engine, so a slow start can be pinned on
+ * the JVM launch, container creation, newEngine, the callbacks, a particular licence source or the acquire itself.
+ * <p>
+ * Phases are timed with try-with-resources around each step and accumulate, so pooled engines
+ * that repeat a step add to its count, total and maximum. Licence sources are recorded separately
+ * with their latency and failures. The summary can be logged, written as JSON and served in the
+ * Prometheus text format on a local port. Thread safe.
+ */
+class StartupMetrics {
+
+    /**
+     * Generic logger definition, will use the class name as the prefix in the log.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(StartupMetrics.class);
+
+    private final Map<String, Stat> phases = new ConcurrentSkipListMap<>();
+    private final Map<String, SourceStat> sources = new ConcurrentSkipListMap<>();
+    private final long createdMillis = System.currentTimeMillis();
+
+    /**
+     * A running phase timer, stops when closed.
+     */
+    final class Phase implements AutoCloseable {
+        private final String name;
+        private final long started = System.nanoTime();
+
+        private Phase(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public void close()
+        {
+            recordPhase(name, System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Accumulated durations of one phase or source.
+     */
+    private static class Stat {
+        long count;
+        long totalNanos;
+        long maxNanos;
+        long lastNanos;
+
+        synchronized void record(long nanos)
+        {
+            count++;
+            totalNanos += nanos;
+            maxNanos  = Math.max(maxNanos, nanos);
+            lastNanos = nanos;
+        }
+    }
+
+    /**
+     * Accumulated latency and failures of one licence source.
+     */
+    private static final class SourceStat extends Stat {
+        final String type;
+        final String location;
+        long failures;
+
+        SourceStat(String type, String location)
+        {
+            this.type     = type;
+            this.location = location;
+        }
+
+        synchronized void record(long nanos, boolean failed)
+        {
+            record(nanos);
+            if (failed)
+            {
+                failures++;
+            }
+        }
+    }
+
+    /**
+     * Starts timing a phase.
+     * @param name the phase, e.g. "newEngine"
+     * @return the timer, close it when the phase ends
+     */
+    @Nonnull
+    Phase phase(@Nonnull String name)
+    {
+        return new Phase(name);
+    }
+
+    /**
+     * Records a phase timed elsewhere.
+     * @param name the phase
+     * @param nanos how long it took
+     */
+    void recordPhase(@Nonnull String name, long nanos)
+    {
+        phases.computeIfAbsent(name, ignored -> new Stat()).record(nanos);
+    }
+
+    /**
+     * Records the time from the JVM starting until now as the "launch" phase, i.e. the class loading and
+     * command line parsing before the engine starts. This is what JVM profiles and CDS archives change.
+     */
+    void recordLaunch()
+    {
+        recordPhase("launch", TimeUnit.MILLISECONDS.toNanos(ManagementFactory.getRuntimeMXBean().getUptime()));
+    }
+
+    /**
+     * Records one enumeration of a licence source.
+     * @param type the source type, e.g. "server"
+     * @param location the source location
+     * @param nanos how long listing its licences took
+     * @param failed whether the listing failed or timed out
+     */
+    void recordSource(@Nonnull String type, @Nonnull String location, long nanos, boolean failed)
+    {
+        sources.computeIfAbsent(type + "|" + location, ignored -> new SourceStat(type, location)).record(nanos, failed);
+    }
+
+    /**
+     * Logs one line per phase and source.
+     */
+    void log()
+    {
+        for (Map.Entry<String, Stat> phase : phases.entrySet())
+        {
+            Stat stat = phase.getValue();
+            synchronized (stat)
+            {
+                LOGGER.info("Phase {}: {} ms (count {}, max {} ms)", phase.getKey(),
+                        millis(stat.lastNanos), stat.count, millis(stat.maxNanos));
+            }
+        }
+        for (SourceStat source : sources.values())
+        {
+            synchronized (source)
+            {
+                LOGGER.info("Licence source {} ({}): {} ms (count {}, failures {})", source.location,
+                        source.type, millis(source.lastNanos), source.count, source.failures);
+            }
+        }
+    }
+
+    /**
+     * Writes the summary as JSON, replacing the file atomically so readers never see half a file.
+     * @param file where to write
+     * @throws IOException if the file could not be written
+     */
+    void writeJson(@Nonnull Path file) throws IOException
+    {
+        Path folder = file.toAbsolutePath().getParent();
+        Files.createDirectories(folder);
+        Path temporary = Files.createTempFile(folder, file.getFileName().toString(), ".tmp");
+        try
+        {
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8))
+            {
+                writer.write(toJson());
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * The summary as a JSON document, durations in milliseconds.
+     * @return the JSON
+     */
+    @Nonnull
+    String toJson()
+    {
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\n  \"timestamp\": ").append(createdMillis).append(",\n  \"phases\": {");
+        String separator = "\n";
+        for (Map.Entry<String, Stat> phase : phases.entrySet())
+        {
+            Stat stat = phase.getValue();
+            synchronized (stat)
+            {
+                json.append(separator).append("    ").append(quote(phase.getKey())).append(": {")
+                    .append("\"count\": ").append(stat.count)
+                    .append(", \"lastMillis\": ").append(fractionalMillis(stat.lastNanos))
+                    .append(", \"totalMillis\": ").append(fractionalMillis(stat.totalNanos))
+                    .append(", \"maxMillis\": ").append(fractionalMillis(stat.maxNanos)).append('}');
+            }
+            separator = ",\n";
+        }
+        json.append("\n  },\n  \"licenceSources\": [");
+        separator = "\n";
+        for (SourceStat source : sources.values())
+        {
+            synchronized (source)
+            {
+                json.append(separator).append("    {")
+                    .append("\"type\": ").append(quote(source.type))
+                    .append(", \"location\": ").append(quote(source.location))
+                    .append(", \"count\": ").append(source.count)
+                    .append(", \"failures\": ").append(source.failures)
+                    .append(", \"lastMillis\": ").append(fractionalMillis(source.lastNanos))
+                    .append(", \"totalMillis\": ").append(fractionalMillis(source.totalNanos))
+                    .append(", \"maxMillis\": ").append(fractionalMillis(source.maxNanos)).append('}');
+            }
+            separator = ",\n";
+        }
+        return json.append("\n  ]\n}\n").toString();
+    }
+
+    /**
+     * The summary in the Prometheus text exposition format, durations in seconds.
+     * @return the metrics
+     */
+    @Nonnull
+    String toPrometheus()
+    {
+        StringBuilder text = new StringBuilder(2048);
+        family(text, "baseline_startup_phase_seconds_total", "counter", "Time spent in each startup phase.");
+        phases.forEach((name, stat) -> sample(text, "baseline_startup_phase_seconds_total", phaseLabel(name), stat, s -> seconds(s.totalNanos)));
+        family(text, "baseline_startup_phase_count_total", "counter", "Times each startup phase ran.");
+        phases.forEach((name, stat) -> sample(text, "baseline_startup_phase_count_total", phaseLabel(name), stat, s -> Long.toString(s.count)));
+        family(text, "baseline_startup_phase_last_seconds", "gauge", "Duration of the latest run of each startup phase.");
+        phases.forEach((name, stat) -> sample(text, "baseline_startup_phase_last_seconds", phaseLabel(name), stat, s -> seconds(s.lastNanos)));
+        family(text, "baseline_startup_phase_max_seconds", "gauge", "Longest run of each startup phase.");
+        phases.forEach((name, stat) -> sample(text, "baseline_startup_phase_max_seconds", phaseLabel(name), stat, s -> seconds(s.maxNanos)));
+
+        family(text, "baseline_licence_source_seconds_total", "counter", "Time spent listing the licences of each source.");
+        sources.values().forEach(source -> sample(text, "baseline_licence_source_seconds_total", sourceLabels(source), source, s -> seconds(s.totalNanos)));
+        family(text, "baseline_licence_source_requests_total", "counter", "Times each licence source was listed.");
+        sources.values().forEach(source -> sample(text, "baseline_licence_source_requests_total", sourceLabels(source), source, s -> Long.toString(s.count)));
+        family(text, "baseline_licence_source_failures_total", "counter", "Listings of each licence source that failed or timed out.");
+        sources.values().forEach(source -> sample(text, "baseline_licence_source_failures_total", sourceLabels(source), source, s -> Long.toString(s.failures)));
+        return text.toString();
+    }
+
+    /**
+     * Serves toPrometheus() at http://127.0.0.1:port/metrics until the returned server is stopped.
+     * @param port the local port to listen on
+     * @return the running server
+     * @throws IOException if the port could not be bound
+     */
+    @Nonnull
+    HttpServer serve(int port) throws IOException
+    {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange ->
+        {
+            byte[] body = toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream response = exchange.getResponseBody())
+            {
+                response.write(body);
+            }
+        });
+        server.setExecutor(Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("startup-metrics-%d").setDaemon(true).build()));
+        server.start();
+        LOGGER.info("Serving startup metrics at http://{}:{}/metrics", server.getAddress().getHostString(), server.getAddress().getPort());
+        return server;
+    }
+
+    private static void family(StringBuilder text, String metric, String type, String help)
+    {
+        text.append("# HELP ").append(metric).append(' ').append(help).append('\n')
+            .append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+    }
+
+    private static <T extends Stat> void sample(StringBuilder text, String metric, String labels, T stat, Function<T, String> value)
+    {
+        synchronized (stat)
+        {
+            text.append(metric).append('{').append(labels).append("} ").append(value.apply(stat)).append('\n');
+        }
+    }
+
+    private static String phaseLabel(String name)
+    {
+        return "phase=\"" + escapeLabel(name) + "\"";
+    }
+
+    private static String sourceLabels(SourceStat source)
+    {
+        return "type=\"" + escapeLabel(source.type) + "\",location=\"" + escapeLabel(source.location) + "\"";
+    }
+
+    private static String escapeLabel(String value)
+    {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String quote(String value)
+    {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int index = 0; index < value.length(); index++)
+        {
+            char c = value.charAt(index);
+            if (c == '"' || c == '\\')
+            {
+                quoted.append('\\').append(c);
+            }
+            else if (c < 0x20)
+            {
+                quoted.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static long millis(long nanos)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static String fractionalMillis(long nanos)
+    {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String seconds(long nanos)
+    {
+        return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+    }
+}
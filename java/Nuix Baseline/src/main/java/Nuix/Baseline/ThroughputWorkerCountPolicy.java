@@ -0,0 +1,90 @@
+package Nuix.Baseline;
+
+/**
+ * Hill climbs the worker count on the total items per second of each job.
+ * <p>
+ * After adding a worker it keeps adding while the job's throughput rises, and after removing one it keeps
+ * removing while the throughput does not fall (the extra workers were only contending). A change smaller than
+ * the tolerance of one worker's share of the throughput counts as no change. Otherwise it steps back and holds
+ * that count, probing the other direction every few jobs in case the load changed.
+ */
+final class ThroughputWorkerCountPolicy implements WorkerCountPolicy {
+
+    private final double tolerance;
+    private final int holdJobs;
+
+    private int lastWorkers = 0;
+    private double lastItemsPerSecond = 0;
+    private int direction = 1;
+    private int heldJobs = -1;
+
+    /**
+     * Hill climbs with a tolerance of 10% of one worker's share, holding for 8 jobs between probes.
+     */
+    ThroughputWorkerCountPolicy()
+    {
+        this(0.10, 8);
+    }
+
+    /**
+     * Hill climbs the worker count on the total items per second.
+     * @param tolerance the fraction of one worker's share of the items per second that is noise: adding a worker
+     *                  must raise the throughput by more, removing one must not lower it by more
+     * @param holdJobs the jobs to run at a settled count before probing again
+     */
+    ThroughputWorkerCountPolicy(double tolerance, int holdJobs)
+    {
+        this.tolerance = tolerance;
+        this.holdJobs  = holdJobs;
+    }
+
+    @Override
+    public synchronized int nextWorkerCount(int workers, double itemsPerSecond, int minimum, int maximum)
+    {
+        int previousWorkers = lastWorkers;
+        double previousItemsPerSecond = lastItemsPerSecond;
+        lastWorkers        = workers;
+        lastItemsPerSecond = itemsPerSecond;
+
+        if (heldJobs >= 0 && ++heldJobs < holdJobs)
+        {
+            return clamp(workers, minimum, maximum);
+        }
+        if (heldJobs >= 0 || previousWorkers == 0 || previousWorkers == workers)
+        {
+            //first job, or done holding: probe one step
+            heldJobs = -1;
+            return probe(workers, minimum, maximum);
+        }
+        boolean grew = workers > previousWorkers;
+        double noise = tolerance * previousItemsPerSecond / previousWorkers;
+        boolean worthIt = grew ? itemsPerSecond > previousItemsPerSecond + noise
+                               : itemsPerSecond >= previousItemsPerSecond - noise;
+        if (worthIt)
+        {
+            direction = grew ? 1 : -1;
+            return probe(workers, minimum, maximum);
+        }
+        //the step did not pay off, go back and probe the other way next time
+        direction = grew ? -1 : 1;
+        heldJobs  = 0;
+        return clamp(previousWorkers, minimum, maximum);
+    }
+
+    private int probe(int workers, int minimum, int maximum)
+    {
+        int next = clamp(workers + direction, minimum, maximum);
+        if (next == workers)
+        {
+            //at a limit, hold here and turn around
+            direction = -direction;
+            heldJobs  = 0;
+        }
+        return next;
+    }
+
+    private static int clamp(int workers, int minimum, int maximum)
+    {
+        return Math.max(minimum, Math.min(maximum, workers));
+    }
+}
@@ -2,28 +2,83 @@ package Nuix.Baseline;
 
 import nuix.WorkerItem;
 
-import org.joda.time.DateTime;
-
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.function.Consumer;
-import Nuix.Baseline.SimpleAddress;
-import Nuix.Baseline.SimpleCommunication;
 
 /**
  * An example for how to configure a Java based Worker Side Script
+ * Items are batched and their output written asynchronously, tune with the system properties
+ * nuix.baseline.wss.batchSize, nuix.baseline.wss.threads and nuix.baseline.wss.queuedBatches.
+ * Set nuix.baseline.wss.output=log to send the output to the Nuix.Baseline.WSS logger instead of stdout.
+ * Set nuix.baseline.wss.latency=true to record how long each item takes on the batch threads, see LatencyRecordingScript.
  */
 public class WSSExample implements Consumer<WorkerItem>, AutoCloseable
 {
+    private final LineOutput output;
+    private final BatchingWorkerScript<?> batches;
+    private final LatencyRecordingScript latency;
 
     /**
      * nuixWorkerItemCallbackInit
      * Called when processing starts
      */
     public WSSExample() throws Exception {
-        //Anything sent to System.out will appear in stdout.log in the job folder.
-        System.out.println("initiated");
+        this("log".equals(System.getProperty("nuix.baseline.wss.output"))
+                ? new LoggerLineOutput()
+                //Anything sent to System.out will appear in stdout.log in the job folder.
+                : asyncWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Writes the output somewhere other than stdout, used by the benchmarks.
+     * @param target where the output lines are written
+     */
+    WSSExample(Writer target) {
+        this(asyncWriter(target));
+    }
 
+    /**
+     * Writes the output to any line output, used by the benchmarks.
+     * @param output where the output lines are written
+     */
+    WSSExample(LineOutput output) {
+        this.output = output;
+        int batchSize = Integer.getInteger("nuix.baseline.wss.batchSize", 256);
+        int threads = Integer.getInteger("nuix.baseline.wss.threads", 1);
+        int queuedBatches = Integer.getInteger("nuix.baseline.wss.queuedBatches", 16);
+        if (Boolean.getBoolean("nuix.baseline.wss.latency"))
+        {
+            //the work happens on the batch threads, so that is where each item is timed, a slow item is named
+            latency = new LatencyRecordingScript(output);
+            batches = new BatchingWorkerScript<>(
+                    workerItem -> workerItem.getSourceItem().getName(),
+                    latency.timeEachItem((itemName, log) -> log.println("Worker Item Processed:", itemName),
+                            LatencyRecordingScript.ItemSnapshot::named),
+                    batchSize, threads, queuedBatches, output);
+        }
+        else
+        {
+            latency = null;
+            batches = new BatchingWorkerScript<>(
+                    workerItem -> workerItem.getSourceItem().getName(),
+                    (itemNames, log) ->
+                    {
+                        for (String itemName : itemNames)
+                        {
+                            log.println("Worker Item Processed:", itemName);
+                        }
+                    },
+                    batchSize, threads, queuedBatches, output);
+        }
+        output.println("initiated");
+    }
+
+    private static AsyncLineWriter asyncWriter(Writer target)
+    {
+        return new AsyncLineWriter(target, Integer.getInteger("nuix.baseline.wss.queuedLines", 64 * 1024));
     }
 
     /**
@@ -34,16 +89,23 @@ public class WSSExample implements Consumer<WorkerItem>, AutoCloseable
     @Override
     public void accept(WorkerItem workerItem)
     {
-        System.out.println("Worker Item Processed");
+        batches.accept(workerItem);
     }
 
     /**
      * nuixWorkerItemCallbackClose
-     * Will be called once processing completes
+     * Will be called once processing completes, drains every batch and the pending output.
      */
     @Override
-    public void close() {
-        System.out.println("Shut Down");
+    public void close() throws IOException {
+        output.println("Shut Down");
+        if (latency != null)
+        {
+            //the summary has to include the items still queued, and still has the output to write to
+            batches.drain();
+            latency.close();
+        }
+        batches.close();
     }
 
 }
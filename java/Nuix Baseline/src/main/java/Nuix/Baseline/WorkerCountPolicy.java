@@ -0,0 +1,22 @@
+package Nuix.Baseline;
+
+/**
+ * Decides the worker count of the next job from the throughput of the last one.
+ */
+interface WorkerCountPolicy {
+
+    /**
+     * Keeps whatever worker count the last job ran with.
+     */
+    WorkerCountPolicy FIXED = (workers, itemsPerSecond, minimum, maximum) -> workers;
+
+    /**
+     * The worker count to licence the next job with.
+     * @param workers the workers the last job ran with
+     * @param itemsPerSecond the items the last job processed per second, across all of its workers
+     * @param minimum the fewest workers allowed
+     * @param maximum the most workers allowed, typically the licence's limit
+     * @return the next worker count, within minimum and maximum
+     */
+    int nextWorkerCount(int workers, double itemsPerSecond, int minimum, int maximum);
+}
@@ -0,0 +1,106 @@
+package Nuix.Baseline;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import com.sun.management.OperatingSystemMXBean;
+
+import javax.annotation.Nonnull;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Works out how many workers this machine can run, for -w auto.
+ * <p>
+ * Workers are separate processes, so the count is the smaller of the cores left once the engine has one
+ * and the free memory divided by the heap each worker is expected to use. Memory this JVM may still claim,
+ * heap it has not committed yet and its -XX:MaxDirectMemorySize, is not counted as free.
+ */
+final class WorkerSizing {
+
+    private final int processors;
+    private final long freeMemoryBytes;
+    private final long reservedMemoryBytes;
+    private final long workerHeapBytes;
+
+    /**
+     * Sizes workers from the given machine.
+     * @param processors the available processors
+     * @param freeMemoryBytes free physical memory
+     * @param reservedMemoryBytes memory the engine process may still use, not available to workers
+     * @param workerHeapBytes the heap budget of one worker
+     */
+    WorkerSizing(int processors, long freeMemoryBytes, long reservedMemoryBytes, long workerHeapBytes)
+    {
+        if (workerHeapBytes <= 0)
+        {
+            throw new IllegalArgumentException("The worker heap budget must be positive, was " + workerHeapBytes);
+        }
+        this.processors          = processors;
+        this.freeMemoryBytes     = freeMemoryBytes;
+        this.reservedMemoryBytes = reservedMemoryBytes;
+        this.workerHeapBytes     = workerHeapBytes;
+    }
+
+    /**
+     * Sizes workers from the machine this JVM runs on.
+     * @param workerHeapBytes the heap budget of one worker
+     * @return the sizing
+     */
+    @Nonnull
+    static WorkerSizing ofRuntime(long workerHeapBytes)
+    {
+        Runtime runtime = Runtime.getRuntime();
+        long uncommittedHeap = Math.max(0, runtime.maxMemory() - runtime.totalMemory());
+        return new WorkerSizing(runtime.availableProcessors(), freePhysicalMemory(),
+                uncommittedHeap + maxDirectMemory(runtime), workerHeapBytes);
+    }
+
+    /**
+     * The number of workers to request.
+     * @param minimum the fewest workers the licence allows
+     * @param maximum the most workers the licence allows
+     * @return the worker count, within minimum and maximum
+     */
+    int workerCount(int minimum, int maximum)
+    {
+        int byProcessors = Math.max(1, processors - 1);
+        long byMemory = Math.max(1, (freeMemoryBytes - reservedMemoryBytes) / workerHeapBytes);
+        int workers = (int) Math.min(byProcessors, byMemory);
+        return Math.max(minimum, Math.min(maximum, workers));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d processors, %d MB free, %d MB reserved by the engine, %d MB per worker", processors,
+                freeMemoryBytes >> 20, reservedMemoryBytes >> 20, workerHeapBytes >> 20);
+    }
+
+    /**
+     * Free physical memory, or unlimited when the platform does not report it (so only the processors count).
+     */
+    private static long freePhysicalMemory()
+    {
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof OperatingSystemMXBean)
+        {
+            return ((OperatingSystemMXBean) os).getFreePhysicalMemorySize();
+        }
+        return Long.MAX_VALUE / 2;
+    }
+
+    /**
+     * The -XX:MaxDirectMemorySize limit, which defaults to the maximum heap when not set.
+     */
+    private static long maxDirectMemory(Runtime runtime)
+    {
+        try
+        {
+            HotSpotDiagnosticMXBean hotSpot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            long configured = hotSpot == null ? 0 : Long.parseLong(hotSpot.getVMOption("MaxDirectMemorySize").getValue());
+            return configured > 0 ? configured : runtime.maxMemory();
+        }
+        catch (RuntimeException e)
+        {
+            return runtime.maxMemory();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package Nuix.Baseline;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Threads for the orchestration work that spends its time waiting: probing licence sources, answering their
+ * credential and certificate callbacks, and engine pool jobs waiting for an engine.
+ * <p>
+ * This is the Java 21 version, picked from the multi-release jar. Every task gets its own virtual thread,
+ * so a slow licence server parks a virtual thread instead of holding a platform thread.
+ */
+final class OrchestrationThreads {
+
+    private OrchestrationThreads()
+    {
+    }
+
+    /**
+     * An executor for blocking orchestration tasks, shut it down when done.
+     * @param name the thread name prefix, e.g. "licence-discovery"
+     * @param threads ignored, a virtual thread is started per task
+     * @return the executor
+     */
+    @Nonnull
+    static ExecutorService newExecutor(@Nonnull String name, int threads)
+    {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+
+    /**
+     * The kind of threads newExecutor uses, for the log.
+     * @return "platform" or "virtual"
+     */
+    @Nonnull
+    static String kind()
+    {
+        return "virtual";
+    }
+}
@@ -0,0 +1,73 @@
+package Nuix.Baseline;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveWorkerCountTest {
+
+    private static final long GB = 1024L * 1024L * 1024L;
+
+    @Test
+    void sizesToProcessorsMemoryAndLicence() throws Exception {
+        //16 cores but only room for 5 workers of 2GB once the engine's 4GB is set aside
+        Assertions.assertEquals(new WorkerSizing(16, 14 * GB, 4 * GB, 2 * GB).workerCount(1, 32), 5);
+        //plenty of memory, one core is left to the engine
+        Assertions.assertEquals(new WorkerSizing(8, 64 * GB, 4 * GB, 2 * GB).workerCount(1, 32), 7);
+        Assertions.assertEquals(new WorkerSizing(8, 64 * GB, 4 * GB, 2 * GB).workerCount(1, 4), 4);
+        Assertions.assertEquals(new WorkerSizing(1, GB, 4 * GB, 2 * GB).workerCount(1, 4), 1);
+
+        AdaptiveWorkerCount auto = new AdaptiveWorkerCount(() -> new WorkerSizing(8, 64 * GB, 4 * GB, 2 * GB),
+                WorkerCountPolicy.FIXED);
+        Assertions.assertEquals(auto.forLicence(6), 6);
+        Assertions.assertTrue(auto.isStale(4));
+        Assertions.assertFalse(auto.isStale(6));
+    }
+
+    @Test
+    void growsWhileWorkersKeepUpThenSettles() throws Exception {
+        ThroughputWorkerCountPolicy policy = new ThroughputWorkerCountPolicy(0.10, 3);
+        //each worker does 100 items/s up to 4 workers, after that the box is saturated at 400 items/s
+        int workers = 2;
+        for (int job = 0; job < 6; job++)
+        {
+            workers = policy.nextWorkerCount(workers, Math.min(workers, 4) * 100.0, 1, 16);
+        }
+        Assertions.assertEquals(workers, 4);
+        //probes the other way, comes back and holds, then probes upwards again
+        int[] expected = {3, 4, 4, 4, 5};
+        for (int step : expected)
+        {
+            workers = policy.nextWorkerCount(workers, Math.min(workers, 4) * 100.0, 1, 16);
+            Assertions.assertEquals(workers, step);
+        }
+    }
+
+    @Test
+    void decidesOnTheTotalThroughput() throws Exception {
+        //a 21st worker that slows every worker by 10% lowers the total, so it is taken back
+        ThroughputWorkerCountPolicy growing = new ThroughputWorkerCountPolicy(0.10, 3);
+        Assertions.assertEquals(growing.nextWorkerCount(20, 20 * 100.0, 1, 32), 21);
+        Assertions.assertEquals(growing.nextWorkerCount(21, 21 * 90.0, 1, 32), 20);
+
+        //a 5th worker removed makes the others 10% faster, but the total still falls, so it is put back
+        ThroughputWorkerCountPolicy shrinking = new ThroughputWorkerCountPolicy(0.10, 1);
+        Assertions.assertEquals(shrinking.nextWorkerCount(5, 5 * 100.0, 1, 5), 5);
+        Assertions.assertEquals(shrinking.nextWorkerCount(5, 5 * 100.0, 1, 5), 4);
+        Assertions.assertEquals(shrinking.nextWorkerCount(4, 4 * 110.0, 1, 5), 5);
+
+        //workers that only contend are removed while the total holds
+        ThroughputWorkerCountPolicy contending = new ThroughputWorkerCountPolicy(0.10, 1);
+        Assertions.assertEquals(contending.nextWorkerCount(8, 400.0, 1, 8), 8);
+        Assertions.assertEquals(contending.nextWorkerCount(8, 400.0, 1, 8), 7);
+        Assertions.assertEquals(contending.nextWorkerCount(7, 400.0, 1, 8), 6);
+    }
+
+    @Test
+    void parsesCountOrAuto() throws Exception {
+        Assertions.assertFalse(AdaptiveWorkerCount.parse("3", GB).isAutomatic());
+        Assertions.assertEquals(AdaptiveWorkerCount.parse("3", GB).forLicence(2), 3);
+        Assertions.assertTrue(AdaptiveWorkerCount.parse("AUTO", GB).isAutomatic());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> AdaptiveWorkerCount.parse("0", GB));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> AdaptiveWorkerCount.parse("many", GB));
+    }
+}
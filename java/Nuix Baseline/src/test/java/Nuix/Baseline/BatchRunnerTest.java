@@ -0,0 +1,180 @@
+package Nuix.Baseline;
+
+import nuix.engine.Engine;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class BatchRunnerTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void readsManifestWithResolvedPaths() throws Exception {
+        Path manifestFile = folder.resolve("nightly.json");
+        Files.write(manifestFile, ("{\"concurrency\": 2, \"jobs\": [" +
+                "{\"id\": \"a\", \"evidence\": [\"evidence/a.pst\"], \"caseDir\": \"cases/a\"}," +
+                "{\"id\": \"b\", \"evidence\": [\"/data/b\"], \"caseDir\": \"cases/b\", \"profile\": \"Default\", \"priority\": 5}" +
+                "]}").getBytes(StandardCharsets.UTF_8));
+        BatchManifest manifest = BatchManifest.read(manifestFile);
+        Assertions.assertEquals(manifest.getConcurrency(), 2);
+        Assertions.assertEquals(manifest.getJournalFile(), folder.resolve("nightly.json.journal"));
+        Assertions.assertEquals(manifest.getJobs().get(0).getEvidence(),
+                Collections.singletonList(folder.resolve("evidence/a.pst").toString()));
+        Assertions.assertEquals(manifest.getJobs().get(1).getProfile(), "Default");
+        Assertions.assertEquals(manifest.getJobs().get(1).getPriority(), 5);
+        Assertions.assertEquals(manifest.getJobs().get(1).getOrder(), 1);
+
+        Files.write(manifestFile, "{\"jobs\": [{\"id\": \"a\", \"evidence\": [\"x\"], \"caseDir\": \"c\"}, {\"id\": \"a\", \"evidence\": [\"y\"], \"caseDir\": \"c\"}]}"
+                .getBytes(StandardCharsets.UTF_8));
+        Assertions.assertThrows(java.io.IOException.class, () -> BatchManifest.read(manifestFile));
+    }
+
+    @Test
+    void queueTakesManifestsByNameUntilStopped() throws Exception {
+        Path queueFolder = folder.resolve("queue");
+        try (ManifestQueue queue = new ManifestQueue(queueFolder))
+        {
+            Files.write(queueFolder.resolve("2-later.json"), new byte[0]);
+            Files.write(queueFolder.resolve("1-first.json"), new byte[0]);
+            Files.write(queueFolder.resolve("notes.txt"), new byte[0]);
+            Path first = queue.take();
+            Assertions.assertEquals(first, queueFolder.resolve("1-first.json"));
+            queue.finished(first, true);
+            Path later = queue.take();
+            Assertions.assertEquals(later, queueFolder.resolve("2-later.json"));
+            queue.finished(later, false);
+            Assertions.assertTrue(Files.isRegularFile(queueFolder.resolve("done/1-first.json")));
+            Assertions.assertTrue(Files.isRegularFile(queueFolder.resolve("failed/2-later.json")));
+
+            Thread dropper = new Thread(() ->
+            {
+                try
+                {
+                    Thread.sleep(100);
+                    Files.write(queueFolder.resolve("3-dropped.json"), new byte[0]);
+                }
+                catch (Exception e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            });
+            dropper.start();
+            Assertions.assertEquals(queue.take(), queueFolder.resolve("3-dropped.json"));
+            dropper.join();
+            Files.write(queueFolder.resolve(ManifestQueue.STOP), new byte[0]);
+            Assertions.assertNull(queue.take());
+            Assertions.assertFalse(Files.exists(queueFolder.resolve(ManifestQueue.STOP)));
+        }
+    }
+
+    @Test
+    void runsByPriorityAndResumesFromTheJournal() throws Exception {
+        List<BatchJob> jobs = Arrays.asList(job("low", 0, 0), job("urgent", 10, 1), job("broken", 5, 2), job("also-low", 0, 3));
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        BatchRunner.JobProcessor processor = (engine, job) ->
+        {
+            ran.add(job.getId());
+            if (job.getId().equals("broken"))
+            {
+                throw new IllegalStateException("corrupt evidence");
+            }
+            return 100;
+        };
+        Path journalFile = folder.resolve("batch.journal");
+        try (BatchJournal journal = new BatchJournal(journalFile);
+             EnginePool pool = new EnginePool(BatchRunnerTest::engine, 1, 60_000))
+        {
+            BatchRunner.Summary summary = new BatchRunner(pool, 1, journal, processor, null).run(jobs);
+            Assertions.assertEquals(summary.completed, 3);
+            Assertions.assertEquals(summary.failed, 1);
+            Assertions.assertEquals(summary.items, 300);
+        }
+        Assertions.assertEquals(ran, Arrays.asList("urgent", "broken", "low", "also-low"));
+
+        //a rerun only retries the failed job
+        ran.clear();
+        try (BatchJournal journal = new BatchJournal(journalFile);
+             EnginePool pool = new EnginePool(BatchRunnerTest::engine, 2, 60_000))
+        {
+            BatchRunner.Summary summary = new BatchRunner(pool, 2, journal, processor, null).run(jobs);
+            Assertions.assertEquals(summary.skipped, 3);
+            Assertions.assertEquals(summary.failed, 1);
+        }
+        Assertions.assertEquals(ran, Collections.singletonList("broken"));
+        Assertions.assertEquals(Files.readAllLines(journalFile).size(), 5);
+    }
+
+    @Test
+    void jobsCompleteWhenTheJournalCantBeWritten() throws Exception {
+        List<BatchJob> jobs = Arrays.asList(job("a", 0, 0), job("b", 0, 1));
+        try (BatchJournal journal = new BatchJournal(folder.resolve("batch.journal"));
+             EnginePool pool = new EnginePool(BatchRunnerTest::engine, 1, 60_000))
+        {
+            journal.close();
+            BatchRunner.Summary summary = new BatchRunner(pool, 1, journal, (engine, job) -> 10, null).run(jobs);
+            Assertions.assertEquals(summary.completed, 2);
+            Assertions.assertEquals(summary.failed, 0);
+            Assertions.assertEquals(summary.items, 20);
+        }
+    }
+
+    @Test
+    void journalEndsALineCutShortByACrash() throws Exception {
+        Path journalFile = folder.resolve("batch.journal");
+        Files.write(journalFile, "1\tcompleted\ta\t10\t5\n2\tcompl".getBytes(StandardCharsets.UTF_8));
+        try (BatchJournal journal = new BatchJournal(journalFile))
+        {
+            Assertions.assertTrue(journal.isCompleted("a"));
+            journal.recordCompleted("b", 10, 5);
+        }
+        try (BatchJournal journal = new BatchJournal(journalFile))
+        {
+            Assertions.assertTrue(journal.isCompleted("b"));
+        }
+        Assertions.assertEquals(Files.readAllLines(journalFile).size(), 3);
+    }
+
+    @Test
+    void stopsWhenNoEngineCanBeLicenced() throws Exception {
+        List<BatchJob> jobs = Arrays.asList(job("a", 0, 0), job("b", 0, 1), job("c", 0, 2));
+        try (BatchJournal journal = new BatchJournal(folder.resolve("batch.journal"));
+             EnginePool pool = new EnginePool(() -> { throw new nuix.LicenceException("no licences left"); }, 1, 60_000))
+        {
+            Assertions.assertThrows(nuix.LicenceException.class,
+                    () -> new BatchRunner(pool, 1, journal, (engine, job) -> 1, null).run(jobs));
+            Assertions.assertFalse(journal.isCompleted("a"));
+        }
+    }
+
+    private static BatchJob job(String id, int priority, int order)
+    {
+        return new BatchJob(id, Collections.singletonList("/evidence/" + id), "/cases/" + id, null, priority, order);
+    }
+
+    private static Engine engine()
+    {
+        return (Engine) Proxy.newProxyInstance(Engine.class.getClassLoader(), new Class<?>[]{Engine.class},
+                (proxy, method, args) ->
+                {
+                    switch (method.getName())
+                    {
+                        case "getLicence":
+                        case "close":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
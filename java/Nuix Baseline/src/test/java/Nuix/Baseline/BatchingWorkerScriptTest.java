@@ -0,0 +1,43 @@
+package Nuix.Baseline;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicLong;
+
+class BatchingWorkerScriptTest {
+
+    @Test
+    void closeDrainsEveryBatch() throws Exception {
+        StringWriter written = new StringWriter();
+        AtomicLong seen = new AtomicLong();
+        BatchingWorkerScript<String> script = new BatchingWorkerScript<>(
+                workerItem -> workerItem.getSourceItem().getName(),
+                (batch, output) -> seen.addAndGet(batch.size()),
+                100, 2, 4, new AsyncLineWriter(written, 1024));
+        for (int index = 0; index < 1050; index++)
+        {
+            script.accept(FakeWorkerItem.named("item-" + index));
+        }
+        script.close();
+        Assertions.assertEquals(seen.get(), 1050);
+        Assertions.assertEquals(script.getItemsProcessed(), 1050);
+        Assertions.assertTrue(written.toString().contains("Processed 1050 of 1050 items, 0 batches failed"));
+    }
+
+    @Test
+    void failedBatchesAreReportedNotThrown() throws Exception {
+        StringWriter written = new StringWriter();
+        BatchingWorkerScript<String> script = new BatchingWorkerScript<>(
+                workerItem -> workerItem.getSourceItem().getName(),
+                (batch, output) -> { throw new IllegalStateException("bad batch"); },
+                10, 1, 1, new AsyncLineWriter(written, 1024));
+        for (int index = 0; index < 25; index++)
+        {
+            script.accept(FakeWorkerItem.named("item-" + index));
+        }
+        script.close();
+        Assertions.assertTrue(written.toString().contains("Processed 0 of 25 items, 3 batches failed"));
+    }
+}
@@ -0,0 +1,123 @@
+package Nuix.Baseline;
+
+import nuix.Communication;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class CommunicationExtractionScriptTest {
+
+    private static final String HEADERS =
+            "Received: from mail.example.com\r\n" +
+            "From: \"Doe, Jane\" <jane.doe@example.com>\r\n" +
+            "To: bob@example.com,\r\n" +
+            "\t\"Smith, Al\" <al@example.com>\r\n" +
+            "Date: Mon, 6 Jan 2020 10:00:00 -0800 (PST)\r\n" +
+            "\r\n" +
+            "From: not a header, this is the body\r\n";
+
+    @Test
+    void setsCommunicationsFromPropertiesAndText() throws Exception {
+        StringWriter written = new StringWriter();
+        CommunicationExtractionScript script = new CommunicationExtractionScript(new AsyncLineWriter(written, 1024), new AddressPool(), 4096);
+
+        FakeWorkerItem raw = new FakeWorkerItem("message.eml", Collections.singletonMap("Transport Message Headers", HEADERS), null);
+        script.accept(raw.workerItem);
+        Communication fromRaw = raw.communication.get();
+        Assertions.assertEquals(fromRaw.getFrom().get(0).getPersonal(), "Doe, Jane");
+        Assertions.assertEquals(fromRaw.getTo().size(), 2);
+        Assertions.assertEquals(fromRaw.getTo().get(1).getAddress(), "al@example.com");
+        Assertions.assertEquals(fromRaw.getDateTime().getMillis(), 1578333600000L);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("From", "bob@example.com");
+        properties.put("To", "Jane Doe <jane.doe@example.com>");
+        properties.put("Subject", "lunch");
+        FakeWorkerItem separate = new FakeWorkerItem("message.eml", properties, null);
+        script.accept(separate.workerItem);
+        Assertions.assertEquals(separate.communication.get().getFrom().get(0), fromRaw.getTo().get(0));
+        Assertions.assertNull(separate.communication.get().getDateTime());
+
+        FakeWorkerItem text = new FakeWorkerItem("message.eml", Collections.emptyMap(), HEADERS.substring(HEADERS.indexOf("From:")));
+        script.accept(text.workerItem);
+        Assertions.assertSame(text.communication.get().getFrom().get(0), fromRaw.getFrom().get(0));
+
+        FakeWorkerItem plain = new FakeWorkerItem("message.eml", Collections.emptyMap(), "Dear Bob,\nFrom: the desk of Jane\n");
+        script.accept(plain.workerItem);
+        Assertions.assertNull(plain.communication.get());
+
+        script.close();
+        Assertions.assertTrue(written.toString().contains("Set 3 communications on 4 items (2 from properties, 1 from text), 0 failed, 3 distinct addresses"),
+                written.toString());
+    }
+
+    @Test
+    void threadsShareTheAddressPool() throws Exception {
+        AddressPool pool = new AddressPool();
+        CommunicationExtractionScript script = new CommunicationExtractionScript(new AsyncLineWriter(new StringWriter(), 1024), pool, 4096);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<FakeWorkerItem> items = new ArrayList<>();
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++)
+            {
+                List<FakeWorkerItem> threadItems = new ArrayList<>();
+                for (int index = 0; index < 500; index++)
+                {
+                    threadItems.add(new FakeWorkerItem("message.eml", Collections.singletonMap("Message Headers",
+                            "From: jane.doe@example.com\nTo: user" + (index % 50) + "@example.com\n"), null));
+                }
+                items.addAll(threadItems);
+                futures.add(executor.submit(() -> threadItems.forEach(item -> script.accept(item.workerItem))));
+            }
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        script.close();
+        Assertions.assertEquals(pool.size(), 51);
+        for (FakeWorkerItem item : items)
+        {
+            Assertions.assertSame(item.communication.get().getFrom().get(0), items.get(0).communication.get().getFrom().get(0));
+        }
+    }
+
+    @Test
+    void recordsSharedAddressIds(@TempDir Path folder) throws Exception {
+        SharedAddressDictionary dictionary = SharedAddressDictionary.open(folder.resolve("addresses.dict"), 100, 24);
+        int bob = dictionary.idOf("bob@example.com");
+        StringWriter written = new StringWriter();
+        CommunicationExtractionScript script = new CommunicationExtractionScript(new AsyncLineWriter(written, 1024),
+                new AddressPool(), 4096, dictionary);
+
+        FakeWorkerItem raw = new FakeWorkerItem("message.eml", Collections.singletonMap("Transport Message Headers", HEADERS), null);
+        script.accept(raw.workerItem);
+        int jane = dictionary.find("jane.doe@example.com");
+        int al = dictionary.find("al@example.com");
+        Assertions.assertEquals(raw.customMetadata.get("Address IDs"), jane + "," + bob + "," + al);
+        script.close();
+        Assertions.assertTrue(written.toString().contains("3 addresses in the shared dictionary"), written.toString());
+        Assertions.assertThrows(IllegalStateException.class, () -> dictionary.find("bob@example.com"));
+        try (SharedAddressDictionary reopened = SharedAddressDictionary.open(folder.resolve("addresses.dict"), 100, 24))
+        {
+            Assertions.assertEquals(reopened.find("jane.doe@example.com"), jane);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package Nuix.Baseline;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static Nuix.Baseline.SimpleAddress.CommunicationType.COMMUNICATION_MAIL;
+
+class CommunicationGraphTest {
+
+    private static final SimpleAddress JANE = new SimpleAddress("Jane Doe", "jane@example.com", COMMUNICATION_MAIL);
+    private static final SimpleAddress BOB = new SimpleAddress(null, "bob@example.com", COMMUNICATION_MAIL);
+    private static final SimpleAddress CAROL = new SimpleAddress(null, "carol@example.com", COMMUNICATION_MAIL);
+
+    private static SimpleCommunication mail(DateTime date, SimpleAddress from, SimpleAddress... to)
+    {
+        return SimpleCommunication.builder().date(date).from(from).to(to).build();
+    }
+
+    @Test
+    void countsEdgesAndRanksCorrespondents() throws Exception {
+        CommunicationGraph graph = new CommunicationGraph();
+        graph.add(mail(null, JANE, BOB, CAROL));
+        graph.add(mail(null, JANE, BOB));
+        graph.add(SimpleCommunication.builder().from(CAROL).cc(JANE).bcc(BOB).build());
+        graph.add(mail(null, new SimpleAddress("Bobby", "BOB@example.com", COMMUNICATION_MAIL), JANE));
+
+        int jane = graph.getAddressId(JANE);
+        int bob = graph.getAddressId(BOB);
+        int carol = graph.getAddressId(CAROL);
+        Assertions.assertEquals(graph.getAddressCount(), 3);
+        Assertions.assertEquals(graph.getEdgeCount(jane, bob), 2);
+        Assertions.assertEquals(graph.getEdgeCount(bob, jane), 1);
+        Assertions.assertEquals(graph.getDegree(jane, CommunicationGraph.Direction.OUT), 2);
+        Assertions.assertEquals(graph.getDegree(bob, CommunicationGraph.Direction.IN), 2);
+
+        CommunicationGraph.Neighbours top = graph.topCorrespondents(jane, CommunicationGraph.Direction.BOTH, 1);
+        Assertions.assertEquals(top.size(), 1);
+        Assertions.assertEquals(top.getAddressId(0), bob);
+        Assertions.assertEquals(top.getCount(0), 3);
+        CommunicationGraph.Neighbours all = graph.neighbours(jane, CommunicationGraph.Direction.BOTH);
+        Assertions.assertEquals(all.size(), 2);
+        Assertions.assertEquals(all.getAddressId(1), carol);
+        Assertions.assertEquals(all.getCount(1), 2);
+    }
+
+    @Test
+    void windowsByTimeBucket() throws Exception {
+        CommunicationGraph graph = new CommunicationGraph();
+        DateTime monday = new DateTime(2020, 1, 6, 10, 0, DateTimeZone.UTC);
+        graph.add(mail(monday, JANE, BOB));
+        graph.add(mail(monday.plusDays(1), JANE, BOB));
+        graph.add(mail(monday.plusDays(1), JANE, CAROL));
+        graph.add(mail(monday.plusDays(10), JANE, CAROL));
+        graph.add(mail(null, JANE, CAROL));
+
+        int jane = graph.getAddressId(JANE);
+        int bob = graph.getAddressId(BOB);
+        long start = monday.withTimeAtStartOfDay().getMillis();
+        long end = monday.plusDays(2).withTimeAtStartOfDay().getMillis();
+        Assertions.assertEquals(graph.getEdgeCount(jane, bob, start, end), 2);
+        Assertions.assertEquals(graph.getEdgeCount(jane, bob, start + 1, start + 2), 1);
+        Assertions.assertEquals(graph.getEdgeCount(jane, bob, Long.MIN_VALUE, Long.MAX_VALUE), 2);
+
+        CommunicationGraph.Neighbours window = graph.topCorrespondents(jane, CommunicationGraph.Direction.OUT, start, end, 10);
+        Assertions.assertEquals(window.size(), 2);
+        Assertions.assertEquals(window.getAddressId(0), bob);
+        Assertions.assertEquals(window.getCount(1), 1);
+        Assertions.assertEquals(graph.topCorrespondents(graph.getAddressId(CAROL), CommunicationGraph.Direction.IN,
+                start, end, 10).getCount(0), 1);
+    }
+
+    @Test
+    void bucketsFitAnInt() throws Exception {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CommunicationGraph(1000));
+        CommunicationGraph graph = new CommunicationGraph(120_000);
+        DateTime now = new DateTime(2020, 1, 6, 10, 0, DateTimeZone.UTC);
+        graph.add(mail(now, JANE, BOB));
+        graph.add(mail(new DateTime(9999, 12, 31, 23, 0, DateTimeZone.UTC), JANE, BOB));
+        graph.add(mail(new DateTime(20000, 1, 1, 0, 0, DateTimeZone.UTC), JANE, BOB));
+
+        int jane = graph.getAddressId(JANE);
+        int bob = graph.getAddressId(BOB);
+        Assertions.assertEquals(graph.getEdgeCount(jane, bob), 3);
+        Assertions.assertEquals(graph.getEdgeCount(jane, bob, Long.MIN_VALUE, Long.MAX_VALUE), 2);
+        Assertions.assertEquals(graph.getEdgeCount(jane, bob, now.getMillis(), now.getMillis() + 1), 1);
+        Assertions.assertEquals(graph.topCorrespondents(jane, CommunicationGraph.Direction.OUT,
+                Long.MIN_VALUE, Long.MAX_VALUE, 10).getCount(0), 2);
+    }
+
+    @Test
+    void concurrentWritersLoseNoEdges() throws Exception {
+        CommunicationGraph graph = new CommunicationGraph();
+        int threads = 8;
+        int perThread = 20000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++)
+            {
+                int seed = thread;
+                futures.add(executor.submit(() ->
+                {
+                    for (int index = 0; index < perThread; index++)
+                    {
+                        SimpleAddress recipient = new SimpleAddress(null, "r" + ((index + seed) % 500) + "@example.com", COMMUNICATION_MAIL);
+                        graph.add(mail(null, JANE, recipient));
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        int jane = graph.getAddressId(JANE);
+        Assertions.assertEquals(graph.getDegree(jane, CommunicationGraph.Direction.OUT), 500);
+        CommunicationGraph.Neighbours all = graph.neighbours(jane, CommunicationGraph.Direction.OUT);
+        long total = 0;
+        for (int rank = 0; rank < all.size(); rank++)
+        {
+            total += all.getCount(rank);
+        }
+        Assertions.assertEquals(total, (long) threads * perThread);
+    }
+}
@@ -0,0 +1,133 @@
+package Nuix.Baseline;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class CommunicationImporterTest {
+
+    private static final String MBOX =
+            "From jane@example.com Mon Jan  6 10:00:00 2020\n" +
+            "From: \"Doe, Jane\" <jane.doe@example.com>\n" +
+            "To: bob@example.com, \"Smith, Al\" <al@example.com>\n" +
+            "Cc: Team:  carol@example.com, dave@example.com ;\n" +
+            "Date: Mon, 6 Jan 2020 10:00:00 -0800 (PST)\n" +
+            "Subject: first\n" +
+            "\n" +
+            "Body line\n" +
+            "From the body of an mboxo writer, not after a blank line\n" +
+            "\n" +
+            ">From the escaped body\n" +
+            "\n" +
+            "From bob@example.com Tue Jan  7 10:00:00 2020\r\n" +
+            "From: =?UTF-8?B?Wm/DqyBNw7xsbGVy?= <ZOE@example.com>\r\n" +
+            "To: Jane Doe\r\n" +
+            " <jane.doe@example.com>\r\n" +
+            "Bcc: eve@example.com (Eve)\r\n" +
+            "\r\n" +
+            "Second body\r\n";
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void streamsMboxMessagesAndSkipsBodies() throws Exception {
+        Path mbox = folder.resolve("sample.mbox");
+        Files.write(mbox, MBOX.getBytes(StandardCharsets.UTF_8));
+        AddressPool pool = new AddressPool();
+        List<SimpleCommunication> communications;
+        try (Stream<SimpleCommunication> stream = new CommunicationImporter(pool).open(mbox))
+        {
+            communications = stream.collect(Collectors.toList());
+        }
+        Assertions.assertEquals(communications.size(), 2);
+
+        SimpleCommunication first = communications.get(0);
+        Assertions.assertEquals(first.getFrom().get(0).getPersonal(), "Doe, Jane");
+        Assertions.assertEquals(first.getTo().size(), 2);
+        Assertions.assertEquals(first.getTo().get(1).getPersonal(), "Smith, Al");
+        Assertions.assertEquals(first.getCc().size(), 2);
+        Assertions.assertEquals(first.getDateTime().getMillis(), 1578333600000L);
+
+        SimpleCommunication second = communications.get(1);
+        Assertions.assertEquals(second.getFrom().get(0).getPersonal(), "Zo\u00eb M\u00fcller");
+        Assertions.assertEquals(second.getTo().get(0).getAddress(), "jane.doe@example.com");
+        Assertions.assertEquals(second.getBcc().get(0).getPersonal(), "Eve");
+        Assertions.assertNull(second.getDateTime());
+        Assertions.assertSame(second.getTo().get(0), pool.intern("Jane Doe", "jane.doe@example.com",
+                SimpleAddress.CommunicationType.COMMUNICATION_MAIL));
+    }
+
+    @Test
+    void streamsCsvRowsWithQuotedFields() throws Exception {
+        Path csv = folder.resolve("headers.csv");
+        Files.write(csv, ("ItemId,Date,From,To,Cc\n" +
+                          "1,2020-01-06T10:00:00-08:00,jane@example.com,\"\"\"Smith, Al\"\" <al@example.com>, bob@example.com\",\n" +
+                          "2,,bob@example.com,\"carol@example.com,\n dave@example.com\",eve@example.com\n").getBytes(StandardCharsets.UTF_8));
+        List<SimpleCommunication> communications;
+        try (Stream<SimpleCommunication> stream = new CommunicationImporter(new AddressPool()).open(csv))
+        {
+            communications = stream.collect(Collectors.toList());
+        }
+        Assertions.assertEquals(communications.size(), 2);
+        Assertions.assertEquals(communications.get(0).getTo().size(), 2);
+        Assertions.assertEquals(communications.get(0).getTo().get(0).getPersonal(), "Smith, Al");
+        Assertions.assertEquals(communications.get(0).getDateTime().getMillis(), 1578333600000L);
+        Assertions.assertEquals(communications.get(1).getTo().size(), 2);
+        Assertions.assertEquals(communications.get(1).getCc().get(0).getAddress(), "eve@example.com");
+    }
+
+    @Test
+    void readsEmlFolders() throws Exception {
+        Path messages = Files.createDirectories(folder.resolve("messages"));
+        Files.write(messages.resolve("a.eml"), "From: a@example.com\nTo: b@example.com\n\nbody".getBytes(StandardCharsets.UTF_8));
+        Files.write(messages.resolve("b.eml"), "From: b@example.com\nTo: a@example.com\n\nbody".getBytes(StandardCharsets.UTF_8));
+        Files.write(messages.resolve("notes.txt"), "From: ignored@example.com\n".getBytes(StandardCharsets.UTF_8));
+        try (Stream<SimpleCommunication> stream = new CommunicationImporter(new AddressPool()).open(messages))
+        {
+            Assertions.assertEquals(stream.count(), 2);
+        }
+    }
+
+    @Test
+    void mappedLinesSurviveWindowBoundaries() throws Exception {
+        Path text = folder.resolve("lines.txt");
+        Files.write(text, "short\na line that is longer than the window\r\n\nlast".getBytes(StandardCharsets.UTF_8));
+        try (MappedLineReader reader = new MappedLineReader(text, 8))
+        {
+            Assertions.assertTrue(reader.next());
+            Assertions.assertEquals(reader.toString(0, StandardCharsets.UTF_8), "short");
+            Assertions.assertTrue(reader.next());
+            Assertions.assertEquals(reader.toString(0, StandardCharsets.UTF_8), "a line that is longer than the window");
+            Assertions.assertTrue(reader.next());
+            Assertions.assertEquals(reader.length(), 0);
+            Assertions.assertTrue(reader.next());
+            Assertions.assertEquals(reader.toString(0, StandardCharsets.UTF_8), "last");
+            Assertions.assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void malformedUtf8BecomesReplacementCharacters() throws Exception {
+        Path text = folder.resolve("malformed.txt");
+        byte[] line = {'a', (byte) 0xED, (byte) 0xA0, (byte) 0x80, 'b', (byte) 0xC0, (byte) 0x80, 'c',
+                (byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80, (byte) 0xC3, (byte) 0xAB, (byte) 0xF0, (byte) 0x9F,
+                (byte) 0x93, (byte) 0xA7};
+        Files.write(text, line);
+        StringBuilder decoded = new StringBuilder();
+        try (MappedLineReader reader = new MappedLineReader(text))
+        {
+            Assertions.assertTrue(reader.next());
+            reader.appendUtf8(0, decoded);
+        }
+        Assertions.assertEquals(decoded.toString(), "a\uFFFD\uFFFD\uFFFDb\uFFFD\uFFFDc\uFFFD\uFFFD\uFFFD\uFFFD\u00eb\uD83D\uDCE7");
+        Files.delete(text);
+    }
+}
@@ -0,0 +1,93 @@
+package Nuix.Baseline;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static Nuix.Baseline.SimpleAddress.CommunicationType.COMMUNICATION_MAIL;
+
+class CommunicationStoreTest {
+
+    private static final SimpleAddress JANE = new SimpleAddress("Jane Doe", "jane@example.com", COMMUNICATION_MAIL);
+    private static final SimpleAddress BOB = new SimpleAddress(null, "bob@example.com", COMMUNICATION_MAIL);
+    private static final SimpleAddress CAROL = new SimpleAddress(null, "carol@example.com", COMMUNICATION_MAIL);
+
+    @Test
+    void builderKeepsRolesApartInAnyOrder() throws Exception {
+        SimpleCommunication.Builder builder = SimpleCommunication.builder();
+        SimpleCommunication communication = builder.cc(CAROL).to(BOB).from(JANE).to(CAROL).build();
+        Assertions.assertEquals(communication.getFrom(), Collections.singletonList(JANE));
+        Assertions.assertEquals(communication.getTo().size(), 2);
+        Assertions.assertSame(communication.getTo().get(1), CAROL);
+        Assertions.assertSame(communication.getCc().get(0), CAROL);
+        Assertions.assertTrue(communication.getBcc().isEmpty());
+        Assertions.assertSame(communication.getBcc(), communication.getDelegates());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> communication.getTo().add(JANE));
+
+        SimpleCommunication next = builder.clear().from(BOB).build();
+        Assertions.assertEquals(next.getAddressCount(), 1);
+        Assertions.assertEquals(communication.getAddressCount(), 4);
+    }
+
+    @Test
+    void storeRoundTripsCommunications() throws Exception {
+        CommunicationStore store = new CommunicationStore();
+        DateTime sent = new DateTime(2020, 1, 6, 10, 0, DateTimeZone.forOffsetHours(-8));
+        store.add(SimpleCommunication.builder().date(sent).from(JANE).to(BOB, CAROL).build());
+        store.add(SimpleCommunication.builder().from(BOB).to(JANE).bcc(CAROL).build());
+
+        Assertions.assertEquals(store.size(), 2);
+        Assertions.assertEquals(store.getDistinctAddressCount(), 3);
+        Assertions.assertEquals(store.getDateMillis(0), sent.getMillis());
+        Assertions.assertEquals(store.getDateMillis(1), CommunicationStore.NO_DATE);
+        Assertions.assertEquals(store.getAddressCount(0, SimpleCommunication.Role.TO), 2);
+        Assertions.assertEquals(store.getAddressId(1, SimpleCommunication.Role.TO, 0), store.getAddressId(JANE));
+        Assertions.assertEquals(store.getAddressId(new SimpleAddress(null, "dave@example.com", COMMUNICATION_MAIL)), -1);
+        Assertions.assertEquals(store.getAddressId(new SimpleAddress("Jane Doe ", " jane@example.com", COMMUNICATION_MAIL)),
+                store.getAddressId(JANE));
+
+        SimpleCommunication first = store.get(0);
+        Assertions.assertTrue(first.getDateTime().isEqual(sent));
+        Assertions.assertEquals(first.getTo().get(1).getAddress(), "carol@example.com");
+        Assertions.assertEquals(store.get(1).getBcc().get(0).getAddress(), "carol@example.com");
+        Assertions.assertNull(store.get(1).getDateTime());
+    }
+
+    @Test
+    void storeGrowsPastItsInitialCapacity() throws Exception {
+        CommunicationStore store = new CommunicationStore(new AddressPool(), 1);
+        for (int index = 0; index < 1000; index++)
+        {
+            store.add(SimpleCommunication.builder()
+                    .from(new SimpleAddress(null, "sender" + (index % 10) + "@example.com", COMMUNICATION_MAIL))
+                    .to(JANE, BOB, CAROL).build());
+        }
+        store.trimToSize();
+        Assertions.assertEquals(store.size(), 1000);
+        Assertions.assertEquals(store.getDistinctAddressCount(), 13);
+        Assertions.assertEquals(store.get(999).getFrom().get(0).getAddress(), "sender9@example.com");
+        Assertions.assertEquals(store.getColumnBytes(), 1000L * 8 + (1000L * 5 + 1) * 4 + 4000L * 4);
+    }
+
+    @Test
+    void lookupsLeaveASharedPoolAlone() throws Exception {
+        AddressPool pool = new AddressPool();
+        CommunicationStore store = new CommunicationStore(pool, 16);
+        store.add(SimpleCommunication.builder().from(JANE).build());
+        Assertions.assertEquals(store.getAddressId(BOB), -1);
+        Assertions.assertEquals(pool.size(), 1);
+    }
+
+    @Test
+    void emptyStoreStillGrowsAfterTrimming() throws Exception {
+        CommunicationStore store = new CommunicationStore();
+        store.trimToSize();
+        Assertions.assertEquals(store.add(SimpleCommunication.builder().build()), 0);
+        Assertions.assertEquals(store.add(SimpleCommunication.builder().from(JANE).to(BOB).build()), 1);
+        Assertions.assertEquals(store.getAddressCount(1, SimpleCommunication.Role.TO), 1);
+        Assertions.assertEquals(store.getAddressCount(0, SimpleCommunication.Role.FROM), 0);
+    }
+}
@@ -0,0 +1,85 @@
+package Nuix.Baseline;
+
+import nuix.Communication;
+import nuix.SourceItem;
+import nuix.Text;
+import nuix.WorkerItem;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A WorkerItem for the worker side script tests, no engine required. Its GUID is "guid-" and its path
+ * "/evidence/" followed by the name, its size is 1024 bytes. It remembers the communication and custom
+ * metadata set on it.
+ */
+final class FakeWorkerItem {
+    final AtomicReference<Communication> communication = new AtomicReference<>();
+    final Map<String, Object> customMetadata = new HashMap<>();
+    final WorkerItem workerItem;
+
+    /**
+     * An item with properties and text.
+     * @param name the source item name
+     * @param properties the source item properties
+     * @param text the source item text, null if it has none
+     */
+    FakeWorkerItem(String name, Map<String, Object> properties, String text)
+    {
+        Text itemText = text == null ? null : (Text) Proxy.newProxyInstance(Text.class.getClassLoader(), new Class<?>[]{Text.class},
+                (proxy, method, args) -> method.invoke(text, args));
+        SourceItem sourceItem = (SourceItem) Proxy.newProxyInstance(SourceItem.class.getClassLoader(), new Class<?>[]{SourceItem.class},
+                (proxy, method, args) ->
+                {
+                    switch (method.getName())
+                    {
+                        case "getName":
+                            return name;
+                        case "getLocalisedPathNames":
+                            return "/evidence/" + name;
+                        case "getFileSize":
+                            return 1024L;
+                        case "getCommunication":
+                            return null;
+                        case "getProperties":
+                            return properties;
+                        case "getText":
+                            return itemText;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        workerItem = (WorkerItem) Proxy.newProxyInstance(WorkerItem.class.getClassLoader(), new Class<?>[]{WorkerItem.class},
+                (proxy, method, args) ->
+                {
+                    switch (method.getName())
+                    {
+                        case "getSourceItem":
+                            return sourceItem;
+                        case "getItemGuid":
+                            return "guid-" + name;
+                        case "setItemCommunication":
+                            communication.set((Communication) args[0]);
+                            return null;
+                        case "addCustomMetadata":
+                            customMetadata.put((String) args[0], args[1]);
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * A WorkerItem without properties or text.
+     * @param name the source item name
+     * @return the item
+     */
+    static WorkerItem named(String name)
+    {
+        return new FakeWorkerItem(name, Collections.emptyMap(), null).workerItem;
+    }
+}
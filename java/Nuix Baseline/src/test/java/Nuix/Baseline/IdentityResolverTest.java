@@ -0,0 +1,82 @@
+package Nuix.Baseline;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static Nuix.Baseline.SimpleAddress.CommunicationType.COMMUNICATION_MAIL;
+
+class IdentityResolverTest {
+
+    @Test
+    void canonicalizesAddressesAndNames() throws Exception {
+        Assertions.assertEquals(AddressNormalizer.canonicalAddress(" Jane.Doe+news@Example.COM "), "jane.doe@example.com");
+        Assertions.assertEquals(AddressNormalizer.canonicalAddress("mailto:jane.doe@example.com?subject=hi"), "jane.doe@example.com");
+        Assertions.assertEquals(AddressNormalizer.canonicalAddress("SMTP:JANE.DOE@EXAMPLE.COM."), "jane.doe@example.com");
+        Assertions.assertEquals(AddressNormalizer.canonicalAddress("<'jane.doe@example.com'>"), "jane.doe@example.com");
+        Assertions.assertEquals(AddressNormalizer.canonicalAddress("+15551234"), "+15551234");
+        Assertions.assertEquals(AddressNormalizer.canonicalAddress("  "), "");
+
+        Assertions.assertEquals(AddressNormalizer.canonicalName("Doe, Jane"), "doe jane");
+        Assertions.assertEquals(AddressNormalizer.canonicalName("\"JANE  doe\""), "doe jane");
+        Assertions.assertEquals(AddressNormalizer.canonicalName("Zo\u00eb M\u00fcller"), "muller zoe");
+        Assertions.assertNull(AddressNormalizer.canonicalName("Administrator"));
+        Assertions.assertNull(AddressNormalizer.canonicalName("jane.doe@example.com"));
+        Assertions.assertNull(AddressNormalizer.canonicalName(null));
+    }
+
+    @Test
+    void clustersAliasesIntoStableParticipants() throws Exception {
+        try (IdentityResolver resolver = new IdentityResolver(16, true))
+        {
+            int jane = resolver.resolve("Jane Doe", "Jane.Doe@example.com");
+            int bob = resolver.resolve(new SimpleAddress(null, "bob@example.com", COMMUNICATION_MAIL));
+            Assertions.assertEquals(resolver.resolve(null, "mailto:JANE.DOE+lists@example.com"), jane);
+            Assertions.assertEquals(resolver.resolve("Doe, Jane", "jane@home.example.org"), jane);
+            //a single word says too little to merge on
+            Assertions.assertNotEquals(resolver.resolve("Bob", "robert@home.example.org"), bob);
+            Assertions.assertEquals(resolver.resolve("", "  "), -1);
+
+            //two existing participants joined by a shared name keep the older ID
+            int al = resolver.resolve(null, "al@example.com");
+            int smith = resolver.resolve("Al Smith", "asmith@home.example.org");
+            Assertions.assertNotEquals(smith, al);
+            Assertions.assertEquals(resolver.resolve("Smith, Al", "al@example.com"), al);
+            Assertions.assertEquals(resolver.participantOf("asmith@home.example.org"), al);
+            //the ID handed out for the later cluster is retired and maps to the one it joined
+            Assertions.assertEquals(resolver.currentParticipant(smith), al);
+            Assertions.assertEquals(resolver.currentParticipant(al), al);
+            Assertions.assertEquals(resolver.currentParticipant(bob), bob);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> resolver.currentParticipant(1000));
+            Assertions.assertEquals(resolver.participantOf("nobody@example.com"), -1);
+
+            Assertions.assertEquals(resolver.getAddressCount(), 6);
+            Assertions.assertEquals(resolver.getParticipantCount(), 4);
+            Assertions.assertEquals(resolver.getCanonicalAddress(jane), "jane.doe@example.com");
+            Assertions.assertEquals(resolver.getCanonicalAddress(al), "al@example.com");
+        }
+        try (IdentityResolver resolver = new IdentityResolver(16, false))
+        {
+            int work = resolver.resolve("Jane Doe", "jane.doe@example.com");
+            Assertions.assertNotEquals(resolver.resolve("Jane Doe", "jane@home.example.org"), work);
+        }
+    }
+
+    @Test
+    void growsPastTheExpectedSize() throws Exception {
+        try (IdentityResolver resolver = new IdentityResolver(1024, false))
+        {
+            int[] ids = new int[200_000];
+            for (int index = 0; index < ids.length; index++)
+            {
+                ids[index] = resolver.resolve(null, "user" + index + "@example.com");
+            }
+            for (int index = 0; index < ids.length; index++)
+            {
+                Assertions.assertEquals(resolver.resolve(null, "USER" + index + "@example.com"), ids[index]);
+            }
+            Assertions.assertEquals(resolver.getAddressCount(), ids.length);
+            Assertions.assertEquals(resolver.getParticipantCount(), ids.length);
+            Assertions.assertEquals(resolver.getCanonicalAddress(ids[123_456]), "user123456@example.com");
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package Nuix.Baseline;
+
+import nuix.ItemProcessedCallback;
+import nuix.engine.Engine;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+class IngestionLabTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void scansFoldersInParallel() throws Exception {
+        Path evidence = folder.resolve("evidence");
+        for (int custodian = 0; custodian < 5; custodian++)
+        {
+            Path mail = Files.createDirectories(evidence.resolve("custodian" + custodian).resolve("mail"));
+            for (int file = 0; file < 20; file++)
+            {
+                Files.write(mail.resolve(file + ".eml"), new byte[file]);
+            }
+        }
+        Path loose = Files.write(folder.resolve("loose.pst"), new byte[1000]);
+
+        List<IngestionLab.Evidence> found = IngestionLab.scan(Arrays.asList(evidence, loose, folder.resolve("missing")), 4);
+        Assertions.assertEquals(found.size(), 101);
+        long bytes = 0;
+        for (IngestionLab.Evidence file : found)
+        {
+            bytes += file.size;
+        }
+        Assertions.assertEquals(bytes, 5 * 190 + 1000L);
+    }
+
+    @Test
+    void shardsBalanceHugeAndTinyFiles() throws Exception {
+        List<IngestionLab.Evidence> evidence = new ArrayList<>();
+        evidence.add(new IngestionLab.Evidence(folder.resolve("a.pst"), 900));
+        evidence.add(new IngestionLab.Evidence(folder.resolve("b.pst"), 700));
+        for (int file = 0; file < 1000; file++)
+        {
+            evidence.add(new IngestionLab.Evidence(folder.resolve(file + ".txt"), 1));
+        }
+
+        List<IngestionLab.Shard> shards = IngestionLab.shard(evidence, 4);
+        Assertions.assertEquals(shards.size(), 4);
+        Assertions.assertEquals(shards.get(0).files.get(0).size, 900L);
+        Assertions.assertEquals(shards.get(0).files.size(), 1);
+        Assertions.assertEquals(shards.get(1).files.get(0).size, 700L);
+        Assertions.assertEquals(shards.get(2).bytes + shards.get(3).bytes, 1000L);
+        Assertions.assertEquals(IngestionLab.skew(shards), 900 / (2600 / 4.0), 1e-9);
+        Assertions.assertEquals(IngestionLab.shard(evidence.subList(0, 1), 4).size(), 1);
+    }
+
+    @Test
+    void addsOneContainerPerShardLargestFirst() throws Exception {
+        Files.write(folder.resolve("big.pst"), new byte[5000]);
+        Files.write(folder.resolve("small.eml"), new byte[10]);
+        Files.write(folder.resolve("smaller.eml"), new byte[5]);
+        List<String> calls = new ArrayList<>();
+        Engine engine = engine(2, calls);
+
+        new IngestionLab(IngestionLab.parseRoots(folder + ", "), new File(folder.toFile(), "case"), 1024).accept(engine);
+        Assertions.assertEquals(calls, Arrays.asList(
+                "setParallelProcessingSettings {workerCount=2, workerMemory=1024}",
+                "newEvidenceContainer Shard 1",
+                "addFile big.pst",
+                "newEvidenceContainer Shard 2",
+                "addFile small.eml",
+                "addFile smaller.eml",
+                "process"));
+    }
+
+    @Test
+    void licencesWithoutWorkersGetOneShard() throws Exception {
+        Files.write(folder.resolve("big.pst"), new byte[5000]);
+        Files.write(folder.resolve("small.eml"), new byte[10]);
+        List<String> calls = new ArrayList<>();
+
+        new IngestionLab(IngestionLab.parseRoots(folder.toString()), new File(folder.toFile(), "case"), 1024).accept(engine(null, calls));
+        Assertions.assertEquals(calls, Arrays.asList(
+                "setParallelProcessingSettings {workerCount=1, workerMemory=1024}",
+                "newEvidenceContainer Shard 1",
+                "addFile big.pst",
+                "addFile small.eml",
+                "process"));
+    }
+
+    /**
+     * An engine licenced for workers whose case processor records its calls and processes one item.
+     */
+    private static Engine engine(Integer workers, List<String> calls)
+    {
+        Object licence = proxy(nuix.Licence.class, (name, args) -> workers);
+        Object container = proxy(nuix.EvidenceContainer.class, (name, args) ->
+        {
+            if (name.equals("addFile"))
+            {
+                calls.add("addFile " + ((File) args[0]).getName());
+            }
+            return null;
+        });
+        ItemProcessedCallback[] callback = new ItemProcessedCallback[1];
+        Object processor = proxy(nuix.Processor.class, (name, args) ->
+        {
+            switch (name)
+            {
+                case "setParallelProcessingSettings":
+                    calls.add(name + " " + args[0]);
+                    return null;
+                case "newEvidenceContainer":
+                    calls.add(name + " " + args[0]);
+                    return container;
+                case "whenItemProcessed":
+                    callback[0] = (ItemProcessedCallback) args[0];
+                    return null;
+                case "process":
+                    calls.add(name);
+                    callback[0].itemProcessed(null);
+                    return null;
+                default:
+                    return null;
+            }
+        });
+        Object nuixCase = proxy(nuix.SimpleCase.class, (name, args) -> name.equals("createProcessor") ? processor : null);
+        Object caseFactory = proxy(nuix.CaseFactory.class, (name, args) ->
+        {
+            Assertions.assertEquals(name, "create");
+            Assertions.assertEquals(((Map<?, ?>) args[1]).get("name"), "case");
+            return nuixCase;
+        });
+        Object utilities = proxy(nuix.Utilities.class, (name, args) -> caseFactory);
+        return (Engine) proxy(Engine.class, (name, args) -> name.equals("getLicence") ? licence : utilities);
+    }
+
+    private interface Handler {
+        Object invoke(String name, Object[] args);
+    }
+
+    private static Object proxy(Class<?> type, Handler handler)
+    {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.invoke(method.getName(), args));
+    }
+}
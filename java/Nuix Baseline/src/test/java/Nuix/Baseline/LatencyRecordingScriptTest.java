@@ -0,0 +1,101 @@
+package Nuix.Baseline;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+class LatencyRecordingScriptTest {
+
+    private static final long MICROSECOND = TimeUnit.MICROSECONDS.toNanos(1);
+    private static final long MILLISECONDS_50 = TimeUnit.MILLISECONDS.toNanos(50);
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void histogramPercentilesStayWithinPrecision() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++)
+        {
+            histogram.record(value * 1000);
+        }
+        Assertions.assertEquals(histogram.getCount(), 100_000);
+        Assertions.assertEquals(histogram.getMax(), 100_000_000);
+        Assertions.assertEquals(histogram.getMean(), 50_000_500.0);
+        for (double percentile : new double[]{50, 90, 99, 99.9})
+        {
+            double exact = percentile * 1_000_000;
+            long estimate = histogram.getValueAtPercentile(percentile);
+            Assertions.assertTrue(estimate >= exact && estimate <= exact * 1.04, percentile + ": " + estimate);
+        }
+        Assertions.assertEquals(histogram.getValueAtPercentile(100), 100_000_000);
+        for (long value : new long[]{0, 31, 32, 63, 64, 1_000_003, Long.MAX_VALUE})
+        {
+            int index = LatencyHistogram.index(value);
+            Assertions.assertTrue(LatencyHistogram.highestEquivalent(index) >= value);
+            Assertions.assertTrue(index == 0 || LatencyHistogram.highestEquivalent(index - 1) < value);
+        }
+    }
+
+    @Test
+    void flagsSlowItemsAndWritesTheSummary() throws Exception {
+        StringWriter written = new StringWriter();
+        AsyncLineWriter output = new AsyncLineWriter(written, 1024);
+        Path summaryFile = folder.resolve("job").resolve("wss-latency.txt");
+        //a clock the items advance, so a pause of the test JVM can't make an item slow
+        AtomicLong clock = new AtomicLong();
+        LatencyRecordingScript script = new LatencyRecordingScript(
+                workerItem -> clock.addAndGet(workerItem.getSourceItem().getName().equals("huge.pst") ? MILLISECONDS_50 : MICROSECOND),
+                output, TimeUnit.MILLISECONDS.toNanos(20), 10, 0, summaryFile, clock::get);
+        for (int index = 0; index < 1000; index++)
+        {
+            script.accept(FakeWorkerItem.named(index == 500 ? "huge.pst" : "item-" + index));
+        }
+        script.close();
+        output.close();
+
+        String summary = new String(Files.readAllBytes(summaryFile), StandardCharsets.UTF_8);
+        Assertions.assertTrue(summary.startsWith("worker\titems\t"), summary);
+        Assertions.assertTrue(summary.contains("\nall\t1000\t"), summary);
+        Assertions.assertTrue(summary.contains("1 items took 20.000 ms or longer, the slowest 1:"), summary);
+        Assertions.assertTrue(summary.contains("\tguid-huge.pst\thuge.pst\t/evidence/huge.pst\t1024\n"), summary);
+        Assertions.assertTrue(written.toString().contains("guid-huge.pst /evidence/huge.pst (1024 bytes)"), written.toString());
+        Assertions.assertTrue(written.toString().contains("1 slow items"), written.toString());
+    }
+
+    @Test
+    void timesBatchedItemsWhereTheyAreProcessed() throws Exception {
+        StringWriter written = new StringWriter();
+        AsyncLineWriter output = new AsyncLineWriter(written, 1024);
+        Path summaryFile = folder.resolve("wss-latency.txt");
+        AtomicLong clock = new AtomicLong();
+        LatencyRecordingScript latency = new LatencyRecordingScript(workerItem -> { }, output,
+                TimeUnit.MILLISECONDS.toNanos(20), 10, 0, summaryFile, clock::get);
+        BatchingWorkerScript<String> batches = new BatchingWorkerScript<>(
+                workerItem -> workerItem.getSourceItem().getName(),
+                latency.timeEachItem((itemName, log) -> clock.addAndGet(itemName.equals("huge.pst") ? MILLISECONDS_50 : MICROSECOND),
+                        LatencyRecordingScript.ItemSnapshot::named),
+                100, 1, 16, output);
+        for (int index = 0; index < 1000; index++)
+        {
+            batches.accept(FakeWorkerItem.named(index == 500 ? "huge.pst" : "item-" + index));
+        }
+        batches.drain();
+        latency.close();
+        batches.close();
+
+        String summary = new String(Files.readAllBytes(summaryFile), StandardCharsets.UTF_8);
+        Assertions.assertTrue(summary.contains("\nall\t1000\t"), summary);
+        Assertions.assertTrue(summary.contains("1 items took 20.000 ms or longer, the slowest 1:"), summary);
+        Assertions.assertTrue(summary.contains("\n50.000\twss-batch-0\t\thuge.pst\t\t\n"), summary);
+        Assertions.assertTrue(written.toString().contains("Slow item 50.000 ms on wss-batch-0: huge.pst\n"), written.toString());
+        Assertions.assertTrue(written.toString().contains("1 slow items"), written.toString());
+    }
+}
@@ -0,0 +1,75 @@
+package Nuix.Baseline;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+class LicenceCacheTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void readsBackTheLastLicence() throws Exception {
+        LicenceCache cache = new LicenceCache(folder, "server||enterprise-workstation|4", 60000);
+        Assertions.assertNull(cache.read());
+        cache.write("server", "licence.example.com:27443", "enterprise-workstation", 4);
+
+        LicenceCache.Entry entry = cache.read();
+        Assertions.assertEquals(entry.sourceType, "server");
+        Assertions.assertEquals(entry.sourceLocation, "licence.example.com:27443");
+        Assertions.assertEquals(entry.shortName, "enterprise-workstation");
+        Assertions.assertEquals(entry.workers, Integer.valueOf(4));
+
+        cache.write("dongle", "dongle-1", "enterprise-workstation", null);
+        Assertions.assertNull(cache.read().workers);
+        Assertions.assertNull(new LicenceCache(folder, "cloud||enterprise-workstation|4", 60000).read());
+        Assertions.assertNull(new LicenceCache(folder, "dongle||enterprise-workstation|4", -1).read());
+
+        cache.invalidate();
+        Assertions.assertNull(cache.read());
+    }
+
+    @Test
+    void concurrentStartsNeverShareATemporaryFile() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int start = 0; start < 8; start++)
+            {
+                int workers = start;
+                futures.add(executor.submit(() ->
+                {
+                    LicenceCache cache = new LicenceCache(folder, "server||enterprise-workstation|auto", 60000);
+                    for (int write = 0; write < 50; write++)
+                    {
+                        cache.write("server", "licence.example.com", "enterprise-workstation", workers);
+                        Assertions.assertNotNull(cache.read());
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        try (Stream<Path> files = Files.list(folder))
+        {
+            Assertions.assertEquals(files.count(), 1L);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package Nuix.Baseline;
+
+import nuix.engine.AvailableLicence;
+import nuix.engine.LicenceSource;
+import nuix.engine.Licensor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+class LicenceDiscoveryTest {
+
+    private static final String[] ALL_SOURCES = new String[] {"system","dongle","server","cloud-server"};
+
+    @Test
+    void acquiresInPriorityOrderEvenWhenLowerPriorityAnswersFirst() throws Exception {
+        List<String> acquiredFrom = new ArrayList<>();
+        Licensor licensor = licensor(
+                source("cloud-server", "https://licence-api.nuix.com", 0, "enterprise-workstation"),
+                source("dongle", "NX00001", 300, "enterprise-workstation"));
+        LicenceDiscovery discovery = new LicenceDiscovery(ALL_SOURCES, "", "", 5000);
+        Assertions.assertTrue(discovery.acquire(licensor, (source, licence) -> acquiredFrom.add(licence.getDescription())));
+        Assertions.assertEquals(acquiredFrom, Collections.singletonList("NX00001"));
+    }
+
+    @Test
+    void acquiresWithoutWaitingForLowerPrioritySources() throws Exception {
+        List<String> acquiredFrom = new ArrayList<>();
+        Licensor licensor = licensor(
+                source("cloud-server", "https://licence-api.nuix.com", 10_000, "enterprise-workstation"),
+                source("dongle", "NX00001", 50, "enterprise-workstation"));
+        LicenceDiscovery discovery = new LicenceDiscovery(ALL_SOURCES, "", "", 30_000);
+        long started = System.nanoTime();
+        Assertions.assertTrue(discovery.acquire(licensor, (source, licence) -> acquiredFrom.add(licence.getDescription())));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        Assertions.assertEquals(acquiredFrom, Collections.singletonList("NX00001"));
+        Assertions.assertTrue(elapsed < 5000, "The slow cloud-server should not be waited for, took " + elapsed + "ms");
+    }
+
+    @Test
+    void probesSourcesInParallel() throws Exception {
+        Licensor licensor = licensor(
+                source("dongle", "NX00001", 400, "enterprise-workstation"),
+                source("server", "support-farm.nuix.com:27443", 400, "enterprise-workstation"),
+                source("cloud-server", "https://licence-api.nuix.com", 400, "enterprise-workstation"));
+        long started = System.nanoTime();
+        new LicenceDiscovery(ALL_SOURCES, "", "", 5000).probe(licensor);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        Assertions.assertTrue(elapsed < 1000, "Sources should be probed concurrently, took " + elapsed + "ms");
+    }
+
+    @Test
+    void skipsSourcesThatTimeOut() throws Exception {
+        List<String> acquiredFrom = new ArrayList<>();
+        Licensor licensor = licensor(
+                source("dongle", "NX00001", 10_000, "enterprise-workstation"),
+                source("server", "support-farm.nuix.com:27443", 10, "enterprise-workstation"));
+        LicenceDiscovery discovery = new LicenceDiscovery(ALL_SOURCES, "", "enterprise-workstation", 200);
+        Assertions.assertTrue(discovery.acquire(licensor, (source, licence) -> acquiredFrom.add(licence.getDescription())));
+        Assertions.assertEquals(acquiredFrom, Collections.singletonList("support-farm.nuix.com:27443"));
+        Assertions.assertNotNull(discovery.getLastException());
+    }
+
+    @Test
+    void fallsBackWhenAcquisitionFails() throws Exception {
+        List<String> acquiredFrom = new ArrayList<>();
+        Licensor licensor = licensor(
+                source("dongle", "NX00001", 0, "enterprise-workstation"),
+                source("server", "support-farm.nuix.com:27443", 0, "enterprise-workstation"));
+        LicenceDiscovery discovery = new LicenceDiscovery(ALL_SOURCES, "", "", 5000);
+        Assertions.assertTrue(discovery.acquire(licensor, (source, licence) ->
+        {
+            if (licence.getDescription().equals("NX00001"))
+            {
+                throw new IllegalStateException("dongle already in use");
+            }
+            acquiredFrom.add(licence.getDescription());
+        }));
+        Assertions.assertEquals(acquiredFrom, Collections.singletonList("support-farm.nuix.com:27443"));
+    }
+
+    /**
+     * A licensor that reports the given sources regardless of the requested types.
+     */
+    private static Licensor licensor(LicenceSource... sources)
+    {
+        return (Licensor) Proxy.newProxyInstance(Licensor.class.getClassLoader(), new Class<?>[]{Licensor.class},
+                (proxy, method, args) ->
+                {
+                    if (method.getName().equals("findLicenceSources"))
+                    {
+                        return Arrays.asList(sources);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * A licence source that takes latencyMillis to list a single licence per short name.
+     * The licence description is the location so tests can tell where it came from.
+     */
+    private static LicenceSource source(String type, String location, long latencyMillis, String... shortNames)
+    {
+        return (LicenceSource) Proxy.newProxyInstance(LicenceSource.class.getClassLoader(), new Class<?>[]{LicenceSource.class},
+                (proxy, method, args) ->
+                {
+                    switch (method.getName())
+                    {
+                        case "getType":
+                            return type;
+                        case "getLocation":
+                            return location;
+                        case "findAvailableLicences":
+                            Thread.sleep(latencyMillis);
+                            List<AvailableLicence> licences = new ArrayList<>();
+                            for (String shortName : shortNames)
+                            {
+                                licences.add(licence(shortName, location));
+                            }
+                            return licences;
+                        case "toString":
+                            return location;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static AvailableLicence licence(String shortName, String location)
+    {
+        return (AvailableLicence) Proxy.newProxyInstance(AvailableLicence.class.getClassLoader(), new Class<?>[]{AvailableLicence.class},
+                (proxy, method, args) ->
+                {
+                    switch (method.getName())
+                    {
+                        case "getShortName":
+                            return shortName;
+                        case "getDescription":
+                            return location;
+                        case "toString":
+                            return shortName;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,170 @@
+package Nuix.Baseline;
+
+import nuix.Licence;
+import nuix.engine.Engine;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+class LicenceMonitorTest {
+
+    private static final Licence LICENCE = (Licence) Proxy.newProxyInstance(Licence.class.getClassLoader(),
+            new Class<?>[]{Licence.class}, (proxy, method, args) -> null);
+
+    @Test
+    void pausesThePoolUntilTheLicenceIsReacquired() throws Exception {
+        AtomicReference<Licence> licence = new AtomicReference<>(LICENCE);
+        Engine engine = engine(licence);
+        AtomicInteger attempts = new AtomicInteger();
+        LicenceMonitor.Relicenser relicenser = lostEngine ->
+        {
+            if (attempts.incrementAndGet() < 3)
+            {
+                throw new nuix.LicenceException("licence server unreachable");
+            }
+            licence.set(LICENCE);
+        };
+        try (EnginePool pool = new EnginePool(() -> engine, 1, 60_000);
+             LicenceMonitor monitor = new LicenceMonitor(relicenser, 60_000, 50, 200, pool::pause, pool::resume))
+        {
+            pool.monitorLicences(monitor);
+            pool.warmUp(1);
+
+            AtomicInteger runs = new AtomicInteger();
+            CompletableFuture<Integer> lost = pool.submitForResult(leased ->
+            {
+                if (runs.incrementAndGet() == 1)
+                {
+                    licence.set(null);
+                    throw new IllegalStateException("licence lost mid job");
+                }
+                return runs.get();
+            });
+            CompletableFuture<Boolean> queued = pool.submitForResult(leased -> leased.getLicence() != null);
+            Assertions.assertTrue(queued.get(10, TimeUnit.SECONDS));
+            //the job that was running when the licence dropped ran again once the licence was back
+            Assertions.assertEquals(lost.get(10, TimeUnit.SECONDS), Integer.valueOf(2));
+            Assertions.assertEquals(attempts.get(), 3);
+            Assertions.assertFalse(monitor.isRecovering());
+            Assertions.assertEquals(pool.getOpenEngines(), 1);
+        }
+    }
+
+    @Test
+    void recoveringEnginesAreNotLeasedUntilLicencedAgain() throws Exception {
+        AtomicReference<Licence> licence = new AtomicReference<>(LICENCE);
+        Engine engine = engine(licence);
+        CountDownLatch serverBack = new CountDownLatch(1);
+        LicenceMonitor.Relicenser relicenser = lostEngine ->
+        {
+            serverBack.await();
+            licence.set(LICENCE);
+        };
+        try (EnginePool pool = new EnginePool(() -> engine, 1, 60_000);
+             LicenceMonitor monitor = new LicenceMonitor(relicenser, 60_000, 10, 50, pool::pause, pool::resume))
+        {
+            pool.monitorLicences(monitor);
+            pool.warmUp(1);
+
+            AtomicInteger runs = new AtomicInteger();
+            CompletableFuture<Boolean> lost = pool.submitForResult(leased ->
+            {
+                if (runs.incrementAndGet() == 1)
+                {
+                    licence.set(null);
+                    throw new IllegalStateException("licence lost mid job");
+                }
+                return leased.getLicence() != null;
+            });
+            while (!monitor.isRecovering())
+            {
+                Thread.sleep(5);
+            }
+            //lets the job through the pause, as if it had got past it before the licence dropped
+            pool.resume();
+            Thread.sleep(100);
+            Assertions.assertFalse(lost.isDone());
+            Assertions.assertEquals(runs.get(), 1);
+            serverBack.countDown();
+            Assertions.assertTrue(lost.get(10, TimeUnit.SECONDS));
+            Assertions.assertEquals(runs.get(), 2);
+            Assertions.assertEquals(pool.getOpenEngines(), 1);
+        }
+    }
+
+    @Test
+    void jobsLosingTheLicenceEveryRunFailInTheEnd() throws Exception {
+        AtomicReference<Licence> licence = new AtomicReference<>(LICENCE);
+        Engine engine = engine(licence);
+        try (EnginePool pool = new EnginePool(() -> engine, 1, 60_000);
+             LicenceMonitor monitor = new LicenceMonitor(lostEngine -> licence.set(LICENCE), 60_000, 10, 50,
+                     pool::pause, pool::resume))
+        {
+            pool.monitorLicences(monitor);
+            pool.warmUp(1);
+
+            AtomicInteger runs = new AtomicInteger();
+            CompletableFuture<Void> doomed = pool.submit(leased ->
+            {
+                runs.incrementAndGet();
+                licence.set(null);
+                throw new IllegalStateException("licence lost mid job");
+            });
+            ExecutionException failure = Assertions.assertThrows(ExecutionException.class, () -> doomed.get(10, TimeUnit.SECONDS));
+            Assertions.assertEquals(failure.getCause().getMessage(), "licence lost mid job");
+            Assertions.assertEquals(runs.get(), EnginePool.LICENCE_LOSS_RETRIES + 1);
+
+            //a job failing for any other reason is not run again
+            AtomicInteger otherRuns = new AtomicInteger();
+            CompletableFuture<Void> broken = pool.submit(leased ->
+            {
+                otherRuns.incrementAndGet();
+                throw new IllegalArgumentException("bad job");
+            });
+            Assertions.assertThrows(ExecutionException.class, () -> broken.get(10, TimeUnit.SECONDS));
+            Assertions.assertEquals(otherRuns.get(), 1);
+        }
+    }
+
+    @Test
+    void backsOffExponentiallyUpToTheCap() throws Exception {
+        try (LicenceMonitor monitor = new LicenceMonitor(engine -> { }, 60_000, 1000, 5000, () -> { }, () -> { }))
+        {
+            for (int attempt = 1; attempt <= 4; attempt++)
+            {
+                long expected = Math.min(1000L << (attempt - 1), 5000);
+                long delay = monitor.backoffMillis(attempt);
+                Assertions.assertTrue(delay <= expected && delay >= expected * 4 / 5, attempt + ": " + delay);
+            }
+            Assertions.assertTrue(monitor.backoffMillis(100) <= 5000);
+        }
+    }
+
+    private static Engine engine(AtomicReference<Licence> licence)
+    {
+        return (Engine) Proxy.newProxyInstance(Engine.class.getClassLoader(), new Class<?>[]{Engine.class},
+                (proxy, method, args) ->
+                {
+                    switch (method.getName())
+                    {
+                        case "getLicence":
+                            return licence.get();
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "close":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,90 @@
+package Nuix.Baseline;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.ISODateTimeFormat;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+class MailDateParserTest {
+
+    private static final long MONDAY = 1578333600000L; // 2020-01-06T10:00:00-08:00
+
+    @Test
+    void parsesEveryLayout() throws Exception {
+        MailDateParser strict = new MailDateParser(false);
+        Assertions.assertEquals(strict.parseMillis("Mon, 6 Jan 2020 10:00:00 -0800"), MONDAY);
+        Assertions.assertEquals(strict.getOffsetMinutes(), -480);
+        Assertions.assertEquals(strict.parseMillis("Mon, 6 Jan 2020 10:00:00 -0800 (PST)"), MONDAY);
+        Assertions.assertEquals(strict.parseMillis("6 Jan 2020 18:00 GMT"), MONDAY);
+        Assertions.assertEquals(strict.parseMillis("Mon, 06 Jan 20 13:00:00 EST"), MONDAY);
+        Assertions.assertEquals(strict.parseMillis("Monday, 06-Jan-20 18:00:00 GMT"), MONDAY);
+        Assertions.assertEquals(strict.parseMillis("Mon Jan  6 18:00:00 2020"), MONDAY);
+        Assertions.assertEquals(strict.parseMillis("2020-01-06T10:00:00-08:00"), MONDAY);
+        Assertions.assertEquals(strict.parseMillis("2020-01-06T18:00:00.250Z"), MONDAY + 250);
+        Assertions.assertEquals(strict.parseMillis("Thu, 29 Feb 1996 23:59:60 +0530"),
+                new DateTime(1996, 2, 29, 23, 59, 59, 999, DateTimeZone.forOffsetHoursMinutes(5, 30)).getMillis());
+
+        DateTime date = strict.parse("Mon, 6 Jan 2020 10:00:00 -0800");
+        Assertions.assertEquals(date, new DateTime(MONDAY, DateTimeZone.forOffsetHours(-8)));
+        Assertions.assertSame(date.getZone(), MailDateParser.zone(-480));
+        Assertions.assertEquals(strict.parse("2020-01-06"), ISODateTimeFormat.dateTimeParser().withOffsetParsed().parseDateTime("2020-01-06"));
+    }
+
+    @Test
+    void toleratesOldMail() throws Exception {
+        MailDateParser strict = new MailDateParser(false);
+        MailDateParser tolerant = new MailDateParser(true);
+        String[] malformed = {
+                "Mon,  6 Jan 2020 10:00:00 -0800 -0800",
+                "Mon, 6th Jan. 2020 10:00:00 -0800",
+                "Mon 6 January 2020 10:00:00 AM PST",
+                "6 Jan 2020 10:00:00 GMT-0800",
+                "Mon, 6 Jan 2020 10:00:00 -08:00 (Pacific Standard Time)"};
+        for (String date : malformed)
+        {
+            Assertions.assertEquals(tolerant.parseMillis(date), MONDAY, date);
+            Assertions.assertEquals(strict.parseMillis(date), MailDateParser.INVALID, date);
+        }
+        Assertions.assertEquals(tolerant.parseMillis("Mon, 6 Jan 2020"), MONDAY - 18 * 3600000L);
+        Assertions.assertEquals(tolerant.parseMillis("Mon, 6 Jan 2020 2:00 PM"), MONDAY - 4 * 3600000L);
+        Assertions.assertEquals(strict.parseMillis("Mon, 6 Jan 2020 10:00:00 +0060"), MailDateParser.INVALID);
+        Assertions.assertEquals(tolerant.parseMillis("Mon, 6 Jan 2020 04:00:00 +1800"), MONDAY - 32 * 3600000L);
+
+        for (String invalid : new String[]{null, "", "(none)", "yesterday", "31 Feb 2020 10:00 GMT", "6 Jan 2020 25:00 GMT",
+                "6 Jan 2020 10:00 +2500", "2020-13-01", "Mon, 6 Jan 10:00:00 -0800", "Mon, 6 Jan 2020 10:00:00 +9999",
+                "Mon, 6 Jan 2020 10:00:00 +0060", "Mon, 6 Jan 2020 10:00:00 -1900", "Mon, 6 Jan 2020 10:00:00 GMT+99",
+                "2020-01-06T10:00:00+00:60", "6 Jan 1899 10:00 GMT", "6 Jan 10000 10:00 GMT", "6 Jan 123456789 10:00 GMT",
+                "Mon Jan  6 10:00:00 999999999"})
+        {
+            Assertions.assertEquals(tolerant.parseMillis(invalid), MailDateParser.INVALID, invalid);
+            Assertions.assertNull(tolerant.parse(invalid), invalid);
+        }
+        Assertions.assertThrows(IllegalStateException.class, tolerant::toDateTime);
+        Assertions.assertEquals(strict.parseMillis("Fri, 31 Dec 9999 23:59:59 GMT"), 253402300799000L);
+    }
+
+    @Test
+    void agreesWithJoda() throws Exception {
+        Random random = new Random(42);
+        MailDateParser parser = new MailDateParser(false);
+        for (int index = 0; index < 10000; index++)
+        {
+            DateTime expected = new DateTime(random.nextLong() % (4000L * 365 * 86400000L), DateTimeZone.UTC)
+                    .withZone(DateTimeZone.forOffsetMillis((random.nextInt(28 * 4) - 14 * 4) * 15 * 60000))
+                    .withMillisOfSecond(0);
+            if (expected.getYear() < 1900)
+            {
+                continue;
+            }
+            String rfc2822 = DateTimeFormat.forPattern("EEE, d MMM yyyy HH:mm:ss Z").withLocale(Locale.ENGLISH).print(expected);
+            Assertions.assertEquals(parser.parse(rfc2822), expected, rfc2822);
+            String iso = expected.toString();
+            Assertions.assertEquals(parser.parse(iso), expected, iso);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package Nuix.Baseline;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class SharedAddressDictionaryTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void idsAreStableAcrossMappings() throws Exception {
+        Path file = folder.resolve("addresses.dict");
+        SharedAddressDictionary first = SharedAddressDictionary.open(file, 100, 24);
+        SharedAddressDictionary second = SharedAddressDictionary.open(file, 5, 8);
+        Assertions.assertEquals(second.capacity(), 100);
+
+        int jane = first.idOf("jane.doe@example.com");
+        Assertions.assertEquals(second.idOf(" Jane.Doe@EXAMPLE.com"), jane);
+        Assertions.assertEquals(second.find("jane.doe@example.com"), jane);
+        Assertions.assertEquals(first.find("bob@example.com"), -1);
+        int bob = second.idOf("bob@example.com");
+        Assertions.assertNotEquals(bob, jane);
+        Assertions.assertEquals(first.addressOf(bob), "bob@example.com");
+        Assertions.assertEquals(first.size(), 2);
+        Assertions.assertNull(first.addressOf(99));
+
+        first.close();
+        first.close();
+        Assertions.assertThrows(IllegalStateException.class, () -> first.idOf("bob@example.com"));
+        Assertions.assertEquals(second.find("bob@example.com"), bob);
+        second.close();
+
+        Files.write(folder.resolve("other.dict"), new byte[128]);
+        Assertions.assertThrows(java.io.IOException.class, () -> SharedAddressDictionary.open(folder.resolve("other.dict"), 10, 8));
+    }
+
+    @Test
+    void throwsWhenFull() throws Exception {
+        SharedAddressDictionary dictionary = SharedAddressDictionary.open(folder.resolve("small.dict"), 10, 24);
+        for (int index = 0; index < 10; index++)
+        {
+            Assertions.assertEquals(dictionary.idOf("user" + index + "@example.com"), index);
+        }
+        Assertions.assertEquals(dictionary.idOf("user3@example.com"), 3);
+        Assertions.assertThrows(IllegalStateException.class, () -> dictionary.idOf("one.too.many@example.com"));
+    }
+
+    @Test
+    void concurrentWritersAgreeOnIds() throws Exception {
+        Path file = folder.resolve("threads.dict");
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<int[]>> futures = new ArrayList<>();
+            CyclicBarrier start = new CyclicBarrier(threads);
+            for (int thread = 0; thread < threads; thread++)
+            {
+                //each thread maps the file itself at the same time, like a worker process would
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try (SharedAddressDictionary dictionary = SharedAddressDictionary.open(file, 4096, 24))
+                    {
+                        return assign(dictionary, 2000);
+                    }
+                }));
+            }
+            int[] expected = futures.get(0).get();
+            for (Future<int[]> future : futures)
+            {
+                Assertions.assertArrayEquals(future.get(), expected);
+            }
+            assertDistinct(expected);
+            Assertions.assertEquals(SharedAddressDictionary.open(file, 1, 1).size(), 2000);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void threadsOpenTheSameFileAtOnce() throws Exception {
+        Path file = folder.resolve("opening.dict");
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            for (int round = 0; round < 200; round++)
+            {
+                CyclicBarrier start = new CyclicBarrier(threads);
+                List<Future<Integer>> futures = new ArrayList<>();
+                for (int thread = 0; thread < threads; thread++)
+                {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        try (SharedAddressDictionary dictionary = SharedAddressDictionary.open(file, 16, 24))
+                        {
+                            return dictionary.idOf("jane.doe@example.com");
+                        }
+                    }));
+                }
+                for (Future<Integer> future : futures)
+                {
+                    Assertions.assertEquals(future.get(), 0);
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void workerProcessesShareTheFile() throws Exception {
+        Path file = folder.resolve("processes.dict");
+        String classPath = location(Worker.class) + File.pathSeparator + location(SharedAddressDictionary.class)
+                + File.pathSeparator + location(nuix.Address.class);
+        List<Process> workers = new ArrayList<>();
+        for (int worker = 0; worker < 3; worker++)
+        {
+            workers.add(new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(),
+                    "-cp", classPath, Worker.class.getName(), file.toString())
+                    .inheritIO().start());
+        }
+        for (Process worker : workers)
+        {
+            Assertions.assertTrue(worker.waitFor(60, TimeUnit.SECONDS));
+            Assertions.assertEquals(worker.exitValue(), 0);
+        }
+        SharedAddressDictionary dictionary = SharedAddressDictionary.open(file, 1, 1);
+        Assertions.assertEquals(dictionary.size(), 2000);
+        int[] ids = new int[2000];
+        for (int index = 0; index < ids.length; index++)
+        {
+            ids[index] = dictionary.find(address(index));
+            Assertions.assertEquals(dictionary.addressOf(ids[index]), address(index));
+        }
+        assertDistinct(ids);
+    }
+
+    /**
+     * A worker process adding the same addresses as the others.
+     */
+    static final class Worker {
+        public static void main(String[] args) throws Exception
+        {
+            assign(SharedAddressDictionary.open(new File(args[0]).toPath(), 4096, 24), 2000);
+        }
+    }
+
+    private static String location(Class<?> type) throws Exception
+    {
+        return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    }
+
+    private static int[] assign(SharedAddressDictionary dictionary, int addresses)
+    {
+        int[] ids = new int[addresses];
+        for (int index = 0; index < addresses; index++)
+        {
+            ids[index] = dictionary.idOf(address(index));
+        }
+        return ids;
+    }
+
+    private static String address(int index)
+    {
+        return "custodian" + index + "@example.com";
+    }
+
+    private static void assertDistinct(int[] ids)
+    {
+        Set<Integer> distinct = new HashSet<>();
+        for (int id : ids)
+        {
+            Assertions.assertTrue(id >= 0);
+            distinct.add(id);
+        }
+        Assertions.assertEquals(distinct.size(), ids.length);
+    }
+}
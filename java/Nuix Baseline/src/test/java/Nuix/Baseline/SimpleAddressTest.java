@@ -0,0 +1,79 @@
+package Nuix.Baseline;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static Nuix.Baseline.SimpleAddress.CommunicationType.COMMUNICATION_MAIL;
+import static Nuix.Baseline.SimpleAddress.CommunicationType.COMMUNICATION_PHONE;
+
+class SimpleAddressTest {
+
+    @Test
+    void equalityIgnoresCaseAndMatchesHashCode() throws Exception {
+        SimpleAddress lower = new SimpleAddress("Jane Doe", "jane.doe@example.com", COMMUNICATION_MAIL);
+        SimpleAddress upper = new SimpleAddress(null, " Jane.Doe@EXAMPLE.com ", COMMUNICATION_MAIL);
+        Assertions.assertTrue(lower.equals(upper));
+        Assertions.assertTrue(lower.equals((Object) upper));
+        Assertions.assertEquals(lower.hashCode(), upper.hashCode());
+        Set<SimpleAddress> custodians = new HashSet<>();
+        custodians.add(lower);
+        custodians.add(upper);
+        Assertions.assertEquals(custodians.size(), 1);
+    }
+
+    @Test
+    void typeIsExposedAsString() throws Exception {
+        SimpleAddress phone = new SimpleAddress(null, "+61 2 9999 9999", COMMUNICATION_PHONE);
+        Assertions.assertEquals(phone.getType(), "phone");
+        Assertions.assertEquals(phone.getCommunicationType(), COMMUNICATION_PHONE);
+    }
+
+    @Test
+    void poolReturnsOneInstancePerVariant() throws Exception {
+        AddressPool pool = new AddressPool();
+        SimpleAddress first = pool.intern("Jane Doe", "jane.doe@example.com", COMMUNICATION_MAIL);
+        Assertions.assertSame(pool.intern(" Jane Doe ", "jane.doe@example.com", COMMUNICATION_MAIL), first);
+        Assertions.assertSame(pool.intern(new SimpleAddress("Jane Doe", "jane.doe@example.com", COMMUNICATION_MAIL)), first);
+        SimpleAddress otherName = pool.intern("J. Doe", "JANE.DOE@example.com", COMMUNICATION_MAIL);
+        Assertions.assertNotSame(otherName, first);
+        Assertions.assertTrue(otherName.equals(first));
+        Assertions.assertEquals(pool.size(), 1);
+    }
+
+    @Test
+    void rfc822LeavesPlainAddressesBare() throws Exception {
+        Assertions.assertEquals(new SimpleAddress(null, "jane.doe@example.com", COMMUNICATION_MAIL).toRfc822String(),
+                "jane.doe@example.com");
+        Assertions.assertEquals(new SimpleAddress("Jane Doe", "jane.doe@example.com", COMMUNICATION_MAIL).toRfc822String(),
+                "Jane Doe <jane.doe@example.com>");
+    }
+
+    @Test
+    void rfc822QuotesSpecials() throws Exception {
+        Assertions.assertEquals(new SimpleAddress("Doe, Jane (Legal) \\ \"JD\"", "jane.doe@example.com", COMMUNICATION_MAIL).toRfc822String(),
+                "\"Doe, Jane (Legal) \\\\ \\\"JD\\\"\" <jane.doe@example.com>");
+        Assertions.assertEquals(new SimpleAddress(null, "jane doe@example.com", COMMUNICATION_MAIL).toRfc822String(),
+                "\"jane doe\"@example.com");
+    }
+
+    @Test
+    void rfc822EncodesNonAscii() throws Exception {
+        SimpleAddress address = new SimpleAddress("Zo\u00eb M\u00fcller", "zoe@example.com", COMMUNICATION_MAIL);
+        Assertions.assertEquals(address.toRfc822String(), "=?UTF-8?B?Wm/DqyBNw7xsbGVy?= <zoe@example.com>");
+        Assertions.assertSame(address.toRfc822String(), address.toString());
+
+        StringBuilder longName = new StringBuilder();
+        for (int index = 0; index < 40; index++)
+        {
+            longName.append('\u00e9');
+        }
+        String encoded = new SimpleAddress(longName.toString(), "e@example.com", COMMUNICATION_MAIL).toRfc822String();
+        for (String word : encoded.substring(0, encoded.indexOf(" <")).split(" "))
+        {
+            Assertions.assertTrue(word.length() <= 75, "encoded-word too long: " + word);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package Nuix.Baseline;
+
+import com.google.common.collect.Iterables;
+import nuix.LicenceException;
+import nuix.engine.AvailableLicence;
+import nuix.engine.Engine;
+import nuix.engine.GlobalContainer;
+import nuix.engine.LicenceSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class SimulatedBackendTest {
+
+    @TempDir
+    Path folder;
+
+    private static SimulatedBackend.Settings quiet()
+    {
+        SimulatedBackend.Settings settings = new SimulatedBackend.Settings();
+        settings.latencyMillis = 0;
+        settings.engineMillis  = 0;
+        return settings;
+    }
+
+    private static void acquire(Engine engine, String type, int workers)
+    {
+        Map<String, String[]> options = Collections.singletonMap("sources", new String[]{type});
+        LicenceSource source = Iterables.getOnlyElement(engine.getLicensor().findLicenceSources(options));
+        AvailableLicence licence = source.findAvailableLicences().iterator().next();
+        licence.acquire(Collections.singletonMap("workerCount", workers));
+    }
+
+    @Test
+    void seatsAreHeldUntilTheEngineCloses() throws Exception {
+        SimulatedBackend.Settings settings = quiet();
+        settings.seats = 2;
+        SimulatedBackend backend = new SimulatedBackend(settings);
+        try (GlobalContainer container = backend.newContainer())
+        {
+            Engine first = container.newEngine(Collections.emptyMap());
+            Engine second = container.newEngine(Collections.emptyMap());
+            Engine third = container.newEngine(Collections.emptyMap());
+            acquire(first, "system", 2);
+            acquire(second, "system", 8);
+            Assertions.assertEquals(first.getLicence().getWorkers(), Integer.valueOf(2));
+            Assertions.assertEquals(first.getLicence().getShortName(), "enterprise-workstation");
+            Assertions.assertThrows(LicenceException.class, () -> acquire(third, "system", 1));
+            Assertions.assertThrows(LicenceException.class, () -> acquire(third, "server", 9));
+            Assertions.assertEquals(backend.getLicencesInUse(), 2);
+
+            first.close();
+            Assertions.assertNull(first.getLicence());
+            acquire(third, "system", 1);
+            Assertions.assertEquals(backend.getPeakLicencesInUse(), 2);
+            Assertions.assertEquals(backend.getLicencesAcquired(), 3L);
+            second.close();
+            third.close();
+            Assertions.assertEquals(backend.getLicencesInUse(), 0);
+        }
+    }
+
+    @Test
+    void serversChallengeTheCallbacks() throws Exception {
+        SimulatedBackend.Settings settings = quiet();
+        settings.challenge = "credentials";
+        try (GlobalContainer container = new SimulatedBackend(settings).newContainer())
+        {
+            Engine engine = container.newEngine(Collections.emptyMap());
+            Assertions.assertThrows(LicenceException.class, () -> acquire(engine, "cloud-server", 2));
+            engine.whenAskedForCredentials(info ->
+            {
+                info.setUsername("developer.student");
+                info.setPassword("developer.password");
+            });
+            acquire(engine, "cloud-server", 2);
+            Assertions.assertNotNull(engine.getLicence());
+        }
+
+        settings.challenge = "certificate";
+        try (GlobalContainer container = new SimulatedBackend(settings).newContainer())
+        {
+            Engine engine = container.newEngine(Collections.emptyMap());
+            engine.whenAskedForCertificateTrust(info -> info.setTrusted(false));
+            LicenceException refused = Assertions.assertThrows(LicenceException.class, () -> acquire(engine, "server", 2));
+            Assertions.assertEquals(refused.getCause().getMessage(), "unable to find valid certification path to requested target");
+            acquire(engine, "system", 2);
+        }
+    }
+
+    @Test
+    void failuresAndExpiryAreInjected() throws Exception {
+        SimulatedBackend.Settings settings = quiet();
+        settings.failureRate           = 1;
+        settings.licenceLifetimeMillis = 20;
+        SimulatedBackend backend = new SimulatedBackend(settings);
+        try (GlobalContainer container = backend.newContainer())
+        {
+            Engine engine = container.newEngine(Collections.emptyMap());
+            Assertions.assertThrows(LicenceException.class, () -> acquire(engine, "system", 2));
+            Assertions.assertEquals(backend.getInjectedFailures(), 1L);
+
+            settings.failureRate = 0;
+            acquire(engine, "system", 2);
+            Assertions.assertNotNull(engine.getLicence());
+            Thread.sleep(50);
+            Assertions.assertNull(engine.getLicence());
+            Assertions.assertEquals(backend.getLicencesInUse(), 0);
+        }
+    }
+
+    @Test
+    void concurrentAcquiresOnOneEngineTakeOneSeat() throws Exception {
+        SimulatedBackend backend = new SimulatedBackend(quiet());
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (GlobalContainer container = backend.newContainer())
+        {
+            Engine engine = container.newEngine(Collections.emptyMap());
+            CyclicBarrier start = new CyclicBarrier(threads);
+            List<Future<Boolean>> acquires = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++)
+            {
+                acquires.add(executor.submit(() ->
+                {
+                    start.await();
+                    try
+                    {
+                        acquire(engine, "system", 2);
+                        return true;
+                    }
+                    catch (LicenceException alreadyLicenced)
+                    {
+                        return false;
+                    }
+                }));
+            }
+            int acquired = 0;
+            for (Future<Boolean> acquire : acquires)
+            {
+                acquired += acquire.get() ? 1 : 0;
+            }
+            Assertions.assertEquals(acquired, 1);
+            Assertions.assertEquals(backend.getLicencesInUse(), 1);
+            engine.close();
+            Assertions.assertEquals(backend.getLicencesInUse(), 0);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void casesProcessTheirEvidenceWhileLicenced() throws Exception {
+        Path evidence = Files.createDirectories(folder.resolve("evidence"));
+        for (int file = 0; file < 5; file++)
+        {
+            Files.write(evidence.resolve(file + ".eml"), new byte[]{1});
+        }
+        SimulatedBackend.Settings settings = quiet();
+        settings.itemMillis = 0;
+        SimulatedBackend backend = new SimulatedBackend(settings);
+        try (GlobalContainer container = backend.newContainer())
+        {
+            Engine engine = container.newEngine(Collections.emptyMap());
+            Assertions.assertThrows(LicenceException.class,
+                    () -> new CaseProcessingJob().process(engine, new BatchJob("unlicenced", Collections.singletonList(evidence.toString()),
+                            folder.resolve("case").toString(), null, 0, 0)));
+            acquire(engine, "system", 2);
+            long items = new CaseProcessingJob().process(engine, new BatchJob("licenced", Collections.singletonList(evidence.toString()),
+                    folder.resolve("case").toString(), null, 0, 0));
+            Assertions.assertEquals(items, 5L);
+            Assertions.assertEquals(backend.getItemsProcessed(), 5L);
+        }
+    }
+
+    @Test
+    void appRunsBatchesAndIngestionAgainstTheSimulatedBackend() throws Exception {
+        Path evidence = Files.createDirectories(folder.resolve("evidence"));
+        for (int file = 0; file < 4; file++)
+        {
+            Files.write(evidence.resolve(file + ".eml"), new byte[]{1});
+        }
+        Path manifest = folder.resolve("nightly.json");
+        Files.write(manifest, ("{\"concurrency\": 2, \"jobs\": [" +
+                "{\"id\": \"a\", \"evidence\": [\"evidence\"], \"caseDir\": \"cases/a\"}," +
+                "{\"id\": \"b\", \"evidence\": [\"evidence/0.eml\"], \"caseDir\": \"cases/b\"}," +
+                "{\"id\": \"c\", \"evidence\": [\"evidence/1.eml\"], \"caseDir\": \"cases/c\"}" +
+                "]}").getBytes(StandardCharsets.UTF_8));
+        System.setProperty("nuix.baseline.sim.latencyMillis", "0");
+        try
+        {
+            App.main(new String[] {"-d=" + folder, "-b=simulated", "-s=system", "-j=" + manifest});
+            List<String> journal = Files.readAllLines(folder.resolve("nightly.json.journal"));
+            Assertions.assertEquals(journal.size(), 3);
+            for (String line : journal)
+            {
+                Assertions.assertEquals(line.split("\t")[1], "completed");
+            }
+
+            App.main(new String[] {"-d=" + folder, "-b=simulated", "-s=system", "-i=" + evidence,
+                    "-ingestCase=" + folder.resolve("cases/ingested")});
+        }
+        finally
+        {
+            System.clearProperty("nuix.baseline.sim.latencyMillis");
+        }
+    }
+
+    @Test
+    void appServesQueuedManifestsFromOneResidentPool() throws Exception {
+        Path evidence = Files.createDirectories(folder.resolve("evidence"));
+        Files.write(evidence.resolve("0.eml"), new byte[]{1});
+        Path queue = folder.resolve("queue");
+        System.setProperty("nuix.baseline.sim.latencyMillis", "0");
+        try
+        {
+            Thread host = new Thread(() -> App.main(new String[] {"-d=" + folder, "-b=simulated", "-s=system", "-n=2",
+                    "-jobQueue=" + queue}), "job-queue-host");
+            host.start();
+            for (String name : new String[] {"first", "second"})
+            {
+                Path writing = Files.createDirectories(queue).resolve(name + ".json.part");
+                Files.write(writing, ("{\"jobs\": [{\"id\": \"" + name + "\", \"evidence\": [\"" +
+                        evidence.toString().replace("\\", "/") + "\"], \"caseDir\": \"cases/" + name + "\"}]}")
+                        .getBytes(StandardCharsets.UTF_8));
+                Files.move(writing, queue.resolve(name + ".json"));
+                Path done = queue.resolve("done").resolve(name + ".json");
+                for (int wait = 0; wait < 300 && !Files.exists(done); wait++)
+                {
+                    Thread.sleep(100);
+                }
+                Assertions.assertTrue(Files.exists(done), name + " should have been run");
+                Assertions.assertTrue(host.isAlive(), "the host should stay up between manifests");
+            }
+            Files.write(queue.resolve(ManifestQueue.STOP), new byte[0]);
+            host.join(30_000);
+            Assertions.assertFalse(host.isAlive(), "the host should stop once asked to");
+            Assertions.assertEquals(Files.readAllLines(queue.resolve("second.json.journal")).get(0).split("\t")[1], "completed");
+        }
+        finally
+        {
+            System.clearProperty("nuix.baseline.sim.latencyMillis");
+        }
+    }
+
+    @Test
+    void appRunsAgainstTheSimulatedBackend() throws Exception {
+        System.setProperty("nuix.baseline.sim.latencyMillis", "0");
+        System.setProperty("nuix.baseline.sim.challenge", "certificate");
+        try
+        {
+            App.main(new String[] {"-d=" + folder, "-b=simulated", "-c", "-s=server",
+                    "-l=licence.simulated:27443", "-t=enterprise-workstation", "-w=2"});
+            App.main(new String[] {"-d=" + folder, "-b=simulated", "-n=3", "-enginePoolWarmUp=3", "-s=system"});
+            try
+            {
+                App.main(new String[] {"-d=" + folder, "-b=simulated", "-k=0", "-c=false", "-s=server",
+                        "-l=licence.simulated:27443", "-t=enterprise-workstation", "-w=2"});
+                Assertions.fail("Licence acquisition should have failed without trusting the certificate");
+            }
+            catch (Exception ex)
+            {
+                Throwable cause = ex;
+                while (cause.getCause() != null)
+                {
+                    cause = cause.getCause();
+                }
+                Assertions.assertEquals(cause.getMessage(), "unable to find valid certification path to requested target");
+            }
+        }
+        finally
+        {
+            System.clearProperty("nuix.baseline.sim.latencyMillis");
+            System.clearProperty("nuix.baseline.sim.challenge");
+        }
+    }
+}
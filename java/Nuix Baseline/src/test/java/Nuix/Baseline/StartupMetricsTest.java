@@ -0,0 +1,76 @@
+package Nuix.Baseline;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+class StartupMetricsTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void phasesAndSourcesAccumulate() throws Exception {
+        StartupMetrics metrics = new StartupMetrics();
+        metrics.recordPhase("newEngine", TimeUnit.MILLISECONDS.toNanos(120));
+        metrics.recordPhase("newEngine", TimeUnit.MILLISECONDS.toNanos(80));
+        metrics.recordSource("server", "licence.example.com:27443", TimeUnit.SECONDS.toNanos(2), true);
+        metrics.recordSource("server", "licence.example.com:27443", TimeUnit.SECONDS.toNanos(1), false);
+        try (StartupMetrics.Phase ignored = metrics.phase("container"))
+        {
+            Thread.sleep(5);
+        }
+
+        String json = metrics.toJson();
+        Assertions.assertTrue(json.contains("\"newEngine\": {\"count\": 2, \"lastMillis\": 80.000, \"totalMillis\": 200.000, \"maxMillis\": 120.000}"), json);
+        Assertions.assertTrue(json.contains("\"location\": \"licence.example.com:27443\", \"count\": 2, \"failures\": 1"), json);
+        Assertions.assertTrue(json.contains("\"container\": {\"count\": 1"), json);
+
+        String prometheus = metrics.toPrometheus();
+        Assertions.assertTrue(prometheus.contains("baseline_startup_phase_seconds_total{phase=\"newEngine\"} 0.200000\n"), prometheus);
+        Assertions.assertTrue(prometheus.contains("baseline_licence_source_failures_total{type=\"server\",location=\"licence.example.com:27443\"} 1\n"), prometheus);
+        Assertions.assertTrue(prometheus.contains("# TYPE baseline_startup_phase_max_seconds gauge\n"), prometheus);
+
+        Path file = folder.resolve("metrics").resolve("startup.json");
+        metrics.writeJson(file);
+        Assertions.assertEquals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), metrics.toJson());
+    }
+
+    @Test
+    void servesPrometheusText() throws Exception {
+        StartupMetrics metrics = new StartupMetrics();
+        metrics.recordPhase("acquire", TimeUnit.MILLISECONDS.toNanos(15));
+        HttpServer server = metrics.serve(0);
+        try
+        {
+            URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/metrics");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            Assertions.assertEquals(connection.getResponseCode(), 200);
+            Assertions.assertTrue(connection.getContentType().startsWith("text/plain"));
+            try (InputStream body = connection.getInputStream())
+            {
+                byte[] bytes = new byte[64 * 1024];
+                int length = 0;
+                for (int read; (read = body.read(bytes, length, bytes.length - length)) > 0; )
+                {
+                    length += read;
+                }
+                Assertions.assertTrue(new String(bytes, 0, length, StandardCharsets.UTF_8)
+                        .contains("baseline_startup_phase_count_total{phase=\"acquire\"} 1"));
+            }
+        }
+        finally
+        {
+            server.stop(0);
+        }
+    }
+}